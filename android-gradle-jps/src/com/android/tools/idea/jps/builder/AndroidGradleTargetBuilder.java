@@ -184,11 +184,26 @@ public class AndroidGradleTargetBuilder extends TargetBuilder<AndroidGradleBuild
 
   private static void doBuild(@NotNull CompileContext context,
                               @NotNull List<String> buildTasks,
-                              @NotNull BuilderExecutionSettings executionSettings,
+                              @NotNull final BuilderExecutionSettings executionSettings,
                               @Nullable String androidHome) throws ProjectBuildException {
-    GradleConnector connector = getGradleConnector(executionSettings);
-
-    ProjectConnection connection = connector.connect();
+    GradleConnectionPool pool = GradleConnectionPool.getInstance();
+
+    long connectStart = System.currentTimeMillis();
+    GradleConnectionPool.Lease lease = pool.acquire(GradleConnectionPool.getKey(executionSettings), new GradleConnectionPool.Connector() {
+      @NotNull
+      @Override
+      public ProjectConnection connect() {
+        return getGradleConnector(executionSettings).connect();
+      }
+    });
+    long connectTime = System.currentTimeMillis() - connectStart;
+    String connectMsg = (lease.isReused() ? "Reused Gradle connection in " : "Connected to Gradle in ") + connectTime + " ms";
+    LOG.info(connectMsg);
+    context.processMessage(AndroidGradleJps.createCompilerMessage(BuildMessage.Kind.INFO, connectMsg));
+
+    ProjectConnection connection = lease.getConnection();
+    // Stays set if the build fails for any other reason than a build failure, in which case the connection is not reused
+    boolean connectionBroken = true;
     ByteArrayOutputStream stdout = new ByteArrayOutputStream(BUFFER_SIZE);
     ByteArrayOutputStream stderr = new ByteArrayOutputStream(BUFFER_SIZE);
 
@@ -244,8 +259,10 @@ public class AndroidGradleTargetBuilder extends TargetBuilder<AndroidGradleBuild
       launcher.setStandardOutput(stdout);
       launcher.setStandardError(stderr);
       launcher.run();
+      connectionBroken = false;
     }
     catch (BuildException e) {
+      connectionBroken = false;
       handleBuildException(e, context, stderr.toString());
     }
     finally {
@@ -257,7 +274,7 @@ public class AndroidGradleTargetBuilder extends TargetBuilder<AndroidGradleBuild
       } catch (IOException e) {
         LOG.debug(e);
       }
-      connection.close();
+      pool.release(lease, connectionBroken);
     }
   }
 
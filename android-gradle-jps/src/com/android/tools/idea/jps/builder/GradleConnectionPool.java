@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.jps.builder;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.intellij.openapi.diagnostic.Logger;
+import org.gradle.tooling.ProjectConnection;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps Gradle Tooling API connections open between builds in the same build process, so a build can reuse the
+ * connection (and the project configuration cached by the daemon behind it) instead of connecting from scratch.
+ * <p>
+ * There is one connection for each combination of the settings the connection is created from, see
+ * {@link #getKey(BuilderExecutionSettings)}. {@link ProjectConnection}s are thread-safe, so concurrent builds can
+ * share a connection, and builds of different projects connect in parallel. Connections which haven't been used for
+ * {@link #IDLE_TIMEOUT_MS} are closed.
+ */
+final class GradleConnectionPool {
+  private static final Logger LOG = Logger.getInstance(GradleConnectionPool.class);
+
+  static final long IDLE_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(3);
+
+  private static final GradleConnectionPool ourInstance = new GradleConnectionPool(true);
+
+  /** Guarded by itself, as are the use counts of the entries */
+  private final Map<Object, Entry> myEntries = Maps.newHashMap();
+
+  interface Connector {
+    @NotNull
+    ProjectConnection connect();
+  }
+
+  @NotNull
+  static GradleConnectionPool getInstance() {
+    return ourInstance;
+  }
+
+  GradleConnectionPool(boolean evictIdleConnections) {
+    if (evictIdleConnections) {
+      ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NotNull Runnable runnable) {
+          Thread thread = new Thread(runnable, "Gradle connection pool");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      executor.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          closeIdleConnections(System.currentTimeMillis() - IDLE_TIMEOUT_MS);
+        }
+      }, IDLE_TIMEOUT_MS, IDLE_TIMEOUT_MS / 3, TimeUnit.MILLISECONDS);
+
+      Runtime.getRuntime().addShutdownHook(new Thread("Gradle connection pool shutdown") {
+        @Override
+        public void run() {
+          closeIdleConnections(Long.MAX_VALUE);
+        }
+      });
+    }
+  }
+
+  /** Returns the key of the connection for the given settings: everything the {@code GradleConnector} is configured with */
+  @NotNull
+  static Object getKey(@NotNull BuilderExecutionSettings settings) {
+    return Arrays.<Object>asList(settings.getProjectDir(), settings.getGradleHomeDir(), settings.getGradleServiceDir(),
+                                 settings.isEmbeddedModeEnabled(), settings.isVerboseLoggingEnabled());
+  }
+
+  /**
+   * Returns the connection for the given key, using the given connector to connect if there is no open connection
+   * for the key yet. Each lease must be {@link #release(Lease, boolean) released} once the build is done with it.
+   */
+  @NotNull
+  Lease acquire(@NotNull Object key, @NotNull Connector connector) {
+    Entry entry;
+    synchronized (myEntries) {
+      entry = myEntries.get(key);
+      if (entry == null) {
+        entry = new Entry(key);
+        myEntries.put(key, entry);
+      }
+      entry.myUseCount++;
+    }
+
+    boolean reused;
+    try {
+      // Only builds using the same key wait for the connection to be set up
+      synchronized (entry) {
+        reused = entry.myConnection != null;
+        if (!reused) {
+          entry.myConnection = connector.connect();
+        }
+      }
+    }
+    catch (RuntimeException e) {
+      release(new Lease(entry, false), true);
+      throw e;
+    }
+    return new Lease(entry, reused);
+  }
+
+  /**
+   * Returns the connection of the given lease to the pool. Broken connections (ones a build failed to use because of
+   * a connection problem rather than a build failure) are removed from the pool and closed.
+   */
+  void release(@NotNull Lease lease, boolean broken) {
+    Entry entry = lease.myEntry;
+    boolean close;
+    synchronized (myEntries) {
+      entry.myUseCount--;
+      entry.myLastUsed = System.currentTimeMillis();
+      if (broken && myEntries.get(entry.myKey) == entry) {
+        myEntries.remove(entry.myKey);
+        entry.myRemoved = true;
+      }
+      // Entries in use by other builds are closed when the last one releases them
+      close = entry.myRemoved && entry.myUseCount == 0;
+    }
+    if (close) {
+      entry.close();
+    }
+  }
+
+  /** Closes the connections which are not in use, and haven't been used since the given time */
+  void closeIdleConnections(long usedBefore) {
+    List<Entry> idle = Lists.newArrayList();
+    synchronized (myEntries) {
+      for (Iterator<Entry> iterator = myEntries.values().iterator(); iterator.hasNext(); ) {
+        Entry entry = iterator.next();
+        if (entry.myUseCount == 0 && entry.myLastUsed < usedBefore) {
+          iterator.remove();
+          entry.myRemoved = true;
+          idle.add(entry);
+        }
+      }
+    }
+    for (Entry entry : idle) {
+      entry.close();
+    }
+  }
+
+  /** A connection handed out by the pool to a build */
+  static final class Lease {
+    @NotNull private final Entry myEntry;
+    private final boolean myReused;
+
+    private Lease(@NotNull Entry entry, boolean reused) {
+      myEntry = entry;
+      myReused = reused;
+    }
+
+    @NotNull
+    ProjectConnection getConnection() {
+      synchronized (myEntry) {
+        ProjectConnection connection = myEntry.myConnection;
+        assert connection != null;
+        return connection;
+      }
+    }
+
+    /** Returns true if the connection was already open, false if it was set up for this lease */
+    boolean isReused() {
+      return myReused;
+    }
+  }
+
+  private static final class Entry {
+    @NotNull private final Object myKey;
+    /** Guarded by this */
+    private ProjectConnection myConnection;
+    private int myUseCount;
+    private long myLastUsed;
+    private boolean myRemoved;
+
+    Entry(@NotNull Object key) {
+      myKey = key;
+    }
+
+    void close() {
+      ProjectConnection connection;
+      synchronized (this) {
+        connection = myConnection;
+        myConnection = null;
+      }
+      if (connection != null) {
+        try {
+          connection.close();
+        }
+        catch (RuntimeException e) {
+          LOG.info("Failed to close Gradle connection " + myKey, e);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.jps.builder;
+
+import junit.framework.TestCase;
+import org.gradle.tooling.ProjectConnection;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Tests for {@link GradleConnectionPool}.
+ */
+public class GradleConnectionPoolTest extends TestCase {
+  private GradleConnectionPool myPool;
+  private int myConnectCount;
+  private int myCloseCount;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myPool = new GradleConnectionPool(false);
+  }
+
+  public void testReusesConnectionForSameKey() {
+    GradleConnectionPool.Lease lease1 = myPool.acquire("project", new FakeConnector());
+    assertFalse(lease1.isReused());
+    myPool.release(lease1, false);
+
+    GradleConnectionPool.Lease lease2 = myPool.acquire("project", new FakeConnector());
+    assertTrue(lease2.isReused());
+    assertSame(lease1.getConnection(), lease2.getConnection());
+    myPool.release(lease2, false);
+
+    assertEquals(1, myConnectCount);
+    assertEquals(0, myCloseCount);
+  }
+
+  public void testSeparateConnectionsForDifferentKeys() {
+    GradleConnectionPool.Lease lease1 = myPool.acquire("project1", new FakeConnector());
+    GradleConnectionPool.Lease lease2 = myPool.acquire("project2", new FakeConnector());
+    assertNotSame(lease1.getConnection(), lease2.getConnection());
+    assertEquals(2, myConnectCount);
+  }
+
+  public void testBrokenConnectionClosedAfterLastRelease() {
+    GradleConnectionPool.Lease lease1 = myPool.acquire("project", new FakeConnector());
+    GradleConnectionPool.Lease lease2 = myPool.acquire("project", new FakeConnector());
+
+    myPool.release(lease1, true);
+    assertEquals(0, myCloseCount);
+    myPool.release(lease2, false);
+    assertEquals(1, myCloseCount);
+
+    GradleConnectionPool.Lease lease3 = myPool.acquire("project", new FakeConnector());
+    assertFalse(lease3.isReused());
+    assertEquals(2, myConnectCount);
+  }
+
+  public void testCloseIdleConnections() {
+    GradleConnectionPool.Lease lease1 = myPool.acquire("project1", new FakeConnector());
+    GradleConnectionPool.Lease lease2 = myPool.acquire("project2", new FakeConnector());
+    myPool.release(lease1, false);
+
+    // Connections in use are never closed
+    myPool.closeIdleConnections(Long.MAX_VALUE);
+    assertEquals(1, myCloseCount);
+
+    myPool.release(lease2, false);
+    myPool.closeIdleConnections(Long.MAX_VALUE);
+    assertEquals(2, myCloseCount);
+  }
+
+  private class FakeConnector implements GradleConnectionPool.Connector {
+    @NotNull
+    @Override
+    public ProjectConnection connect() {
+      myConnectCount++;
+      return (ProjectConnection)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{ProjectConnection.class},
+                                                       new InvocationHandler() {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+          if (method.getName().equals("close")) {
+            myCloseCount++;
+          }
+          return null;
+        }
+      });
+    }
+  }
+}
@@ -32,8 +32,9 @@ import com.android.tools.idea.rendering.Locale;
 import com.android.tools.idea.rendering.ResourceHelper;
 import com.android.tools.idea.rendering.multi.CompatibilityRenderTarget;
 import com.android.utils.SparseArray;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Maps;
-import com.intellij.openapi.application.Application;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
@@ -49,18 +50,38 @@ import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 
 import static com.android.SdkConstants.*;
 
-/** Cache for resolved resources */
+/**
+ * Cache for resolved resources.
+ * <p>
+ * The configured app resource maps are the expensive part to compute, so when the app resources are edited we
+ * don't throw them away; instead we ask the repository which resources changed (see
+ * {@link LocalResourceRepository#getChangesSince(long)}) and patch just those entries in each cached map. Only
+ * when the repository can't tell us what changed (for example after a full rescan) do we start over.
+ * <p>
+ * The caches are bounded; the least recently used configurations and themes are dropped first.
+ * <p>
+ * Previews are rendered on several threads at once. The caches are concurrent, and the cache lock is only held
+ * for short lookups and updates: configured resources are computed outside of it, and framework resources are
+ * loaded outside of both the lock and any read action, so a pending write action never waits for a disk load.
+ */
 public class ResourceResolverCache {
   private static final Logger LOG = Logger.getInstance(ResourceResolverCache.class);
 
+  /** Maximum number of theme and configuration combinations to keep resolvers for */
+  private static final int MAX_RESOLVERS = 50;
+
+  /** Maximum number of configurations to keep configured app and framework resources for */
+  private static final int MAX_CONFIGURATIONS = 20;
+
   /** The configuration manager this cache corresponds to */
   private final ConfigurationManager myManager;
 
   /** Map from theme and full configuration to the corresponding resource resolver */
-  private final Map<String, ResourceResolver> myResolverMap;
+  private final Cache<String, CachedResolver> myResolverMap;
 
   /**
    * Map of configured app resources. These are cached separately from the final resource
@@ -68,13 +89,13 @@ public class ResourceResolverCache {
    * Note that they key here is only the full configuration, whereas the map for the
    * resolvers also includes the theme.
    */
-  private final Map<String, Map<ResourceType, Map<String, ResourceValue>>> myAppResourceMap;
+  private final Cache<String, ConfiguredResources> myAppResourceMap;
 
   /**
    * Map of configured framework resources. These are cached separately from the final resource
    * resolver since they can be shared between different layouts that only vary by theme
    */
-  private final Map<String, Map<ResourceType, Map<String, ResourceValue>>> myFrameworkResourceMap;
+  private final Cache<String, Map<ResourceType, Map<String, ResourceValue>>> myFrameworkResourceMap;
 
   /** The generation timestamp of our most recently cached app resources, used to invalidate on edits */
   private long myCachedGeneration;
@@ -82,11 +103,15 @@ public class ResourceResolverCache {
   /** Map from API level to framework resources */
   private SparseArray<FrameworkResources> myFrameworkResources = new SparseArray<FrameworkResources>();
 
+  /** Number of resolver requests served from the cache, and number which had to create a new resolver */
+  private long myHitCount;
+  private long myMissCount;
+
   public ResourceResolverCache(ConfigurationManager manager) {
     myManager = manager;
-    myResolverMap = Maps.newHashMap();
-    myAppResourceMap = Maps.newHashMap();
-    myFrameworkResourceMap = Maps.newHashMap();
+    myResolverMap = CacheBuilder.newBuilder().maximumSize(MAX_RESOLVERS).build();
+    myAppResourceMap = CacheBuilder.newBuilder().maximumSize(MAX_CONFIGURATIONS).build();
+    myFrameworkResourceMap = CacheBuilder.newBuilder().maximumSize(MAX_CONFIGURATIONS).build();
   }
 
   public static ResourceResolverCache create(ConfigurationManager manager) {
@@ -97,13 +122,8 @@ public class ResourceResolverCache {
   public ResourceResolver getResourceResolver(@Nullable IAndroidTarget target,
                                               @NotNull String themeStyle,
                                               @NotNull final FolderConfiguration fullConfiguration) {
-    // Are caches up to date?
     final LocalResourceRepository resources = AppResourceRepository.getAppResources(myManager.getModule(), true);
     assert resources != null;
-    if (myCachedGeneration != resources.getModificationCount()) {
-      myResolverMap.clear();
-      myAppResourceMap.clear();
-    }
 
     // When looking up the configured project and framework resources, the theme doesn't matter, so we look up only
     // by the configuration qualifiers; for example, here's a sample key:
@@ -113,80 +133,153 @@ public class ResourceResolverCache {
     // However, the resource resolver also depends on the theme, so we use a more specific key for the resolver map than
     // for the configured resource maps, by prepending the theme name:
     // @style/MyTheme-ldltr-sw384dp-w384dp-h640dp-normal-notlong-port-notnight-xhdpi-finger-keyssoft-nokeys-navhidden-nonav-1280x768-v17
-    String configurationKey = fullConfiguration.getUniqueKey();
+    final String configurationKey = fullConfiguration.getUniqueKey();
     String resolverKey = themeStyle + configurationKey;
-    ResourceResolver resolver = myResolverMap.get(resolverKey);
-    if (resolver == null) {
-      Map<ResourceType, Map<String, ResourceValue>> configuredAppRes;
-      Map<ResourceType, Map<String, ResourceValue>> frameworkResources;
-
-      // Framework resources
-      if (target == null) {
-        target = myManager.getTarget();
+
+    // App resources
+    ConfiguredResources configuredAppRes =
+      ApplicationManager.getApplication().runReadAction(new Computable<ConfiguredResources>() {
+        @Override
+        public ConfiguredResources compute() {
+          return getConfiguredAppResources(resources, fullConfiguration, configurationKey);
+        }
+      });
+    Map<ResourceType, Map<String, ResourceValue>> appResources = configuredAppRes.values;
+
+    // A resolver is only valid as long as the configured app resources it was created from have not been patched
+    synchronized (this) {
+      CachedResolver cached = myResolverMap.getIfPresent(resolverKey);
+      if (cached != null && cached.appResources == appResources) {
+        myHitCount++;
+        return cached.resolver;
       }
-      if (target == null) {
+      myMissCount++;
+    }
+
+    Map<ResourceType, Map<String, ResourceValue>> frameworkResources;
+
+    // Framework resources. These are loaded from disk, so never while holding a read action or the cache lock.
+    if (target == null) {
+      target = myManager.getTarget();
+    }
+    if (target == null) {
+      frameworkResources = Collections.emptyMap();
+    } else {
+      ResourceRepository frameworkRes = getFrameworkResources(fullConfiguration, target);
+      if (frameworkRes == null) {
         frameworkResources = Collections.emptyMap();
-      } else {
-        ResourceRepository frameworkRes = getFrameworkResources(fullConfiguration, target);
-        if (frameworkRes == null) {
-          frameworkResources = Collections.emptyMap();
-        }
-        else {
-          // get the framework resource values based on the current config
-          frameworkResources = myFrameworkResourceMap.get(configurationKey);
-          if (frameworkResources == null) {
-            frameworkResources = frameworkRes.getConfiguredResources(fullConfiguration);
-
-            // Fix up assets. We're only doing this in limited cases for now; specifically Froyo (since the Gingerbread
-            // assets replaced the look for the same theme; that doesn't happen to the same extend for Holo)
-            if (target instanceof CompatibilityRenderTarget && target.getVersion().getApiLevel() == 8) {
-              IAndroidTarget realTarget = ((CompatibilityRenderTarget)target).getRealTarget();
-              if (realTarget != null) {
-                replaceDrawableBitmaps(frameworkResources, target, realTarget);
-              }
+      }
+      else {
+        // get the framework resource values based on the current config
+        frameworkResources = myFrameworkResourceMap.getIfPresent(configurationKey);
+        if (frameworkResources == null) {
+          frameworkResources = frameworkRes.getConfiguredResources(fullConfiguration);
+
+          // Fix up assets. We're only doing this in limited cases for now; specifically Froyo (since the Gingerbread
+          // assets replaced the look for the same theme; that doesn't happen to the same extend for Holo)
+          if (target instanceof CompatibilityRenderTarget && target.getVersion().getApiLevel() == 8) {
+            IAndroidTarget realTarget = ((CompatibilityRenderTarget)target).getRealTarget();
+            if (realTarget != null) {
+              replaceDrawableBitmaps(frameworkResources, target, realTarget);
             }
+          }
 
-            myFrameworkResourceMap.put(configurationKey, frameworkResources);
+          Map<ResourceType, Map<String, ResourceValue>> existing =
+            myFrameworkResourceMap.asMap().putIfAbsent(configurationKey, frameworkResources);
+          if (existing != null) {
+            frameworkResources = existing;
           }
         }
       }
+    }
 
-      // App resources
-      configuredAppRes = myAppResourceMap.get(configurationKey);
-      if (configuredAppRes == null) {
-        // get the project resource values based on the current config
-        Application application = ApplicationManager.getApplication();
-        configuredAppRes = application.runReadAction(new Computable<Map<ResourceType, Map<String, ResourceValue>>>() {
-          @Override
-          public Map<ResourceType, Map<String, ResourceValue>> compute() {
-            return resources.getConfiguredResources(fullConfiguration);
-          }
-        });
-        myAppResourceMap.put(configurationKey, configuredAppRes);
+    // Resource Resolver
+    assert themeStyle.startsWith(STYLE_RESOURCE_PREFIX) || themeStyle.startsWith(ANDROID_STYLE_RESOURCE_PREFIX) : themeStyle;
+    boolean isProjectTheme = ResourceHelper.isProjectStyle(themeStyle);
+    String themeName = ResourceHelper.styleToTheme(themeStyle);
+    ResourceResolver resolver = ResourceResolver.create(appResources, frameworkResources, themeName, isProjectTheme);
+
+    if (target instanceof CompatibilityRenderTarget) {
+      int apiLevel = target.getVersion().getFeatureLevel();
+      if (apiLevel >= 21) {
+        resolver.setDeviceDefaults("Theme.Material.Light", "Theme.Material");
+      } else if (apiLevel >= 14) {
+        resolver.setDeviceDefaults("Theme.Holo.Light", "Theme.Holo");
+      } else {
+        resolver.setDeviceDefaults("Theme.Light", "Theme");
       }
+    }
+
+    myResolverMap.put(resolverKey, new CachedResolver(resolver, appResources));
+
+    return resolver;
+  }
 
-      // Resource Resolver
-      assert themeStyle.startsWith(STYLE_RESOURCE_PREFIX) || themeStyle.startsWith(ANDROID_STYLE_RESOURCE_PREFIX) : themeStyle;
-      boolean isProjectTheme = ResourceHelper.isProjectStyle(themeStyle);
-      String themeName = ResourceHelper.styleToTheme(themeStyle);
-      resolver = ResourceResolver.create(configuredAppRes, frameworkResources, themeName, isProjectTheme);
-
-      if (target instanceof CompatibilityRenderTarget) {
-        int apiLevel = target.getVersion().getFeatureLevel();
-        if (apiLevel >= 21) {
-          resolver.setDeviceDefaults("Theme.Material.Light", "Theme.Material");
-        } else if (apiLevel >= 14) {
-          resolver.setDeviceDefaults("Theme.Holo.Light", "Theme.Holo");
+  /**
+   * Returns the configured app resources for the given configuration, bringing the cache up to date with
+   * the repository first. Must be called in a read action, so the repository can't change underneath us;
+   * the cache lock is only held while looking up and storing entries, not while configuring resources.
+   */
+  @NotNull
+  private ConfiguredResources getConfiguredAppResources(@NotNull LocalResourceRepository resources,
+                                                        @NotNull FolderConfiguration fullConfiguration,
+                                                        @NotNull String configurationKey) {
+    long generation = resources.getModificationCount();
+    synchronized (this) {
+      // Are caches up to date?
+      if (myCachedGeneration != generation) {
+        Map<ResourceType, Set<String>> changes = myCachedGeneration != 0 ? resources.getChangesSince(myCachedGeneration) : null;
+        if (changes != null) {
+          updateAppResources(resources, changes);
         } else {
-          resolver.setDeviceDefaults("Theme.Light", "Theme");
+          myResolverMap.invalidateAll();
+          myAppResourceMap.invalidateAll();
         }
+        myCachedGeneration = generation;
       }
 
-      myResolverMap.put(resolverKey, resolver);
-      myCachedGeneration = resources.getModificationCount();
+      ConfiguredResources configured = myAppResourceMap.getIfPresent(configurationKey);
+      if (configured != null) {
+        return configured;
+      }
     }
 
-    return resolver;
+    // get the project resource values based on the current config
+    ConfiguredResources configured = new ConfiguredResources(fullConfiguration, resources.getConfiguredResources(fullConfiguration));
+    synchronized (this) {
+      // Don't cache values computed from an older generation than the rest of the cache
+      if (myCachedGeneration == generation) {
+        ConfiguredResources existing = myAppResourceMap.asMap().putIfAbsent(configurationKey, configured);
+        if (existing != null) {
+          return existing;
+        }
+      }
+    }
+    return configured;
+  }
+
+  /**
+   * Updates the cached configured app resources for the given changed resources. Maps are never modified
+   * in place, since existing resolvers (possibly in use by an ongoing render) still refer to them; instead
+   * a configuration whose values actually changed gets a patched copy, which also makes any resolvers
+   * created from the old values stale.
+   * <p>
+   * Must be called in a read action, holding the cache lock.
+   */
+  private void updateAppResources(@NotNull LocalResourceRepository resources, @NotNull Map<ResourceType, Set<String>> changes) {
+    for (ConfiguredResources configured : myAppResourceMap.asMap().values()) {
+      configured.update(resources, changes);
+    }
+  }
+
+  /** Returns the number of resolver lookups which were answered from the cache */
+  public synchronized long getHitCount() {
+    return myHitCount;
+  }
+
+  /** Returns the number of resolver lookups which required a new resolver to be created */
+  public synchronized long getMissCount() {
+    return myMissCount;
   }
 
   /**
@@ -197,7 +290,10 @@ public class ResourceResolverCache {
   @Nullable
   public ResourceRepository getFrameworkResources(@NotNull FolderConfiguration configuration, @NotNull IAndroidTarget target) {
     int apiLevel = target.getVersion().getFeatureLevel();
-    FrameworkResources resources = myFrameworkResources.get(apiLevel);
+    FrameworkResources resources;
+    synchronized (this) {
+      resources = myFrameworkResources.get(apiLevel);
+    }
 
     LocaleQualifier locale = configuration.getLocaleQualifier();
     boolean needLocales = locale != null && !locale.hasFakeValue() || myManager.getLocale() != Locale.ANY;
@@ -210,9 +306,12 @@ public class ResourceResolverCache {
     }
 
     if (resources == null || reset) {
+      // Loaded outside of the cache lock; AndroidTargetData serializes concurrent loads of the same target
       FrameworkResourceLoader.requestLocales(needLocales);
       resources = getFrameworkResources(target, myManager.getModule(), reset);
-      myFrameworkResources.put(apiLevel, resources);
+      synchronized (this) {
+        myFrameworkResources.put(apiLevel, resources);
+      }
     }
 
     return resources;
@@ -330,9 +429,75 @@ public class ResourceResolverCache {
     }
   }
 
-  public void reset() {
+  public synchronized void reset() {
     myCachedGeneration = 0;
-    myAppResourceMap.clear();
-    myResolverMap.clear();
+    myAppResourceMap.invalidateAll();
+    myResolverMap.invalidateAll();
+  }
+
+  /** A cached resolver along with the configured app resources it was created from */
+  private static class CachedResolver {
+    @NotNull private final ResourceResolver resolver;
+    @NotNull private final Map<ResourceType, Map<String, ResourceValue>> appResources;
+
+    private CachedResolver(@NotNull ResourceResolver resolver, @NotNull Map<ResourceType, Map<String, ResourceValue>> appResources) {
+      this.resolver = resolver;
+      this.appResources = appResources;
+    }
+  }
+
+  /** Configured app resources for a given configuration, which can be updated as individual resources change */
+  private static class ConfiguredResources {
+    @NotNull private final FolderConfiguration configuration;
+    @NotNull private volatile Map<ResourceType, Map<String, ResourceValue>> values;
+
+    private ConfiguredResources(@NotNull FolderConfiguration configuration, @NotNull Map<ResourceType, Map<String, ResourceValue>> values) {
+      // The passed in configuration is typically owned by a Configuration and may change later
+      this.configuration = new FolderConfiguration();
+      this.configuration.set(configuration);
+      this.values = values;
+    }
+
+    /** Brings the configured values up to date with the given changes to the repository */
+    private void update(@NotNull LocalResourceRepository resources, @NotNull Map<ResourceType, Set<String>> changes) {
+      Map<ResourceType, Map<String, ResourceValue>> updated = null;
+      for (Map.Entry<ResourceType, Set<String>> entry : changes.entrySet()) {
+        ResourceType type = entry.getKey();
+        Set<String> names = entry.getValue();
+        Map<String, ResourceValue> oldValues = values.get(type);
+        Map<String, ResourceValue> newValues;
+        if (names == null || oldValues == null) {
+          newValues = resources.getConfiguredResources(type, configuration);
+        } else {
+          newValues = null;
+          for (String name : names) {
+            ResourceValue value = resources.getConfiguredValue(type, name, configuration);
+            if (value != oldValues.get(name)) {
+              if (newValues == null) {
+                newValues = Maps.newHashMap(oldValues);
+              }
+              if (value != null) {
+                newValues.put(name, value);
+              } else {
+                newValues.remove(name);
+              }
+            }
+          }
+          if (newValues == null) {
+            // None of the changed resources affect this configuration
+            continue;
+          }
+        }
+        if (updated == null) {
+          updated = Maps.newEnumMap(ResourceType.class);
+          updated.putAll(values);
+        }
+        updated.put(type, newValues);
+      }
+
+      if (updated != null) {
+        values = updated;
+      }
+    }
   }
 }
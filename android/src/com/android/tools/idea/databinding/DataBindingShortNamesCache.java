@@ -19,18 +19,19 @@ import com.android.tools.idea.rendering.DataBindingInfo;
 import com.android.tools.idea.rendering.LocalResourceRepository;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.intellij.openapi.project.Project;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiField;
 import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiNamedElement;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.search.PsiShortNamesCache;
 import com.intellij.psi.util.CachedValue;
 import com.intellij.psi.util.CachedValueProvider;
 import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.util.ArrayUtil;
-import com.intellij.util.Function;
 import com.intellij.util.Processor;
 import com.intellij.util.containers.HashSet;
 import org.jetbrains.android.facet.AndroidFacet;
@@ -40,6 +41,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.lang.reflect.Array;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -73,49 +75,31 @@ public class DataBindingShortNamesCache extends PsiShortNamesCache {
       }
     }, false);
 
+    final MemberIndex<PsiMethod> methodIndex = new MemberIndex<PsiMethod>() {
+      @Override
+      PsiMethod[] getMembers(@NotNull PsiClass psiClass) {
+        return psiClass.getMethods();
+      }
+    };
     myMethodsByNameCache = cachedValuesManager.createCachedValue(new CachedValueProvider<Map<String, List<PsiMethod>>>() {
       @Nullable
       @Override
       public Result<Map<String, List<PsiMethod>>> compute() {
-        final Map<String, List<PsiMethod>> result = Maps.newHashMap();
-        traverseAllClasses(new Function<PsiClass, Void>() {
-          @Override
-          public Void fun(PsiClass psiClass) {
-            for (PsiMethod method : psiClass.getMethods()) {
-              List<PsiMethod> psiMethods = result.get(method.getName());
-              if (psiMethods == null) {
-                psiMethods = Lists.newArrayList();
-                result.put(method.getName(), psiMethods);
-              }
-              psiMethods.add(method);
-            }
-            return null;
-          }
-        });
-        return Result.create(result, nameCacheProvider);
+        return Result.create(methodIndex.update(myNameCache.getValue()), nameCacheProvider);
       }
     }, false);
 
+    final MemberIndex<PsiField> fieldIndex = new MemberIndex<PsiField>() {
+      @Override
+      PsiField[] getMembers(@NotNull PsiClass psiClass) {
+        return psiClass.getFields();
+      }
+    };
     myFieldsByNameCache = cachedValuesManager.createCachedValue(new CachedValueProvider<Map<String, List<PsiField>>>() {
       @Nullable
       @Override
       public Result<Map<String, List<PsiField>>> compute() {
-        final Map<String, List<PsiField>> result = Maps.newHashMap();
-        traverseAllClasses(new Function<PsiClass, Void>() {
-          @Override
-          public Void fun(PsiClass psiClass) {
-            for (PsiField field : psiClass.getFields()) {
-              List<PsiField> psiFields = result.get(field.getName());
-              if (psiFields == null) {
-                psiFields = Lists.newArrayList();
-                result.put(field.getName(), psiFields);
-              }
-              psiFields.add(field);
-            }
-            return null;
-          }
-        });
-        return Result.create(result, nameCacheProvider);
+        return Result.create(fieldIndex.update(myNameCache.getValue()), nameCacheProvider);
       }
     }, false);
     myAllMethodNamesCache = cachedValuesManager.createCachedValue(new CachedValueProvider<String[]>() {
@@ -136,15 +120,6 @@ public class DataBindingShortNamesCache extends PsiShortNamesCache {
     }, false);
   }
 
-  private void traverseAllClasses(Function<PsiClass, Void> receiver) {
-    for (List<DataBindingInfo> infoList : myNameCache.getValue().values()) {
-      for (DataBindingInfo info : infoList) {
-        PsiClass psiClass = DataBindingUtil.getOrCreatePsiClass(info);
-        receiver.fun(psiClass);
-      }
-    }
-  }
-
   @NotNull
   @Override
   public PsiClass[] getClassesByName(@NotNull @NonNls String name, @NotNull GlobalSearchScope scope) {
@@ -291,6 +266,75 @@ public class DataBindingShortNamesCache extends PsiShortNamesCache {
     Collections.addAll(set, getAllFieldNames());
   }
 
+  /**
+   * An index of the methods or fields of the generated binding classes by name, which is updated class by class: the
+   * members of a class are only indexed again when they change, i.e. when its layout changed.
+   */
+  private abstract static class MemberIndex<T extends PsiNamedElement> {
+    private final Map<DataBindingInfo, T[]> myIndexedMembers = Maps.newHashMap();
+    private Map<String, List<T>> myMembersByName = Collections.emptyMap();
+
+    abstract T[] getMembers(@NotNull PsiClass psiClass);
+
+    @NotNull
+    synchronized Map<String, List<T>> update(@NotNull Map<String, List<DataBindingInfo>> classes) {
+      Map<DataBindingInfo, T[]> current = Maps.newHashMap();
+      for (List<DataBindingInfo> infoList : classes.values()) {
+        for (DataBindingInfo info : infoList) {
+          // The light classes cache their members, so unchanged classes return the same arrays
+          current.put(info, getMembers(DataBindingUtil.getOrCreatePsiClass(info)));
+        }
+      }
+
+      // Copy the index rather than modifying it since it may still be in use, along with the lists of the names which change
+      Map<String, List<T>> membersByName = null;
+      Set<String> copied = Sets.newHashSet();
+      for (Iterator<Map.Entry<DataBindingInfo, T[]>> iterator = myIndexedMembers.entrySet().iterator(); iterator.hasNext(); ) {
+        Map.Entry<DataBindingInfo, T[]> entry = iterator.next();
+        if (current.get(entry.getKey()) != entry.getValue()) {
+          if (membersByName == null) {
+            membersByName = Maps.newHashMap(myMembersByName);
+          }
+          for (T member : entry.getValue()) {
+            List<T> members = getMembersToUpdate(membersByName, copied, member.getName());
+            members.remove(member);
+            if (members.isEmpty()) {
+              membersByName.remove(member.getName());
+              copied.remove(member.getName());
+            }
+          }
+          iterator.remove();
+        }
+      }
+      for (Map.Entry<DataBindingInfo, T[]> entry : current.entrySet()) {
+        if (!myIndexedMembers.containsKey(entry.getKey())) {
+          if (membersByName == null) {
+            membersByName = Maps.newHashMap(myMembersByName);
+          }
+          for (T member : entry.getValue()) {
+            getMembersToUpdate(membersByName, copied, member.getName()).add(member);
+          }
+          myIndexedMembers.put(entry.getKey(), entry.getValue());
+        }
+      }
+
+      if (membersByName != null) {
+        myMembersByName = membersByName;
+      }
+      return myMembersByName;
+    }
+
+    @NotNull
+    private static <T> List<T> getMembersToUpdate(@NotNull Map<String, List<T>> membersByName, @NotNull Set<String> copied, String name) {
+      List<T> members = membersByName.get(name);
+      if (copied.add(name)) {
+        members = members == null ? Lists.<T>newArrayList() : Lists.newArrayList(members);
+        membersByName.put(name, members);
+      }
+      return members;
+    }
+  }
+
   private static class NameCacheProvider extends ProjectResourceCachedValueProvider.MergedMapValueProvider<String, DataBindingInfo> {
 
     public NameCacheProvider(DataBindingProjectComponent component) {
@@ -44,6 +44,7 @@ import com.intellij.psi.scope.PsiScopeProcessor;
 import com.intellij.psi.search.searches.AnnotatedElementsSearch;
 import com.intellij.psi.tree.IElementType;
 import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
 import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.psi.util.PsiUtil;
 import com.intellij.psi.xml.XmlTag;
@@ -323,13 +324,16 @@ public class DataBindingUtil {
           }
         }, false);
 
+      // The methods only depend on the variables of this layout, so they are only recreated when this layout's binding
+      // info changes rather than whenever any resource of the module changes
       myPsiMethodsCache =
-        cachedValuesManager.createCachedValue(new ResourceCacheValueProvider<PsiMethod[]>(facet) {
+        cachedValuesManager.createCachedValue(new CachedValueProvider<PsiMethod[]>() {
+          @Nullable
           @Override
-          PsiMethod[] doCompute() {
+          public Result<PsiMethod[]> compute() {
             List<PsiDataBindingResourceItem> variables = myInfo.getItems(DataBindingResourceType.VARIABLE);
             if (variables == null) {
-              return PsiMethod.EMPTY_ARRAY;
+              return Result.create(PsiMethod.EMPTY_ARRAY, myInfo);
             }
             PsiMethod[] methods = new PsiMethod[variables.size() * 2 + STATIC_METHOD_COUNT];
             PsiElementFactory factory = PsiElementFactory.SERVICE.getInstance(myInfo.getProject());
@@ -337,13 +341,7 @@ public class DataBindingUtil {
               createVariableMethods(factory, variables.get(i), methods, i * 2);
             }
             createStaticMethods(factory, methods, variables.size() * 2);
-            return methods;
-          }
-
-
-          @Override
-          PsiMethod[] defaultValue() {
-            return PsiMethod.EMPTY_ARRAY;
+            return Result.create(methods, myInfo);
           }
         });
 
@@ -17,6 +17,7 @@ package com.android.tools.idea.databinding;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.intellij.openapi.util.ModificationTracker;
 import com.intellij.psi.util.CachedValue;
 import com.intellij.psi.util.CachedValueProvider;
@@ -39,6 +40,9 @@ abstract public class ProjectResourceCachedValueProvider<T, V> implements Cached
   private DataBindingProjectComponent myComponent;
   private long myDependencyModificationCountOnCompute;
   private long myModificationCount = 0;
+  /** The per facet values which were merged into {@link #myMerged}, used to only merge what changed on the next compute */
+  private Map<AndroidFacet, V> myMergedValues;
+  private T myMerged;
 
   @Override
   public long getModificationCount() {
@@ -56,9 +60,9 @@ abstract public class ProjectResourceCachedValueProvider<T, V> implements Cached
 
   @Nullable
   @Override
-  public final Result<T> compute() {
+  public final synchronized Result<T> compute() {
     AndroidFacet[] facets = myComponent.getDataBindingEnabledFacets();
-    List<V> values = Lists.newArrayList();
+    Map<AndroidFacet, V> values = Maps.newLinkedHashMap();
 
     List<ModificationTracker> newDependencies = Lists.newArrayList();
     newDependencies.add(myComponent);
@@ -71,12 +75,43 @@ abstract public class ProjectResourceCachedValueProvider<T, V> implements Cached
       }
       V result = cachedValue.getValue();
       if (result != null) {
-        values.add(result);
+        values.put(facet, result);
       }
     }
     myDependencyModificationCountOnCompute = calculateModificationCountFrom(newDependencies);
     myDependencies = newDependencies;
-    return Result.create(merge(values), this);
+    myMerged = mergeChanges(values);
+    myMergedValues = values;
+    return Result.create(myMerged, this);
+  }
+
+  /**
+   * Merges the given per facet values. The facets' cached values are only recomputed when their own resources change,
+   * so if a previous merge result exists, only the values of the facets which changed since are passed to
+   * {@link #update}; the other facets' contributions are kept as they are.
+   */
+  @NotNull
+  private T mergeChanges(@NotNull Map<AndroidFacet, V> values) {
+    if (myMerged == null) {
+      return merge(Lists.newArrayList(values.values()));
+    }
+    List<V> removed = Lists.newArrayList();
+    List<V> added = Lists.newArrayList();
+    for (Map.Entry<AndroidFacet, V> entry : myMergedValues.entrySet()) {
+      if (values.get(entry.getKey()) != entry.getValue()) {
+        removed.add(entry.getValue());
+      }
+    }
+    for (Map.Entry<AndroidFacet, V> entry : values.entrySet()) {
+      if (myMergedValues.get(entry.getKey()) != entry.getValue()) {
+        added.add(entry.getValue());
+      }
+    }
+    if (removed.isEmpty() && added.isEmpty()) {
+      return myMerged;
+    }
+    T updated = update(myMerged, removed, added);
+    return updated != null ? updated : merge(Lists.newArrayList(values.values()));
   }
 
   private static long calculateModificationCountFrom(List<ModificationTracker> dependencies) {
@@ -90,6 +125,16 @@ abstract public class ProjectResourceCachedValueProvider<T, V> implements Cached
   @NotNull
   abstract protected T merge(List<V> results);
 
+  /**
+   * Returns the result of removing the given per facet values from a previous merge result and adding the given new
+   * ones, or null to merge all the values again instead. The previous result must not be modified, since it may still
+   * be in use. By default everything is merged again.
+   */
+  @Nullable
+  protected T update(@NotNull T previous, @NotNull List<V> removed, @NotNull List<V> added) {
+    return null;
+  }
+
   private CachedValue<V> getCachedValue(AndroidFacet facet) {
     CachedValue<V> cachedValue = myCachedValues.get(facet);
     if (cachedValue == null) {
@@ -124,5 +169,48 @@ abstract public class ProjectResourceCachedValueProvider<T, V> implements Cached
       }
       return merged;
     }
+
+    @Nullable
+    @Override
+    protected Map<A, List<B>> update(@NotNull Map<A, List<B>> previous,
+                                     @NotNull List<Map<A, List<B>>> removed,
+                                     @NotNull List<Map<A, List<B>>> added) {
+      // Copy the map, and the lists of just the keys which change
+      Map<A, List<B>> merged = Maps.newHashMap(previous);
+      Set<A> copied = Sets.newHashSet();
+      for (Map<A, List<B>> result : removed) {
+        for (Map.Entry<A, List<B>> entry : result.entrySet()) {
+          List<B> bList = merged.get(entry.getKey());
+          if (bList == null) {
+            continue;
+          }
+          if (copied.add(entry.getKey())) {
+            bList = Lists.newArrayList(bList);
+            merged.put(entry.getKey(), bList);
+          }
+          bList.removeAll(entry.getValue());
+          if (bList.isEmpty()) {
+            merged.remove(entry.getKey());
+            copied.remove(entry.getKey());
+          }
+        }
+      }
+      for (Map<A, List<B>> result : added) {
+        for (Map.Entry<A, List<B>> entry : result.entrySet()) {
+          List<B> bList = merged.get(entry.getKey());
+          if (bList == null) {
+            bList = Lists.newArrayList();
+            merged.put(entry.getKey(), bList);
+            copied.add(entry.getKey());
+          }
+          else if (copied.add(entry.getKey())) {
+            bList = Lists.newArrayList(bList);
+            merged.put(entry.getKey(), bList);
+          }
+          bList.addAll(entry.getValue());
+        }
+      }
+      return merged;
+    }
   }
 }
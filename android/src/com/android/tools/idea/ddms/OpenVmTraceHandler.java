@@ -19,6 +19,7 @@ package com.android.tools.idea.ddms;
 import com.android.ddmlib.Client;
 import com.android.ddmlib.ClientData;
 import com.android.tools.idea.editors.vmtrace.VmTraceCaptureType;
+import com.android.tools.idea.profiling.capture.CaptureHandle;
 import com.android.tools.idea.profiling.capture.CaptureService;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
@@ -48,21 +49,23 @@ public class OpenVmTraceHandler implements ClientData.IMethodProfilingHandler {
 
   @Override
   public void onSuccess(@NotNull final byte[] data, @NotNull Client client) {
-    ApplicationManager.getApplication().invokeLater(new Runnable() {
+    // Write the trace off the EDT; only opening the editor needs to happen there
+    ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
       @Override
       public void run() {
-        ApplicationManager.getApplication().runWriteAction(new Runnable() {
-          @Override
-          public void run() {
-            try {
-              CaptureService service = CaptureService.getInstance(myProject);
-              service.createCapture(VmTraceCaptureType.class, data);
-            }
-            catch (IOException e) {
-              throw new RuntimeException(e);
-            }
+        CaptureService service = CaptureService.getInstance(myProject);
+        CaptureHandle handle = null;
+        try {
+          handle = service.startCaptureFile(VmTraceCaptureType.class);
+          service.appendData(handle, data);
+          service.finalizeCaptureFileAsynchronous(handle);
+        }
+        catch (IOException e) {
+          if (handle != null) {
+            service.cancelCaptureFile(handle);
           }
-        });
+          showError("Unable to save method trace: " + e.getMessage());
+        }
       }
     });
   }
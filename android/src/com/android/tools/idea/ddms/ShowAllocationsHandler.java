@@ -19,12 +19,10 @@ package com.android.tools.idea.ddms;
 import com.android.ddmlib.Client;
 import com.android.ddmlib.ClientData;
 import com.android.tools.idea.editors.allocations.AllocationCaptureType;
-import com.android.tools.idea.profiling.capture.Capture;
+import com.android.tools.idea.profiling.capture.CaptureHandle;
 import com.android.tools.idea.profiling.capture.CaptureService;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
-import com.intellij.openapi.fileEditor.FileEditorManager;
-import com.intellij.openapi.fileEditor.OpenFileDescriptor;
 import com.intellij.openapi.project.Project;
 import org.jetbrains.annotations.NotNull;
 
@@ -41,22 +39,24 @@ public class ShowAllocationsHandler implements ClientData.IAllocationTrackingHan
 
   @Override
   public void onSuccess(@NotNull final byte[] data, @NotNull Client client) {
-    ApplicationManager.getApplication().invokeLater(new Runnable() {
+    // Write the allocations off the EDT; only opening the editor needs to happen there
+    ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
       @Override
       public void run() {
-        ApplicationManager.getApplication().runWriteAction(new Runnable() {
-          @Override
-          public void run() {
-            try {
-              CaptureService service = CaptureService.getInstance(myProject);
-              service.createCapture(AllocationCaptureType.class, data);
-            }
-            catch (IOException e) {
-              throw new RuntimeException(e);
-            }
+        CaptureService service = CaptureService.getInstance(myProject);
+        CaptureHandle handle = null;
+        try {
+          handle = service.startCaptureFile(AllocationCaptureType.class);
+          service.appendData(handle, data);
+          service.finalizeCaptureFileAsynchronous(handle);
+        }
+        catch (IOException e) {
+          if (handle != null) {
+            service.cancelCaptureFile(handle);
           }
-        });
+          LOG.error("Unable to save allocation tracking data", e);
+        }
       }
     });
   }
-}
\ No newline at end of file
+}
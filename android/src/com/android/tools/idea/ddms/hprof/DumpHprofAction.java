@@ -23,6 +23,7 @@ import com.android.tools.idea.ddms.DeviceContext;
 import com.android.tools.idea.ddms.actions.AbstractClientAction;
 import com.android.tools.idea.editors.hprof.HprofCaptureType;
 import com.android.tools.idea.monitor.memory.MemoryMonitorView;
+import com.android.tools.idea.profiling.capture.CaptureHandle;
 import com.android.tools.idea.profiling.capture.CaptureService;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.project.Project;
@@ -105,21 +106,30 @@ public class DumpHprofAction extends AbstractClientAction {
                                        AndroidBundle.message("android.ddms.actions.dump.hprof"));
               break;
             case DATA:
-              ApplicationManager.getApplication().invokeLater(new Runnable() {
+              // clientChanged is called on the ddmlib thread: write the (potentially very large) dump on a pooled thread,
+              // streaming it to disk, and only open the editor on the EDT
+              ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
                 @Override
                 public void run() {
-                  ApplicationManager.getApplication().runWriteAction(new Runnable() {
-                    @Override
-                    public void run() {
-                      try {
-                        CaptureService service = CaptureService.getInstance(myProject);
-                        service.createCapture(HprofCaptureType.class, data.data);
-                      }
-                      catch (IOException e) {
-                        throw new RuntimeException(e);
-                      }
+                  CaptureService service = CaptureService.getInstance(myProject);
+                  CaptureHandle handle = null;
+                  try {
+                    handle = service.startCaptureFile(HprofCaptureType.class);
+                    service.appendData(handle, data.data);
+                    service.finalizeCaptureFileAsynchronous(handle);
+                  }
+                  catch (final IOException e) {
+                    if (handle != null) {
+                      service.cancelCaptureFile(handle);
                     }
-                  });
+                    ApplicationManager.getApplication().invokeLater(new Runnable() {
+                      @Override
+                      public void run() {
+                        Messages.showErrorDialog("Unable to save Hprof data: " + e.getMessage(),
+                                                 AndroidBundle.message("android.ddms.actions.dump.hprof"));
+                      }
+                    });
+                  }
                 }
               });
               break;
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.ddms.hprof;
+
+import com.android.SdkConstants;
+import com.intellij.execution.ExecutionException;
+import com.intellij.execution.process.BaseOSProcessHandler;
+import com.intellij.execution.process.ProcessAdapter;
+import com.intellij.execution.process.ProcessEvent;
+import com.intellij.openapi.util.Key;
+import org.jetbrains.android.sdk.AndroidSdkData;
+import org.jetbrains.android.sdk.AndroidSdkUtils;
+import org.jetbrains.android.util.AndroidCommonUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An output stream which converts the Android heap dump written to it into a standard HPROF file, by piping it
+ * through the hprof-conv tool as it is written. This means the dump can be converted while it is being read (or
+ * received), without first saving the Android format dump and then running the tool on that file as a separate pass.
+ * The conversion result is checked when the stream is closed.
+ */
+public class HprofConvStream extends OutputStream {
+  private final BaseOSProcessHandler myHandler;
+  private final OutputStream myInput;
+  private final StringBuilder myOutput = new StringBuilder();
+
+  public HprofConvStream(@NotNull File destination) throws IOException, ExecutionException {
+    AndroidSdkData sdkData = AndroidSdkUtils.tryToChooseAndroidSdk();
+    if (sdkData == null) {
+      throw new ExecutionException("Unable to find path to SDK.");
+    }
+
+    // "-" makes hprof-conv read the heap dump from its standard input
+    String hprofConvPath = new File(sdkData.getLocation(), AndroidCommonUtils.platformToolPath(SdkConstants.FN_HPROF_CONV)).getPath();
+    ProcessBuilder pb = new ProcessBuilder(hprofConvPath, "-", destination.getAbsolutePath());
+    myHandler = new BaseOSProcessHandler(pb.start(), "", null);
+    myHandler.addProcessListener(new ProcessAdapter() {
+      @Override
+      public void onTextAvailable(ProcessEvent event, Key outputType) {
+        synchronized (myOutput) {
+          myOutput.append(event.getText());
+        }
+      }
+    });
+    myHandler.startNotify();
+    myInput = new BufferedOutputStream(myHandler.getProcess().getOutputStream(), 64 * 1024);
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    myInput.write(b);
+  }
+
+  @Override
+  public void write(@NotNull byte[] b, int off, int len) throws IOException {
+    myInput.write(b, off, len);
+  }
+
+  @Override
+  public void flush() throws IOException {
+    myInput.flush();
+  }
+
+  /** Finishes the conversion, throwing an exception with the tool's output if it failed */
+  @Override
+  public void close() throws IOException {
+    try {
+      myInput.close();
+    }
+    finally {
+      myHandler.waitFor();
+    }
+    int exitCode = myHandler.getProcess().exitValue();
+    if (exitCode != 0) {
+      synchronized (myOutput) {
+        throw new IOException(myOutput.toString().trim());
+      }
+    }
+  }
+}
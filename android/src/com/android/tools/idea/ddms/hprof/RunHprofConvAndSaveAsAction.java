@@ -15,15 +15,11 @@
  */
 package com.android.tools.idea.ddms.hprof;
 
-import com.android.SdkConstants;
 import com.android.tools.idea.editors.hprof.HprofCaptureType;
 import com.android.tools.idea.profiling.capture.Capture;
 import com.android.tools.idea.profiling.capture.CaptureTypeService;
 import com.android.tools.idea.profiling.view.CapturesToolWindow;
 import com.intellij.execution.ExecutionException;
-import com.intellij.execution.process.BaseOSProcessHandler;
-import com.intellij.execution.process.ProcessAdapter;
-import com.intellij.execution.process.ProcessEvent;
 import com.intellij.notification.Notification;
 import com.intellij.notification.NotificationType;
 import com.intellij.notification.Notifications;
@@ -36,19 +32,16 @@ import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.DumbAwareAction;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Messages;
-import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vfs.LocalFileSystem;
-import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
-import org.jetbrains.android.sdk.AndroidSdkData;
-import org.jetbrains.android.sdk.AndroidSdkUtils;
 import org.jetbrains.android.util.AndroidBundle;
-import org.jetbrains.android.util.AndroidCommonUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 
 public class RunHprofConvAndSaveAsAction extends DumbAwareAction {
   public RunHprofConvAndSaveAsAction() {
@@ -118,29 +111,19 @@ public class RunHprofConvAndSaveAsAction extends DumbAwareAction {
     }
 
     private void convertAndSave() throws IOException, ExecutionException {
-      // run hprof-conv, transforming androidHprof -> destination
-      AndroidSdkData sdkData = AndroidSdkUtils.tryToChooseAndroidSdk();
-      if (sdkData == null) {
-        throw new ExecutionException("Unable to find path to SDK.");
-      }
-
-      String hprofConvPath = new File(sdkData.getLocation(), AndroidCommonUtils.platformToolPath(SdkConstants.FN_HPROF_CONV)).getPath();
-      ProcessBuilder pb =
-        new ProcessBuilder(hprofConvPath, VfsUtilCore.virtualToIoFile(mySource).getAbsolutePath(), myDestination.getAbsolutePath());
-      BaseOSProcessHandler handler;
-      handler = new BaseOSProcessHandler(pb.start(), "", null);
-      final StringBuilder builder = new StringBuilder();
-      handler.addProcessListener(new ProcessAdapter() {
-        @Override
-        public void onTextAvailable(ProcessEvent event, Key outputType) {
-          builder.append(event.getText());
+      // stream the androidHprof through hprof-conv into the destination
+      HprofConvStream out = new HprofConvStream(myDestination);
+      try {
+        InputStream in = mySource.getInputStream();
+        try {
+          FileUtil.copy(in, out);
         }
-      });
-      handler.startNotify();
-      handler.waitFor();
-      int exitCode = handler.getProcess().exitValue();
-      if (exitCode != 0) {
-        throw new ExecutionException(builder.toString().trim());
+        finally {
+          in.close();
+        }
+      }
+      finally {
+        out.close();
       }
     }
 
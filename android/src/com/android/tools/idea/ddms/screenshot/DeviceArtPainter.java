@@ -22,6 +22,9 @@ import com.android.sdklib.devices.Device;
 import com.android.sdklib.devices.Screen;
 import com.android.tools.idea.rendering.ImageUtils;
 import com.android.tools.idea.rendering.RenderedImage;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Maps;
 import com.intellij.openapi.application.PathManager;
 import com.intellij.reference.SoftReference;
@@ -37,6 +40,8 @@ import java.io.File;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import static com.android.SdkConstants.DOT_PNG;
 import static java.awt.RenderingHints.*;
@@ -56,6 +61,8 @@ import static java.awt.RenderingHints.*;
  */
 public class DeviceArtPainter {
   @NotNull private static final DeviceArtPainter ourInstance = new DeviceArtPainter();
+  /** Decoded device art layers used by {@link #createFrame(BufferedImage, DeviceArtDescriptor, boolean, boolean)} */
+  @NotNull private static final Cache<String, BufferedImage> ourLayerCache = CacheBuilder.newBuilder().softValues().maximumSize(40).build();
   @Nullable private static volatile String ourSystemPath;
   @NotNull private Map<Device,DeviceData> myDeviceData = Maps.newHashMap();
   @Nullable private List<DeviceArtDescriptor> myDescriptors;
@@ -202,7 +209,7 @@ public class DeviceArtPainter {
 
     Graphics2D g2d = null;
     try {
-      BufferedImage bg = ImageIO.read(background);
+      BufferedImage bg;
       Dimension screen = descriptor.getScreenSize(orientation); // Size of screen in ninepatch; will be stretched
       Dimension frameSize = descriptor.getFrameSize(orientation); // Size of full ninepatch, including stretchable screen area
       Point screenPos = descriptor.getScreenPos(orientation);
@@ -212,28 +219,28 @@ public class DeviceArtPainter {
         assert frameSize != null;
         int newWidth = image.getWidth() + frameSize.width - screen.width;
         int newHeight = image.getHeight() + frameSize.height - screen.height;
-        bg = stretchImage(bg, newWidth, newHeight);
-      } else if (screen.width < image.getWidth()) {
-        // if the frame isn't stretchable, but is smaller than the image, then scale down the image
-        double scale = (double) screen.width / image.getWidth();
-        if (Math.abs(scale - 1.0) > ImageUtils.EPSILON) {
-          image = ImageUtils.scale(image, scale, scale);
+        bg = copyImage(getLayer(background, newWidth, newHeight));
+      } else {
+        bg = copyImage(getLayer(background, -1, -1));
+        if (screen.width < image.getWidth()) {
+          // if the frame isn't stretchable, but is smaller than the image, then scale down the image
+          double scale = (double) screen.width / image.getWidth();
+          if (Math.abs(scale - 1.0) > ImageUtils.EPSILON) {
+            image = ImageUtils.scale(image, scale, scale);
+          }
         }
       }
       g2d = bg.createGraphics();
 
       if (addShadow && shadow != null) {
-        BufferedImage shadowImage = ImageIO.read(shadow);
-        if (stretchable) {
-          shadowImage = stretchImage(shadowImage, bg.getWidth(), bg.getHeight());
-        }
+        BufferedImage shadowImage = stretchable ? getLayer(shadow, bg.getWidth(), bg.getHeight()) : getLayer(shadow, -1, -1);
         g2d.drawImage(shadowImage, 0, 0, null, null);
       }
 
       // If the device art has a mask, make sure that the image is clipped by the mask
       File maskFile = descriptor.getMask(orientation);
       if (maskFile != null) {
-        BufferedImage mask = ImageIO.read(maskFile);
+        BufferedImage mask = copyImage(getLayer(maskFile, -1, -1));
 
         // Render the current image on top of the mask using it as the alpha composite
         Graphics2D maskG2d = mask.createGraphics();
@@ -249,10 +256,8 @@ public class DeviceArtPainter {
       }
 
       if (addReflection && reflection != null) { // Nexus One for example does not supply reflection image
-        BufferedImage reflectionImage = ImageIO.read(reflection);
-        if (stretchable) {
-          reflectionImage = stretchImage(reflectionImage, bg.getWidth(), bg.getHeight());
-        }
+        BufferedImage reflectionImage =
+          stretchable ? getLayer(reflection, bg.getWidth(), bg.getHeight()) : getLayer(reflection, -1, -1);
         g2d.drawImage(reflectionImage, 0, 0, null, null);
       }
       return bg;
@@ -267,6 +272,45 @@ public class DeviceArtPainter {
     }
   }
 
+  /**
+   * Returns the decoded image of the given device art layer, stretched to the given size if it's not negative. Each layer
+   * file is specific to a device and orientation, so this is decoded (and stretched) once rather than for every screenshot.
+   * The returned image is shared and must not be modified.
+   */
+  @NotNull
+  private static BufferedImage getLayer(@NotNull final File file, final int width, final int height) throws IOException {
+    try {
+      return ourLayerCache.get(file.getPath() + ':' + width + 'x' + height, new Callable<BufferedImage>() {
+        @Override
+        public BufferedImage call() throws IOException {
+          if (width >= 0) {
+            return stretchImage(getLayer(file, -1, -1), width, height);
+          }
+          BufferedImage image = ImageIO.read(file);
+          if (image == null) {
+            throw new IOException("Unable to read " + file);
+          }
+          return image;
+        }
+      });
+    }
+    catch (ExecutionException e) {
+      Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  @NotNull
+  private static BufferedImage copyImage(@NotNull BufferedImage image) {
+    @SuppressWarnings("UndesirableClassUsage") // Don't need Retina image here, and it's more expensive
+    BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+    Graphics2D g = copy.createGraphics();
+    g.setComposite(AlphaComposite.Src);
+    g.drawImage(image, 0, 0, null);
+    g.dispose();
+    return copy;
+  }
+
   @NotNull
   public BufferedImage createFrame(@NotNull BufferedImage image,
                                    @NotNull Device device,
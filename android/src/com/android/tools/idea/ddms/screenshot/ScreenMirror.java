@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.ddms.screenshot;
+
+import com.android.annotations.VisibleForTesting;
+import com.android.ddmlib.IDevice;
+import com.android.ddmlib.RawImage;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.util.ExceptionUtil;
+import org.jetbrains.android.util.AndroidBundle;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Continuously captures screenshots from a device, at up to a given number of frames per second, and reports
+ * which part of the screen changed from one frame to the next. Frames which are identical to the previous
+ * one are not reported at all. Two image buffers are reused for all the frames.
+ */
+class ScreenMirror {
+  /** Frame rate to aim for; in practice the rate is often limited by how quickly the device produces screenshots */
+  static final int DEFAULT_FPS = 10;
+
+  interface Listener {
+    /**
+     * Called on a background thread when a frame differs from the previous one. The frame is reused for subsequent
+     * captures once this method returns, so it must be copied if needed beyond that.
+     *
+     * @param frame   the captured frame
+     * @param changed the bounds of the pixels that changed since the previous reported frame
+     */
+    void frameChanged(@NotNull BufferedImage frame, @NotNull Rectangle changed);
+
+    /** Called on a background thread when mirroring stops, with an error message if it stopped because of an error */
+    void mirrorStopped(@Nullable String error);
+  }
+
+  private final IDevice myDevice;
+  private final long myFrameIntervalMs;
+  private final Listener myListener;
+  private volatile boolean myRunning;
+  private volatile boolean myForceUpdate;
+
+  ScreenMirror(@NotNull IDevice device, int fps, @NotNull Listener listener) {
+    myDevice = device;
+    myFrameIntervalMs = 1000 / fps;
+    myListener = listener;
+  }
+
+  void start() {
+    myRunning = true;
+    ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+      @Override
+      public void run() {
+        myListener.mirrorStopped(capture());
+      }
+    });
+  }
+
+  void stop() {
+    myRunning = false;
+  }
+
+  /** Requests the next frame to be reported even if it's unchanged, e.g. because the way frames are displayed changed */
+  void requestUpdate() {
+    myForceUpdate = true;
+  }
+
+  boolean isRunning() {
+    return myRunning;
+  }
+
+  @Nullable
+  private String capture() {
+    BufferedImage previous = null;
+    BufferedImage current = null;
+    try {
+      while (myRunning) {
+        long start = System.currentTimeMillis();
+        RawImage rawImage = myDevice.getScreenshot(10, TimeUnit.SECONDS);
+        if (rawImage == null) {
+          return AndroidBundle.message("android.ddms.screenshot.task.error1", "no image");
+        }
+        if (rawImage.bpp != 16 && rawImage.bpp != 32) {
+          return AndroidBundle.message("android.ddms.screenshot.task.error.invalid.bpp", rawImage.bpp);
+        }
+        if (!myRunning) {
+          break;
+        }
+
+        current = ScreenshotTask.convertImage(rawImage, current);
+        Rectangle changed = getChangedBounds(previous, current);
+        if (myForceUpdate) {
+          myForceUpdate = false;
+          changed = new Rectangle(0, 0, current.getWidth(), current.getHeight());
+        }
+        if (changed != null) {
+          myListener.frameChanged(current, changed);
+          BufferedImage swap = previous;
+          previous = current;
+          current = swap;
+        }
+
+        long remaining = myFrameIntervalMs - (System.currentTimeMillis() - start);
+        if (remaining > 0) {
+          Thread.sleep(remaining);
+        }
+      }
+      return null;
+    }
+    catch (InterruptedException e) {
+      return null;
+    }
+    catch (Exception e) {
+      return AndroidBundle.message("android.ddms.screenshot.task.error1", ExceptionUtil.getMessage(e));
+    }
+    finally {
+      myRunning = false;
+    }
+  }
+
+  /**
+   * Returns the bounds of the pixels which differ between the two images, the bounds of the whole image if there is
+   * no previous image or it has a different size, or null if the images are identical. Both images must be
+   * {@link BufferedImage#TYPE_INT_ARGB} images.
+   */
+  @VisibleForTesting
+  @Nullable
+  static Rectangle getChangedBounds(@Nullable BufferedImage previous, @NotNull BufferedImage current) {
+    int width = current.getWidth();
+    int height = current.getHeight();
+    if (previous == null || previous.getWidth() != width || previous.getHeight() != height) {
+      return new Rectangle(0, 0, width, height);
+    }
+
+    int[] before = ((DataBufferInt)previous.getRaster().getDataBuffer()).getData();
+    int[] after = ((DataBufferInt)current.getRaster().getDataBuffer()).getData();
+    int minX = width;
+    int maxX = -1;
+    int minY = -1;
+    int maxY = -1;
+    for (int y = 0; y < height; y++) {
+      int rowStart = y * width;
+      int x1 = 0;
+      while (x1 < width && before[rowStart + x1] == after[rowStart + x1]) {
+        x1++;
+      }
+      if (x1 == width) {
+        continue;
+      }
+      int x2 = width - 1;
+      while (before[rowStart + x2] == after[rowStart + x2]) {
+        x2--;
+      }
+      if (minY == -1) {
+        minY = y;
+      }
+      maxY = y;
+      minX = Math.min(minX, x1);
+      maxX = Math.max(maxX, x2);
+    }
+
+    if (minY == -1) {
+      return null;
+    }
+    return new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
+  }
+
+  /** Copies the given region from one {@link BufferedImage#TYPE_INT_ARGB} image into another one of the same size */
+  static void copyRegion(@NotNull BufferedImage from, @NotNull BufferedImage to, @NotNull Rectangle region) {
+    int width = from.getWidth();
+    int[] source = ((DataBufferInt)from.getRaster().getDataBuffer()).getData();
+    int[] destination = ((DataBufferInt)to.getRaster().getDataBuffer()).getData();
+    for (int y = region.y; y < region.y + region.height; y++) {
+      int offset = y * width + region.x;
+      System.arraycopy(source, offset, destination, offset, region.width);
+    }
+  }
+}
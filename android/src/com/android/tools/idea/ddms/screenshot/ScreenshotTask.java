@@ -26,14 +26,19 @@ import com.intellij.openapi.project.Project;
 import com.intellij.util.ExceptionUtil;
 import org.jetbrains.android.util.AndroidBundle;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 public class ScreenshotTask extends Task.Modal {
+  /** Lazily computed lookup table for 16 bit pixels, see {@link #getRgb565Colors()} */
+  private static int[] ourRgb565Colors;
+
   private final IDevice myDevice;
 
   private String myError;
@@ -81,14 +86,86 @@ public class ScreenshotTask extends Task.Modal {
     }
 
     indicator.setText(AndroidBundle.message("android.ddms.screenshot.task.step.load"));
-    //noinspection UndesirableClassUsage
-    myImage = new BufferedImage(rawImage.width, rawImage.height, BufferedImage.TYPE_INT_ARGB);
-    for (int y = 0; y < rawImage.height; y++) {
-      for (int x = 0; x < rawImage.width; x++) {
-        int argb = rawImage.getARGB((x + y * rawImage.width) * (rawImage.bpp / 8));
-        myImage.setRGB(x, y, argb);
+    myImage = convertImage(rawImage, null);
+  }
+
+  /**
+   * Converts the given raw image (which must be 16 or 32 bits per pixel) into an ARGB image. The pixels are decoded
+   * straight into the image's data buffer rather than through {@link RawImage#getARGB} and {@link BufferedImage#setRGB},
+   * which matters for large screens where that would be millions of calls per screenshot.
+   *
+   * @param rawImage the image obtained from the device
+   * @param reuse    an image to write the pixels into, if it is an ARGB image of the right size, or null
+   * @return the converted image, which is {@code reuse} if it could be reused
+   */
+  @NotNull
+  public static BufferedImage convertImage(@NotNull RawImage rawImage, @Nullable BufferedImage reuse) {
+    BufferedImage image = reuse;
+    if (image == null || image.getWidth() != rawImage.width || image.getHeight() != rawImage.height ||
+        image.getType() != BufferedImage.TYPE_INT_ARGB) {
+      //noinspection UndesirableClassUsage
+      image = new BufferedImage(rawImage.width, rawImage.height, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    int[] pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+    byte[] data = rawImage.data;
+    int count = rawImage.width * rawImage.height;
+    if (rawImage.bpp == 16) {
+      int[] colors = getRgb565Colors();
+      for (int i = 0, index = 0; i < count; i++, index += 2) {
+        pixels[i] = colors[(data[index] & 0xFF) | (data[index + 1] & 0xFF) << 8];
+      }
+    }
+    else {
+      int redOffset = rawImage.red_offset;
+      int redMask = getMask(rawImage.red_length);
+      int redShift = 8 - rawImage.red_length;
+      int greenOffset = rawImage.green_offset;
+      int greenMask = getMask(rawImage.green_length);
+      int greenShift = 8 - rawImage.green_length;
+      int blueOffset = rawImage.blue_offset;
+      int blueMask = getMask(rawImage.blue_length);
+      int blueShift = 8 - rawImage.blue_length;
+      int alphaOffset = rawImage.alpha_offset;
+      int alphaMask = getMask(rawImage.alpha_length);
+      int alphaShift = 8 - rawImage.alpha_length;
+      // Formats without an alpha channel (such as RGBX_8888) are opaque
+      int opaque = rawImage.alpha_length == 0 ? 0xFF000000 : 0;
+      for (int i = 0, index = 0; i < count; i++, index += 4) {
+        int value = (data[index] & 0xFF) | (data[index + 1] & 0xFF) << 8 | (data[index + 2] & 0xFF) << 16 | (data[index + 3] & 0xFF) << 24;
+        int r = ((value >>> redOffset) & redMask) << redShift;
+        int g = ((value >>> greenOffset) & greenMask) << greenShift;
+        int b = ((value >>> blueOffset) & blueMask) << blueShift;
+        int a = ((value >>> alphaOffset) & alphaMask) << alphaShift;
+        pixels[i] = opaque | a << 24 | r << 16 | g << 8 | b;
       }
     }
+    return image;
+  }
+
+  /**
+   * Returns the ARGB color of each of the 65536 16 bit pixel values. The table is built from {@link RawImage#getARGB}
+   * itself, so the conversion (e.g. how 5 and 6 bit channels are expanded) is exactly the same as ddmlib's.
+   */
+  @NotNull
+  private static synchronized int[] getRgb565Colors() {
+    if (ourRgb565Colors == null) {
+      RawImage pixel = new RawImage();
+      pixel.bpp = 16;
+      pixel.data = new byte[2];
+      int[] colors = new int[0x10000];
+      for (int value = 0; value < colors.length; value++) {
+        pixel.data[0] = (byte)value;
+        pixel.data[1] = (byte)(value >> 8);
+        colors[value] = pixel.getARGB(0);
+      }
+      ourRgb565Colors = colors;
+    }
+    return ourRgb565Colors;
+  }
+
+  private static int getMask(int length) {
+    return (1 << length) - 1;
   }
 
   public BufferedImage getScreenshot() {
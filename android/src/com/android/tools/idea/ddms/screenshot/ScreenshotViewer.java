@@ -22,6 +22,8 @@ import com.android.tools.idea.rendering.ImageUtils;
 import com.intellij.icons.AllIcons;
 import com.intellij.openapi.actionSystem.DataProvider;
 import com.intellij.openapi.actionSystem.PlatformDataKeys;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.fileChooser.FileChooserFactory;
 import com.intellij.openapi.fileChooser.FileSaverDescriptor;
@@ -37,6 +39,7 @@ import com.intellij.openapi.util.Condition;
 import com.intellij.openapi.vfs.*;
 import com.intellij.ui.components.JBScrollPane;
 import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.ui.UIUtil;
 import org.intellij.images.editor.ImageEditor;
 import org.intellij.images.editor.ImageFileEditor;
 import org.intellij.images.editor.ImageZoomModel;
@@ -47,6 +50,7 @@ import org.jetbrains.annotations.Nullable;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
+import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.image.BufferedImage;
@@ -78,9 +82,22 @@ public class ScreenshotViewer extends DialogWrapper implements DataProvider {
   private JComboBox myDeviceArtCombo;
   private JCheckBox myDropShadowCheckBox;
   private JCheckBox myScreenGlareCheckBox;
+  private JCheckBox myMirrorCheckBox;
 
   /** Angle in degrees by which the screenshot from the device has been rotated. One of 0, 90, 180 or 270. */
-  private int myRotationAngle = 0;
+  private volatile int myRotationAngle = 0;
+
+  /** The running screen mirror, if any. Only accessed on the EDT. */
+  @Nullable private ScreenMirror myMirror;
+
+  /** Frame options applied to mirrored frames; updated on the EDT and read by the mirror thread */
+  @NotNull private volatile FrameSettings myFrameSettings = new FrameSettings(null, false, false);
+
+  /**
+   * The image displayed while mirroring without rotation or device frame; changed regions of each frame are copied
+   * into it, such that only those need to be repainted. Only accessed on the EDT.
+   */
+  @Nullable private BufferedImage myMirrorImage;
 
   /**
    * Reference to the screenshot obtained from the device and then rotated by {@link #myRotationAngle} degrees.
@@ -111,6 +128,7 @@ public class ScreenshotViewer extends DialogWrapper implements DataProvider {
 
     myRefreshButton.setIcon(AllIcons.Actions.Refresh);
     myRefreshButton.setEnabled(device != null);
+    myMirrorCheckBox.setEnabled(device != null);
     myRotateButton.setIcon(AllIcons.Actions.AllRight);
 
     myProvider = getImageFileEditorProvider();
@@ -124,6 +142,8 @@ public class ScreenshotViewer extends DialogWrapper implements DataProvider {
           doRefreshScreenshot();
         } else if (actionEvent.getSource() == myRotateButton) {
           doRotateScreenshot();
+        } else if (actionEvent.getSource() == myMirrorCheckBox) {
+          doToggleMirror();
         } else if (actionEvent.getSource() == myFrameScreenshotCheckBox
                    || actionEvent.getSource() == myDeviceArtCombo
                    || actionEvent.getSource() == myDropShadowCheckBox
@@ -135,6 +155,7 @@ public class ScreenshotViewer extends DialogWrapper implements DataProvider {
 
     myRefreshButton.addActionListener(l);
     myRotateButton.addActionListener(l);
+    myMirrorCheckBox.addActionListener(l);
     myFrameScreenshotCheckBox.addActionListener(l);
     myDeviceArtCombo.addActionListener(l);
     myDropShadowCheckBox.addActionListener(l);
@@ -205,6 +226,7 @@ public class ScreenshotViewer extends DialogWrapper implements DataProvider {
 
   @Override
   protected void dispose() {
+    stopMirroring(false);
     myProvider.disposeEditor(myImageFileEditor);
     super.dispose();
   }
@@ -229,6 +251,10 @@ public class ScreenshotViewer extends DialogWrapper implements DataProvider {
 
   private void doRotateScreenshot() {
     myRotationAngle = (myRotationAngle + 90) % 360;
+    if (myMirror != null) {
+      myMirror.requestUpdate();
+      return;
+    }
     processScreenshot(myFrameScreenshotCheckBox.isSelected(), 90);
   }
 
@@ -239,6 +265,12 @@ public class ScreenshotViewer extends DialogWrapper implements DataProvider {
     myDropShadowCheckBox.setEnabled(shouldFrame);
     myScreenGlareCheckBox.setEnabled(shouldFrame);
 
+    if (myMirror != null) {
+      myFrameSettings = getFrameSettings();
+      myMirror.requestUpdate();
+      return;
+    }
+
     if (shouldFrame) {
       processScreenshot(true, 0);
     } else {
@@ -247,6 +279,133 @@ public class ScreenshotViewer extends DialogWrapper implements DataProvider {
     }
   }
 
+  private FrameSettings getFrameSettings() {
+    boolean addFrame = myFrameScreenshotCheckBox.isSelected();
+    DeviceArtDescriptor spec = addFrame ? myDeviceArtDescriptors.get(myDeviceArtCombo.getSelectedIndex()) : null;
+    return new FrameSettings(spec, addFrame && myDropShadowCheckBox.isSelected(), addFrame && myScreenGlareCheckBox.isSelected());
+  }
+
+  private void doToggleMirror() {
+    if (myMirrorCheckBox.isSelected()) {
+      startMirroring();
+    } else {
+      stopMirroring(true);
+    }
+  }
+
+  private void startMirroring() {
+    assert myDevice != null;
+    myRefreshButton.setEnabled(false);
+    myFrameSettings = getFrameSettings();
+    myMirror = new ScreenMirror(myDevice, ScreenMirror.DEFAULT_FPS, new ScreenMirror.Listener() {
+      @Override
+      public void frameChanged(@NotNull BufferedImage frame, @NotNull Rectangle changed) {
+        showMirroredFrame(frame, changed);
+      }
+
+      @Override
+      public void mirrorStopped(@Nullable final String error) {
+        ApplicationManager.getApplication().invokeLater(new Runnable() {
+          @Override
+          public void run() {
+            if (myMirror != null && !myMirror.isRunning()) {
+              stopMirroring(true);
+            }
+            if (error != null && !isDisposed()) {
+              Messages.showErrorDialog(myProject, error, AndroidBundle.message("android.ddms.actions.screenshot"));
+            }
+          }
+        }, ModalityState.any());
+      }
+    });
+    myMirror.start();
+  }
+
+  /**
+   * Stops mirroring, if running
+   *
+   * @param processLastFrame whether to process the last frame like a regular screenshot, which also updates the backing file
+   */
+  private void stopMirroring(boolean processLastFrame) {
+    ScreenMirror mirror = myMirror;
+    if (mirror == null) {
+      return;
+    }
+    myMirror = null;
+    myMirrorImage = null;
+    mirror.stop();
+    myMirrorCheckBox.setSelected(false);
+    myRefreshButton.setEnabled(true);
+
+    if (processLastFrame) {
+      processScreenshot(myFrameScreenshotCheckBox.isSelected(), 0);
+    }
+  }
+
+  /** Called on the mirror thread with each changed frame, which must not be used after this method returns */
+  private void showMirroredFrame(@NotNull final BufferedImage frame, @NotNull final Rectangle changed) {
+    int angle = myRotationAngle;
+    FrameSettings settings = myFrameSettings;
+    if (angle == 0 && settings.descriptor == null) {
+      UIUtil.invokeAndWaitIfNeeded(new Runnable() {
+        @Override
+        public void run() {
+          if (myMirror == null) {
+            return;
+          }
+          BufferedImage image = myMirrorImage;
+          if (image == null || image.getWidth() != frame.getWidth() || image.getHeight() != frame.getHeight()) {
+            //noinspection UndesirableClassUsage
+            image = new BufferedImage(frame.getWidth(), frame.getHeight(), BufferedImage.TYPE_INT_ARGB);
+            ScreenMirror.copyRegion(frame, image, new Rectangle(0, 0, frame.getWidth(), frame.getHeight()));
+            myMirrorImage = image;
+            mySourceImageRef.set(image);
+            myDisplayedImageRef.set(image);
+            updateEditorImage();
+          } else {
+            ScreenMirror.copyRegion(frame, image, changed);
+            repaintImageRegion(changed);
+          }
+        }
+      });
+      return;
+    }
+
+    // Rotated or framed frames are processed from scratch, off the EDT
+    final BufferedImage rotated = ImageUtils.rotateByRightAngle(frame, angle);
+    BufferedImage processed = rotated;
+    if (settings.descriptor != null) {
+      processed = ImageUtils.cropBlank(DeviceArtPainter.createFrame(rotated, settings.descriptor, settings.addShadow,
+                                                                    settings.addReflection), null);
+    }
+    final BufferedImage displayed = processed;
+    UIUtil.invokeAndWaitIfNeeded(new Runnable() {
+      @Override
+      public void run() {
+        if (myMirror == null) {
+          return;
+        }
+        myMirrorImage = null;
+        mySourceImageRef.set(rotated);
+        myDisplayedImageRef.set(displayed);
+        updateEditorImage();
+      }
+    });
+  }
+
+  private void repaintImageRegion(@NotNull Rectangle region) {
+    ImageEditor imageEditor = myImageFileEditor.getImageEditor();
+    JComponent component = imageEditor.getContentComponent();
+    double zoom = imageEditor.getZoomModel().getZoomFactor();
+    Insets insets = component.getInsets();
+    // Pad by a pixel (at the current zoom) on each side to account for rounding
+    int pad = (int)Math.ceil(zoom) + 1;
+    component.repaint(insets.left + (int)(region.x * zoom) - pad,
+                      insets.top + (int)(region.y * zoom) - pad,
+                      (int)Math.ceil(region.width * zoom) + 2 * pad,
+                      (int)Math.ceil(region.height * zoom) + 2 * pad);
+  }
+
   private void processScreenshot(boolean addFrame, int rotateByAngle) {
     DeviceArtDescriptor spec = addFrame ? myDeviceArtDescriptors.get(myDeviceArtCombo.getSelectedIndex()) : null;
     boolean shadow = addFrame && myDropShadowCheckBox.isSelected();
@@ -335,8 +494,11 @@ public class ScreenshotViewer extends DialogWrapper implements DataProvider {
     ImageZoomModel zoomModel = imageEditor.getZoomModel();
     double zoom = zoomModel.getZoomFactor();
 
+    BufferedImage previous = imageEditor.getDocument().getValue();
     imageEditor.getDocument().setValue(image);
-    pack();
+    if (myMirror == null || previous == null || previous.getWidth() != image.getWidth() || previous.getHeight() != image.getHeight()) {
+      pack();
+    }
 
     zoomModel.setZoomFactor(zoom);
   }
@@ -386,6 +548,8 @@ public class ScreenshotViewer extends DialogWrapper implements DataProvider {
 
   @Override
   protected void doOKAction() {
+    stopMirroring(false);
+
     FileSaverDescriptor descriptor =
       new FileSaverDescriptor(AndroidBundle.message("android.ddms.screenshot.save.title"), "", SdkConstants.EXT_PNG);
     FileSaverDialog saveFileDialog = FileChooserFactory.getInstance().createSaveFileDialog(descriptor, myProject);
@@ -423,4 +587,17 @@ public class ScreenshotViewer extends DialogWrapper implements DataProvider {
   public File getScreenshot() {
     return myScreenshotFile;
   }
+
+  /** The device frame options, captured on the EDT for use by the mirror thread */
+  private static class FrameSettings {
+    @Nullable final DeviceArtDescriptor descriptor;
+    final boolean addShadow;
+    final boolean addReflection;
+
+    FrameSettings(@Nullable DeviceArtDescriptor descriptor, boolean addShadow, boolean addReflection) {
+      this.descriptor = descriptor;
+      this.addShadow = addShadow;
+      this.addReflection = addReflection;
+    }
+  }
 }
@@ -84,6 +84,8 @@ public class AllocationsEditor implements FileEditor {
       @Override
       public void onSuccess() {
         AllocationsView view = new AllocationsView(project, myAllocations);
+        // The view keeps the allocations in columns; don't hold on to the parsed objects as well
+        myAllocations = null;
         myPanel.add(view.getComponent(), BorderLayout.CENTER);
       }
 
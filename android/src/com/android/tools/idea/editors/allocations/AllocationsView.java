@@ -55,7 +55,7 @@ public class AllocationsView implements SunburstComponent.SliceSelectionListener
 
   @NotNull private final Project myProject;
 
-  @NotNull private final AllocationInfo[] myAllocations;
+  @NotNull private final AllocationStore myStore;
   private final DefaultTableModel myInfoTableModel;
   private final SearchTextFieldWithStoredHistory myPackageFilter;
 
@@ -81,7 +81,7 @@ public class AllocationsView implements SunburstComponent.SliceSelectionListener
 
   public AllocationsView(@NotNull Project project, @NotNull final AllocationInfo[] allocations) {
     myProject = project;
-    myAllocations = allocations;
+    myStore = new AllocationStore(allocations);
     myGroupBy = new GroupByMethod();
     myTreeNode = generateTree();
     myTreeModel = new DefaultTreeModel(myTreeNode);
@@ -420,11 +420,8 @@ public class AllocationsView implements SunburstComponent.SliceSelectionListener
 
   @NotNull
   private MainTreeNode generateTree() {
-    MainTreeNode tree = myGroupBy.create();
-    for (AllocationInfo alloc : myAllocations) {
-      tree.insert(alloc);
-    }
-    return tree;
+    // Only the totals are computed here; the nodes below the root are built as they get expanded
+    return myGroupBy.create(myStore);
   }
 
   @Override
@@ -475,9 +472,8 @@ public class AllocationsView implements SunburstComponent.SliceSelectionListener
       }
     }
     else if (value instanceof AllocNode) {
-      AllocationInfo allocation = ((AllocNode)value).getAllocation();
       renderer.setIcon(AllIcons.FileTypes.JavaClass);
-      renderer.append(allocation.getAllocatedClass());
+      renderer.append(((AllocNode)value).getAllocatedClass());
     }
     else if (value instanceof ClassNode) {
       renderer.setIcon(PlatformIcons.CLASS_ICON);
@@ -511,7 +507,7 @@ public class AllocationsView implements SunburstComponent.SliceSelectionListener
         element = ((StackNode)node).getStackTraceElement();
       }
       else if (node instanceof AllocNode) {
-        StackTraceElement[] stack = ((AllocNode)node).getAllocation().getStackTrace();
+        StackTraceElement[] stack = ((AllocNode)node).getStackTrace();
         if (stack.length > 0) {
           element = stack[0];
         }
@@ -558,7 +554,7 @@ public class AllocationsView implements SunburstComponent.SliceSelectionListener
   interface GroupBy {
     String getName();
 
-    MainTreeNode create();
+    MainTreeNode create(@NotNull AllocationStore store);
   }
 
   static class GroupByMethod implements GroupBy {
@@ -568,8 +564,8 @@ public class AllocationsView implements SunburstComponent.SliceSelectionListener
     }
 
     @Override
-    public MainTreeNode create() {
-      return new StackTraceNode();
+    public MainTreeNode create(@NotNull AllocationStore store) {
+      return new StackTraceNode(store);
     }
   }
 
@@ -580,8 +576,8 @@ public class AllocationsView implements SunburstComponent.SliceSelectionListener
     }
 
     @Override
-    public MainTreeNode create() {
-      return new PackageRootNode("", myPackageFilter.getText());
+    public MainTreeNode create(@NotNull AllocationStore store) {
+      return new PackageRootNode("", store, myPackageFilter.getText());
     }
   }
 
@@ -35,17 +35,33 @@ public abstract class AbstractTreeNode implements ValuedTreeNode {
 
   int myValue;
 
-  @NotNull private Vector<AbstractTreeNode> myChildren = new Vector<AbstractTreeNode>();
+  @Nullable private Vector<AbstractTreeNode> myChildren;
+
+  /**
+   * Creates the children of this node with {@link #addChild} or {@link #attachChild}. This is only called the first
+   * time the children are needed, so that the parts of the tree which are never expanded are never built.
+   */
+  protected void buildChildren() {
+  }
+
+  @NotNull
+  private Vector<AbstractTreeNode> getChildren() {
+    if (myChildren == null) {
+      myChildren = new Vector<AbstractTreeNode>();
+      buildChildren();
+    }
+    return myChildren;
+  }
 
   @Override
   public TreeNode getChildAt(int i) {
     ensureOrder();
-    return myChildren.get(i);
+    return getChildren().get(i);
   }
 
   @Override
   public int getChildCount() {
-    return myChildren.size();
+    return getChildren().size();
   }
 
   @Override
@@ -56,18 +72,18 @@ public abstract class AbstractTreeNode implements ValuedTreeNode {
   @Override
   public int getIndex(TreeNode treeNode) {
     assert treeNode instanceof AbstractTreeNode;
-    return myChildren.indexOf(treeNode);
+    return getChildren().indexOf(treeNode);
   }
 
   @Override
   public boolean isLeaf() {
-    return myChildren.size() == 0;
+    return getChildren().size() == 0;
   }
 
   @Override
   public Enumeration children() {
     ensureOrder();
-    return myChildren.elements();
+    return getChildren().elements();
   }
 
   @Override
@@ -94,15 +110,27 @@ public abstract class AbstractTreeNode implements ValuedTreeNode {
   }
 
   public void addChild(AbstractTreeNode node) {
-    myChildren.add(node);
+    getChildren().add(node);
     node.myParent = this;
     add(node.getCount(), node.getValue());
   }
 
+  /** Adds a child whose count and value are already included in this node's, see {@link #setTotals} */
+  protected void attachChild(@NotNull AbstractTreeNode node) {
+    getChildren().add(node);
+    node.myParent = this;
+  }
+
+  /** Sets the count and value of a node whose children are built lazily from the given allocations */
+  protected void setTotals(@NotNull AllocationStore store, @NotNull int[] allocations) {
+    myCount = allocations.length;
+    myValue = store.getTotalSize(allocations);
+  }
+
   private void ensureOrder() {
     if ((myParent != null && myParent.myOrder != myOrder) || myParent == null && myOrder != null) {
       myOrder = myParent != null ? myParent.myOrder : myOrder;
-      Collections.sort(myChildren, myOrder);
+      Collections.sort(getChildren(), myOrder);
     }
   }
 
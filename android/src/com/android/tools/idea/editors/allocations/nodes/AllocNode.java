@@ -15,14 +15,16 @@
  */
 package com.android.tools.idea.editors.allocations.nodes;
 
-import com.android.ddmlib.AllocationInfo;
 import org.jetbrains.annotations.NotNull;
 
 public class AllocNode extends AbstractTreeNode {
-  @NotNull final private AllocationInfo myAllocation;
+  @NotNull final private AllocationStore myStore;
 
-  AllocNode(@NotNull AllocationInfo allocation) {
-    myAllocation = allocation;
+  private final int myIndex;
+
+  AllocNode(@NotNull AllocationStore store, int index) {
+    myStore = store;
+    myIndex = index;
   }
 
   @Override
@@ -31,8 +33,14 @@ public class AllocNode extends AbstractTreeNode {
   }
 
   @NotNull
-  public AllocationInfo getAllocation() {
-    return myAllocation;
+  public String getAllocatedClass() {
+    return myStore.getAllocatedClass(myIndex);
+  }
+
+  /** Returns the stack trace of the allocation, innermost frame first */
+  @NotNull
+  public StackTraceElement[] getStackTrace() {
+    return myStore.getStackTrace(myIndex);
   }
 
   @Override
@@ -42,6 +50,6 @@ public class AllocNode extends AbstractTreeNode {
 
   @Override
   public int getValue() {
-    return myAllocation.getSize();
+    return myStore.getSize(myIndex);
   }
 }
@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.editors.allocations.nodes;
+
+import com.android.ddmlib.AllocationInfo;
+import com.google.common.collect.Lists;
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
+import gnu.trove.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+/**
+ * The allocations of an allocation tracking dump, stored column by column: for each allocation its size, thread,
+ * class and stack are kept in primitive arrays, with the class names, stack frames and whole stacks interned.
+ * Allocation dumps repeat the same few stacks over and over, so grouping and filtering work on the distinct
+ * frames and stacks rather than on every allocation, and the tree nodes only hold the indices of their allocations.
+ */
+public class AllocationStore {
+  /** Below this many items, work is not split across threads */
+  private static final int PARALLEL_THRESHOLD = 20000;
+
+  @NotNull private final int[] mySizes;
+  @NotNull private final int[] myThreads;
+  @NotNull private final int[] myStacks;
+  @NotNull private final int[] myClasses;
+  @NotNull private final String[] myClassNames;
+  @NotNull private final StackTraceElement[] myFrames;
+  /** The frames of each stack, innermost first (as in {@link AllocationInfo#getStackTrace()}) */
+  @NotNull private final int[][] myStackFrames;
+
+  /**
+   * Creates a store from the given allocations. The store doesn't keep any reference to them, so once the
+   * store is created, the allocations (and their stack trace arrays) can be garbage collected.
+   */
+  public AllocationStore(@NotNull AllocationInfo[] allocations) {
+    int count = allocations.length;
+    mySizes = new int[count];
+    myThreads = new int[count];
+    myStacks = new int[count];
+    myClasses = new int[count];
+
+    TObjectIntHashMap<String> classIds = new TObjectIntHashMap<String>();
+    List<String> classNames = Lists.newArrayList();
+    TObjectIntHashMap<StackTraceElement> frameIds = new TObjectIntHashMap<StackTraceElement>();
+    List<StackTraceElement> frames = Lists.newArrayList();
+    TObjectIntHashMap<int[]> stackIds = new TObjectIntHashMap<int[]>(new TObjectHashingStrategy<int[]>() {
+      @Override
+      public int computeHashCode(int[] stack) {
+        return Arrays.hashCode(stack);
+      }
+
+      @Override
+      public boolean equals(int[] stack1, int[] stack2) {
+        return Arrays.equals(stack1, stack2);
+      }
+    });
+    List<int[]> stacks = Lists.newArrayList();
+
+    for (int i = 0; i < count; i++) {
+      AllocationInfo allocation = allocations[i];
+      mySizes[i] = allocation.getSize();
+      myThreads[i] = allocation.getThreadId();
+      myClasses[i] = intern(allocation.getAllocatedClass(), classIds, classNames);
+
+      StackTraceElement[] trace = allocation.getStackTrace();
+      int[] stack = new int[trace.length];
+      for (int j = 0; j < trace.length; j++) {
+        stack[j] = intern(trace[j], frameIds, frames);
+      }
+      myStacks[i] = intern(stack, stackIds, stacks);
+    }
+
+    myClassNames = classNames.toArray(new String[classNames.size()]);
+    myFrames = frames.toArray(new StackTraceElement[frames.size()]);
+    myStackFrames = stacks.toArray(new int[stacks.size()][]);
+  }
+
+  private static <T> int intern(@NotNull T value, @NotNull TObjectIntHashMap<T> ids, @NotNull List<T> values) {
+    if (ids.containsKey(value)) {
+      return ids.get(value);
+    }
+    int id = values.size();
+    values.add(value);
+    ids.put(value, id);
+    return id;
+  }
+
+  public int size() {
+    return mySizes.length;
+  }
+
+  public int getSize(int index) {
+    return mySizes[index];
+  }
+
+  public int getThreadId(int index) {
+    return myThreads[index];
+  }
+
+  @NotNull
+  public String getAllocatedClass(int index) {
+    return myClassNames[myClasses[index]];
+  }
+
+  /** Returns the number of frames in the stack of the given allocation */
+  public int getStackDepth(int index) {
+    return myStackFrames[myStacks[index]].length;
+  }
+
+  /** Returns the id of the given frame of the given allocation, where frame 0 is the innermost one */
+  public int getFrameId(int index, int frame) {
+    return myStackFrames[myStacks[index]][frame];
+  }
+
+  @NotNull
+  public StackTraceElement getFrame(int frameId) {
+    return myFrames[frameId];
+  }
+
+  /** Returns the stack trace of the given allocation, innermost frame first */
+  @NotNull
+  public StackTraceElement[] getStackTrace(int index) {
+    int[] stack = myStackFrames[myStacks[index]];
+    StackTraceElement[] trace = new StackTraceElement[stack.length];
+    for (int i = 0; i < stack.length; i++) {
+      trace[i] = myFrames[stack[i]];
+    }
+    return trace;
+  }
+
+  /** Returns the indices of all the allocations */
+  @NotNull
+  public int[] getAllIndices() {
+    int[] indices = new int[mySizes.length];
+    for (int i = 0; i < indices.length; i++) {
+      indices[i] = i;
+    }
+    return indices;
+  }
+
+  /** Returns the total size of the given allocations */
+  public int getTotalSize(@NotNull int[] indices) {
+    int total = 0;
+    for (int index : indices) {
+      total += mySizes[index];
+    }
+    return total;
+  }
+
+  /**
+   * Returns, for each allocation, the class considered to be its allocator: the class of the innermost frame whose
+   * class name matches the given filter, or of the innermost frame if none does. The filter is only matched once per
+   * distinct frame, split across threads for large dumps.
+   */
+  @NotNull
+  public String[] getAllocatorClasses(@NotNull final Pattern filter) {
+    final boolean[] frameMatches = new boolean[myFrames.length];
+    forEachRange(myFrames.length, new RangeTask() {
+      @Override
+      public void run(int start, int end) {
+        for (int i = start; i < end; i++) {
+          frameMatches[i] = filter.matcher(myFrames[i].getClassName()).matches();
+        }
+      }
+    });
+
+    final String[] stackAllocators = new String[myStackFrames.length];
+    for (int i = 0; i < myStackFrames.length; i++) {
+      int[] stack = myStackFrames[i];
+      if (stack.length > 0) {
+        int match = 0;
+        for (int j = 0; j < stack.length; j++) {
+          if (frameMatches[stack[j]]) {
+            match = j;
+            break;
+          }
+        }
+        stackAllocators[i] = myFrames[stack[match]].getClassName();
+      }
+    }
+
+    final String[] allocators = new String[mySizes.length];
+    forEachRange(mySizes.length, new RangeTask() {
+      @Override
+      public void run(int start, int end) {
+        for (int i = start; i < end; i++) {
+          allocators[i] = stackAllocators[myStacks[i]];
+        }
+      }
+    });
+    return allocators;
+  }
+
+  interface RangeTask {
+    void run(int start, int end);
+  }
+
+  /** Runs the given task over the range [0, size), split into chunks run on pooled threads if the range is large */
+  static void forEachRange(int size, @NotNull final RangeTask task) {
+    Application application = ApplicationManager.getApplication();
+    int chunks = Math.min(Runtime.getRuntime().availableProcessors(), size / PARALLEL_THRESHOLD);
+    if (chunks <= 1 || application == null) {
+      task.run(0, size);
+      return;
+    }
+
+    int chunkSize = (size + chunks - 1) / chunks;
+    List<Future<?>> futures = Lists.newArrayList();
+    for (int start = chunkSize; start < size; start += chunkSize) {
+      final int chunkStart = start;
+      final int chunkEnd = Math.min(size, start + chunkSize);
+      futures.add(application.executeOnPooledThread(new Callable<Void>() {
+        @Override
+        public Void call() {
+          task.run(chunkStart, chunkEnd);
+          return null;
+        }
+      }));
+    }
+    task.run(0, Math.min(size, chunkSize));
+    try {
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+    catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  /** Groups the given allocations by an integer key, returning the groups in the order their keys were first seen */
+  @NotNull
+  static List<int[]> groupBy(@NotNull int[] indices, @NotNull KeyFunction key) {
+    TIntIntHashMap groupIndices = new TIntIntHashMap();
+    List<TIntArrayList> groups = Lists.newArrayList();
+    for (int index : indices) {
+      int k = key.getKey(index);
+      TIntArrayList group;
+      if (groupIndices.containsKey(k)) {
+        group = groups.get(groupIndices.get(k));
+      }
+      else {
+        groupIndices.put(k, groups.size());
+        group = new TIntArrayList();
+        groups.add(group);
+      }
+      group.add(index);
+    }
+    List<int[]> result = Lists.newArrayListWithCapacity(groups.size());
+    for (TIntArrayList group : groups) {
+      result.add(group.toNativeArray());
+    }
+    return result;
+  }
+
+  interface KeyFunction {
+    int getKey(int index);
+  }
+}
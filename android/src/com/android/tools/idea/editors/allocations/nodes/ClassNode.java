@@ -19,7 +19,7 @@ import org.jetbrains.annotations.NotNull;
 
 public class ClassNode extends PackageNode {
 
-  public ClassNode(@NotNull String name) {
-    super(name);
+  ClassNode(@NotNull String name, @NotNull AllocationStore store, @NotNull Paths paths, @NotNull int[] allocations, int depth) {
+    super(name, store, paths, allocations, depth);
   }
 }
@@ -15,7 +15,6 @@
  */
 package com.android.tools.idea.editors.allocations.nodes;
 
-import com.android.ddmlib.AllocationInfo;
 import com.android.tools.chartlib.ValuedTreeNode;
 import org.jetbrains.annotations.NotNull;
 
@@ -23,7 +22,5 @@ import java.util.Comparator;
 
 public interface MainTreeNode extends ValuedTreeNode {
 
-  void insert(@NotNull AllocationInfo alloc);
-
   void sort(@NotNull Comparator<AbstractTreeNode> order);
 }
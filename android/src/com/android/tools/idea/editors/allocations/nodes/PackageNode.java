@@ -15,40 +15,71 @@
  */
 package com.android.tools.idea.editors.allocations.nodes;
 
-import com.android.ddmlib.AllocationInfo;
 import org.jetbrains.annotations.NotNull;
 
 import javax.swing.tree.TreeNode;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
 public class PackageNode extends AbstractTreeNode {
   @NotNull
   private final String myName;
 
   @NotNull
-  private final Map<String, PackageNode> myChildrenMap;
+  private final AllocationStore myStore;
 
-  public PackageNode(@NotNull String name) {
+  @NotNull
+  private final Paths myPaths;
+
+  @NotNull
+  private final int[] myAllocations;
+
+  /** The depth of this node's children in the package paths */
+  private final int myDepth;
+
+  PackageNode(@NotNull String name, @NotNull AllocationStore store, @NotNull Paths paths, @NotNull int[] allocations, int depth) {
     myName = name;
-    myChildrenMap = new HashMap<String, PackageNode>();
+    myStore = store;
+    myPaths = paths;
+    myAllocations = allocations;
+    myDepth = depth;
+    setTotals(store, allocations);
   }
 
-  public void insert(String[] packages, AllocationInfo alloc, int depth) {
-    if (depth < packages.length) {
-      String name = packages[depth];
-      PackageNode node = myChildrenMap.get(name);
-      if (node == null) {
-        node = depth == packages.length - 1 ? new ClassNode(name) : new PackageNode(name);
-        myChildrenMap.put(name, node);
-        addChild(node);
+  @Override
+  protected void buildChildren() {
+    List<int[]> groups = AllocationStore.groupBy(myAllocations, new AllocationStore.KeyFunction() {
+      @Override
+      public int getKey(int index) {
+        return getChildName(index);
+      }
+    });
+    for (int[] group : groups) {
+      int name = getChildName(group[0]);
+      if (name >= 0) {
+        boolean isClass = myPaths.allocationPaths[group[0]].length == myDepth + 1;
+        attachChild(isClass
+                    ? new ClassNode(myPaths.names[name], myStore, myPaths, group, myDepth + 1)
+                    : new PackageNode(myPaths.names[name], myStore, myPaths, group, myDepth + 1));
+      }
+      else {
+        for (int index : group) {
+          attachChild(new AllocNode(myStore, index));
+        }
       }
-      node.insert(packages, alloc, depth + 1);
-    } else {
-      addChild(new AllocNode(alloc));
     }
   }
 
+  /** Returns the id of the name the given allocation has at this node's children depth, or -1 if its path ends here */
+  private int getChildName(int index) {
+    int[] path = myPaths.allocationPaths[index];
+    return myDepth < path.length ? path[myDepth] : -1;
+  }
+
+  @Override
+  public boolean isLeaf() {
+    return false;
+  }
+
   @NotNull
   public String getName() {
     return myName;
@@ -59,4 +90,15 @@ public class PackageNode extends AbstractTreeNode {
     String pkg = parent instanceof PackageNode ? ((PackageNode)parent).getQualifiedName() : "";
     return pkg.isEmpty() ? myName : pkg + "." + myName;
   }
+
+  /** The package path (packages followed by the class name) of each allocation, as ids of interned names */
+  static class Paths {
+    @NotNull final int[][] allocationPaths;
+    @NotNull final String[] names;
+
+    Paths(@NotNull int[][] allocationPaths, @NotNull String[] names) {
+      this.allocationPaths = allocationPaths;
+      this.names = names;
+    }
+  }
 }
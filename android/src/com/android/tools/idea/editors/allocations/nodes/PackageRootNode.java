@@ -15,46 +15,62 @@
  */
 package com.android.tools.idea.editors.allocations.nodes;
 
-import com.android.ddmlib.AllocationInfo;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import gnu.trove.TObjectIntHashMap;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
 
 public class PackageRootNode extends PackageNode implements MainTreeNode {
 
-  @NotNull
-  private final Pattern myFilter;
-
-  public PackageRootNode(@NotNull String name, @NotNull Pattern filter) {
-    super(name);
-    myFilter = filter;
+  public PackageRootNode(@NotNull String name, @NotNull AllocationStore store, @NotNull Pattern filter) {
+    super(name, store, computePaths(store, filter), store.getAllIndices(), 0);
   }
 
-  public PackageRootNode(@NotNull String name, @NotNull String filter) {
-    this(name, globToRegex(filter));
+  public PackageRootNode(@NotNull String name, @NotNull AllocationStore store, @NotNull String filter) {
+    this(name, store, globToRegex(filter));
   }
 
-  @Override
-  public void insert(@NotNull AllocationInfo alloc) {
-    StackTraceElement[] trace = alloc.getStackTrace();
-    String[] packages;
-    if (trace.length > 0) {
-      int match = 0;
-      for (int i = 0; i < trace.length; i++) {
-        if (myFilter.matcher(trace[i].getClassName()).matches()) {
-          match = i;
-          break;
+  @NotNull
+  private static Paths computePaths(@NotNull AllocationStore store, @NotNull Pattern filter) {
+    String[] allocators = store.getAllocatorClasses(filter);
+    TObjectIntHashMap<String> nameIds = new TObjectIntHashMap<String>();
+    List<String> names = Lists.newArrayList();
+    Map<String, int[]> classPaths = Maps.newHashMap();
+    int[][] allocationPaths = new int[allocators.length][];
+    for (int i = 0; i < allocators.length; i++) {
+      String allocator = allocators[i];
+      String key = allocator != null ? allocator : "";
+      int[] path = classPaths.get(key);
+      if (path == null) {
+        String[] packages;
+        if (allocator != null) {
+          // TODO don't use the last trace, but use a user defined filter.
+          int ix = allocator.indexOf("$");
+          String name = ix >= 0 ? allocator.substring(0, ix) : allocator;
+          packages = name.split("\\.");
+        } else {
+          packages = new String[] { "< Unknown >" };
+        }
+        path = new int[packages.length];
+        for (int j = 0; j < packages.length; j++) {
+          if (nameIds.containsKey(packages[j])) {
+            path[j] = nameIds.get(packages[j]);
+          }
+          else {
+            path[j] = names.size();
+            nameIds.put(packages[j], names.size());
+            names.add(packages[j]);
+          }
         }
+        classPaths.put(key, path);
       }
-      // TODO don't use the last trace, but use a user defined filter.
-      String name = trace[match].getClassName();
-      int ix = name.indexOf("$");
-      name = ix >= 0 ? name.substring(0, ix) : name;
-      packages = name.split("\\.");
-    } else {
-      packages = new String[] { "< Unknown >" };
+      allocationPaths[i] = path;
     }
-    insert(packages, alloc, 0);
+    return new Paths(allocationPaths, names.toArray(new String[names.size()]));
   }
 
   static Pattern globToRegex(String glob) {
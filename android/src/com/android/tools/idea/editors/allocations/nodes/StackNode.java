@@ -15,14 +15,17 @@
  */
 package com.android.tools.idea.editors.allocations.nodes;
 
+import org.jetbrains.annotations.NotNull;
+
 public class StackNode extends StackSourceNode {
-  private StackTraceElement myElement;
+  private final int myFrame;
 
-  public StackNode(StackTraceElement element) {
-    myElement = element;
+  StackNode(@NotNull AllocationStore store, @NotNull int[] allocations, int depth, int frame) {
+    super(store, allocations, depth);
+    myFrame = frame;
   }
 
   public StackTraceElement getStackTraceElement() {
-    return myElement;
+    return myStore.getFrame(myFrame);
   }
 }
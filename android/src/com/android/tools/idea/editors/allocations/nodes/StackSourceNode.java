@@ -15,31 +15,55 @@
  */
 package com.android.tools.idea.editors.allocations.nodes;
 
-import com.android.ddmlib.AllocationInfo;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
 abstract public class StackSourceNode extends AbstractTreeNode {
-  @NotNull protected Map<StackTraceElement, StackNode>
-    myChildrenMap = new HashMap<StackTraceElement, StackNode>();
-
-  public void insert(AllocationInfo alloc, int depth) {
-    StackTraceElement[] stack = alloc.getStackTrace();
-    if (depth < stack.length) {
-      StackTraceElement element = stack[stack.length - 1 - depth];
-      StackNode child = myChildrenMap.get(element);
-      if (child == null) {
-        child = new StackNode(element);
-        myChildrenMap.put(element, child);
-        addChild(child);
+  @NotNull protected final AllocationStore myStore;
+
+  @NotNull private final int[] myAllocations;
+
+  /** The depth of this node's children, counting frames from the outermost one */
+  private final int myDepth;
+
+  StackSourceNode(@NotNull AllocationStore store, @NotNull int[] allocations, int depth) {
+    myStore = store;
+    myAllocations = allocations;
+    myDepth = depth;
+    setTotals(store, allocations);
+  }
+
+  @Override
+  protected void buildChildren() {
+    List<int[]> groups = AllocationStore.groupBy(myAllocations, new AllocationStore.KeyFunction() {
+      @Override
+      public int getKey(int index) {
+        return getChildFrame(index);
+      }
+    });
+    for (int[] group : groups) {
+      int frame = getChildFrame(group[0]);
+      if (frame >= 0) {
+        attachChild(new StackNode(myStore, group, myDepth + 1, frame));
+      }
+      else {
+        for (int index : group) {
+          attachChild(new AllocNode(myStore, index));
+        }
       }
-      child.insert(alloc, depth + 1);
-    }
-    else {
-      AllocNode allocNode = new AllocNode(alloc);
-      addChild(allocNode);
     }
   }
+
+  /** Returns the id of the frame the given allocation has at this node's children depth, or -1 if its stack ends here */
+  private int getChildFrame(int index) {
+    int stackDepth = myStore.getStackDepth(index);
+    return myDepth < stackDepth ? myStore.getFrameId(index, stackDepth - 1 - myDepth) : -1;
+  }
+
+  @Override
+  public boolean isLeaf() {
+    // Every stack node holds at least one allocation, so there's no need to build the children to find out
+    return false;
+  }
 }
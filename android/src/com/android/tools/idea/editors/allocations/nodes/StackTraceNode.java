@@ -15,22 +15,28 @@
  */
 package com.android.tools.idea.editors.allocations.nodes;
 
-import com.android.ddmlib.AllocationInfo;
-import gnu.trove.TIntObjectHashMap;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.List;
+
 public class StackTraceNode extends AbstractTreeNode implements MainTreeNode {
-  private TIntObjectHashMap<ThreadNode> myChildrenMap = new TIntObjectHashMap<ThreadNode>();
+  @NotNull private final AllocationStore myStore;
+
+  public StackTraceNode(@NotNull AllocationStore store) {
+    myStore = store;
+    setTotals(store, store.getAllIndices());
+  }
 
   @Override
-  public void insert(@NotNull AllocationInfo alloc) {
-    short id = alloc.getThreadId();
-    ThreadNode thread = myChildrenMap.get(id);
-    if (thread == null) {
-      thread = new ThreadNode(id);
-      myChildrenMap.put(id, thread);
-      addChild(thread);
+  protected void buildChildren() {
+    List<int[]> threads = AllocationStore.groupBy(myStore.getAllIndices(), new AllocationStore.KeyFunction() {
+      @Override
+      public int getKey(int index) {
+        return myStore.getThreadId(index);
+      }
+    });
+    for (int[] thread : threads) {
+      attachChild(new ThreadNode(myStore, thread, myStore.getThreadId(thread[0])));
     }
-    thread.insert(alloc, 0);
   }
 }
@@ -15,10 +15,13 @@
  */
 package com.android.tools.idea.editors.allocations.nodes;
 
+import org.jetbrains.annotations.NotNull;
+
 public class ThreadNode extends StackSourceNode {
   int myThreadId;
 
-  public ThreadNode(int id) {
+  ThreadNode(@NotNull AllocationStore store, @NotNull int[] allocations, int id) {
+    super(store, allocations, 0);
     myThreadId = id;
   }
 
@@ -40,6 +40,14 @@ public class StringResourceData {
   private final List<Locale> myLocales;
   private final Map<String, ResourceItem> myDefaultValues;
   private final HashBasedTable<String, Locale, ResourceItem> myTranslations;
+  private final Map<Locale, Integer> myLocaleIndices;
+  /**
+   * The text of the default value (at index 0) and of the translation in each locale (at the locale index + 1) of
+   * each key. These are read from the resource items up front, so that showing the data never needs to look at PSI.
+   */
+  private final Map<String, String[]> myValues;
+  /** For each key, the indices of the locales the key is missing a translation for */
+  private final Map<String, BitSet> myMissingTranslations;
 
   public StringResourceData(@NotNull AndroidFacet facet,
                             @NotNull List<String> keys,
@@ -47,12 +55,77 @@ public class StringResourceData {
                             @NotNull Collection<Locale> locales,
                             @NotNull Map<String, ResourceItem> defaultValues,
                             @NotNull Table<String, Locale, ResourceItem> translations) {
+    this(facet, keys, untranslatableKeys, locales, defaultValues, translations, null, null);
+  }
+
+  /**
+   * Creates the data, reusing the values already read by the given previous data for the keys which haven't changed
+   * since, if it has the same locales
+   */
+  StringResourceData(@NotNull AndroidFacet facet,
+                     @NotNull List<String> keys,
+                     @NotNull Collection<String> untranslatableKeys,
+                     @NotNull Collection<Locale> locales,
+                     @NotNull Map<String, ResourceItem> defaultValues,
+                     @NotNull Table<String, Locale, ResourceItem> translations,
+                     @Nullable StringResourceData previous,
+                     @Nullable Collection<String> changedKeys) {
     myFacet = facet;
     myKeys = Lists.newArrayList(keys);
     myUntranslatableKeys = Sets.newHashSet(untranslatableKeys);
     myLocales = Lists.newArrayList(locales);
     myDefaultValues = Maps.newHashMap(defaultValues);
     myTranslations = HashBasedTable.create(translations);
+
+    myLocaleIndices = Maps.newHashMapWithExpectedSize(myLocales.size());
+    for (int i = 0; i < myLocales.size(); i++) {
+      myLocaleIndices.put(myLocales.get(i), i);
+    }
+
+    myValues = Maps.newHashMapWithExpectedSize(myKeys.size());
+    myMissingTranslations = Maps.newHashMapWithExpectedSize(myKeys.size());
+    boolean reuse = previous != null && changedKeys != null && previous.myLocales.equals(myLocales);
+    for (String key : myKeys) {
+      if (reuse && !changedKeys.contains(key) && previous.myValues.containsKey(key)) {
+        myValues.put(key, previous.myValues.get(key));
+        myMissingTranslations.put(key, previous.myMissingTranslations.get(key));
+      }
+      else {
+        updateValues(key);
+      }
+    }
+  }
+
+  /** Reads the values of the given key from its resource items */
+  private void updateValues(@NotNull String key) {
+    String[] values = new String[myLocales.size() + 1];
+    BitSet missing = new BitSet(myLocales.size());
+    ResourceItem defaultValue = myDefaultValues.get(key);
+    values[0] = defaultValue == null ? "" : resourceToString(defaultValue);
+    for (int i = 0; i < myLocales.size(); i++) {
+      Locale locale = myLocales.get(i);
+      ResourceItem translation = myTranslations.get(key, locale);
+      values[i + 1] = translation == null ? "" : resourceToString(translation);
+      if (computeTranslationMissing(key, locale)) {
+        missing.set(i);
+      }
+    }
+    myValues.put(key, values);
+    myMissingTranslations.put(key, missing);
+  }
+
+  /** Returns the text of the default value (for a null locale) or of the translation of the given key */
+  @NotNull
+  public String getValue(@NotNull String key, @Nullable Locale locale) {
+    String[] values = myValues.get(key);
+    if (values == null) {
+      return "";
+    }
+    if (locale == null) {
+      return values[0];
+    }
+    Integer index = myLocaleIndices.get(locale);
+    return index == null ? "" : values[index + 1];
   }
 
   @NotNull
@@ -117,6 +190,9 @@ public class StringResourceData {
       myDefaultValues.put(name, defaultValue);
     }
 
+    myValues.put(name, myValues.remove(currentName));
+    myMissingTranslations.put(name, myMissingTranslations.remove(currentName));
+
     if (!translations.isEmpty()) {
       // TODO: can this be done? wouldn't this have to be re-read since the ResourceItems might be different?
       // TODO: Is this whole thing better done as a refactoring operation?
@@ -157,6 +233,9 @@ public class StringResourceData {
             myTranslations.remove(key, locale);
           }
         }
+        if (changed) {
+          updateValues(key);
+        }
         return changed;
       }
     }
@@ -170,6 +249,7 @@ public class StringResourceData {
         else {
           myTranslations.put(key, locale, item);
         }
+        updateValues(key);
         return true;
       }
       return false;
@@ -179,7 +259,7 @@ public class StringResourceData {
 
   @Nullable
   public String validateKey(@NotNull String key) {
-    if (!myKeys.contains(key)) {
+    if (!myValues.containsKey(key)) {
       throw new IllegalArgumentException("Key " + key + " does not exist.");
     }
 
@@ -211,7 +291,7 @@ public class StringResourceData {
 
   @Nullable
   public String validateTranslation(@NotNull String key, @Nullable Locale locale) {
-    if (!myKeys.contains(key)) {
+    if (!myValues.containsKey(key)) {
       throw new IllegalArgumentException("Key " + key + " does not exist.");
     }
 
@@ -233,22 +313,29 @@ public class StringResourceData {
 
   @NotNull
   private Set<Locale> getMissingTranslations(@NotNull String key) {
-    Map<Locale, ResourceItem> translations = myTranslations.row(key);
-    if (translations.size() == myLocales.size()) {
+    BitSet missing = myMissingTranslations.get(key);
+    if (missing == null || missing.isEmpty()) {
       return Collections.emptySet();
     }
 
     Set<Locale> missingTranslations = Sets.newHashSet();
-    for (Locale locale : myLocales) {
-      if (isTranslationMissing(key, locale)) {
-        missingTranslations.add(locale);
-      }
+    for (int i = missing.nextSetBit(0); i >= 0; i = missing.nextSetBit(i + 1)) {
+      missingTranslations.add(myLocales.get(i));
     }
 
     return missingTranslations;
   }
 
   private boolean isTranslationMissing(@NotNull String key, @NotNull Locale locale) {
+    BitSet missing = myMissingTranslations.get(key);
+    Integer index = myLocaleIndices.get(locale);
+    if (missing == null || index == null) {
+      return computeTranslationMissing(key, locale);
+    }
+    return missing.get(index);
+  }
+
+  private boolean computeTranslationMissing(@NotNull String key, @NotNull Locale locale) {
     // TODO: do we need to check the value of resource item != empty or just item != null?
     if (myTranslations.get(key, locale) != null) {
       return false;
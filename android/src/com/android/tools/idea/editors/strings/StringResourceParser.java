@@ -29,7 +29,9 @@ import com.intellij.openapi.util.Computable;
 import com.intellij.psi.xml.XmlTag;
 import org.jetbrains.android.facet.AndroidFacet;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -37,32 +39,70 @@ import java.util.Set;
 
 public class StringResourceParser {
   public static StringResourceData parse(@NotNull final AndroidFacet facet, @NotNull final LocalResourceRepository repository) {
+    return parse(facet, repository, null, null);
+  }
+
+  /**
+   * Parses the string resources of the given repository. If previous data and the keys which changed since it was
+   * parsed are given, only those keys are read again from the repository, and the values of the other keys are
+   * reused from the previous data.
+   */
+  public static StringResourceData parse(@NotNull final AndroidFacet facet,
+                                         @NotNull final LocalResourceRepository repository,
+                                         @Nullable final StringResourceData previous,
+                                         @Nullable final Set<String> changedKeys) {
     if (ApplicationManager.getApplication().isReadAccessAllowed()) {
-      return parseUnderReadLock(facet, repository);
+      return parseUnderReadLock(facet, repository, previous, changedKeys);
     } else {
       return ApplicationManager.getApplication().runReadAction(new Computable<StringResourceData>() {
         @Override
         public StringResourceData compute() {
-          return parseUnderReadLock(facet, repository);
+          return parseUnderReadLock(facet, repository, previous, changedKeys);
         }
       });
     }
   }
 
-  private static StringResourceData parseUnderReadLock(AndroidFacet facet, LocalResourceRepository repository) {
-    List<String> keys = Lists.newArrayList(repository.getItemsOfType(ResourceType.STRING));
-    Collections.sort(keys);
-
+  private static StringResourceData parseUnderReadLock(AndroidFacet facet,
+                                                       LocalResourceRepository repository,
+                                                       @Nullable StringResourceData previous,
+                                                       @Nullable Set<String> changedKeys) {
     final Set<String> untranslatableKeys = Sets.newHashSet();
     final Set<Locale> locales = Sets.newTreeSet(Locale.LANGUAGE_CODE_COMPARATOR); // tree set to sort the locales by language code
-    Map<String, ResourceItem> defaultValues = Maps.newHashMapWithExpectedSize(keys.size());
-    Table<String, Locale, ResourceItem> translations = HashBasedTable.create();
+    Map<String, ResourceItem> defaultValues;
+    Table<String, Locale, ResourceItem> translations;
+    Collection<String> keysToRead;
+    List<String> keys;
+
+    if (previous != null && changedKeys != null) {
+      keys = Lists.newArrayList(previous.getKeys());
+      keys.removeAll(changedKeys);
+      untranslatableKeys.addAll(previous.getUntranslatableKeys());
+      untranslatableKeys.removeAll(changedKeys);
+      defaultValues = Maps.newHashMap(previous.getDefaultValues());
+      translations = HashBasedTable.create(previous.getTranslations());
+      for (String key : changedKeys) {
+        defaultValues.remove(key);
+        translations.row(key).clear();
+      }
+      keysToRead = changedKeys;
+    }
+    else {
+      keys = Lists.newArrayList(repository.getItemsOfType(ResourceType.STRING));
+      defaultValues = Maps.newHashMapWithExpectedSize(keys.size());
+      translations = HashBasedTable.create();
+      keysToRead = keys;
+    }
 
-    for (String key : keys) {
+    for (String key : keysToRead) {
       List<ResourceItem> items = repository.getResourceItem(ResourceType.STRING, key);
       if (items == null) {
         continue;
       }
+      if (keysToRead != keys && !items.isEmpty()) {
+        // Changed key which still exists (it may have been removed, or be new)
+        keys.add(key);
+      }
 
       for (ResourceItem item : items) {
         if (item instanceof PsiResourceItem) {
@@ -78,13 +118,14 @@ public class StringResourceParser {
           defaultValues.put(key, item);
         }
         else {
-          Locale locale = Locale.create(qualifier);
-          locales.add(locale);
-          translations.put(key, locale, item);
+          translations.put(key, Locale.create(qualifier), item);
         }
       }
     }
+    Collections.sort(keys);
+    // Taken from the translations rather than the previous data, so that locales whose strings were all removed are dropped
+    locales.addAll(translations.columnKeySet());
 
-    return new StringResourceData(facet, keys, untranslatableKeys, locales, defaultValues, translations);
+    return new StringResourceData(facet, keys, untranslatableKeys, locales, defaultValues, translations, previous, changedKeys);
   }
 }
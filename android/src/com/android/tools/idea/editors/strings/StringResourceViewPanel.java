@@ -21,6 +21,7 @@ import com.android.ide.common.res2.ResourceItem;
 import com.android.ide.common.xml.AndroidManifestParser;
 import com.android.ide.common.xml.ManifestData;
 import com.android.io.FileWrapper;
+import com.android.resources.ResourceType;
 import com.android.tools.idea.configurations.LocaleMenuAction;
 import com.android.tools.idea.editors.strings.table.*;
 import com.android.tools.idea.model.AndroidModuleInfo;
@@ -61,6 +62,7 @@ import java.io.File;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class StringResourceViewPanel implements HyperlinkListener {
@@ -350,9 +352,17 @@ public class StringResourceViewPanel implements HyperlinkListener {
   private class ParseTask extends Task.Backgroundable {
     private AtomicReference<LocalResourceRepository> myResourceRepositoryRef = new AtomicReference<LocalResourceRepository>(null);
     private AtomicReference<StringResourceData> myResourceDataRef = new AtomicReference<StringResourceData>(null);
+    /** The modification count of the repository when parsing started; later edits are picked up by the next parse */
+    private volatile long myParsedModificationCount;
+    private final StringResourceData myPreviousData;
+    private final LocalResourceRepository myPreviousRepository;
+    private final long myPreviousModificationCount;
 
     public ParseTask(String description) {
       super(myFacet.getModule().getProject(), description, false);
+      myPreviousData = myData;
+      myPreviousRepository = myResourceRepository;
+      myPreviousModificationCount = myModificationCount;
     }
 
     @Override
@@ -360,7 +370,17 @@ public class StringResourceViewPanel implements HyperlinkListener {
       indicator.setIndeterminate(true);
       LocalResourceRepository moduleResources = myFacet.getModuleResources(true);
       myResourceRepositoryRef.set(moduleResources);
-      myResourceDataRef.set(StringResourceParser.parse(myFacet, moduleResources));
+      myParsedModificationCount = moduleResources.getModificationCount();
+
+      // If we know which strings changed since the data was last parsed, only read those again
+      Set<String> changedKeys = null;
+      if (myPreviousData != null && moduleResources == myPreviousRepository) {
+        Map<ResourceType, Set<String>> changes = moduleResources.getChangesSince(myPreviousModificationCount);
+        if (changes != null) {
+          changedKeys = changes.containsKey(ResourceType.STRING) ? changes.get(ResourceType.STRING) : Collections.<String>emptySet();
+        }
+      }
+      myResourceDataRef.set(StringResourceParser.parse(myFacet, moduleResources, myPreviousData, changedKeys));
     }
 
     @Override
@@ -369,7 +389,7 @@ public class StringResourceViewPanel implements HyperlinkListener {
 
       myData = myResourceDataRef.get();
       myResourceRepository = myResourceRepositoryRef.get();
-      myModificationCount = myResourceRepository.getModificationCount();
+      myModificationCount = myParsedModificationCount;
 
       myTableModel.setData(myData);
       myTableModel.fireTableStructureChanged();
@@ -85,16 +85,13 @@ public class StringResourceTableModel extends AbstractTableModel {
     }
 
     if (column >= ConstantColumn.COUNT) {
-      Locale locale = localeOfColumn(column);
-      return myData.getTranslations().contains(keyOfRow(row), locale) ? StringResourceData
-        .resourceToString(myData.getTranslations().get(keyOfRow(row), locale)) : "";
+      return myData.getValue(keyOfRow(row), localeOfColumn(column));
     }
     switch (ConstantColumn.values()[column]) {
       case KEY:
         return keyOfRow(row);
       case DEFAULT_VALUE:
-        return myData.getDefaultValues().containsKey(keyOfRow(row))
-               ? StringResourceData.resourceToString(myData.getDefaultValues().get(keyOfRow(row))) : "";
+        return myData.getValue(keyOfRow(row), null);
       case UNTRANSLATABLE:
         return myData.getUntranslatableKeys().contains(keyOfRow(row));
       default:
@@ -16,6 +16,8 @@
 
 package com.android.tools.idea.editors.vmtrace;
 
+import com.android.tools.idea.editors.vmtrace.treemodel.ThreadMethodStats;
+import com.android.tools.perflib.vmtrace.ThreadInfo;
 import com.android.tools.perflib.vmtrace.VmTraceData;
 import com.android.tools.perflib.vmtrace.VmTraceParser;
 import com.google.common.base.Throwables;
@@ -23,7 +25,6 @@ import com.intellij.codeHighlighting.BackgroundEditorHighlighter;
 import com.intellij.ide.structureView.StructureViewBuilder;
 import com.intellij.openapi.actionSystem.DataKey;
 import com.intellij.openapi.application.ApplicationManager;
-import com.intellij.openapi.application.ModalityState;
 import com.intellij.openapi.fileEditor.FileEditor;
 import com.intellij.openapi.fileEditor.FileEditorLocation;
 import com.intellij.openapi.fileEditor.FileEditorState;
@@ -43,6 +44,7 @@ import javax.swing.*;
 import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.io.IOException;
+import java.util.Map;
 
 public class VmTraceEditor implements FileEditor {
   private final TraceViewPanel myTraceViewPanel;
@@ -53,33 +55,39 @@ public class VmTraceEditor implements FileEditor {
   }
 
   private void parseTraceFileInBackground(@NotNull final Project project, @NotNull final VirtualFile file) {
-    final Task.Modal parseTask = new Task.Modal(project, "Parsing trace file", false) {
+    // The trace is parsed in a background task rather than a modal one, so the IDE stays usable while large traces load.
+    // The per-thread method statistics are computed on the same background thread, before the view is updated.
+    final Task.Backgroundable parseTask = new Task.Backgroundable(project, "Parsing trace file", false) {
       @Override
       public void run(@NotNull ProgressIndicator indicator) {
         indicator.setIndeterminate(true);
 
         File traceFile = VfsUtilCore.virtualToIoFile(file);
         VmTraceParser parser = new VmTraceParser(traceFile);
+        final VmTraceData vmTraceData;
+        final Map<ThreadInfo, ThreadMethodStats> methodStats;
         try {
           parser.parse();
+          vmTraceData = parser.getTraceData();
+          indicator.setText("Computing method statistics");
+          methodStats = ThreadMethodStats.computeAll(vmTraceData);
         }
         catch (final Throwable throwable) {
-          ApplicationManager.getApplication().invokeAndWait(new Runnable() {
+          ApplicationManager.getApplication().invokeLater(new Runnable() {
             @Override
             public void run() {
               //noinspection ThrowableResultOfMethodCallIgnored
               Messages.showErrorDialog(project, "Unexpected error while parsing trace file: " +
                                                 Throwables.getRootCause(throwable).getMessage(), getName());
             }
-          }, ModalityState.defaultModalityState());
+          });
           return;
         }
 
-        final VmTraceData vmTraceData = parser.getTraceData();
         ApplicationManager.getApplication().invokeLater(new Runnable() {
           @Override
           public void run() {
-            myTraceViewPanel.setTrace(vmTraceData);
+            myTraceViewPanel.setTrace(vmTraceData, methodStats);
           }
         });
       }
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.editors.vmtrace.treemodel;
+
+import com.android.tools.perflib.vmtrace.*;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Longs;
+import com.intellij.openapi.application.ApplicationManager;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The methods invoked in one thread of a trace, with their invocation counts and (global clock) inclusive and
+ * exclusive times stored in primitive columns. The columns are read once from the trace data, so sorting only
+ * compares array elements instead of looking up the profile data of each method for every comparison. Sorted
+ * orders are kept as arrays of method indices and computed once per column.
+ */
+public class ThreadMethodStats {
+  @NotNull private final MethodInfo[] myMethods;
+  @NotNull private final String[] myNames;
+  @NotNull private final long[] myInvocationCounts;
+  @NotNull private final long[] myInclusiveTimes;
+  @NotNull private final long[] myExclusiveTimes;
+  @NotNull private final Map<StatsTableColumn, int[]> myAscendingOrders = new EnumMap<StatsTableColumn, int[]>(StatsTableColumn.class);
+
+  public ThreadMethodStats(@NotNull VmTraceData traceData, @NotNull ThreadInfo thread) {
+    List<MethodInfo> methods = Lists.newArrayList();
+    for (MethodInfo info : traceData.getMethods().values()) {
+      if (info.getProfileData().getInvocationCount(thread) > 0) {
+        methods.add(info);
+      }
+    }
+
+    int count = methods.size();
+    myMethods = methods.toArray(new MethodInfo[count]);
+    myNames = new String[count];
+    myInvocationCounts = new long[count];
+    myInclusiveTimes = new long[count];
+    myExclusiveTimes = new long[count];
+    for (int i = 0; i < count; i++) {
+      MethodInfo method = myMethods[i];
+      MethodProfileData data = method.getProfileData();
+      myNames[i] = method.getFullName();
+      myInvocationCounts[i] = data.getInvocationCount(thread);
+      myInclusiveTimes[i] = data.getInclusiveTime(thread, ClockType.GLOBAL, TimeUnit.MICROSECONDS);
+      myExclusiveTimes[i] = data.getExclusiveTime(thread, ClockType.GLOBAL, TimeUnit.MICROSECONDS);
+    }
+  }
+
+  /** Computes the statistics of all the threads of the given trace which have activity, in parallel on pooled threads */
+  @NotNull
+  public static Map<ThreadInfo, ThreadMethodStats> computeAll(@NotNull final VmTraceData traceData) {
+    Map<ThreadInfo, Future<ThreadMethodStats>> futures = Maps.newLinkedHashMap();
+    for (final ThreadInfo thread : traceData.getThreads(true)) {
+      futures.put(thread, ApplicationManager.getApplication().executeOnPooledThread(new Callable<ThreadMethodStats>() {
+        @Override
+        public ThreadMethodStats call() {
+          return new ThreadMethodStats(traceData, thread);
+        }
+      }));
+    }
+
+    Map<ThreadInfo, ThreadMethodStats> stats = Maps.newHashMap();
+    try {
+      for (Map.Entry<ThreadInfo, Future<ThreadMethodStats>> entry : futures.entrySet()) {
+        stats.put(entry.getKey(), entry.getValue().get());
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+    catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+    return stats;
+  }
+
+  public int getMethodCount() {
+    return myMethods.length;
+  }
+
+  @NotNull
+  public MethodInfo getMethod(int index) {
+    return myMethods[index];
+  }
+
+  /** Returns the indices of the methods sorted by the given column */
+  @NotNull
+  public synchronized int[] getOrder(@NotNull StatsTableColumn column, boolean ascending) {
+    int[] order = myAscendingOrders.get(column);
+    if (order == null) {
+      order = sort(column);
+      myAscendingOrders.put(column, order);
+    }
+    if (ascending) {
+      return order;
+    }
+    int[] reversed = new int[order.length];
+    for (int i = 0; i < order.length; i++) {
+      reversed[i] = order[order.length - 1 - i];
+    }
+    return reversed;
+  }
+
+  @NotNull
+  private int[] sort(@NotNull StatsTableColumn column) {
+    int[] order = new int[myMethods.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    mergeSort(order, new int[order.length], 0, order.length, column);
+    return order;
+  }
+
+  /**
+   * Sorts the indices in the given range of the order by the given column. This is a stable merge sort on the
+   * index array itself, so that sorting doesn't box every index as {@link Arrays#sort(Object[], Comparator)} would.
+   */
+  private void mergeSort(@NotNull int[] order, @NotNull int[] buffer, int from, int to, @NotNull StatsTableColumn column) {
+    if (to - from < 2) {
+      return;
+    }
+    int middle = (from + to) >>> 1;
+    mergeSort(order, buffer, from, middle, column);
+    mergeSort(order, buffer, middle, to, column);
+    if (compare(column, order[middle - 1], order[middle]) <= 0) {
+      // The two halves are already in order
+      return;
+    }
+
+    System.arraycopy(order, from, buffer, from, to - from);
+    int left = from;
+    int right = middle;
+    for (int i = from; i < to; i++) {
+      if (right >= to || left < middle && compare(column, buffer[left], buffer[right]) <= 0) {
+        order[i] = buffer[left++];
+      }
+      else {
+        order[i] = buffer[right++];
+      }
+    }
+  }
+
+  private int compare(@NotNull StatsTableColumn column, int index1, int index2) {
+    switch (column) {
+      case NAME:
+        return myNames[index1].compareTo(myNames[index2]);
+      case INVOCATION_COUNT:
+        return Longs.compare(myInvocationCounts[index1], myInvocationCounts[index2]);
+      case INCLUSIVE_TIME:
+        return Longs.compare(myInclusiveTimes[index1], myInclusiveTimes[index2]);
+      case EXCLUSIVE_TIME:
+        return Longs.compare(myExclusiveTimes[index1], myExclusiveTimes[index2]);
+      default:
+        return 0;
+    }
+  }
+}
@@ -30,6 +30,8 @@ import org.jetbrains.annotations.Nullable;
 import javax.swing.*;
 import javax.swing.event.TreeModelEvent;
 import javax.swing.event.TreeModelListener;
+import java.util.Collections;
+import java.util.Map;
 
 /**
  * A {@link TreeTableModel} for viewing method statistics from a VM Trace.
@@ -38,6 +40,7 @@ import javax.swing.event.TreeModelListener;
  */
 public class VmStatsTreeTableModel extends AbstractTreeTableModel implements TreeTableModel {
   private VmTraceData myVmTraceData;
+  private Map<ThreadInfo, ThreadMethodStats> myMethodStats = Collections.emptyMap();
   private StatsNode myRootNode;
   private ThreadInfo myThread;
   private ClockType myClockType = ClockType.GLOBAL;
@@ -50,7 +53,18 @@ public class VmStatsTreeTableModel extends AbstractTreeTableModel implements Tre
   }
 
   public void setTraceData(@NotNull VmTraceData traceData, @NotNull ThreadInfo thread) {
+    setTraceData(traceData, Collections.<ThreadInfo, ThreadMethodStats>emptyMap(), thread);
+  }
+
+  /**
+   * Sets the trace to show, along with the method statistics already computed for its threads (see
+   * {@link ThreadMethodStats#computeAll}). Statistics for threads which aren't in the map are computed when needed.
+   */
+  public void setTraceData(@NotNull VmTraceData traceData,
+                           @NotNull Map<ThreadInfo, ThreadMethodStats> methodStats,
+                           @NotNull ThreadInfo thread) {
     myVmTraceData = traceData;
+    myMethodStats = methodStats;
     setThread(thread);
   }
 
@@ -62,7 +76,10 @@ public class VmStatsTreeTableModel extends AbstractTreeTableModel implements Tre
   public void setThread(@NotNull ThreadInfo thread) {
     myThread = thread;
     if (myVmTraceData != null) {
-      myRootNode = new StatsByThreadNode(myVmTraceData, thread);
+      ThreadMethodStats stats = myMethodStats.get(thread);
+      myRootNode = stats != null
+                   ? new StatsByThreadNode(myVmTraceData, thread, stats)
+                   : new StatsByThreadNode(myVmTraceData, thread);
     } else {
       myRootNode = new NullStatsNode();
     }
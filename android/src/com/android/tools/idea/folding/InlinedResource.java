@@ -20,6 +20,7 @@ import com.android.ide.common.resources.configuration.FolderConfiguration;
 import com.android.ide.common.resources.configuration.LocaleQualifier;
 import com.android.resources.ResourceType;
 import com.android.tools.idea.rendering.LocalResourceRepository;
+import com.google.common.collect.Maps;
 import com.intellij.lang.folding.FoldingDescriptor;
 import com.intellij.openapi.util.ModificationTracker;
 import com.intellij.openapi.util.text.StringUtil;
@@ -31,6 +32,8 @@ import com.intellij.psi.xml.XmlAttributeValue;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -41,6 +44,19 @@ class InlinedResource implements ModificationTracker {
   static final InlinedResource NONE = new InlinedResource(ResourceType.STRING, "", null, null, null);
   private static final int FOLD_MAX_LENGTH = 60;
 
+  /** The configuration values are looked up in: a nonexistent language, to fall back to the default locale */
+  private static final FolderConfiguration REFERENCE_CONFIG = new FolderConfiguration();
+  static {
+    REFERENCE_CONFIG.setLocaleQualifier(new LocaleQualifier("xx"));
+  }
+
+  /**
+   * The values looked up so far in each repository, for the modification count of the repository they were
+   * looked up at. Guarded by itself.
+   */
+  private static final Map<LocalResourceRepository, ResolvedValues> ourResolvedValues =
+    new WeakHashMap<LocalResourceRepository, ResolvedValues>();
+
   /** Resource type, typically a string or dimension */
   private final ResourceType myType;
 
@@ -87,43 +103,80 @@ class InlinedResource implements ModificationTracker {
   @Nullable
   public String getResolvedString() {
     if (myResourceRepository != null) {
-      if (myResourceRepository.hasResourceItem(myType, myKey)) {
-        FolderConfiguration referenceConfig = new FolderConfiguration();
-        // Nonexistent language qualifier: trick it to fall back to the default locale
-        referenceConfig.setLocaleQualifier(new LocaleQualifier("xx"));
-        ResourceValue value = myResourceRepository.getConfiguredValue(myType, myKey, referenceConfig);
-        if (value != null) {
-          String text = value.getValue();
-          if (text != null) {
-            if (myElement instanceof PsiMethodCallExpression) {
-              text = insertArguments((PsiMethodCallExpression)myElement, text);
-            }
-            if (myType == ResourceType.PLURALS && text.startsWith(STRING_PREFIX)) {
-              value = myResourceRepository.getConfiguredValue(ResourceType.STRING, text.substring(STRING_PREFIX.length()),
-                                                              referenceConfig);
-              if (value != null && value.getValue() != null) {
-                text = value.getValue();
-                return '"' + StringUtil.shortenTextWithEllipsis(text, FOLD_MAX_LENGTH - 2, 0) + '"';
-              }
-            }
-            if (myType == ResourceType.STRING || myElement instanceof XmlAttributeValue) {
-              return '"' + StringUtil.shortenTextWithEllipsis(text, FOLD_MAX_LENGTH - 2, 0) + '"';
-            } else if (text.length() <= 1) {
-              // Don't just inline empty or one-character replacements: they can't be expanded by a mouse click
-              // so are hard to use without knowing about the folding keyboard shortcut to toggle folding.
-              // This is similar to how IntelliJ 14 handles call parameters
-              return myKey + ": " + text;
-            } else {
-              return StringUtil.shortenTextWithEllipsis(text, FOLD_MAX_LENGTH, 0);
-            }
+      String text = getConfiguredValue(myResourceRepository, myType, myKey);
+      if (text != null) {
+        if (myElement instanceof PsiMethodCallExpression) {
+          text = insertArguments((PsiMethodCallExpression)myElement, text);
+        }
+        if (myType == ResourceType.PLURALS && text.startsWith(STRING_PREFIX)) {
+          String string = getConfiguredValue(myResourceRepository, ResourceType.STRING, text.substring(STRING_PREFIX.length()));
+          if (string != null) {
+            return '"' + StringUtil.shortenTextWithEllipsis(string, FOLD_MAX_LENGTH - 2, 0) + '"';
           }
         }
+        if (myType == ResourceType.STRING || myElement instanceof XmlAttributeValue) {
+          return '"' + StringUtil.shortenTextWithEllipsis(text, FOLD_MAX_LENGTH - 2, 0) + '"';
+        } else if (text.length() <= 1) {
+          // Don't just inline empty or one-character replacements: they can't be expanded by a mouse click
+          // so are hard to use without knowing about the folding keyboard shortcut to toggle folding.
+          // This is similar to how IntelliJ 14 handles call parameters
+          return myKey + ": " + text;
+        } else {
+          return StringUtil.shortenTextWithEllipsis(text, FOLD_MAX_LENGTH, 0);
+        }
       }
     }
 
     return null;
   }
 
+  /**
+   * Returns the value of the given resource in the reference configuration, or null if there is no such resource.
+   * Values are cached until the repository is modified, since the same strings are typically referenced from
+   * many places, and the labels are computed again on each folding pass.
+   */
+  @Nullable
+  private static String getConfiguredValue(@NotNull LocalResourceRepository resources, @NotNull ResourceType type, @NotNull String key) {
+    long modificationCount = resources.getModificationCount();
+    ResolvedValues values;
+    synchronized (ourResolvedValues) {
+      values = ourResolvedValues.get(resources);
+      if (values == null || values.myModificationCount != modificationCount) {
+        values = new ResolvedValues(modificationCount);
+        ourResolvedValues.put(resources, values);
+      }
+    }
+
+    String name = type.getName() + '/' + key;
+    synchronized (values) {
+      if (values.myValues.containsKey(name)) {
+        return values.myValues.get(name);
+      }
+    }
+
+    String text = null;
+    if (resources.hasResourceItem(type, key)) {
+      ResourceValue value = resources.getConfiguredValue(type, key, REFERENCE_CONFIG);
+      if (value != null) {
+        text = value.getValue();
+      }
+    }
+    synchronized (values) {
+      values.myValues.put(name, text);
+    }
+    return text;
+  }
+
+  private static class ResolvedValues {
+    private final long myModificationCount;
+    /** Resource values by type and name; null for resources without a value */
+    private final Map<String, String> myValues = Maps.newHashMap();
+
+    private ResolvedValues(long modificationCount) {
+      myModificationCount = modificationCount;
+    }
+  }
+
   // See lint's StringFormatDetector
   private static final Pattern FORMAT = Pattern.compile("%(\\d+\\$)?([-+#, 0(<]*)?(\\d+)?(\\.\\d+)?([tT])?([a-zA-Z%])");
 
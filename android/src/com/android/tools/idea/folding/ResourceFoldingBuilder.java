@@ -66,8 +66,10 @@ public class ResourceFoldingBuilder extends FoldingBuilderEx {
   @Override
   public String getPlaceholderText(@NotNull ASTNode node) {
     PsiElement element = SourceTreeToPsiMap.treeElementToPsi(node);
-    if (element != null) {
-      InlinedResource string = getResolvedString(element);
+    LocalResourceRepository appResources = element != null ? getAppResources(element) : null;
+    if (appResources != null) {
+      // The label is only resolved here, when the region is displayed, and the resource lookups are cached
+      InlinedResource string = getResolvedString(element, appResources);
       if (string != NONE) {
         String foldLabel = string.getResolvedString();
         if (foldLabel != null) {
@@ -85,13 +87,18 @@ public class ResourceFoldingBuilder extends FoldingBuilderEx {
     if (!(element instanceof PsiJavaFile || element instanceof XmlFile) || quick && !UNIT_TEST_MODE || !isFoldingEnabled()) {
       return FoldingDescriptor.EMPTY;
     }
+    // Look up the module and its resources once for the whole file rather than for each reference
+    final LocalResourceRepository appResources = getAppResources(element);
+    if (appResources == null) {
+      return FoldingDescriptor.EMPTY;
+    }
     final List<FoldingDescriptor> result = new ArrayList<FoldingDescriptor>();
     if (element instanceof PsiJavaFile) {
       final PsiJavaFile file = (PsiJavaFile) element;
       file.accept(new JavaRecursiveElementWalkingVisitor() {
         @Override
         public void visitReferenceExpression(PsiReferenceExpression expression) {
-          InlinedResource inlinedResource = findJavaExpressionReference(expression);
+          InlinedResource inlinedResource = findJavaExpressionReference(expression, appResources);
           if (inlinedResource != NONE) {
             result.add(inlinedResource.getDescriptor());
           }
@@ -103,7 +110,7 @@ public class ResourceFoldingBuilder extends FoldingBuilderEx {
       file.accept(new XmlRecursiveElementVisitor() {
         @Override
         public void visitXmlAttributeValue(XmlAttributeValue value) {
-          InlinedResource inlinedResource = findXmlValueReference(value);
+          InlinedResource inlinedResource = findXmlValueReference(value, appResources);
           if (inlinedResource != NONE) {
             FoldingDescriptor descriptor = inlinedResource.getDescriptor();
             if (descriptor != null) {
@@ -119,11 +126,11 @@ public class ResourceFoldingBuilder extends FoldingBuilderEx {
   }
 
   @NotNull
-  private static InlinedResource getResolvedString(PsiElement element) {
+  private static InlinedResource getResolvedString(PsiElement element, @NotNull LocalResourceRepository appResources) {
     if (element instanceof PsiReferenceExpression) {
-      return findJavaExpressionReference((PsiReferenceExpression)element);
+      return findJavaExpressionReference((PsiReferenceExpression)element, appResources);
     } else if (element instanceof XmlAttributeValue) {
-      return findXmlValueReference((XmlAttributeValue)element);
+      return findXmlValueReference((XmlAttributeValue)element, appResources);
     } else if (element instanceof PsiMethodCallExpression) {
       // This can happen when a folding lookup for a parameter ends up returning the
       // surrounding method call as the folding region; in that case we have to map
@@ -131,7 +138,7 @@ public class ResourceFoldingBuilder extends FoldingBuilderEx {
       PsiMethodCallExpression call = (PsiMethodCallExpression)element;
       for (PsiExpression expression : call.getArgumentList().getExpressions()) {
         if (expression instanceof PsiReferenceExpression) {
-          InlinedResource string = findJavaExpressionReference((PsiReferenceExpression)expression);
+          InlinedResource string = findJavaExpressionReference((PsiReferenceExpression)expression, appResources);
           if (string != NONE) {
             return string;
           }
@@ -143,24 +150,25 @@ public class ResourceFoldingBuilder extends FoldingBuilderEx {
   }
 
   @NotNull
-  private static InlinedResource findXmlValueReference(XmlAttributeValue element) {
+  private static InlinedResource findXmlValueReference(XmlAttributeValue element, @NotNull LocalResourceRepository appResources) {
     String value = element.getValue();
     if (value.startsWith(STRING_PREFIX)) {
       String name = value.substring(STRING_PREFIX.length());
-      return createdInlinedResource(ResourceType.STRING, name, element);
+      return createdInlinedResource(ResourceType.STRING, name, element, appResources);
     } else if (value.startsWith(DIMEN_PREFIX)) {
       String name = value.substring(DIMEN_PREFIX.length());
-      return createdInlinedResource(ResourceType.DIMEN, name, element);
+      return createdInlinedResource(ResourceType.DIMEN, name, element, appResources);
     } else if (value.startsWith(INTEGER_PREFIX)) {
       String name = value.substring(INTEGER_PREFIX.length());
-      return createdInlinedResource(ResourceType.INTEGER, name, element);
+      return createdInlinedResource(ResourceType.INTEGER, name, element, appResources);
     } else {
       return NONE;
     }
   }
 
   @NotNull
-  private static InlinedResource findJavaExpressionReference(PsiReferenceExpression expression) {
+  private static InlinedResource findJavaExpressionReference(PsiReferenceExpression expression,
+                                                             @NotNull LocalResourceRepository appResources) {
     AndroidPsiUtils.ResourceReferenceType referenceType = AndroidPsiUtils.getResourceReferenceType(expression);
     if (referenceType != AndroidPsiUtils.ResourceReferenceType.APP) {
       return NONE;
@@ -190,7 +198,7 @@ public class ResourceFoldingBuilder extends FoldingBuilderEx {
           //noinspection ConstantConditions
           @NotNull ResourceType resourceType = type;
           //noinspection ConstantConditions
-          return createdInlinedResource(resourceType, name, callExpression);
+          return createdInlinedResource(resourceType, name, callExpression, appResources);
         }
 
         //noinspection ConstantConditions
@@ -220,7 +228,7 @@ public class ResourceFoldingBuilder extends FoldingBuilderEx {
 
     // Suppress null warning; see @NotNull comment further up in this method
     //noinspection ConstantConditions
-    return createdInlinedResource(type, name, expression);
+    return createdInlinedResource(type, name, expression, appResources);
   }
 
   @Nullable
@@ -234,10 +242,10 @@ public class ResourceFoldingBuilder extends FoldingBuilderEx {
   }
 
   private static InlinedResource createdInlinedResource(@NotNull ResourceType type, @NotNull String name,
-                                                        @NotNull PsiElement foldElement) {
+                                                        @NotNull PsiElement foldElement,
+                                                        @NotNull LocalResourceRepository appResources) {
     // Not part of a call: just fold the R.string reference itself
-    LocalResourceRepository appResources = getAppResources(foldElement);
-    if (appResources != null && appResources.hasResourceItem(type, name)) {
+    if (appResources.hasResourceItem(type, name)) {
       ASTNode node = foldElement.getNode();
       if (node != null) {
         TextRange textRange = foldElement.getTextRange();
@@ -18,15 +18,17 @@ package com.android.tools.idea.monitor;
 import com.android.ddmlib.Client;
 import com.android.tools.chartlib.TimelineData;
 import com.google.common.collect.Lists;
-import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public abstract class DeviceSampler implements Runnable {
   /**
@@ -46,29 +48,47 @@ public abstract class DeviceSampler implements Runnable {
    */
   public static final int INHERITED_TYPE_START = 3;
 
+  private static final Logger LOG = Logger.getInstance(DeviceSampler.class);
+
+  /**
+   * The threads all samplers run on, for all devices and clients, instead of each sampler keeping a pooled thread
+   * busy for as long as it runs. Samples are short (at most a shell command with a short timeout), so a couple of
+   * threads are enough.
+   */
+  private static final ScheduledExecutorService ourScheduler = Executors.newScheduledThreadPool(2, new ThreadFactory() {
+    private final AtomicInteger myCount = new AtomicInteger();
+
+    @Override
+    public Thread newThread(@NotNull Runnable runnable) {
+      Thread thread = new Thread(runnable, "Device Sampler " + myCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
   @NotNull protected final TimelineData myData;
   @NotNull protected final List<TimelineEventListener> myListeners = Lists.newLinkedList();
   protected int mySampleFrequencyMs;
   /**
-   * The future representing the task being executed, which will return null upon successful completion.
-   * If null, no current task is being executed.
+   * The future of the periodic sampling task, which is cancelled when the sampler is stopped.
+   * If null, the sampler is not running.
    */
   @Nullable protected volatile Future<?> myExecutingTask;
   @Nullable protected volatile Client myClient;
-  @NotNull private final Semaphore myDataSemaphore;
+  /** Held while taking a sample, so periodic and forced samples never run at the same time */
+  @NotNull private final Object mySampleLock = new Object();
   protected volatile boolean myRunning;
 
   public DeviceSampler(@NotNull TimelineData data, int sampleFrequencyMs) {
     myData = data;
     mySampleFrequencyMs = sampleFrequencyMs;
-    myDataSemaphore = new Semaphore(0, true);
   }
 
   @SuppressWarnings("ConstantConditions")
   public void start() {
     if (myExecutingTask == null && myClient != null) {
       myRunning = true;
-      myExecutingTask = ApplicationManager.getApplication().executeOnPooledThread(this);
+      myExecutingTask = ourScheduler.scheduleWithFixedDelay(this, mySampleFrequencyMs, mySampleFrequencyMs, TimeUnit.MILLISECONDS);
       myClient.setHeapInfoUpdateEnabled(true);
 
       for (TimelineEventListener listener : myListeners) {
@@ -81,19 +101,11 @@ public abstract class DeviceSampler implements Runnable {
   public void stop() {
     if (myExecutingTask != null) {
       myRunning = false;
-      myDataSemaphore.release();
-      myData.clear();
+      myExecutingTask.cancel(false);
 
-      try {
-        // Wait for the task to finish.
-        myExecutingTask.get();
-      }
-      catch (InterruptedException e) {
-        // Ignore
-      }
-      catch (ExecutionException e) {
-        // Rethrow the original cause of the exception on this thread.
-        throw new RuntimeException(e.getCause());
+      // Wait for a sample in progress to finish, so that it doesn't add to the cleared data.
+      synchronized (mySampleLock) {
+        myData.clear();
       }
 
       if (myClient != null) {
@@ -123,28 +135,41 @@ public abstract class DeviceSampler implements Runnable {
     return myExecutingTask != null && myRunning;
   }
 
+  /**
+   * Takes a sample right away, in response to an event, rather than waiting for the next periodic one.
+   */
   protected void forceSample() {
-    myDataSemaphore.release();
+    if (myRunning) {
+      ourScheduler.execute(new Runnable() {
+        @Override
+        public void run() {
+          takeSample(true);
+        }
+      });
+    }
   }
 
   @Override
   public void run() {
-    long timeToWait = mySampleFrequencyMs;
-    while (myRunning) {
+    takeSample(false);
+  }
+
+  private void takeSample(boolean forced) {
+    synchronized (mySampleLock) {
+      if (!myRunning) {
+        return;
+      }
       try {
-        long start = System.currentTimeMillis();
-        boolean acquired = myDataSemaphore.tryAcquire(timeToWait, TimeUnit.MILLISECONDS);
-        if (myRunning) {
-          sample(acquired);
-        }
-        timeToWait -= System.currentTimeMillis() - start;
-        if (timeToWait <= 0) {
-          timeToWait = mySampleFrequencyMs;
-        }
+        sample(forced);
       }
       catch (InterruptedException e) {
         myRunning = false;
       }
+      catch (RuntimeException e) {
+        // Not rethrown: the scheduler never runs a task again once it has thrown, which would silently end the
+        // periodic sampling while the sampler still reports itself as running
+        LOG.error(e);
+      }
     }
   }
 
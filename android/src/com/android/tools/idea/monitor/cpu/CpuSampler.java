@@ -74,15 +74,13 @@ public class CpuSampler extends DeviceSampler {
 
     if (device != null) {
       try {
+        // Read both files with a single shell command, rather than one command (and adb round trip) for each
         int pid = data.getPid();
-        ProcessStatReceiver dumpsysReceiver = new ProcessStatReceiver(pid);
-        device.executeShellCommand("cat /proc/" + pid + "/stat", dumpsysReceiver, 1, TimeUnit.SECONDS);
-        kernelCpuUsage = dumpsysReceiver.getKernelCpuUsage();
-        userCpuUsage = dumpsysReceiver.getUserCpuUsage();
-
-        SystemStatReceiver systemStatReceiver = new SystemStatReceiver();
-        device.executeShellCommand("cat /proc/stat", systemStatReceiver, 1, TimeUnit.SECONDS);
-        totalUptime = systemStatReceiver.getTotalUptime();
+        StatReceiver statReceiver = new StatReceiver(pid);
+        device.executeShellCommand("cat /proc/" + pid + "/stat /proc/stat", statReceiver, 1, TimeUnit.SECONDS);
+        kernelCpuUsage = statReceiver.getKernelCpuUsage();
+        userCpuUsage = statReceiver.getUserCpuUsage();
+        totalUptime = statReceiver.getTotalUptime();
       }
       catch (TimeoutException e) {
         type = TYPE_TIMEOUT;
@@ -124,14 +122,15 @@ public class CpuSampler extends DeviceSampler {
   }
 
   /**
-   * Output receiver for contents in the "/proc/[pid]/stat" pseudo file.
+   * Output receiver for the contents of the "/proc/[pid]/stat" and "/proc/stat" pseudo files.
    */
-  static final class ProcessStatReceiver extends MultiLineReceiver {
+  static final class StatReceiver extends MultiLineReceiver {
     private final int myPid;
     private Long myUserCpuTicks;
     private Long myKernelCpuTicks;
+    private Long myTotalUptime;
 
-    private ProcessStatReceiver(int pid) {
+    private StatReceiver(int pid) {
       myPid = pid;
     }
 
@@ -155,6 +154,16 @@ public class CpuSampler extends DeviceSampler {
       return myKernelCpuTicks;
     }
 
+    /**
+     * Get the parsed total uptime of all CPUs.
+     *
+     * @return total uptime or <code>null</code> if it cannot be determined
+     */
+    @Nullable
+    public Long getTotalUptime() {
+      return myTotalUptime;
+    }
+
     @Override
     public boolean isCancelled() {
       return false;
@@ -162,46 +171,36 @@ public class CpuSampler extends DeviceSampler {
 
     @Override
     public void processNewLines(@NotNull String[] lines) {
-      String[] tokens = lines[0].split("\\s+");
-      if (tokens.length >= 15) {
-        // Refer to Linux proc man page for the contents at the specified indices.
-        Integer pid = Integer.parseInt(tokens[0]);
-        if (pid != myPid) {
-          LOG.warn("Invalid pid.");
-          return;
+      for (String line : lines) {
+        String[] tokens = line.trim().split("\\s+");
+        if (tokens[0].equals("cpu")) {
+          processSystemStat(tokens);
+        }
+        else if (myUserCpuTicks == null && tokens.length >= 15 && !tokens[0].isEmpty() && Character.isDigit(tokens[0].charAt(0))) {
+          processProcessStat(tokens);
         }
-
-        myUserCpuTicks = Long.parseLong(tokens[13]);
-        myKernelCpuTicks = Long.parseLong(tokens[14]);
       }
     }
-  }
-
-  /**
-   * Output receiver for contents in the "/proc/stat" pseudo file.
-   */
-  static final class SystemStatReceiver extends MultiLineReceiver {
-    private Long myTotalUptime = null;
 
-    public Long getTotalUptime() {
-      return myTotalUptime;
-    }
+    private void processProcessStat(@NotNull String[] tokens) {
+      // Refer to Linux proc man page for the contents at the specified indices.
+      Integer pid = Integer.parseInt(tokens[0]);
+      if (pid != myPid) {
+        LOG.warn("Invalid pid.");
+        return;
+      }
 
-    @Override
-    public boolean isCancelled() {
-      return false;
+      myUserCpuTicks = Long.parseLong(tokens[13]);
+      myKernelCpuTicks = Long.parseLong(tokens[14]);
     }
 
-    @Override
-    public void processNewLines(String[] lines) {
-      long totalUptime = 0l;
-
-      String[] tokens = lines[0].split("\\s+");
-      if (tokens.length < 11 || !tokens[0].equals("cpu")) {
+    private void processSystemStat(@NotNull String[] tokens) {
+      if (tokens.length < 11 || myTotalUptime != null) {
         return;
       }
 
       // Assuming total uptime is the sum of all given numerical values on the aggregated CPU line.
+      long totalUptime = 0l;
       for (int i = 1; i < tokens.length; ++i) {
         totalUptime += Long.parseLong(tokens[i]);
       }
@@ -39,11 +39,12 @@ public class MemorySampler extends DeviceSampler implements AndroidDebugBridge.I
 
   @Override
   public void stop() {
-    super.stop();
-    myRequestPending = false;
+    // Check before stopping, which resets the task
     if (myExecutingTask != null) {
       AndroidDebugBridge.removeClientChangeListener(this);
     }
+    super.stop();
+    myRequestPending = false;
   }
 
   @NotNull
@@ -30,6 +30,7 @@ import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiDirectory;
 import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
 import com.intellij.ui.SimpleTextAttributes;
 import com.intellij.util.PlatformIcons;
 import org.jetbrains.android.facet.AndroidFacet;
@@ -37,6 +38,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 public class AndroidResFolderTypeNode extends ProjectViewNode<List<PsiDirectory>> implements DirectoryGroupNode {
@@ -44,6 +46,11 @@ public class AndroidResFolderTypeNode extends ProjectViewNode<List<PsiDirectory>
   @NotNull private final ResourceFolderType myFolderType;
   @NotNull private final AndroidProjectViewPane myProjectViewPane;
 
+  /** The children last computed, and the files (and their names) in the folders they were computed from */
+  @Nullable private List<AbstractTreeNode> myChildren;
+  @Nullable private List<VirtualFile> myChildrenFiles;
+  @Nullable private List<String> myChildrenNames;
+
   public AndroidResFolderTypeNode(@NotNull Project project,
                                   @NotNull AndroidFacet facet,
                                   @NotNull List<PsiDirectory> folders,
@@ -81,23 +88,52 @@ public class AndroidResFolderTypeNode extends ProjectViewNode<List<PsiDirectory>
     // all resource folders of a given folder type
     List<PsiDirectory> folders = getValue();
 
-    Multimap<String,PsiFile> multimap = HashMultimap.create();
+    // The tree asks for the children often, so they are only computed again when the files in the folders have
+    // changed. Listing the files of the folders only needs the VFS, not PSI.
+    List<VirtualFile> files = Lists.newArrayList();
+    List<String> names = Lists.newArrayList();
     for (PsiDirectory res : folders) {
-      for (PsiFile file : res.getFiles()) {
-        String resName = file.getName();
-        multimap.put(resName, file);
+      if (!res.isValid()) {
+        myChildren = null;
+        return Collections.emptyList();
+      }
+      for (VirtualFile file : res.getVirtualFile().getChildren()) {
+        if (!file.isDirectory()) {
+          files.add(file);
+          names.add(file.getName());
+        }
       }
     }
 
-    List<AbstractTreeNode> children = Lists.newArrayListWithExpectedSize(multimap.size());
+    if (myChildren != null && files.equals(myChildrenFiles) && names.equals(myChildrenNames)) {
+      return myChildren;
+    }
+
+    Multimap<String,VirtualFile> multimap = HashMultimap.create();
+    for (VirtualFile file : files) {
+      multimap.put(file.getName(), file);
+    }
+
+    PsiManager psiManager = PsiManager.getInstance(myProject);
+    List<AbstractTreeNode> children = Lists.newArrayListWithExpectedSize(multimap.keySet().size());
     for (String resName : multimap.keySet()) {
-      List<PsiFile> files = Lists.newArrayList(multimap.get(resName));
-      if (files.size() > 1) {
-        children.add(new AndroidResGroupNode(myProject, myFacet, files, resName, getSettings()));
-      } else {
-        children.add(new AndroidResFileNode(myProject, files.get(0), getSettings(), myFacet));
+      List<PsiFile> psiFiles = Lists.newArrayList();
+      for (VirtualFile file : multimap.get(resName)) {
+        PsiFile psiFile = psiManager.findFile(file);
+        if (psiFile != null) {
+          psiFiles.add(psiFile);
+        }
+      }
+      if (psiFiles.size() > 1) {
+        children.add(new AndroidResGroupNode(myProject, myFacet, psiFiles, resName, getSettings()));
+      } else if (psiFiles.size() == 1) {
+        children.add(new AndroidResFileNode(myProject, psiFiles.get(0), getSettings(), myFacet));
       }
     }
+
+    myChildren = children;
+    myChildrenFiles = files;
+    myChildrenNames = names;
     return children;
   }
 
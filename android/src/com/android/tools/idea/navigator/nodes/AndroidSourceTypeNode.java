@@ -104,7 +104,12 @@ public class AndroidSourceTypeNode extends ProjectViewNode<AndroidFacet> impleme
 
   @Nullable
   private IdeaSourceProvider findSourceProvider(VirtualFile virtualFile) {
-    for (IdeaSourceProvider provider : AndroidProjectViewPane.getSourceProviders(getValue())) {
+    List<IdeaSourceProvider> providers = IdeaSourceProvider.getCurrentSourceProvidersContaining(getValue(), virtualFile);
+    if (!providers.isEmpty()) {
+      return providers.get(0);
+    }
+
+    for (IdeaSourceProvider provider : IdeaSourceProvider.getCurrentTestSourceProviders(getValue())) {
       if (provider.containsFile(virtualFile)) {
         return provider;
       }
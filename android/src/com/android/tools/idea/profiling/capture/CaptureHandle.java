@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.profiling.capture;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A capture file which is being written to, see {@link CaptureService#startCaptureFile(Class)}
+ */
+public class CaptureHandle {
+  @NotNull private final File myFile;
+  @NotNull private final CaptureType myType;
+  @Nullable private OutputStream myStream;
+
+  CaptureHandle(@NotNull File file, @NotNull CaptureType type) throws IOException {
+    myFile = file;
+    myType = type;
+    myStream = new FileOutputStream(file);
+  }
+
+  @NotNull
+  public File getFile() {
+    return myFile;
+  }
+
+  @NotNull
+  public CaptureType getType() {
+    return myType;
+  }
+
+  public boolean isWritable() {
+    return myStream != null;
+  }
+
+  void write(@NotNull byte[] data, int offset, int length) throws IOException {
+    if (myStream == null) {
+      throw new IOException("Capture file " + myFile + " has already been closed");
+    }
+    myStream.write(data, offset, length);
+  }
+
+  void close() throws IOException {
+    if (myStream != null) {
+      OutputStream stream = myStream;
+      myStream = null;
+      stream.close();
+    }
+  }
+}
@@ -18,7 +18,9 @@ package com.android.tools.idea.profiling.capture;
 import com.android.tools.idea.stats.UsageTracker;
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.Multimap;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.fileEditor.OpenFileDescriptor;
 import com.intellij.openapi.project.Project;
@@ -41,6 +43,9 @@ public class CaptureService {
 
   public static final String FD_CAPTURES = "captures";
 
+  private static final Logger LOG = Logger.getInstance(CaptureService.class);
+  private static final int WRITE_CHUNK_SIZE = 64 * 1024;
+
   @NotNull private final Project myProject;
   @NotNull private Multimap<CaptureType, Capture> myCaptures;
   private List<CaptureListener> myListeners;
@@ -126,20 +131,114 @@ public class CaptureService {
     return myCaptures.keySet();
   }
 
+  /**
+   * Creates a capture from the given data, and opens it in an editor. Must be called on the EDT, in a write action.
+   * <p>
+   * Captures which can get large (such as heap dumps) should rather be written with {@link #startCaptureFile(Class)},
+   * {@link #appendData(CaptureHandle, byte[])} and {@link #finalizeCaptureFileAsynchronous(CaptureHandle)} off the EDT.
+   */
   public Capture createCapture(Class<? extends CaptureType> clazz, byte[] data) throws IOException {
+    CaptureHandle handle = startCaptureFile(clazz);
+    try {
+      appendData(handle, data);
+    }
+    catch (IOException e) {
+      cancelCaptureFile(handle);
+      throw e;
+    }
+    handle.close();
+    return openCaptureFile(handle);
+  }
 
+  /**
+   * Creates a new capture file of the given type, to which the capture data can then be streamed with
+   * {@link #appendData(CaptureHandle, byte[], int, int)} as it arrives. May be called on any thread.
+   */
+  @NotNull
+  public CaptureHandle startCaptureFile(@NotNull Class<? extends CaptureType> clazz) throws IOException {
     CaptureType type = CaptureTypeService.getInstance().getType(clazz);
     assert type != null;
 
     UsageTracker.getInstance().trackEvent(UsageTracker.CATEGORY_PROFILING, UsageTracker.ACTION_PROFILING_CAPTURE, type.getName(), null);
 
-    VirtualFile dir = createCapturesDirectory();
-    File file = new File(dir.createChildData(null, type.createCaptureFileName()).getPath());
-    FileUtil.writeToFile(file, data);
-    final VirtualFile vf = VfsUtil.findFileByIoFile(file, true);
+    String basePath = myProject.getBasePath();
+    if (basePath == null) {
+      throw new IOException("Unable to create the captures directory: Project directory not found.");
+    }
+    File dir = new File(basePath, FD_CAPTURES);
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      throw new IOException("Unable to create the captures directory " + dir.getPath());
+    }
+    String name = type.createCaptureFileName();
+    File file = FileUtil.findSequentNonexistentFile(dir, FileUtil.getNameWithoutExtension(name), FileUtil.getExtension(name));
+    return new CaptureHandle(file, type);
+  }
+
+  /** Appends the given data to a capture file created by {@link #startCaptureFile(Class)}. May be called on any thread. */
+  public void appendData(@NotNull CaptureHandle handle, @NotNull byte[] data) throws IOException {
+    appendData(handle, data, 0, data.length);
+  }
+
+  /** Appends the given data to a capture file created by {@link #startCaptureFile(Class)}. May be called on any thread. */
+  public void appendData(@NotNull CaptureHandle handle, @NotNull byte[] data, int offset, int length) throws IOException {
+    // Write in chunks: the JDK copies the array being written into a native buffer of the same size, which for
+    // a heap dump of several hundred MB would double the memory used for it
+    int end = offset + length;
+    for (int start = offset; start < end; start += WRITE_CHUNK_SIZE) {
+      handle.write(data, start, Math.min(WRITE_CHUNK_SIZE, end - start));
+    }
+  }
+
+  /**
+   * Closes the given capture file, and then registers it and opens it in an editor on the EDT. May be called on any thread.
+   */
+  public void finalizeCaptureFileAsynchronous(@NotNull final CaptureHandle handle) throws IOException {
+    try {
+      handle.close();
+    }
+    catch (IOException e) {
+      cancelCaptureFile(handle);
+      throw e;
+    }
+    ApplicationManager.getApplication().invokeLater(new Runnable() {
+      @Override
+      public void run() {
+        if (myProject.isDisposed()) {
+          return;
+        }
+        ApplicationManager.getApplication().runWriteAction(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              openCaptureFile(handle);
+            }
+            catch (IOException e) {
+              LOG.warn(e);
+            }
+          }
+        });
+      }
+    });
+  }
+
+  /** Closes and deletes the given capture file, e.g. because obtaining the capture data failed */
+  public void cancelCaptureFile(@NotNull CaptureHandle handle) {
+    try {
+      handle.close();
+    }
+    catch (IOException ignore) {
+    }
+    FileUtil.delete(handle.getFile());
+  }
+
+  @NotNull
+  private Capture openCaptureFile(@NotNull CaptureHandle handle) throws IOException {
+    File file = handle.getFile();
+    final VirtualFile vf = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(file);
     if (vf == null) {
       throw new IOException("Cannot find virtual file for capture file " + file.getPath());
     }
+    CaptureType type = handle.getType();
     Capture capture = type.createCapture(vf);
     myCaptures.put(type, capture);
 
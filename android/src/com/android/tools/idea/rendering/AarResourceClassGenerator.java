@@ -20,7 +20,12 @@ import com.android.ide.common.rendering.api.DeclareStyleableResourceValue;
 import com.android.ide.common.rendering.api.ResourceValue;
 import com.android.ide.common.res2.ResourceItem;
 import com.android.resources.ResourceType;
+import com.google.common.base.Charsets;
 import com.google.common.collect.Maps;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
 import gnu.trove.TObjectIntHashMap;
 import gnu.trove.TObjectIntProcedure;
 import org.jetbrains.android.util.AndroidResourceUtil;
@@ -30,8 +35,11 @@ import org.jetbrains.org.objectweb.asm.ClassWriter;
 import org.jetbrains.org.objectweb.asm.MethodVisitor;
 import org.jetbrains.org.objectweb.asm.Type;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -62,10 +70,15 @@ import static org.jetbrains.org.objectweb.asm.Opcodes.*;
  * will break custom libraries that use reflection on the R class, but meh.
  */
 public class AarResourceClassGenerator {
+  /**
+   * Version of the generated bytecode, part of the key of the classes cached by {@link ResourceClassCache}. Bump it
+   * whenever the generated classes change, so that classes cached on disk by earlier versions aren't loaded.
+   */
+  private static final int GENERATOR_VERSION = 1;
+
+  /** Content hashes of the R.txt files of libraries, see {@link #getContentHash(File)} */
+  private static final Map<File, ContentHash> ourContentHashes = Maps.newHashMap();
 
-  private Map<ResourceType, TObjectIntHashMap<String>> myCache;
-  /** For int[] in styleables. The ints in styleables are stored in {@link #myCache}. */
-  private Map<String, List<Integer>> myStyleableCache;
   @NotNull private final AppResourceRepository myAppResources;
 
   private AarResourceClassGenerator(@NotNull AppResourceRepository appResources) {
@@ -89,8 +102,6 @@ public class AarResourceClassGenerator {
   @Nullable
   public byte[] generate(String fqcn) {
     String className = fqcn.replace('.', '/');
-    ClassWriter cw = new ClassWriter(0);  // Don't compute MAXS and FRAMES.
-    cw.visit(V1_6, ACC_PUBLIC + ACC_FINAL + ACC_SUPER, className, null, Type.getInternalName(Object.class), null);
 
     int index = className.lastIndexOf('$');
     if (index != -1) {
@@ -100,36 +111,39 @@ public class AarResourceClassGenerator {
         return null;
       }
 
-      cw.visitInnerClass(className, className.substring(0, index), typeName, ACC_PUBLIC + ACC_FINAL + ACC_STATIC);
-      if (myCache == null) {
-        myCache = Maps.newHashMap();
-      }
-      if (type == ResourceType.STYLEABLE) {
-        if (myStyleableCache == null) {
-          TObjectIntHashMap<String> styleableIntCache = new TObjectIntHashMap<String>();
-          myCache.put(type, styleableIntCache);
-          myStyleableCache = Maps.newHashMap();
-          generateStyleable(cw, styleableIntCache, className);
+      // The generated class only depends on its name and the field values, so unless the resources or the
+      // ids assigned to them changed, we can reuse the class generated earlier (possibly in a previous session).
+      // The key is computed without collecting the field values, which for styleables means parsing R.txt files.
+      HashCode key = computeKey(className, type);
+      byte[] data = ResourceClassCache.get(key);
+      if (data == null) {
+        TObjectIntHashMap<String> values = new TObjectIntHashMap<String>();
+        Map<String, List<Integer>> styleables = null;
+        if (type == ResourceType.STYLEABLE) {
+          styleables = Maps.newHashMap();
+          collectStyleables(values, styleables);
         }
         else {
-          TObjectIntHashMap<String> styleableIntCache = myCache.get(type);
-          assert styleableIntCache != null;
-          generateFields(cw, styleableIntCache);
-          generateIntArrayFromCache(cw, className, myStyleableCache);
+          collectValuesForType(type, values);
         }
-      } else {
-        TObjectIntHashMap<String> typeCache = myCache.get(type);
-        if (typeCache == null) {
-          typeCache = new TObjectIntHashMap<String>();
-          myCache.put(type, typeCache);
-          generateValuesForType(cw, type, typeCache);
-        }
-        else {
-          generateFields(cw, typeCache);
+
+        ClassWriter cw = new ClassWriter(0);  // Don't compute MAXS and FRAMES.
+        cw.visit(V1_6, ACC_PUBLIC + ACC_FINAL + ACC_SUPER, className, null, Type.getInternalName(Object.class), null);
+        cw.visitInnerClass(className, className.substring(0, index), typeName, ACC_PUBLIC + ACC_FINAL + ACC_STATIC);
+        generateFields(cw, values);
+        if (styleables != null) {
+          generateIntArrayFromCache(cw, className, styleables);
         }
+        generateConstructor(cw);
+        cw.visitEnd();
+        data = cw.toByteArray();
+        ResourceClassCache.put(key, data);
       }
+      return data;
     } else {
       // Default R class.
+      ClassWriter cw = new ClassWriter(0);  // Don't compute MAXS and FRAMES.
+      cw.visit(V1_6, ACC_PUBLIC + ACC_FINAL + ACC_SUPER, className, null, Type.getInternalName(Object.class), null);
       boolean styleableAdded = false;
       for (ResourceType t : myAppResources.getAvailableResourceTypes()) {
         // getAvailableResourceTypes() sometimes returns both styleable and declare styleable. Make sure that we only create one subclass.
@@ -145,77 +159,129 @@ public class AarResourceClassGenerator {
         }
         cw.visitInnerClass(className + "$" + t.getName(), className, t.getName(), ACC_PUBLIC + ACC_FINAL + ACC_STATIC);
       }
+      generateConstructor(cw);
+      cw.visitEnd();
+      return cw.toByteArray();
+    }
+  }
+
+  /**
+   * Computes the cache key for the given class from the inputs of its field values rather than from the values
+   * themselves: the names of the resources and their ids, and for styleables the attributes and the content of the
+   * R.txt files of the libraries, which the styleable arrays are read from.
+   * <p>
+   * This assigns dynamic ids to resources which don't have one yet, as collecting the values would. They have to be
+   * assigned even when the class comes from the cache, since layoutlib resolves the ids in R classes back to resources.
+   */
+  @NotNull
+  private HashCode computeKey(@NotNull String className, @NotNull ResourceType type) {
+    Hasher hasher = Hashing.sha1().newHasher();
+    hasher.putInt(GENERATOR_VERSION);
+    hasher.putString(className, Charsets.UTF_8);
+    if (type == ResourceType.STYLEABLE) {
+      for (FileResourceRepository library : myAppResources.getLibraries()) {
+        File resourceTextFile = library.getResourceTextFile();
+        if (resourceTextFile != null) {
+          hasher.putBytes(getContentHash(resourceTextFile).asBytes());
+        }
+      }
+      for (String styleableName : myAppResources.getItemsOfType(ResourceType.DECLARE_STYLEABLE)) {
+        hasher.putString(styleableName, Charsets.UTF_8);
+        List<ResourceItem> items = myAppResources.getResourceItem(ResourceType.DECLARE_STYLEABLE, styleableName);
+        if (items == null || items.isEmpty()) {
+          continue;
+        }
+        ResourceValue resourceValue = items.get(0).getResourceValue(false);
+        if (resourceValue instanceof DeclareStyleableResourceValue) {
+          List<AttrResourceValue> attributes = ((DeclareStyleableResourceValue)resourceValue).getAllAttributes();
+          hasher.putInt(attributes.size());
+          for (AttrResourceValue value : attributes) {
+            hasher.putString(value.getName(), Charsets.UTF_8).putBoolean(value.isFramework());
+            hasher.putInt(myAppResources.getResourceId(ResourceType.ATTR, value.getName()));
+          }
+        }
+      }
     }
+    else {
+      // Dynamic ids are assigned in iteration order, so hash the names in that order
+      Collection<String> names = type == ResourceType.ID ? myAppResources.getAllIds() : myAppResources.getItemsOfType(type);
+      for (String name : names) {
+        hasher.putString(name, Charsets.UTF_8).putInt(myAppResources.getResourceId(type, name));
+      }
+    }
+    return hasher.hash();
+  }
 
-    generateConstructor(cw);
-    cw.visitEnd();
-    return cw.toByteArray();
+  /** Returns the hash of the content of the given file, computed again only when the file changes */
+  @NotNull
+  private static HashCode getContentHash(@NotNull File file) {
+    synchronized (ourContentHashes) {
+      ContentHash hash = ourContentHashes.get(file);
+      long lastModified = file.lastModified();
+      long length = file.length();
+      if (hash == null || hash.lastModified != lastModified || hash.length != length) {
+        HashCode value;
+        try {
+          value = Files.hash(file, Hashing.sha1());
+        }
+        catch (IOException e) {
+          // Hash the file name instead; a file we can't read won't yield any styleable arrays either
+          value = Hashing.sha1().hashString(file.getPath(), Charsets.UTF_8);
+        }
+        hash = new ContentHash(lastModified, length, value);
+        ourContentHashes.put(file, hash);
+      }
+      return hash.value;
+    }
   }
 
-  private void generateValuesForType(@NotNull ClassWriter cw, @NotNull ResourceType resType, @NotNull TObjectIntHashMap<String> cache) {
+  private void collectValuesForType(@NotNull ResourceType resType, @NotNull TObjectIntHashMap<String> cache) {
     Collection<String> keys = resType == ResourceType.ID ? myAppResources.getAllIds() : myAppResources.getItemsOfType(resType);
     for (String key : keys) {
       int initialValue = myAppResources.getResourceId(resType, key);
       key = AndroidResourceUtil.getFieldNameByResourceName(key);
-      generateField(cw, key, initialValue);
       cache.put(key, initialValue);
     }
   }
 
-  private void generateStyleable(@NotNull ClassWriter cw, @NotNull TObjectIntHashMap<String> styleableIntCache, String className) {
+  /**
+   * Collects both the int[] values for the styleables and the ints for the indices into the arrays
+   */
+  private void collectStyleables(@NotNull TObjectIntHashMap<String> styleableIntCache,
+                                 @NotNull Map<String, List<Integer>> styleableCache) {
     Collection<String> declaredStyleables = myAppResources.getItemsOfType(ResourceType.DECLARE_STYLEABLE);
-    // Generate all declarations - both int[] and int for the indices into the array.
     for (String styleableName : declaredStyleables) {
       List<ResourceItem> items = myAppResources.getResourceItem(ResourceType.DECLARE_STYLEABLE, styleableName);
       if (items == null || items.isEmpty()) {
         continue;
       }
-      cw.visitField(ACC_PUBLIC + ACC_FINAL + ACC_STATIC, styleableName, "[I", null, null);
       ResourceValue resourceValue = items.get(0).getResourceValue(false);
       assert resourceValue instanceof DeclareStyleableResourceValue;
       DeclareStyleableResourceValue dv = (DeclareStyleableResourceValue)resourceValue;
       List<AttrResourceValue> attributes = dv.getAllAttributes();
       int idx = 0;
       for (AttrResourceValue value : attributes) {
-        Integer initialValue = idx++;
         String styleableEntryName = getResourceName(styleableName, value);
-        cw.visitField(ACC_PUBLIC + ACC_FINAL + ACC_STATIC, styleableEntryName, "I", null, initialValue);
-        styleableIntCache.put(styleableEntryName, initialValue);
-      }
-    }
-
-    // Generate class initializer block to initialize the arrays declared above.
-    MethodVisitor mv = cw.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
-    mv.visitCode();
-    for (String styleableName : declaredStyleables) {
-      List<ResourceItem> items = myAppResources.getResourceItem(ResourceType.DECLARE_STYLEABLE, styleableName);
-      if (items == null || items.isEmpty()) {
-        continue;
+        styleableIntCache.put(styleableEntryName, idx++);
       }
-      ResourceValue resourceValue = items.get(0).getResourceValue(false);
-      assert resourceValue instanceof DeclareStyleableResourceValue;
-      DeclareStyleableResourceValue dv = (DeclareStyleableResourceValue)resourceValue;
-      List<AttrResourceValue> attributes = dv.getAllAttributes();
       if (attributes.isEmpty()) {
+        // Declared, but left uninitialized
+        styleableCache.put(styleableName, Collections.<Integer>emptyList());
         continue;
       }
+
       Integer[] valuesArray = myAppResources.getDeclaredArrayValues(attributes, styleableName);
       if (valuesArray == null) {
         valuesArray = new Integer[attributes.size()];
       }
-      List<Integer> values = Arrays.asList(valuesArray);
-      myStyleableCache.put(styleableName, values);
-      int idx = -1;
+      idx = -1;
       for (AttrResourceValue value : attributes) {
         if (valuesArray[++idx] == null || !value.isFramework()) {
           valuesArray[idx] = myAppResources.getResourceId(ResourceType.ATTR, value.getName());
         }
       }
-      generateArrayInitialization(mv, className, styleableName, values);
+      styleableCache.put(styleableName, Arrays.asList(valuesArray));
     }
-    mv.visitInsn(RETURN);
-    mv.visitMaxs(4, 0);
-    mv.visitEnd();
   }
 
   private static void generateFields(@NotNull final ClassWriter cw, @NotNull TObjectIntHashMap<String> values) {
@@ -326,4 +392,16 @@ public class AarResourceClassGenerator {
     }
     return sb.toString();
   }
+
+  private static class ContentHash {
+    private final long lastModified;
+    private final long length;
+    @NotNull private final HashCode value;
+
+    private ContentHash(long lastModified, long length, @NotNull HashCode value) {
+      this.lastModified = lastModified;
+      this.length = length;
+      this.value = value;
+    }
+  }
 }
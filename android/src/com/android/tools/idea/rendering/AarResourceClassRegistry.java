@@ -143,6 +143,9 @@ public class AarResourceClassRegistry implements ProjectComponent {
    * Ideally, this method will not exist. But there are potential bugs in the caching mechanism.
    * So, the method should be called when rendering fails due to hard to explain causes: like
    * NoSuchFieldError. The method also resets the dynamic ids generated in {@link AppResourceRepository}.
+   * <p>
+   * This is cheap as long as the resources didn't change: the generated bytecode is cached by content in
+   * {@link ResourceClassCache}, so the new generators only generate the classes whose fields or ids differ.
    */
   public void clearCache() {
     myGeneratorMap.clear();
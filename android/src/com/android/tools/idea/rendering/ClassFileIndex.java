@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import com.android.tools.lint.detector.api.ClassContext;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import static com.android.SdkConstants.DOT_CLASS;
+
+/**
+ * Index of the .class files below a compiler output folder, used by {@link RenderClassLoader} to find the class
+ * file for a fully qualified class name without probing the file system for every possible inner class naming
+ * combination (and for every class which isn't in the folder at all, which is the common case when walking the
+ * module dependency graph).
+ * <p>
+ * The index is shared by all class loaders, so it survives class loaders being recreated after a build. It is
+ * brought up to date by {@link #refresh()}, which only re-lists the directories whose modification stamps have
+ * changed (adding or removing a class file changes the stamp of its directory), so refreshing after an
+ * incremental build only touches the packages that were actually affected.
+ */
+public class ClassFileIndex {
+  /** Directories modified less than this long before they were listed are not trusted to be unchanged */
+  private static final long RACY_INTERVAL_MS = 2000;
+
+  private static final Cache<File, ClassFileIndex> ourIndices = CacheBuilder.newBuilder().maximumSize(100).build();
+
+  private final File myRoot;
+
+  /** Map from relative directory path (using / as separator, and "" for the root) to the directory contents */
+  private final Map<String, Directory> myDirectories = Maps.newHashMap();
+
+  private ClassFileIndex(@NotNull File root) {
+    myRoot = root;
+  }
+
+  /** Returns the index for the given output folder. Call {@link #refresh()} before using it the first time. */
+  @NotNull
+  public static ClassFileIndex get(@NotNull final File root) {
+    try {
+      return ourIndices.get(root, new Callable<ClassFileIndex>() {
+        @Override
+        public ClassFileIndex call() {
+          return new ClassFileIndex(root);
+        }
+      });
+    }
+    catch (ExecutionException e) {
+      // Can't happen; the index constructor doesn't throw
+      return new ClassFileIndex(root);
+    }
+  }
+
+  /** Drops all indices */
+  public static void clearCache() {
+    ourIndices.invalidateAll();
+  }
+
+  /** Brings the index up to date with the contents of the output folder */
+  public synchronized void refresh() {
+    if (!myRoot.isDirectory()) {
+      myDirectories.clear();
+      return;
+    }
+    refresh(myRoot, "");
+  }
+
+  private void refresh(@NotNull File dir, @NotNull String relative) {
+    Directory directory = myDirectories.get(relative);
+    long stamp = dir.lastModified();
+    if (directory == null || directory.stamp != stamp || directory.racy) {
+      Directory updated = list(dir, stamp);
+      if (directory != null) {
+        for (String name : directory.subdirectories) {
+          if (!updated.subdirectories.contains(name)) {
+            remove(child(relative, name));
+          }
+        }
+      }
+      directory = updated;
+      myDirectories.put(relative, directory);
+    }
+    for (String name : directory.subdirectories) {
+      refresh(new File(dir, name), child(relative, name));
+    }
+  }
+
+  @NotNull
+  private static Directory list(@NotNull File dir, long stamp) {
+    // File systems with coarse timestamps may not register a change made shortly after we listed the
+    // directory, so directories modified very recently are listed again on the next refresh
+    boolean racy = System.currentTimeMillis() - stamp < RACY_INTERVAL_MS;
+    Directory directory = new Directory(stamp, racy);
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        String name = file.getName();
+        if (name.endsWith(DOT_CLASS)) {
+          directory.classes.add(name.substring(0, name.length() - DOT_CLASS.length()));
+        }
+        else if (file.isDirectory()) {
+          directory.subdirectories.add(name);
+        }
+      }
+    }
+    return directory;
+  }
+
+  private void remove(@NotNull String relative) {
+    String prefix = relative + '/';
+    Iterator<String> iterator = myDirectories.keySet().iterator();
+    while (iterator.hasNext()) {
+      String path = iterator.next();
+      if (path.equals(relative) || path.startsWith(prefix)) {
+        iterator.remove();
+      }
+    }
+  }
+
+  @NotNull
+  private static String child(@NotNull String relative, @NotNull String name) {
+    return relative.isEmpty() ? name : relative + '/' + name;
+  }
+
+  /**
+   * Returns the class file for the given fully qualified class name, or null if the output folder does not
+   * contain that class (as of the last {@link #refresh()})
+   */
+  @Nullable
+  public synchronized File findClassFile(@NotNull String className) {
+    String path = ClassContext.getInternalName(className);
+    if (contains(path)) {
+      return new File(myRoot, path.replace('/', File.separatorChar) + DOT_CLASS);
+    }
+
+    if (className.indexOf('$') != -1) {
+      // The class name does not contain an ambiguous inner class name (inner classes
+      // have already been separated by $ instead of .) so no need to do a search.
+      return null;
+    }
+
+    // Inner classes? Dots are ambiguous (e.g. foo.bar.Foo.Bar), so try all valid combinations
+    // (fully qualified names usually use upper case for class names and lower case for package names, which
+    // is what the above getInternalName will use to decide between packages and classes, but
+    // it's not a language requirement, which is why we fall back to this)
+    //
+    // The following loop will for foo.bar.Foo.Bar try the relative paths
+    //    foo/bar/Foo/Baz.class
+    //    foo/bar/Foo$Baz.class
+    //    foo/bar$Foo$Baz.class
+    //    foo$bar$Foo$Baz.class
+    path = className.replace('.', '/');
+    while (true) {
+      if (contains(path)) {
+        return new File(myRoot, path.replace('/', File.separatorChar) + DOT_CLASS);
+      }
+
+      int last = path.lastIndexOf('/');
+      if (last == -1) {
+        return null;
+      }
+      path = path.substring(0, last) + '$' + path.substring(last + 1);
+    }
+  }
+
+  private boolean contains(@NotNull String path) {
+    int last = path.lastIndexOf('/');
+    Directory directory = myDirectories.get(last == -1 ? "" : path.substring(0, last));
+    return directory != null && directory.classes.contains(path.substring(last + 1));
+  }
+
+  private static class Directory {
+    private final long stamp;
+    private final boolean racy;
+    /** Names of the class files in this directory, without the .class suffix */
+    private final Set<String> classes = Sets.newHashSet();
+    private final Set<String> subdirectories = Sets.newHashSet();
+
+    private Directory(long stamp, boolean racy) {
+      this.stamp = stamp;
+      this.racy = racy;
+    }
+  }
+}
@@ -15,12 +15,20 @@
  */
 package com.android.tools.idea.rendering;
 
-import com.google.common.collect.Maps;
+import com.android.ide.common.rendering.api.ResourceValue;
+import com.android.tools.idea.configurations.Configuration;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.ui.Gray;
 import com.intellij.util.RetinaImage;
 import com.intellij.util.ui.UIUtil;
-import icons.AndroidIcons;
+import org.jetbrains.android.facet.AndroidFacet;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -29,18 +37,28 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.IOException;
-import java.util.Map;
+import java.util.List;
+import java.util.concurrent.Callable;
 
+/**
+ * Cache of the thumbnail icons shown in the editor gutter for drawable references.
+ * <p>
+ * Icons are decoded and scaled on a pooled thread rather than while the gutter is being painted;
+ * until an icon is ready, {@link #getIcon} returns a placeholder which paints nothing and repaints
+ * the components it was painted into once the real icon is available. The cache is bounded, and
+ * entries are dropped when the underlying file is modified, which is detected with the VFS modification
+ * stamp of the file so that painting the gutter doesn't access the disk. XML drawables are cached per
+ * configuration and theme, since they can render differently in each (for example at night or at
+ * another density).
+ */
 public class GutterIconCache {
   private static final Logger LOG = Logger.getInstance(GutterIconCache.class);
   private static final int MAX_WIDTH = 16;
   private static final int MAX_HEIGHT = 16;
-  private static final Icon NONE = AndroidIcons.Android; // placeholder
+  private static final int MAX_CACHED_ICONS = 500;
 
   private static final GutterIconCache ourInstance = new GutterIconCache();
-  // TODO: Timestamps?
-  private Map<String,Icon> myThumbnailCache = Maps.newHashMap();
+  private final Cache<String, LoadingIcon> myThumbnailCache = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_ICONS).build();
   private boolean myRetina;
   private static boolean ourRetinaEnabled = true;
 
@@ -52,85 +70,197 @@ public class GutterIconCache {
     return ourInstance;
   }
 
-  @Nullable
-  public Icon getIcon(@NotNull String path) {
+  /**
+   * Returns the gutter icon for the given bitmap file. If the icon has not been loaded yet, this returns
+   * a placeholder immediately and loads the image in the background.
+   */
+  @NotNull
+  public Icon getIcon(@NotNull final String path) {
+    return getIcon(path, path, new Callable<Icon>() {
+      @Override
+      public Icon call() throws Exception {
+        BufferedImage image = ImageIO.read(new File(path));
+        return image != null ? createIcon(image) : null;
+      }
+    });
+  }
+
+  /**
+   * Returns the gutter icon for the given drawable, which can be an XML drawable such as a vector or a
+   * state list. The drawable is rendered with layoutlib in the background; until then a placeholder is returned.
+   *
+   * @param path the path to the drawable file, used to cache and invalidate the icon
+   * @param drawable the drawable resource value to render
+   * @param configuration the configuration to render the drawable with
+   */
+  @NotNull
+  public Icon getIcon(@NotNull String path, @NotNull final ResourceValue drawable, @NotNull final Configuration configuration) {
+    String key = path + ':' + configuration.getFullConfig().getQualifierString() + ':' + configuration.getTheme();
+    return getIcon(path, key, new Callable<Icon>() {
+      @Override
+      public Icon call() throws Exception {
+        BufferedImage image = renderDrawable(drawable, configuration);
+        return image != null ? createIcon(image) : null;
+      }
+    });
+  }
+
+  @NotNull
+  private Icon getIcon(@NotNull String path, @NotNull String key, @NotNull Callable<Icon> loader) {
     boolean isRetina = UIUtil.isRetina();
     if (myRetina != isRetina) {
       myRetina = isRetina;
-      myThumbnailCache.clear();
+      myThumbnailCache.invalidateAll();
     }
-    Icon myIcon = myThumbnailCache.get(path);
-    if (myIcon == null) {
-      myIcon = createIcon(path);
 
-      if (myIcon == null) {
-        myIcon = NONE;
-      }
-
-      myThumbnailCache.put(path, myIcon);
+    VirtualFile file = LocalFileSystem.getInstance().findFileByPath(path);
+    long modificationStamp = file != null ? file.getModificationStamp() : -1;
+    LoadingIcon icon = myThumbnailCache.getIfPresent(key);
+    if (icon == null || icon.myModificationStamp != modificationStamp) {
+      icon = new LoadingIcon(modificationStamp);
+      myThumbnailCache.put(key, icon);
+      icon.load(path, loader);
     }
 
-    return myIcon != NONE ? myIcon : null;
+    return icon;
   }
 
   @Nullable
-  private static Icon createIcon(String path) {
+  private static BufferedImage renderDrawable(@NotNull final ResourceValue drawable, @NotNull Configuration configuration) throws Exception {
+    AndroidFacet facet = AndroidFacet.getInstance(configuration.getModule());
+    if (facet == null) {
+      return null;
+    }
+    RenderLogger logger = new RenderLogger(GutterIconCache.class.getSimpleName(), facet.getModule());
+    final RenderTask renderTask = RenderService.get(facet).createTask(null, configuration, logger, null);
+    if (renderTask == null) {
+      return null;
+    }
     try {
-      BufferedImage image = ImageIO.read(new File(path));
-      if (image != null) {
-        int imageWidth = image.getWidth();
-        int imageHeight = image.getHeight();
-        if (ourRetinaEnabled && UIUtil.isRetina()) {
-          BufferedImage scaled = image;
-          if (imageWidth > 2 * MAX_WIDTH || imageHeight > 2 * MAX_HEIGHT) {
-            double scale = 2 * Math.min(MAX_WIDTH / (double)imageWidth, MAX_HEIGHT / (double)imageHeight);
-            scaled = ImageUtils.scale(image, scale, scale);
-          }
+      // Layoutlib is not thread safe
+      return RenderService.runRenderAction(new Callable<BufferedImage>() {
+        @Override
+        public BufferedImage call() throws Exception {
+          return renderTask.renderDrawable(drawable);
+        }
+      });
+    }
+    finally {
+      renderTask.dispose();
+    }
+  }
 
-          // The Retina image uses a scale of 2, and the RetinaImage class creates an
-          // image of size w/scale, h/scale. If the width or height is less than the scale,
-          // this rounds to width or height 0, which will cause exceptions to be thrown.
-          // Don't attempt to create a Retina image for images like that. See issue 65676.
-          final int scale = 2;
-          if (scaled.getWidth() >= scale && scaled.getHeight() >= scale) {
-            try {
-              @SuppressWarnings("ConstantConditions")
-              Image hdpiImage = RetinaImage.createFrom(scaled, scale, null);
-              return new RetinaImageIcon(hdpiImage);
-            } catch (Throwable t) {
-              // Can't always create Retina images (see issue 65609); fall through to non-Retina code path
-              ourRetinaEnabled = false;
-            }
-          }
+  @Nullable
+  private static Icon createIcon(@NotNull BufferedImage image) {
+    int imageWidth = image.getWidth();
+    int imageHeight = image.getHeight();
+    if (ourRetinaEnabled && UIUtil.isRetina()) {
+      BufferedImage scaled = image;
+      if (imageWidth > 2 * MAX_WIDTH || imageHeight > 2 * MAX_HEIGHT) {
+        double scale = 2 * Math.min(MAX_WIDTH / (double)imageWidth, MAX_HEIGHT / (double)imageHeight);
+        scaled = ImageUtils.scale(image, scale, scale);
+      }
+
+      // The Retina image uses a scale of 2, and the RetinaImage class creates an
+      // image of size w/scale, h/scale. If the width or height is less than the scale,
+      // this rounds to width or height 0, which will cause exceptions to be thrown.
+      // Don't attempt to create a Retina image for images like that. See issue 65676.
+      final int scale = 2;
+      if (scaled.getWidth() >= scale && scaled.getHeight() >= scale) {
+        try {
+          @SuppressWarnings("ConstantConditions")
+          Image hdpiImage = RetinaImage.createFrom(scaled, scale, null);
+          return new RetinaImageIcon(hdpiImage);
+        } catch (Throwable t) {
+          // Can't always create Retina images (see issue 65609); fall through to non-Retina code path
+          ourRetinaEnabled = false;
         }
+      }
+    }
+
+    if (imageWidth > MAX_WIDTH || imageHeight > MAX_HEIGHT) {
+      double scale = Math.min(MAX_WIDTH / (double)imageWidth, MAX_HEIGHT / (double)imageHeight);
+
+      if (image.getType() == BufferedImage.TYPE_BYTE_INDEXED) {
+        // Indexed images look terrible if they are scaled directly; instead, paint into an ARGB blank image
+        BufferedImage bg = UIUtil.createImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_ARGB);
+        Graphics g = bg.getGraphics();
+        //noinspection UseJBColor
+        g.setColor(Gray.TRANSPARENT);
+        g.fillRect(0, 0, bg.getWidth(), bg.getHeight());
+        //noinspection ConstantConditions
+        UIUtil.drawImage(g, image, 0, 0, null);
+        g.dispose();
+        image = bg;
+      }
+
+      image = ImageUtils.scale(image, scale, scale);
+    }
+
+    return new ImageIcon(image);
+  }
+
+  /**
+   * Icon which paints nothing until the real icon has been loaded in the background, and then
+   * repaints the components it was painted into. If the icon can't be loaded, an error icon is shown.
+   */
+  private static class LoadingIcon implements Icon {
+    private final long myModificationStamp;
+    private final List<Component> myComponents = Lists.newArrayList();
+    private volatile Icon myIcon;
 
-        if (imageWidth > MAX_WIDTH || imageHeight > MAX_HEIGHT) {
-          double scale = Math.min(MAX_WIDTH / (double)imageWidth, MAX_HEIGHT / (double)imageHeight);
-
-          if (image.getType() == BufferedImage.TYPE_BYTE_INDEXED) {
-            // Indexed images look terrible if they are scaled directly; instead, paint into an ARGB blank image
-            BufferedImage bg = UIUtil.createImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_ARGB);
-            Graphics g = bg.getGraphics();
-            //noinspection UseJBColor
-            g.setColor(Gray.TRANSPARENT);
-            g.fillRect(0, 0, bg.getWidth(), bg.getHeight());
-            //noinspection ConstantConditions
-            UIUtil.drawImage(g, image, 0, 0, null);
-            g.dispose();
-            image = bg;
+    private LoadingIcon(long modificationStamp) {
+      myModificationStamp = modificationStamp;
+    }
+
+    private void load(@NotNull final String path, @NotNull final Callable<Icon> loader) {
+      ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+        @Override
+        public void run() {
+          Icon icon = null;
+          try {
+            icon = loader.call();
+          }
+          catch (Exception e) {
+            LOG.warn(String.format("Could not read icon image %1$s", path), e);
           }
 
-          image = ImageUtils.scale(image, scale, scale);
+          myIcon = icon != null ? icon : AllIcons.General.Error;
+          UIUtil.invokeLaterIfNeeded(new Runnable() {
+            @Override
+            public void run() {
+              for (Component component : myComponents) {
+                component.repaint();
+              }
+              myComponents.clear();
+            }
+          });
         }
+      });
+    }
 
-        return new ImageIcon(image);
+    @Override
+    public void paintIcon(Component c, Graphics g, int x, int y) {
+      Icon icon = myIcon;
+      if (icon != null) {
+        icon.paintIcon(c, g, x, y);
+      }
+      else if (c != null && !myComponents.contains(c)) {
+        myComponents.add(c);
       }
     }
-    catch (IOException e) {
-      LOG.error(String.format("Could not read icon image %1$s", path), e);
+
+    @Override
+    public int getIconWidth() {
+      Icon icon = myIcon;
+      return icon != null ? icon.getIconWidth() : MAX_WIDTH;
     }
 
-    return null;
+    @Override
+    public int getIconHeight() {
+      Icon icon = myIcon;
+      return icon != null ? icon.getIconHeight() : MAX_HEIGHT;
+    }
   }
 
   private static class RetinaImageIcon extends ImageIcon {
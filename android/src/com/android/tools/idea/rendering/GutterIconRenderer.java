@@ -15,7 +15,8 @@
  */
 package com.android.tools.idea.rendering;
 
-import com.intellij.icons.AllIcons;
+import com.android.ide.common.rendering.api.ResourceValue;
+import com.android.tools.idea.configurations.Configuration;
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.actionSystem.CommonDataKeys;
@@ -36,20 +37,38 @@ import java.io.File;
 public class GutterIconRenderer extends com.intellij.openapi.editor.markup.GutterIconRenderer implements DumbAware {
   private final PsiElement myElement;
   private final File myFile;
+  @Nullable private final ResourceValue myDrawable;
+  @Nullable private final Configuration myConfiguration;
   private Icon myIcon;
 
   public GutterIconRenderer(@NotNull PsiElement element, @NotNull File file) {
+    this(element, file, null, null);
+  }
+
+  /**
+   * Creates a gutter icon renderer for an XML drawable, such as a vector drawable, which is rendered
+   * with the given configuration rather than read as a bitmap
+   */
+  public GutterIconRenderer(@NotNull PsiElement element,
+                            @NotNull File file,
+                            @Nullable ResourceValue drawable,
+                            @Nullable Configuration configuration) {
     myElement = element;
     myFile = file;
+    myDrawable = drawable;
+    myConfiguration = configuration;
   }
 
   @NotNull
   @Override
   public Icon getIcon() {
     if (myIcon == null) {
-      myIcon = GutterIconCache.getInstance().getIcon(myFile.getPath());
-      if (myIcon == null) {
-        myIcon = AllIcons.General.Error;
+      GutterIconCache cache = GutterIconCache.getInstance();
+      if (myDrawable != null && myConfiguration != null) {
+        myIcon = cache.getIcon(myFile.getPath(), myDrawable, myConfiguration);
+      }
+      else {
+        myIcon = cache.getIcon(myFile.getPath());
       }
     }
 
@@ -27,6 +27,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.awt.image.ImageObserver;
 
 import static java.awt.RenderingHints.*;
@@ -63,6 +64,35 @@ public class ImageUtils {
     }
     BufferedImage rotated = new BufferedImage(w1, h1, source.getType());
 
+    if (source.getType() == BufferedImage.TYPE_INT_ARGB && source.getRaster().getDataBuffer().getSize() == w * h) {
+      // Work directly on the pixel arrays rather than through getRGB/setRGB for each pixel
+      int[] src = ((DataBufferInt)source.getRaster().getDataBuffer()).getData();
+      int[] dst = ((DataBufferInt)rotated.getRaster().getDataBuffer()).getData();
+      if (degrees == 0) {
+        System.arraycopy(src, 0, dst, 0, w * h);
+        return rotated;
+      }
+      for (int y = 0; y < h; y++) {
+        int rowStart = y * w;
+        for (int x = 0; x < w; x++) {
+          int index;
+          switch (degrees) {
+            case 90:
+              index = x * w1 + (h - y - 1);
+              break;
+            case 180:
+              index = (h - y - 1) * w1 + (w - x - 1);
+              break;
+            default: // 270
+              index = (w - x - 1) * w1 + y;
+              break;
+          }
+          dst[index] = src[rowStart + x];
+        }
+      }
+      return rotated;
+    }
+
     for (int x = 0; x < w; x++) {
       for (int y = 0; y < h; y++) {
         int v = source.getRGB(x, y);
@@ -46,6 +46,7 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static com.android.SdkConstants.ANDROID_URI;
 import static com.android.SdkConstants.ATTR_ID;
@@ -146,6 +147,9 @@ public abstract class LocalResourceRepository extends AbstractResourceRepository
 
   protected long myGeneration;
 
+  /** Log of the resources changed at recent generations; see {@link #getChangesSince(long)} */
+  protected final ResourceChangeLog myChangeLog = new ResourceChangeLog();
+
   protected LocalResourceRepository(@NotNull String displayName) {
     super(false);
     myDisplayName = displayName;
@@ -179,6 +183,11 @@ public abstract class LocalResourceRepository extends AbstractResourceRepository
   }
 
   protected void invalidateItemCaches(@Nullable ResourceType... types) {
+    if (types != null) {
+      for (ResourceType type : types) {
+        myChangeLog.record(myGeneration, type, null);
+      }
+    }
     if (myParents != null) {
       for (MultiResourceRepository parent : myParents) {
         parent.invalidateCache(this, types);
@@ -208,6 +217,28 @@ public abstract class LocalResourceRepository extends AbstractResourceRepository
     return myGeneration;
   }
 
+  /**
+   * Records that the value of the given item changed at the current generation, such that clients
+   * looking at {@link #getChangesSince(long)} only need to update that single item
+   */
+  protected void recordChange(@NonNull ResourceItem item) {
+    myChangeLog.record(myGeneration, item.getType(), item.getName());
+  }
+
+  /**
+   * Returns the resources which have changed since the given generation, if known. This lets clients which cache
+   * data derived from this repository update just the affected entries rather than recomputing everything when
+   * the {@link #getModificationCount()} changes.
+   *
+   * @param generation a generation previously returned by {@link #getModificationCount()}
+   * @return a map from changed types to the changed names of that type (where a null set means any name of that
+   * type), or null if the changes are not known, in which case the caller must assume everything has changed
+   */
+  @Nullable
+  public Map<ResourceType, Set<String>> getChangesSince(long generation) {
+    return myChangeLog.getChangesSince(generation, getModificationCount());
+  }
+
   @Nullable
   public VirtualFile getMatchingFile(@NonNull VirtualFile file, @NonNull ResourceType type, @NonNull FolderConfiguration config) {
     List<VirtualFile> matches = getMatchingFiles(file, type, config);
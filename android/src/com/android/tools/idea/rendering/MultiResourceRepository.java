@@ -21,6 +21,7 @@ import com.android.ide.common.res2.ResourceItem;
 import com.android.resources.ResourceType;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.psi.PsiFile;
@@ -30,6 +31,7 @@ import org.jetbrains.annotations.Nullable;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @SuppressWarnings({
   "deprecation",  // Deprecated com.android.util.Pair is required by ProjectCallback interface
@@ -96,21 +98,60 @@ public abstract class MultiResourceRepository extends LocalResourceRepository {
 
     // See if any of the delegates have changed
     boolean changed = false;
+    List<Map<ResourceType, Set<String>>> childChanges = Lists.newArrayList();
     for (int i = myChildren.size() - 1; i >= 0; i--) {
       LocalResourceRepository resources = myChildren.get(i);
       long rev = resources.getModificationCount();
       if (rev != myModificationCounts[i]) {
+        if (childChanges != null) {
+          Map<ResourceType, Set<String>> changes = resources.getChangesSince(myModificationCounts[i]);
+          if (changes != null) {
+            childChanges.add(changes);
+          }
+          else {
+            childChanges = null;
+          }
+        }
         myModificationCounts[i] = rev;
         changed = true;
       }
     }
     if (changed) {
       myGeneration++;
+
+      // Carry over the change details from the children, such that clients can find out what changed
+      // in this repository as well
+      if (childChanges != null) {
+        for (Map<ResourceType, Set<String>> changes : childChanges) {
+          for (Map.Entry<ResourceType, Set<String>> entry : changes.entrySet()) {
+            Set<String> names = entry.getValue();
+            if (names == null) {
+              myChangeLog.record(myGeneration, entry.getKey(), null);
+            }
+            else {
+              for (String name : names) {
+                myChangeLog.record(myGeneration, entry.getKey(), name);
+              }
+            }
+          }
+        }
+      }
     }
 
     return myGeneration;
   }
 
+  @Nullable
+  @Override
+  public Map<ResourceType, Set<String>> getChangesSince(long generation) {
+    if (myChildren.size() == 1) {
+      // We report the modification count of the single child, so use its change log as well
+      return myChildren.get(0).getChangesSince(generation);
+    }
+
+    return super.getChangesSince(generation);
+  }
+
   @Nullable
   @Override
   public DataBindingInfo getDataBindingInfoForLayout(String layoutName) {
@@ -15,7 +15,11 @@
  */
 package com.android.tools.idea.rendering;
 
-import com.android.tools.lint.detector.api.ClassContext;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import com.google.common.io.ByteStreams;
 import com.google.common.io.Files;
 import com.intellij.openapi.diagnostic.Logger;
@@ -28,7 +32,10 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static com.android.SdkConstants.DOT_CLASS;
 import static com.android.tools.idea.rendering.ClassConverter.isValidClassFile;
@@ -40,9 +47,23 @@ import static com.android.tools.idea.rendering.ClassConverter.isValidClassFile;
 public abstract class RenderClassLoader extends ClassLoader {
   protected static final Logger LOG = Logger.getInstance(RenderClassLoader.class);
 
+  /** Cache of rewritten class files, keyed by the hash of the original class file contents */
+  private static final Cache<HashCode, byte[]> ourRewrittenClasses = CacheBuilder.newBuilder()
+    .maximumWeight(16 * 1024 * 1024)
+    .weigher(new Weigher<HashCode, byte[]>() {
+      @Override
+      public int weigh(@NotNull HashCode key, @NotNull byte[] value) {
+        return value.length;
+      }
+    })
+    .build();
+
   protected UrlClassLoader myJarClassLoader;
   protected boolean myInsideJarClassLoader;
 
+  /** Output folders whose {@link ClassFileIndex} has been refreshed by this class loader */
+  private final Set<File> myRefreshedFolders = Collections.synchronizedSet(new HashSet<File>());
+
   public RenderClassLoader(@Nullable ClassLoader parent) {
     super(parent);
   }
@@ -158,50 +179,32 @@ public abstract class RenderClassLoader extends ClassLoader {
 
   @NotNull
   protected byte[] convertClass(@NotNull byte[] data) {
-    return ClassConverter.rewriteClass(data);
+    // Class loaders are recreated after every build, but most of the classes they load are unchanged;
+    // reuse the rewritten bytecode for identical class file contents
+    HashCode hash = Hashing.sha1().hashBytes(data);
+    byte[] rewritten = ourRewrittenClasses.getIfPresent(hash);
+    if (rewritten == null) {
+      rewritten = ClassConverter.rewriteClass(data);
+      ourRewrittenClasses.put(hash, rewritten);
+    }
+    return rewritten;
   }
 
   @Nullable
-  private static File findClassFile(File parent, String className) {
-    if (!parent.exists()) {
-      return null;
-    }
-
-    String path = ClassContext.getInternalName(className).replace('/', File.separatorChar);
-    File file = new File(parent, path + DOT_CLASS);
-    if (file.exists()) {
-      return file;
-    }
-
-    if (className.indexOf('$') != -1) {
-      // The class name does not contain an ambiguous inner class name (inner classes
-      // have already been separated by $ instead of .) so no need to do a search.
-      return null;
+  private File findClassFile(File parent, String className) {
+    ClassFileIndex index = ClassFileIndex.get(parent);
+    if (myRefreshedFolders.add(parent)) {
+      index.refresh();
     }
+    return index.findClassFile(className);
+  }
 
-    // Inner classes? Dots are ambiguous (e.g. foo.bar.Foo.Bar), so try all valid combinations
-    // (fully qualified names usually use upper case for class names and lower case for package names, which
-    // is what the above getInternalName will use to decide between packages and classes, but
-    // it's not a language requirement, which is why we fall back to this)
-    //
-    // The following loop will for foo.bar.Foo.Bar try the relative paths
-    //    foo/bar/Foo/Baz.class
-    //    foo/bar/Foo$Baz.class
-    //    foo/bar$Foo$Baz.class
-    //    foo$bar$Foo$Baz.class
-    path = className.replace('.', File.separatorChar);
-    while (true) {
-      file = new File(parent, path + DOT_CLASS);
-      if (file.exists()) {
-        return file;
-      }
-
-      int last = path.lastIndexOf(File.separatorChar);
-      if (last == -1) {
-        return null;
-      }
-      path = path.substring(0, last) + '$' + path.substring(last + 1);
-    }
+  /**
+   * Makes the next lookup in each output folder bring its {@link ClassFileIndex} up to date first, such that
+   * class files added since this class loader first looked in the folder are found
+   */
+  protected void refreshClassFileIndices() {
+    myRefreshedFolders.clear();
   }
 
   @NotNull
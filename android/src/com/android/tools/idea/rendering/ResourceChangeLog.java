@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import com.android.resources.ResourceType;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import gnu.trove.TLongHashSet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A bounded log of which resources changed at which generation of a {@link LocalResourceRepository}.
+ * <p>
+ * Clients which cache data derived from a repository (such as configured resource maps) can use
+ * {@link #getChangesSince(long, long)} to find out exactly what changed since they last looked, and update
+ * their caches in place instead of discarding them. The log is only consulted when every generation in the
+ * requested range has been recorded; any generation bump that was not recorded (for example a full rescan)
+ * makes the answer unknown, and clients must then fall back to recomputing everything.
+ */
+public class ResourceChangeLog {
+  /** Maximum number of changes remembered; older changes are forgotten */
+  private static final int MAX_ENTRIES = 64;
+
+  private final ArrayDeque<Change> myChanges = new ArrayDeque<Change>(MAX_ENTRIES);
+
+  /**
+   * Records that the given resource changed at the given generation
+   *
+   * @param generation the repository generation after the change
+   * @param type the type of the changed resource
+   * @param name the name of the changed resource, or null if any resource of the given type may have changed
+   */
+  public synchronized void record(long generation, @NotNull ResourceType type, @Nullable String name) {
+    if (myChanges.size() == MAX_ENTRIES) {
+      myChanges.removeFirst();
+    }
+    myChanges.addLast(new Change(generation, type, name));
+  }
+
+  /** Forgets all recorded changes */
+  public synchronized void clear() {
+    myChanges.clear();
+  }
+
+  /**
+   * Returns the resources changed after generation {@code since}, up to and including generation {@code current}.
+   * The result maps each changed type to the set of changed names within that type; a null set means that any
+   * resource of that type may have changed.
+   *
+   * @param since the generation the caller last saw
+   * @param current the current generation of the repository
+   * @return the changed resources, or null if the changes are not fully known
+   */
+  @Nullable
+  public synchronized Map<ResourceType, Set<String>> getChangesSince(long since, long current) {
+    if (current < since) {
+      return null;
+    }
+    Map<ResourceType, Set<String>> changes = Maps.newEnumMap(ResourceType.class);
+    TLongHashSet generations = new TLongHashSet();
+    Iterator<Change> iterator = myChanges.descendingIterator();
+    while (iterator.hasNext()) {
+      Change change = iterator.next();
+      if (change.generation <= since) {
+        break;
+      }
+      if (change.generation > current) {
+        // Recorded after the caller sampled the generation; it will see it next time
+        continue;
+      }
+      generations.add(change.generation);
+      if (change.name == null) {
+        changes.put(change.type, null);
+      }
+      else if (!changes.containsKey(change.type)) {
+        changes.put(change.type, Sets.newHashSet(change.name));
+      }
+      else {
+        Set<String> names = changes.get(change.type);
+        if (names != null) {
+          names.add(change.name);
+        }
+      }
+    }
+
+    if (generations.size() != current - since) {
+      // Some generations were bumped without recording what changed
+      return null;
+    }
+
+    return changes;
+  }
+
+  private static class Change {
+    private final long generation;
+    private final ResourceType type;
+    private final String name;
+
+    private Change(long generation, @NotNull ResourceType type, @Nullable String name) {
+      this.generation = generation;
+      this.type = type;
+      this.name = name;
+    }
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.hash.HashCode;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.android.util.AndroidUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.zip.CRC32;
+
+import static com.android.SdkConstants.DOT_CLASS;
+
+/**
+ * Cache of R class bytecode generated by {@link AarResourceClassGenerator}, keyed by a hash of everything the
+ * generated class depends on (see {@link AarResourceClassGenerator}). The cache is kept both in memory and on
+ * disk, such that R classes for libraries whose resources haven't changed are reused across builds and IDE
+ * sessions rather than generated again. Disk entries carry a length and checksum header, and entries which
+ * don't match it are dropped.
+ */
+class ResourceClassCache {
+  private static final Logger LOG = Logger.getInstance(ResourceClassCache.class);
+
+  /** Maximum number of classes kept on disk; when exceeded, the least recently used half is removed */
+  private static final int MAX_DISK_ENTRIES = 2000;
+
+  private static final Cache<HashCode, byte[]> ourClasses = CacheBuilder.newBuilder()
+    .maximumWeight(8 * 1024 * 1024)
+    .weigher(new Weigher<HashCode, byte[]>() {
+      @Override
+      public int weigh(@NotNull HashCode key, @NotNull byte[] value) {
+        return value.length;
+      }
+    })
+    .build();
+
+  /** Size of the entry header: the length and checksum of the bytecode */
+  private static final int HEADER_SIZE = 4 + 8;
+
+  private static boolean ourTrimmed;
+
+  private ResourceClassCache() {
+  }
+
+  /** Returns the bytecode previously stored for the given key, if any */
+  @Nullable
+  static byte[] get(@NotNull HashCode key) {
+    byte[] data = ourClasses.getIfPresent(key);
+    if (data != null) {
+      return data;
+    }
+
+    File file = getCacheFile(key);
+    if (file.isFile()) {
+      try {
+        data = readEntry(file);
+      }
+      catch (IOException e) {
+        LOG.debug(e);
+      }
+      if (data == null) {
+        // Truncated or otherwise corrupt; drop it so it gets written again
+        FileUtil.delete(file);
+        return null;
+      }
+      //noinspection ResultOfMethodCallIgnored
+      file.setLastModified(System.currentTimeMillis());
+      ourClasses.put(key, data);
+      return data;
+    }
+
+    return null;
+  }
+
+  /** Stores the generated bytecode for the given key */
+  static void put(@NotNull HashCode key, @NotNull byte[] data) {
+    ourClasses.put(key, data);
+
+    // Write to a temporary file first and move it into place, such that a crash or another IDE instance
+    // writing the same entry never leaves a partially written entry under the final name
+    File file = getCacheFile(key);
+    File tempFile = null;
+    try {
+      File dir = file.getParentFile();
+      FileUtil.createDirectory(dir);
+      tempFile = FileUtil.createTempFile(dir, key.toString(), ".tmp", true, false);
+      writeEntry(tempFile, data);
+      FileUtil.rename(tempFile, file);
+    }
+    catch (IOException e) {
+      // Not fatal; we'll just generate the class again next session
+      LOG.debug(e);
+      if (tempFile != null) {
+        FileUtil.delete(tempFile);
+      }
+    }
+    trimIfNecessary(file.getParentFile());
+  }
+
+  /** Writes an entry: the length and CRC32 checksum of the bytecode, followed by the bytecode itself */
+  private static void writeEntry(@NotNull File file, @NotNull byte[] data) throws IOException {
+    CRC32 checksum = new CRC32();
+    checksum.update(data);
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    try {
+      out.writeInt(data.length);
+      out.writeLong(checksum.getValue());
+      out.write(data);
+    }
+    finally {
+      out.close();
+    }
+  }
+
+  /** Reads an entry written by {@link #writeEntry(File, byte[])}, or returns null if it's not valid */
+  @Nullable
+  private static byte[] readEntry(@NotNull File file) throws IOException {
+    if (file.length() < HEADER_SIZE) {
+      return null;
+    }
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    try {
+      int length = in.readInt();
+      long expectedChecksum = in.readLong();
+      if (length != file.length() - HEADER_SIZE) {
+        return null;
+      }
+      byte[] data = new byte[length];
+      in.readFully(data);
+      CRC32 checksum = new CRC32();
+      checksum.update(data);
+      return checksum.getValue() == expectedChecksum ? data : null;
+    }
+    finally {
+      in.close();
+    }
+  }
+
+  @NotNull
+  private static File getCacheFile(@NotNull HashCode key) {
+    return new File(AndroidUtils.getAndroidSystemDirectoryOsPath() + File.separator + "r-classes", key.toString() + DOT_CLASS);
+  }
+
+  private static synchronized void trimIfNecessary(@NotNull File dir) {
+    if (ourTrimmed) {
+      return;
+    }
+    ourTrimmed = true;
+
+    File[] files = dir.listFiles();
+    if (files == null || files.length <= MAX_DISK_ENTRIES) {
+      return;
+    }
+    Arrays.sort(files, new Comparator<File>() {
+      @Override
+      public int compare(File file1, File file2) {
+        long delta = file1.lastModified() - file2.lastModified();
+        return delta < 0 ? -1 : delta > 0 ? 1 : 0;
+      }
+    });
+    for (int i = 0; i < files.length / 2; i++) {
+      FileUtil.delete(files[i]);
+    }
+  }
+}
@@ -899,6 +899,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
                 if (style instanceof PsiResourceItem) {
                   if (((PsiResourceItem)style).recomputeValue()) {
                     myGeneration++;
+                    recordChange(style);
                   }
                   return;
                 }
@@ -1032,6 +1033,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
                   if (style instanceof PsiResourceItem) {
                     if (((PsiResourceItem)style).recomputeValue()) {
                       myGeneration++;
+                      recordChange(style);
                     }
 
                     if (style.getType() == ResourceType.ATTR) {
@@ -1041,6 +1043,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
                         if (declareStyleable instanceof PsiResourceItem) {
                           if (((PsiResourceItem)declareStyleable).recomputeValue()) {
                             myGeneration++;
+                            recordChange(declareStyleable);
                           }
                         }
                       }
@@ -1331,6 +1334,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
                   if (style instanceof PsiResourceItem) {
                     if (((PsiResourceItem)style).recomputeValue()) {
                       myGeneration++;
+                      recordChange(style);
                     }
                     return;
                   }
@@ -1419,6 +1423,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
                       if (style instanceof PsiResourceItem) {
                         if (((PsiResourceItem)style).recomputeValue()) {
                           myGeneration++;
+                          recordChange(style);
                         }
                         return;
                       }
@@ -1479,6 +1484,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
             boolean cleared = ((PsiResourceItem)item).recomputeValue();
             if (cleared) { // Only bump revision if this is a value which has already been observed!
               myGeneration++;
+              recordChange(item);
             }
           }
           return;
@@ -1494,6 +1500,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
             boolean cleared = ((PsiResourceItem)item).recomputeValue();
             if (cleared) { // Only bump revision if this is a value which has already been observed!
               myGeneration++;
+              recordChange(item);
             }
           }
           break;
@@ -16,6 +16,7 @@
 package com.android.tools.idea.rendering.multi;
 
 import com.android.ide.common.rendering.HardwareConfigHelper;
+import com.android.ide.common.rendering.api.IImageFactory;
 import com.android.ide.common.rendering.api.RenderSession;
 import com.android.ide.common.rendering.api.Result;
 import com.android.ide.common.rendering.api.Result.Status;
@@ -31,6 +32,7 @@ import com.android.tools.idea.configurations.*;
 import com.android.tools.idea.ddms.screenshot.DeviceArtPainter;
 import com.android.tools.idea.rendering.*;
 import com.android.utils.SdkUtils;
+import com.google.common.cache.Cache;
 import com.intellij.icons.AllIcons;
 import com.intellij.ide.ui.UISettings;
 import com.intellij.openapi.Disposable;
@@ -157,13 +159,16 @@ public class RenderPreview implements Disposable {
   private int myDirty;
 
   /**
-   * TODO: Figure out something more memory efficient than storing all these images. Maybe resize it down to half size initially!
-   * Or maybe only if it's made setVisible
+   * The rendered image, scaled down to at most twice the thumbnail size (enough for Retina thumbnails)
+   * such that we don't keep full device size images around for every preview
    */
   private BufferedImage myFullImage;
   private int myFullWidth;
   private int myFullHeight;
 
+  /** The cache key of the contents and configuration the most recent render was started for */
+  @Nullable private String myRenderedKey;
+
   /**
    * Creates a new {@linkplain RenderPreview}
    *
@@ -529,6 +534,9 @@ public class RenderPreview implements Disposable {
    * Render immediately (on the current thread)
    */
   void renderSync() {
+    // The key is computed before rendering, so that a render which races with an edit is stored under the
+    // key of the contents it rendered, not under the key of the edited contents
+    myRenderedKey = getRenderCacheKey();
     if (!tryRenderSync()) {
       disposeThumbnail();
     }
@@ -567,7 +575,7 @@ public class RenderPreview implements Disposable {
       renderTask.setIncludedWithin(myIncludedWithin);
     }
 
-    RenderResult result = renderTask.render();
+    RenderResult result = renderTask.render(SCRATCH_IMAGE_FACTORY);
     RenderSession session = result != null ? result.getSession() : null;
     if (session != null) {
       Result render = session.getResult();
@@ -599,7 +607,8 @@ public class RenderPreview implements Disposable {
       if (render.isSuccess()) {
         RenderedImage renderedImage = result.getImage();
         if (renderedImage != null) {
-          myFullImage = renderedImage.getOriginalImage();
+          // The rendered image is a scratch buffer which will be reused by the next render on this thread
+          myFullImage = copyAtThumbnailSize(renderedImage.getOriginalImage());
         }
       }
 
@@ -615,6 +624,135 @@ public class RenderPreview implements Disposable {
     }
   }
 
+  /**
+   * Returns a copy of the given rendered image, scaled down to no more than twice the thumbnail size
+   */
+  @NotNull
+  private BufferedImage copyAtThumbnailSize(@NotNull BufferedImage image) {
+    int maxWidth = 2 * Math.max(getLayoutWidth(), myMaxWidth);
+    int maxHeight = 2 * Math.max(getLayoutHeight(), myMaxHeight);
+    double scale = 1;
+    if (maxWidth > 0 && maxHeight > 0) {
+      scale = Math.min(1, Math.min(maxWidth / (double)image.getWidth(), maxHeight / (double)image.getHeight()));
+    }
+    if (scale < 1) {
+      return ImageUtils.scale(image, scale, scale);
+    }
+
+    @SuppressWarnings("UndesirableClassUsage")
+    BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+    Graphics2D g = copy.createGraphics();
+    g.drawImage(image, 0, 0, null);
+    g.dispose();
+    return copy;
+  }
+
+  /**
+   * Returns a key identifying what this preview renders: the input file and its current contents, the
+   * app resources and the full configuration. Used to cache rendered previews in the {@link RenderPreviewManager}
+   * such that previews scrolled back into view don't have to be rendered again.
+   *
+   * @return the key, or null if this preview can't be cached
+   */
+  @Nullable
+  String getRenderCacheKey() {
+    Module module = myRenderContext.getModule();
+    if (module == null) {
+      return null;
+    }
+    Configuration configuration = myAlternateInput != null && myAlternateConfiguration != null
+                                  ? myAlternateConfiguration : myConfiguration;
+    PsiFile psiFile;
+    if (myAlternateInput != null) {
+      psiFile = AndroidPsiUtils.getPsiFileSafely(module.getProject(), myAlternateInput);
+    } else {
+      psiFile = myRenderContext.getXmlFile();
+    }
+    Device device = configuration.getDevice();
+    State state = configuration.getDeviceState();
+    if (psiFile == null || psiFile.getVirtualFile() == null || device == null || state == null) {
+      return null;
+    }
+    LocalResourceRepository resources = AppResourceRepository.getAppResources(module, false);
+    long resourceGeneration = resources != null ? resources.getModificationCount() : 0;
+
+    return psiFile.getVirtualFile().getPath() + ':' + psiFile.getModificationStamp() + ':' + resourceGeneration + ':' +
+           configuration.getTheme() + ':' + device.getId() + ':' + state.getName() + ':' +
+           configuration.getFullConfig().getUniqueKey() + ':' +
+           (myIncludedWithin != null && myIncludedWithin != IncludeReference.NONE ? myIncludedWithin.getFromFile().getPath() : "");
+  }
+
+  /**
+   * Stores the result of the most recent render in the given cache
+   */
+  void storeInCache(@NotNull Cache<String, CachedRender> cache) {
+    String key = myRenderedKey;
+    myRenderedKey = null;
+    if (key != null && (myFullImage != null || myError != null)) {
+      cache.put(key, new CachedRender(myFullImage, myError));
+    }
+  }
+
+  /**
+   * Restores the rendering of this preview from the given cache, if it contains a rendering of
+   * the current contents and configuration
+   *
+   * @return true if the preview was restored from the cache
+   */
+  boolean restoreFromCache(@NotNull Cache<String, CachedRender> cache) {
+    String key = getRenderCacheKey();
+    CachedRender cached = key != null ? cache.getIfPresent(key) : null;
+    if (cached == null) {
+      return false;
+    }
+
+    disposeThumbnail();
+    myFullImage = cached.image;
+    myError = cached.error;
+    if (myError != null) {
+      createErrorThumbnail();
+    }
+    return true;
+  }
+
+  /** A rendered preview image (or render error), cached across preview visibility changes */
+  static class CachedRender {
+    @Nullable private final BufferedImage image;
+    @Nullable private final String error;
+
+    private CachedRender(@Nullable BufferedImage image, @Nullable String error) {
+      this.image = image;
+      this.error = error;
+    }
+  }
+
+  /**
+   * Image factory which lets layoutlib render into a per-thread scratch image rather than allocating a new
+   * device size image for every preview. The renders are serialized by the render lock, and each
+   * render thread copies the result out (at thumbnail size) before it renders again.
+   */
+  private static final IImageFactory SCRATCH_IMAGE_FACTORY = new IImageFactory() {
+    private final ThreadLocal<BufferedImage> myScratchImage = new ThreadLocal<BufferedImage>();
+
+    @SuppressWarnings("UndesirableClassUsage") // Don't need Retina for layoutlib rendering; will scale down anyway
+    @Override
+    public BufferedImage getImage(int width, int height) {
+      BufferedImage image = myScratchImage.get();
+      if (image == null || image.getWidth() != width || image.getHeight() != height) {
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        myScratchImage.set(image);
+      }
+      else {
+        // Layoutlib doesn't clear the image unless it has a background color override
+        Graphics2D g = image.createGraphics();
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(0, 0, width, height);
+        g.dispose();
+      }
+      return image;
+    }
+  };
+
   @Nullable
   private BufferedImage getThumbnail() {
     if (myThumbnail == null && myFullImage != null) {
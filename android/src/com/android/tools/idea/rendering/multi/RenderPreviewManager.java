@@ -36,6 +36,8 @@ import com.android.tools.idea.model.AndroidModuleInfo;
 import com.android.tools.idea.rendering.AppResourceRepository;
 import com.android.tools.idea.rendering.Locale;
 import com.android.tools.idea.rendering.ResourceHelper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ApplicationManager;
@@ -48,6 +50,7 @@ import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.xml.XmlFile;
 import com.intellij.util.Alarm;
+import com.intellij.util.ConcurrencyUtil;
 import com.intellij.util.containers.IntArrayList;
 import com.intellij.util.ui.Animator;
 import org.jetbrains.android.facet.AndroidFacet;
@@ -59,6 +62,10 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import static com.android.tools.idea.configurations.ConfigurationListener.CFG_DEVICE;
 import static com.android.tools.idea.configurations.ConfigurationListener.CFG_DEVICE_STATE;
@@ -85,7 +92,7 @@ public class RenderPreviewManager implements Disposable {
   static final int TITLE_HEIGHT = 14;
 
   private static double ourScale = 1.0;
-  private static final int RENDER_DELAY = 150;
+  private static final int MAX_CACHED_RENDERS = 100;
   private static final int MAX_WIDTH = 200;
   @SuppressWarnings("SuspiciousNameCombination")
   private static final int MAX_HEIGHT = MAX_WIDTH;
@@ -131,6 +138,30 @@ public class RenderPreviewManager implements Disposable {
   @SuppressWarnings("ConstantConditions")
   private final @NotNull Alarm myAlarm = RENDER_ASYNC ? new Alarm(POOLED_THREAD, this) : new Alarm(SWING_THREAD, this);
 
+  /**
+   * Number of threads rendering previews. The layoutlib render itself is serialized by the render lock,
+   * and resource resolvers are looked up under the lock of the {@link ResourceResolverCache}, but the
+   * rest of the work around it (creating the render task, scaling and framing the thumbnail) runs in parallel.
+   */
+  private static final int RENDER_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
+  /** Executor shared by all preview managers; {@link RenderRequest}s are ordered by priority */
+  private static final ExecutorService ourRenderExecutor = createRenderExecutor();
+
+  /** Rendered previews, keyed by {@link RenderPreview#getRenderCacheKey()} */
+  private final Cache<String, RenderPreview.CachedRender> myRenderCache = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_RENDERS).build();
+
+  private volatile boolean myDisposed;
+
+  @NotNull
+  private static ExecutorService createRenderExecutor() {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(RENDER_THREADS, RENDER_THREADS, 60, TimeUnit.SECONDS,
+                                                         new PriorityBlockingQueue<Runnable>(),
+                                                         ConcurrencyUtil.newNamedThreadFactory("Render Preview"));
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
   /**
    * Creates a {@link RenderPreviewManager} associated with the given canvas
    *
@@ -1317,6 +1348,12 @@ public class RenderPreviewManager implements Disposable {
       beginRenderScheduling();
 
       myAlarm.cancelAllRequests();
+      for (RenderPreview preview : myPreviews) {
+        Runnable pending = preview.getPendingRendering();
+        if (pending instanceof RenderRequest) {
+          ((RenderRequest)pending).cancel();
+        }
+      }
 
       // Process in visual order
       ArrayList<RenderPreview> visualOrder = new ArrayList<RenderPreview>(myPreviews);
@@ -1344,23 +1381,22 @@ public class RenderPreviewManager implements Disposable {
   }
 
   /**
-   * Reset rendering scheduling. The next render request will be scheduled
-   * after a single delay unit.
+   * Reset rendering scheduling. Subsequent render requests are ordered after
+   * each other, in the order they are scheduled, within their priority class.
    */
   public void beginRenderScheduling() {
     myPendingRenderCount = 0;
   }
 
   /**
-   * Schedule rendering the given preview. Each successive call will add an additional
-   * delay unit to the schedule from the previous {@link #scheduleRender(RenderPreview)}
-   * call, until {@link #beginRenderScheduling()} is called again.
+   * Schedule rendering the given preview. Visible and zoomed previews are rendered
+   * before the others; within the same priority, previews are rendered in the order
+   * they are scheduled since the last {@link #beginRenderScheduling()} call.
    *
    * @param preview the preview to render
    */
   public void scheduleRender(@NotNull RenderPreview preview) {
-    myPendingRenderCount++;
-    scheduleRender(preview, myPendingRenderCount * RENDER_DELAY);
+    scheduleRender(preview, 0);
   }
 
   /**
@@ -1373,23 +1409,88 @@ public class RenderPreviewManager implements Disposable {
     Runnable pending = preview.getPendingRendering();
     if (pending != null) {
       myAlarm.cancelRequest(pending);
-    }
-    Runnable request = new Runnable() {
-      @Override
-      public void run() {
-        preview.setPendingRendering(null);
-        preview.updateSize();
-        preview.renderSync();
-        ApplicationManager.getApplication().invokeLater(new Runnable() {
-          @Override
-          public void run() {
-            redraw();
-          }
-        });
+      if (pending instanceof RenderRequest) {
+        ((RenderRequest)pending).cancel();
       }
-    };
+    }
+
+    // If we've already rendered this exact configuration of the current file contents (for example
+    // before the preview was scrolled out of view), just reuse it
+    if (preview.restoreFromCache(myRenderCache)) {
+      preview.setPendingRendering(null);
+      redraw();
+      return;
+    }
+
+    myPendingRenderCount++;
+    final RenderRequest request = new RenderRequest(preview, myPendingRenderCount);
     preview.setPendingRendering(request);
-    myAlarm.addRequest(request, delay);
+    if (delay > 0) {
+      myAlarm.addRequest(new Runnable() {
+        @Override
+        public void run() {
+          ourRenderExecutor.execute(request);
+        }
+      }, delay);
+    }
+    else {
+      ourRenderExecutor.execute(request);
+    }
+  }
+
+  /**
+   * A request to render a single preview. Requests are ordered such that previews which
+   * are visible (and among those, zoomed) are rendered first, then in scheduling order.
+   */
+  private class RenderRequest implements Runnable, Comparable<RenderRequest> {
+    private final RenderPreview myPreview;
+    private final int myPriority;
+    private final int mySequence;
+    private volatile boolean myCancelled;
+
+    private RenderRequest(@NotNull RenderPreview preview, int sequence) {
+      myPreview = preview;
+      mySequence = sequence;
+      int priority = preview.isVisible() ? 0 : 2;
+      if (preview.getScale() <= 1.2) {
+        priority++;
+      }
+      myPriority = priority;
+    }
+
+    public void cancel() {
+      myCancelled = true;
+    }
+
+    @Override
+    public void run() {
+      if (myCancelled || myDisposed) {
+        return;
+      }
+      synchronized (myPreview) {
+        if (myCancelled) {
+          return;
+        }
+        myPreview.setPendingRendering(null);
+        myPreview.updateSize();
+        myPreview.renderSync();
+        myPreview.storeInCache(myRenderCache);
+      }
+      ApplicationManager.getApplication().invokeLater(new Runnable() {
+        @Override
+        public void run() {
+          redraw();
+        }
+      });
+    }
+
+    @Override
+    public int compareTo(@NotNull RenderRequest other) {
+      if (myPriority != other.myPriority) {
+        return myPriority - other.myPriority;
+      }
+      return mySequence - other.mySequence;
+    }
   }
 
   /**
@@ -1779,10 +1880,12 @@ public class RenderPreviewManager implements Disposable {
 
   @Override
   public void dispose() {
+    myDisposed = true;
     Disposer.dispose(this);
     disposePreviews();
     myAlarm.cancelAllRequests();
     myAlarm.dispose();
+    myRenderCache.invalidateAll();
     if (myAnimator != null) {
       myAnimator.dispose();
       myAnimator = null;
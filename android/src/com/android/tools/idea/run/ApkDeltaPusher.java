@@ -0,0 +1,341 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.run;
+
+import com.android.annotations.VisibleForTesting;
+import com.android.ddmlib.*;
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes an APK to a device by only transferring the parts that changed since the last push.
+ * <p>
+ * The APK is split into chunks along zip entry boundaries: each chunk is a run of consecutive entries (local
+ * headers and data), and the central directory is a chunk of its own. Chunk boundaries are chosen from the entry
+ * names, so they stay put when entry contents change. Chunks are stored on the device in a directory next to
+ * the remote APK path, named by the hash of their contents; only the chunks which aren't already there are
+ * pushed, and the APK is then reassembled on the device by concatenating the chunks with {@code cat}, which
+ * is available on all devices. The concatenation is split into several commands for large APKs, since older
+ * devices limit the length of shell commands. The reassembled file is checked against the hash of the APK with
+ * {@code md5sum} before it's used, so delta pushing is only used on devices which provide it; if anything goes
+ * wrong, the chunks are discarded and the caller should push the full APK instead.
+ */
+public class ApkDeltaPusher {
+  private static final Logger LOG = Logger.getInstance(ApkDeltaPusher.class);
+
+  /** Delta pushing can be turned off by setting this system property to true */
+  public static final boolean DISABLED = Boolean.getBoolean("android.full.apk.push");
+
+  /** Chunks end after entries whose name hash has these bits clear (so on average every 8 entries) */
+  private static final int CHUNK_MASK = 7;
+
+  private static final long SHELL_TIMEOUT_SECONDS = 60;
+
+  /** Maximum length of a shell command; older devices reject commands longer than about 4 KB */
+  @VisibleForTesting
+  static final int MAX_COMMAND_LENGTH = 1024;
+
+  /** A file written on the device to check that the shell can reassemble the chunks (hidden from {@code ls}) */
+  private static final String PROBE_FILE = ".probe";
+  private static final String PROBE_TEXT = "chunked";
+  /** The hash md5sum prints for the probe file, which contains the probe text and a newline */
+  private static final String PROBE_HASH = Hashing.md5().hashString(PROBE_TEXT + "\n", Charsets.UTF_8).toString();
+
+  /** Outcome of a delta push */
+  public static class Result {
+    /** Size of the APK */
+    public final long totalBytes;
+    /** Number of bytes actually transferred to the device */
+    public final long pushedBytes;
+    public final long durationMs;
+
+    Result(long totalBytes, long pushedBytes, long durationMs) {
+      this.totalBytes = totalBytes;
+      this.pushedBytes = pushedBytes;
+      this.durationMs = durationMs;
+    }
+
+    /** Returns a rough estimate of the time saved compared to pushing the full APK, based on the observed throughput */
+    public long getEstimatedTimeSavedMs() {
+      if (pushedBytes == 0) {
+        return 0;
+      }
+      return (totalBytes - pushedBytes) * durationMs / pushedBytes;
+    }
+  }
+
+  /** A byte range of the APK */
+  @VisibleForTesting
+  static class Chunk {
+    final long offset;
+    final long length;
+    final String hash;
+
+    Chunk(long offset, long length, @NotNull String hash) {
+      this.offset = offset;
+      this.length = length;
+      this.hash = hash;
+    }
+  }
+
+  /**
+   * Pushes the given APK to the given remote path
+   *
+   * @return the result, or null if the APK could not be pushed incrementally and should be pushed in full
+   */
+  @Nullable
+  public Result push(@NotNull IDevice device, @NotNull File apk, @NotNull String remotePath) {
+    long start = System.currentTimeMillis();
+    String chunkDir = remotePath + ".chunks";
+    try {
+      List<Chunk> chunks = split(apk);
+
+      // Check that the shell supports everything reassembling needs before transferring anything, so that
+      // the APK is never pushed twice
+      executeSilentShellCommand(device, "[ -d " + chunkDir + " ] || mkdir " + chunkDir);
+      String probe = executeShellCommand(device, "cd " + chunkDir + " && echo " + PROBE_TEXT + " > " + PROBE_FILE +
+                                                 " && ls -l " + PROBE_FILE + " && md5sum " + PROBE_FILE +
+                                                 "; rm " + chunkDir + '/' + PROBE_FILE);
+      if (!probe.contains(" " + (PROBE_TEXT.length() + 1) + " ") || !probe.contains(PROBE_HASH)) {
+        LOG.info("Device shell does not support reassembling chunks: " + probe);
+        return null;
+      }
+
+      Set<String> existing = Sets.newHashSet();
+      for (String line : Splitter.on('\n').trimResults().omitEmptyStrings().split(executeShellCommand(device, "ls " + chunkDir))) {
+        existing.add(line);
+      }
+
+      long pushed = 0;
+      Set<String> current = Sets.newHashSet();
+      RandomAccessFile file = new RandomAccessFile(apk, "r");
+      try {
+        for (Chunk chunk : chunks) {
+          if (current.add(chunk.hash) && !existing.contains(chunk.hash)) {
+            pushChunk(device, file, chunk, chunkDir + '/' + chunk.hash);
+            pushed += chunk.length;
+          }
+        }
+      }
+      finally {
+        file.close();
+      }
+      for (String command : createConcatenateCommands(chunkDir, chunks, remotePath)) {
+        executeSilentShellCommand(device, command);
+      }
+
+      // Chunks are trusted by name, so a chunk with the wrong contents (for example one which was only partially
+      // pushed earlier) would break every later install; it shows up as a hash mismatch of the reassembled file
+      String expectedHash = Files.hash(apk, Hashing.md5()).toString();
+      String actualHash = executeShellCommand(device, "md5sum " + remotePath).trim();
+      if (!actualHash.startsWith(expectedHash)) {
+        LOG.info("Reassembled apk has unexpected hash: " + actualHash);
+        executeShellCommand(device, "rm -r " + chunkDir);
+        return null;
+      }
+
+      existing.removeAll(current);
+      for (String command : createRemoveCommands(chunkDir, existing)) {
+        executeSilentShellCommand(device, command);
+      }
+
+      return new Result(apk.length(), pushed, System.currentTimeMillis() - start);
+    }
+    catch (Exception e) {
+      LOG.info("Unable to push " + apk + " incrementally", e);
+      return null;
+    }
+  }
+
+  /**
+   * Returns the commands which concatenate the given chunks into the given remote file, each of them short enough
+   * for the shell command length limit of older devices
+   */
+  @VisibleForTesting
+  @NotNull
+  static List<String> createConcatenateCommands(@NotNull String chunkDir, @NotNull List<Chunk> chunks, @NotNull String remotePath) {
+    List<String> hashes = Lists.newArrayListWithCapacity(chunks.size());
+    for (Chunk chunk : chunks) {
+      hashes.add(chunk.hash);
+    }
+    List<String> commands = createCommands("cd " + chunkDir + " && cat", hashes, " >> " + remotePath);
+    if (!commands.isEmpty()) {
+      // The first command truncates the file
+      commands.set(0, commands.get(0).replace(" >> " + remotePath, " > " + remotePath));
+    }
+    return commands;
+  }
+
+  /** Returns the commands which remove the given chunks, each short enough for the shell command length limit */
+  @VisibleForTesting
+  @NotNull
+  static List<String> createRemoveCommands(@NotNull String chunkDir, @NotNull Collection<String> hashes) {
+    return createCommands("cd " + chunkDir + " && rm", hashes, "");
+  }
+
+  /**
+   * Returns commands consisting of the given prefix, as many of the given arguments as fit in
+   * {@link #MAX_COMMAND_LENGTH}, and the given suffix; together the commands cover all arguments, in order
+   */
+  @NotNull
+  private static List<String> createCommands(@NotNull String prefix, @NotNull Collection<String> arguments, @NotNull String suffix) {
+    List<String> commands = Lists.newArrayList();
+    StringBuilder command = null;
+    for (String argument : arguments) {
+      if (command != null && command.length() + 1 + argument.length() + suffix.length() > MAX_COMMAND_LENGTH) {
+        commands.add(command.append(suffix).toString());
+        command = null;
+      }
+      if (command == null) {
+        command = new StringBuilder(prefix);
+      }
+      command.append(' ').append(argument);
+    }
+    if (command != null) {
+      commands.add(command.append(suffix).toString());
+    }
+    return commands;
+  }
+
+  private static void pushChunk(@NotNull IDevice device, @NotNull RandomAccessFile apk, @NotNull Chunk chunk, @NotNull String remotePath)
+    throws IOException, AdbCommandRejectedException, TimeoutException, SyncException {
+    File temp = FileUtil.createTempFile("apk", ".chunk");
+    try {
+      OutputStream out = new BufferedOutputStream(new FileOutputStream(temp));
+      try {
+        byte[] buffer = new byte[64 * 1024];
+        apk.seek(chunk.offset);
+        long remaining = chunk.length;
+        while (remaining > 0) {
+          int read = apk.read(buffer, 0, (int)Math.min(buffer.length, remaining));
+          if (read == -1) {
+            throw new EOFException();
+          }
+          out.write(buffer, 0, read);
+          remaining -= read;
+        }
+      }
+      finally {
+        out.close();
+      }
+      device.pushFile(temp.getPath(), remotePath);
+    }
+    finally {
+      FileUtil.delete(temp);
+    }
+  }
+
+  /**
+   * Splits the given APK into chunks covering the whole file
+   *
+   * @throws IOException if the file could not be read or isn't a zip file this class understands (e.g. zip64)
+   */
+  @VisibleForTesting
+  @NotNull
+  static List<Chunk> split(@NotNull File apk) throws IOException {
+    ZipCentralDirectory directory = ZipCentralDirectory.read(apk);
+    List<ZipCentralDirectory.Entry> entries = Lists.newArrayList(directory.entries);
+    Collections.sort(entries, new Comparator<ZipCentralDirectory.Entry>() {
+      @Override
+      public int compare(ZipCentralDirectory.Entry entry1, ZipCentralDirectory.Entry entry2) {
+        return entry1.offset < entry2.offset ? -1 : entry1.offset > entry2.offset ? 1 : 0;
+      }
+    });
+
+    RandomAccessFile file = new RandomAccessFile(apk, "r");
+    try {
+      List<Chunk> chunks = Lists.newArrayList();
+      long chunkStart = 0;
+      for (int i = 0; i < entries.size(); i++) {
+        if (i == entries.size() - 1 || (entries.get(i).name.hashCode() & CHUNK_MASK) == 0) {
+          long end = i < entries.size() - 1 ? entries.get(i + 1).offset : directory.offset;
+          chunks.add(createChunk(file, chunkStart, end - chunkStart));
+          chunkStart = end;
+        }
+      }
+      chunks.add(createChunk(file, chunkStart, directory.fileLength - chunkStart));
+      return chunks;
+    }
+    finally {
+      file.close();
+    }
+  }
+
+  @NotNull
+  private static Chunk createChunk(@NotNull RandomAccessFile file, long offset, long length) throws IOException {
+    Hasher hasher = Hashing.md5().newHasher();
+    byte[] buffer = new byte[64 * 1024];
+    file.seek(offset);
+    long remaining = length;
+    while (remaining > 0) {
+      int read = file.read(buffer, 0, (int)Math.min(buffer.length, remaining));
+      if (read == -1) {
+        throw new EOFException();
+      }
+      hasher.putBytes(buffer, 0, read);
+      remaining -= read;
+    }
+    return new Chunk(offset, length, hasher.hash().toString());
+  }
+
+  /**
+   * Runs the given shell command and returns its output, which for most commands includes their error messages
+   *
+   * @throws TimeoutException if the command did not complete in time
+   */
+  @NotNull
+  protected String executeShellCommand(@NotNull IDevice device, @NotNull String cmd)
+    throws TimeoutException, AdbCommandRejectedException, ShellCommandUnresponsiveException, IOException, InterruptedException {
+    CountDownLatch latch = new CountDownLatch(1);
+    CollectingOutputReceiver receiver = new CollectingOutputReceiver(latch);
+    device.executeShellCommand(cmd, receiver, SHELL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    if (!latch.await(SHELL_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+      throw new TimeoutException("Timed out running " + cmd);
+    }
+    return receiver.getOutput();
+  }
+
+  /**
+   * Runs the given shell command, which doesn't print anything unless it fails
+   *
+   * @throws IOException with the output of the command if it printed anything
+   */
+  private void executeSilentShellCommand(@NotNull IDevice device, @NotNull String cmd)
+    throws TimeoutException, AdbCommandRejectedException, ShellCommandUnresponsiveException, IOException, InterruptedException {
+    String output = executeShellCommand(device, cmd).trim();
+    if (!output.isEmpty()) {
+      throw new IOException("Failed to run " + cmd + ": " + output);
+    }
+  }
+}
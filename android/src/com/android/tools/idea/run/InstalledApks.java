@@ -18,29 +18,76 @@ package com.android.tools.idea.run;
 import com.android.annotations.VisibleForTesting;
 import com.android.ddmlib.*;
 import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
 import com.google.common.io.Files;
 import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.components.StoragePathMacros;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.xmlb.annotations.AbstractCollection;
+import com.intellij.util.xmlb.annotations.Tag;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
-public class InstalledApks implements AndroidDebugBridge.IDeviceChangeListener, Disposable {
+/**
+ * Keeps track of the APKs installed on each device, such that an unchanged APK doesn't have to be uploaded and
+ * installed again. An APK is identified by a fingerprint of its zip central directory (the names, CRCs and sizes
+ * of its entries), which is much cheaper to compute than a hash of the whole file, and which is only recomputed
+ * when the file's size or timestamp changes. The install states are persisted, so they survive IDE restarts and
+ * device reconnects; the package's last update time on the device guards against the app having been
+ * reinstalled by other means in the meantime. Packages whose last update time can't be determined are therefore
+ * never cached. Install states are dropped when their package is found to be missing from the device, and devices
+ * which haven't been seen for {@link #MAX_DEVICE_AGE_MS} are forgotten.
+ */
+@State(
+  name = "AndroidInstalledApks",
+  storages = {@Storage(file = StoragePathMacros.APP_CONFIG + "/androidInstalledApks.xml")})
+public class InstalledApks implements AndroidDebugBridge.IDeviceChangeListener, Disposable,
+                                      PersistentStateComponent<InstalledApks.InstalledApksState> {
+  /**
+   * Fingerprints must be stable across sessions since they are persisted; don't use {@link Hashing#goodFastHash(int)} here
+   */
+  private static final HashFunction FINGERPRINT_FUNCTION = Hashing.murmur3_128();
+
+  /**
+   * Files modified within this many milliseconds of being fingerprinted are not memoized, since a subsequent
+   * change could leave both the size and the (coarse grained) timestamp unchanged
+   */
+  private static final long RACY_INTERVAL_MS = 2000;
+
+  /** The install states of devices which haven't been seen for this long are dropped */
+  @VisibleForTesting
+  static final long MAX_DEVICE_AGE_MS = TimeUnit.DAYS.toMillis(30);
+
   /**
    * A map from device serial -> package name -> install state.
-   * The install state provides the hash of the apk that was installed, and the last update time as obtained from the device.
+   * The install state provides the fingerprint of the apk that was installed, and the last update time as obtained from the device.
    */
   private final Map<String, Map<String, InstallState>> myCache = Maps.newHashMap();
 
+  /** A map from device serial to the time the device was last seen. Guarded by {@link #myCache}. */
+  private final Map<String, Long> myLastSeen = Maps.newHashMap();
+
+  /** Memoized fingerprints, keyed by apk path */
+  private final Map<String, Fingerprint> myFingerprints = Maps.newHashMap();
+
   /** Diagnostic output set by {@link #getLastUpdateTime(com.android.ddmlib.IDevice, String)} */
   private String myDiagnosticOutput;
 
@@ -55,28 +102,42 @@ public class InstalledApks implements AndroidDebugBridge.IDeviceChangeListener,
 
   public boolean isInstalled(@NotNull IDevice device, @NotNull File apk, @NotNull String pkgName) throws IOException {
     String serial = device.getSerialNumber();
-    Map<String, InstallState> cache = myCache.get(serial);
-    if (cache == null) {
-      return false;
+    InstallState state;
+    synchronized (myCache) {
+      myLastSeen.put(serial, System.currentTimeMillis());
+      Map<String, InstallState> cache = myCache.get(serial);
+      if (cache == null) {
+        return false;
+      }
+      state = cache.get(pkgName);
     }
-
-    InstallState state = cache.get(pkgName);
-    if (state == null) {
+    if (state == null || !state.fingerprint.equals(getFingerprint(apk))) {
       return false;
     }
 
     String lastUpdateTime = getLastUpdateTime(device, pkgName);
-    return lastUpdateTime != null && lastUpdateTime.equals(state.lastUpdateTime) && state.hash.equals(hash(apk));
+    if (lastUpdateTime == null) {
+      // Uninstalled: there is no point in remembering the apk
+      removeInstallState(serial, pkgName);
+      return false;
+    }
+    // An unknown last update time can't tell whether the package was reinstalled in the meantime
+    return !lastUpdateTime.isEmpty() && lastUpdateTime.equals(state.lastUpdateTime);
   }
 
-  public void setInstalled(@NotNull IDevice device, @NotNull File apk, @NotNull String pkgName) throws IOException {
-    String serial = device.getSerialNumber();
-    Map<String, InstallState> cache = myCache.get(serial);
-    if (cache == null) {
-      cache = Maps.newHashMap();
-      myCache.put(serial, cache);
+  private void removeInstallState(@NotNull String serial, @NotNull String pkgName) {
+    synchronized (myCache) {
+      Map<String, InstallState> cache = myCache.get(serial);
+      if (cache != null) {
+        cache.remove(pkgName);
+        if (cache.isEmpty()) {
+          myCache.remove(serial);
+        }
+      }
     }
+  }
 
+  public void setInstalled(@NotNull IDevice device, @NotNull File apk, @NotNull String pkgName) throws IOException {
     String lastUpdateTime = getLastUpdateTime(device, pkgName);
     if (lastUpdateTime == null) {
       // set installed should be called only after the package has been installed
@@ -90,21 +151,151 @@ public class InstalledApks implements AndroidDebugBridge.IDeviceChangeListener,
       Logger.getInstance(InstalledApks.class).warn(msg);
       return;
     }
-    cache.put(pkgName, new InstallState(hash(apk), lastUpdateTime));
+
+    String serial = device.getSerialNumber();
+    if (lastUpdateTime.isEmpty()) {
+      // Without a last update time a later reinstall can't be detected, so the apk will always be uploaded
+      removeInstallState(serial, pkgName);
+      return;
+    }
+
+    InstallState state = new InstallState(getFingerprint(apk), lastUpdateTime);
+    synchronized (myCache) {
+      myLastSeen.put(serial, System.currentTimeMillis());
+      Map<String, InstallState> cache = myCache.get(serial);
+      if (cache == null) {
+        cache = Maps.newHashMap();
+        myCache.put(serial, cache);
+      }
+      cache.put(pkgName, state);
+    }
   }
 
+  /** Returns the fingerprint of the given apk, computing it only if the file changed since it was last fingerprinted */
+  @VisibleForTesting
   @NotNull
-  private static HashCode hash(@NotNull File apk) throws IOException {
-    return Files.hash(apk, Hashing.goodFastHash(32));
+  String getFingerprint(@NotNull File apk) throws IOException {
+    String path = apk.getPath();
+    long length = apk.length();
+    long lastModified = apk.lastModified();
+    synchronized (myFingerprints) {
+      Fingerprint fingerprint = myFingerprints.get(path);
+      if (fingerprint != null && fingerprint.length == length && fingerprint.lastModified == lastModified) {
+        return fingerprint.hash;
+      }
+    }
+
+    long now = System.currentTimeMillis();
+    String hash = computeFingerprint(apk).toString();
+    synchronized (myFingerprints) {
+      if (now - lastModified > RACY_INTERVAL_MS) {
+        myFingerprints.put(path, new Fingerprint(length, lastModified, hash));
+      }
+      else {
+        myFingerprints.remove(path);
+      }
+    }
+    return hash;
+  }
+
+  @NotNull
+  private static HashCode computeFingerprint(@NotNull File apk) throws IOException {
+    ZipCentralDirectory directory;
+    try {
+      directory = ZipCentralDirectory.read(apk);
+    }
+    catch (IOException e) {
+      // Not a (supported) zip file: fall back to hashing the whole file
+      return Files.hash(apk, FINGERPRINT_FUNCTION);
+    }
+
+    Charset utf8 = Charset.forName("UTF-8");
+    Hasher hasher = FINGERPRINT_FUNCTION.newHasher();
+    for (ZipCentralDirectory.Entry entry : directory.entries) {
+      hasher.putString(entry.name, utf8);
+      hasher.putInt(entry.crc);
+      hasher.putLong(entry.compressedSize);
+      hasher.putLong(entry.size);
+    }
+    return hasher.hash();
+  }
+
+  @NotNull
+  @Override
+  public InstalledApksState getState() {
+    InstalledApksState state = new InstalledApksState();
+    synchronized (myCache) {
+      removeOldDevices();
+      for (Map.Entry<String, Map<String, InstallState>> deviceEntry : myCache.entrySet()) {
+        for (Map.Entry<String, InstallState> packageEntry : deviceEntry.getValue().entrySet()) {
+          InstalledApk installedApk = new InstalledApk();
+          installedApk.serial = deviceEntry.getKey();
+          installedApk.lastSeen = getLastSeen(deviceEntry.getKey());
+          installedApk.pkgName = packageEntry.getKey();
+          installedApk.fingerprint = packageEntry.getValue().fingerprint;
+          installedApk.lastUpdateTime = packageEntry.getValue().lastUpdateTime;
+          state.installedApks.add(installedApk);
+        }
+      }
+    }
+    return state;
+  }
+
+  @Override
+  public void loadState(InstalledApksState state) {
+    synchronized (myCache) {
+      myCache.clear();
+      myLastSeen.clear();
+      for (InstalledApk installedApk : state.installedApks) {
+        if (installedApk.serial == null || installedApk.pkgName == null || installedApk.fingerprint == null ||
+            StringUtil.isEmpty(installedApk.lastUpdateTime)) {
+          continue;
+        }
+        // States persisted before the last seen time was recorded count as seen now
+        long lastSeen = installedApk.lastSeen > 0 ? installedApk.lastSeen : System.currentTimeMillis();
+        Long previous = myLastSeen.get(installedApk.serial);
+        if (previous == null || previous < lastSeen) {
+          myLastSeen.put(installedApk.serial, lastSeen);
+        }
+        Map<String, InstallState> cache = myCache.get(installedApk.serial);
+        if (cache == null) {
+          cache = Maps.newHashMap();
+          myCache.put(installedApk.serial, cache);
+        }
+        cache.put(installedApk.pkgName, new InstallState(installedApk.fingerprint, installedApk.lastUpdateTime));
+      }
+      removeOldDevices();
+    }
+  }
+
+  /** Returns the time the given device was last seen. Must be called with {@link #myCache} held. */
+  private long getLastSeen(@NotNull String serial) {
+    Long lastSeen = myLastSeen.get(serial);
+    return lastSeen != null ? lastSeen : System.currentTimeMillis();
+  }
+
+  /** Drops the install states of the devices which haven't been seen for a long time. Must be called with {@link #myCache} held. */
+  private void removeOldDevices() {
+    long oldest = System.currentTimeMillis() - MAX_DEVICE_AGE_MS;
+    for (Iterator<String> iterator = myCache.keySet().iterator(); iterator.hasNext(); ) {
+      String serial = iterator.next();
+      if (getLastSeen(serial) < oldest) {
+        iterator.remove();
+        myLastSeen.remove(serial);
+      }
+    }
   }
 
   @Override
   public void deviceConnected(IDevice device) {
+    synchronized (myCache) {
+      myLastSeen.put(device.getSerialNumber(), System.currentTimeMillis());
+    }
   }
 
   @Override
   public void deviceDisconnected(IDevice device) {
-    myCache.remove(device.getSerialNumber());
+    // The install states are kept: when the device comes back, the last update time tells whether they are still valid
   }
 
   @Override
@@ -174,12 +365,39 @@ public class InstalledApks implements AndroidDebugBridge.IDeviceChangeListener,
   }
 
   private static class InstallState {
-    @NotNull public final HashCode hash;
-    @Nullable public final String lastUpdateTime;
+    @NotNull public final String fingerprint;
+    @NotNull public final String lastUpdateTime;
 
-    public InstallState(@NotNull HashCode hash, @Nullable String lastUpdateTime) {
-      this.hash = hash;
+    public InstallState(@NotNull String fingerprint, @NotNull String lastUpdateTime) {
+      this.fingerprint = fingerprint;
       this.lastUpdateTime = lastUpdateTime;
     }
   }
+
+  private static class Fingerprint {
+    public final long length;
+    public final long lastModified;
+    @NotNull public final String hash;
+
+    public Fingerprint(long length, long lastModified, @NotNull String hash) {
+      this.length = length;
+      this.lastModified = lastModified;
+      this.hash = hash;
+    }
+  }
+
+  public static class InstalledApksState {
+    @Tag("installed")
+    @AbstractCollection(surroundWithTag = false)
+    public List<InstalledApk> installedApks = Lists.newArrayList();
+  }
+
+  @Tag("apk")
+  public static class InstalledApk {
+    @Tag("serial") public String serial;
+    @Tag("package") public String pkgName;
+    @Tag("fingerprint") public String fingerprint;
+    @Tag("lastUpdateTime") public String lastUpdateTime;
+    @Tag("lastSeen") public long lastSeen;
+  }
 }
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.run;
+
+import com.google.common.collect.Lists;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+/**
+ * The central directory of a zip file, read without touching the entry data. This is all that's needed to tell
+ * whether two APKs have the same contents (via the entry CRCs and sizes) and where each entry is stored.
+ * Zip64 files are not supported.
+ */
+class ZipCentralDirectory {
+  private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+  private static final int CENTRAL_DIRECTORY_SIGNATURE = 0x02014b50;
+  private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+  private static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+
+  /** An entry in the central directory */
+  static class Entry {
+    @NotNull final String name;
+    final int crc;
+    final long compressedSize;
+    final long size;
+    /** Offset of the entry's local header in the file */
+    final long offset;
+
+    Entry(@NotNull String name, int crc, long compressedSize, long size, long offset) {
+      this.name = name;
+      this.crc = crc;
+      this.compressedSize = compressedSize;
+      this.size = size;
+      this.offset = offset;
+    }
+  }
+
+  /** The entries, in central directory order */
+  @NotNull final List<Entry> entries;
+  /** Offset of the central directory in the file; the entries are all stored before it */
+  final long offset;
+  final long fileLength;
+
+  private ZipCentralDirectory(@NotNull List<Entry> entries, long offset, long fileLength) {
+    this.entries = entries;
+    this.offset = offset;
+    this.fileLength = fileLength;
+  }
+
+  /**
+   * Reads the central directory of the given file
+   *
+   * @throws IOException if the file could not be read or isn't a zip file this class understands
+   */
+  @NotNull
+  static ZipCentralDirectory read(@NotNull File file) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      long length = raf.length();
+
+      // Find the end of central directory record; it's at the end, followed by a comment of up to 64K
+      int tailLength = (int)Math.min(length, END_OF_CENTRAL_DIRECTORY_SIZE + 0xFFFF);
+      byte[] tail = new byte[tailLength];
+      raf.seek(length - tailLength);
+      raf.readFully(tail);
+      int eocd = -1;
+      for (int i = tailLength - END_OF_CENTRAL_DIRECTORY_SIZE; i >= 0; i--) {
+        if (readInt(tail, i) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+          eocd = i;
+          break;
+        }
+      }
+      if (eocd == -1) {
+        throw new IOException("Not a zip file: " + file);
+      }
+      int entryCount = readShort(tail, eocd + 10);
+      long directorySize = readInt(tail, eocd + 12) & 0xFFFFFFFFL;
+      long directoryOffset = readInt(tail, eocd + 16) & 0xFFFFFFFFL;
+      if (entryCount == 0xFFFF || directoryOffset == 0xFFFFFFFFL || directoryOffset + directorySize > length) {
+        throw new IOException("Unsupported zip file: " + file);
+      }
+
+      byte[] directory = new byte[(int)directorySize];
+      raf.seek(directoryOffset);
+      raf.readFully(directory);
+      List<Entry> entries = Lists.newArrayListWithCapacity(entryCount);
+      int pos = 0;
+      for (int i = 0; i < entryCount; i++) {
+        if (pos + CENTRAL_DIRECTORY_HEADER_SIZE > directory.length || readInt(directory, pos) != CENTRAL_DIRECTORY_SIGNATURE) {
+          throw new IOException("Corrupt central directory: " + file);
+        }
+        int crc = readInt(directory, pos + 16);
+        long compressedSize = readInt(directory, pos + 20) & 0xFFFFFFFFL;
+        long size = readInt(directory, pos + 24) & 0xFFFFFFFFL;
+        int nameLength = readShort(directory, pos + 28);
+        int extraLength = readShort(directory, pos + 30);
+        int commentLength = readShort(directory, pos + 32);
+        long localOffset = readInt(directory, pos + 42) & 0xFFFFFFFFL;
+        if (pos + CENTRAL_DIRECTORY_HEADER_SIZE + nameLength > directory.length) {
+          throw new IOException("Corrupt central directory: " + file);
+        }
+        String name = new String(directory, pos + CENTRAL_DIRECTORY_HEADER_SIZE, nameLength, "UTF-8");
+        entries.add(new Entry(name, crc, compressedSize, size, localOffset));
+        pos += CENTRAL_DIRECTORY_HEADER_SIZE + nameLength + extraLength + commentLength;
+      }
+      return new ZipCentralDirectory(entries, directoryOffset, length);
+    }
+    finally {
+      raf.close();
+    }
+  }
+
+  private static int readShort(@NotNull byte[] b, int offset) {
+    return (b[offset] & 0xFF) | (b[offset + 1] & 0xFF) << 8;
+  }
+
+  private static int readInt(@NotNull byte[] b, int offset) {
+    return (b[offset] & 0xFF) | (b[offset + 1] & 0xFF) << 8 | (b[offset + 2] & 0xFF) << 16 | (b[offset + 3] & 0xFF) << 24;
+  }
+}
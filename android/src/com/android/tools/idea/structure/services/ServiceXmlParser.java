@@ -37,7 +37,6 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
 import com.intellij.ui.HyperlinkLabel;
 import com.intellij.util.containers.Stack;
-import freemarker.template.Configuration;
 import freemarker.template.TemplateException;
 import org.jetbrains.annotations.NotNull;
 import org.xml.sax.Attributes;
@@ -172,17 +171,14 @@ import static com.google.common.base.CaseFormat.UPPER_UNDERSCORE;
 
   @NotNull
   public Recipe createRecipe(boolean executeRecipe) {
-    Configuration freemarker = new FreemarkerConfiguration();
-    PrefixTemplateLoader loader = new PrefixTemplateLoader(myRootPath.getPath());
     Map<String, Object> paramMap = FreemarkerUtils.createParameterMap(myContext.toValueMap());
 
     try {
-      freemarker.setTemplateLoader(loader);
-      String xml = FreemarkerUtils.processFreemarkerTemplate(freemarker, paramMap, myRecipeFile);
+      String xml = FreemarkerUtils.processFreemarkerTemplate(paramMap, myRecipeFile);
       Recipe recipe = Recipe.parse(new StringReader(xml));
 
       if (executeRecipe) {
-        RecipeContext recipeContext = new RecipeContext(myModule, loader, freemarker, paramMap, myRootPath, false);
+        RecipeContext recipeContext = new RecipeContext(myModule, paramMap, myRootPath, false);
         recipe.execute(recipeContext);
 
         // Convert relative paths to absolute paths, so TemplateUtils.openEditors can find them
@@ -15,57 +15,50 @@
  */
 package com.android.tools.idea.templates;
 
-import com.android.utils.SdkUtils;
+import com.intellij.openapi.util.io.FileUtil;
 import freemarker.cache.TemplateLoader;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
-import java.net.URL;
 
 /**
- * A custom {@link TemplateLoader} which locates templates on disk relative to a specified prefix.
+ * A {@link TemplateLoader} which locates templates on disk by their absolute path, see {@link #getTemplateName(File)}.
+ * Since template names don't depend on any loader state, a single loader (and the templates Freemarker compiles and
+ * caches through it) can be shared by all template renderings, and includes are resolved relative to the directory
+ * of the including template.
  */
-public final class PrefixTemplateLoader implements TemplateLoader {
-  private String myPrefix;
-
-  public PrefixTemplateLoader(@Nullable String prefix) {
-    myPrefix = prefix;
-  }
-
-  public void setTemplateFile(@NotNull File file) {
-    setTemplateParent(file.getParentFile());
-  }
-
-  public void setTemplateParent(@NotNull File parent) {
-    myPrefix = parent.getPath();
+final class AbsolutePathTemplateLoader implements TemplateLoader {
+  /** Returns the name to look up the given template file with */
+  @NotNull
+  static String getTemplateName(@NotNull File file) {
+    return FileUtil.toSystemIndependentName(file.getAbsolutePath());
   }
 
   @Override
   @NotNull
   public Reader getReader(@NotNull Object templateSource, @NotNull String encoding) throws IOException {
-    InputStream stream = (InputStream)templateSource;
-    return new InputStreamReader(stream, encoding);
+    return new InputStreamReader(new FileInputStream((File)templateSource), encoding);
   }
 
   @Override
   public long getLastModified(Object templateSource) {
-    return 0;
+    return ((File)templateSource).lastModified();
   }
 
   @Override
   @Nullable
   public Object findTemplateSource(@NotNull String name) throws IOException {
-    String path = myPrefix != null ? myPrefix + '/' + name : name;
-    File file = new File(path);
-    if (file.exists()) {
-      return SdkUtils.fileToUrl(file).openStream();
+    File file = new File(FileUtil.toSystemDependentName(name));
+    if (!file.isAbsolute()) {
+      // Freemarker strips the leading slash from template names, which makes Unix paths relative
+      file = new File(File.separator + file.getPath());
     }
-    return null;
+    return file.isFile() ? file : null;
   }
 
   @Override
   public void closeTemplateSource(Object templateSource) throws IOException {
-    ((InputStream)templateSource).close();
+    // Nothing to close: readers are opened (and closed by Freemarker) in getReader
   }
 }
@@ -19,6 +19,7 @@ import com.android.tools.idea.templates.propertyAdapters.PropertyObjectWrapper;
 import com.google.common.base.Charsets;
 import freemarker.template.Configuration;
 import freemarker.template.TemplateExceptionHandler;
+import org.jetbrains.annotations.NotNull;
 
 /**
  * A Freemarker {@link Configuration} initialized with sensible built-in values for instantiating
@@ -31,4 +32,26 @@ public final class FreemarkerConfiguration extends Configuration {
     setTemplateExceptionHandler(TemplateExceptionHandler.RETHROW_HANDLER);
     setObjectWrapper(new PropertyObjectWrapper());
   }
+
+  /**
+   * Returns the configuration shared by all renderings of template files, which loads templates by their absolute
+   * path. Freemarker caches the compiled templates by path, and recompiles a template when its timestamp changes,
+   * so each template file is only parsed once rather than on every rendering.
+   */
+  @NotNull
+  public static Configuration getTemplateFileConfiguration() {
+    return TemplateFileConfigurationHolder.INSTANCE;
+  }
+
+  private static final class TemplateFileConfigurationHolder {
+    private static final FreemarkerConfiguration INSTANCE = new FreemarkerConfiguration();
+
+    static {
+      INSTANCE.setTemplateLoader(new AbsolutePathTemplateLoader());
+      // Check the timestamp on every lookup, so edits to templates show up right away
+      INSTANCE.setTemplateUpdateDelay(0);
+      // Templates are not localized; don't look for name_en_US.ftl etc. before each template
+      INSTANCE.setLocalizedLookup(false);
+    }
+  }
 }
@@ -68,14 +68,14 @@ public final class FreemarkerUtils {
 
   /**
    * Helper method which processes a target file, running it through the Freemarker engine first,
-   * returning its contents as a string.
+   * returning its contents as a string. The compiled template is cached by the shared
+   * {@link FreemarkerConfiguration#getTemplateFileConfiguration() configuration}.
    */
   @NotNull
-  public static String processFreemarkerTemplate(@NotNull Configuration freemarker,
-                                                 @NotNull Map<String, Object> paramMap,
-                                                 @NotNull File file)
+  public static String processFreemarkerTemplate(@NotNull Map<String, Object> paramMap, @NotNull File file)
     throws IOException, TemplateException {
-    freemarker.template.Template template = freemarker.getTemplate(file.getName());
+    Configuration freemarker = FreemarkerConfiguration.getTemplateFileConfiguration();
+    freemarker.template.Template template = freemarker.getTemplate(AbsolutePathTemplateLoader.getTemplateName(file));
     StringWriter out = new StringWriter();
     template.process(paramMap, out);
     out.flush();
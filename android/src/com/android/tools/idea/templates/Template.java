@@ -26,7 +26,6 @@ import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.project.ex.ProjectManagerEx;
-import freemarker.template.Configuration;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.xml.sax.Attributes;
@@ -127,17 +126,11 @@ public class Template {
    */
   private final File myTemplateRoot;
 
-  /**
-   * The template loader which is responsible for finding (and sharing) template files
-   */
-  private final PrefixTemplateLoader myLoader;
-
   private TemplateMetadata myMetadata;
   private Project myProject;
 
   private Template(@NotNull File rootPath) {
     myTemplateRoot = rootPath;
-    myLoader = new PrefixTemplateLoader(myTemplateRoot.getPath());
   }
 
   /**
@@ -305,10 +298,8 @@ public class Template {
 
     Map<String, Object> paramMap = createParameterMap(args);
     enforceParameterTypes(getMetadata(), args);
-    Configuration freemarker = new FreemarkerConfiguration();
-    freemarker.setTemplateLoader(myLoader);
 
-    processFile(freemarker, new File(TEMPLATE_XML_NAME), paramMap, outputRootPath, moduleRootPath, gradleSyncIfNeeded);
+    processFile(new File(TEMPLATE_XML_NAME), paramMap, outputRootPath, moduleRootPath, gradleSyncIfNeeded);
   }
 
   @NotNull
@@ -334,8 +325,7 @@ public class Template {
    * Read the given xml file and, if it uses freemarker syntax (indicated by its file extension),
    * process the variable definitions
    */
-  private void processFile(@NotNull final Configuration freemarker,
-                           @NotNull File file,
+  private void processFile(@NotNull File file,
                            @NotNull final Map<String, Object> paramMap,
                            @NotNull final File outputRoot,
                            @NotNull final File moduleRoot,
@@ -350,8 +340,7 @@ public class Template {
         }
       }
       else {
-        myLoader.setTemplateFile(getTemplateFile(file));
-        xml = processFreemarkerTemplate(freemarker, paramMap, file);
+        xml = processFreemarkerTemplate(paramMap, getTemplateFile(file));
       }
 
       xml = XmlUtils.stripBom(xml);
@@ -383,13 +372,13 @@ public class Template {
             // Handle evaluation of variables
             File globalsFile = getPath(attributes, ATTR_FILE);
             if (globalsFile != null) {
-              processFile(freemarker, globalsFile, paramMap, outputRoot, moduleRoot, gradleSyncIfNeeded);
+              processFile(globalsFile, paramMap, outputRoot, moduleRoot, gradleSyncIfNeeded);
             } // else: <globals> root element
           }
           else if (TAG_EXECUTE.equals(name)) {
             File recipeFile = getPath(attributes, ATTR_FILE);
             if (recipeFile != null) {
-              executeRecipeFile(freemarker, recipeFile, paramMap, outputRoot, moduleRoot, gradleSyncIfNeeded);
+              executeRecipeFile(recipeFile, paramMap, outputRoot, moduleRoot, gradleSyncIfNeeded);
             }
           }
           else if (!name.equals("template") && !name.equals("category") && !name.equals("option") && !name.equals(TAG_THUMBS) &&
@@ -409,22 +398,20 @@ public class Template {
   /**
    * Executes the given recipe file: copying, merging, instantiating, opening files etc
    */
-  private void executeRecipeFile(@NotNull final Configuration freemarker,
-                                 @NotNull File fileRecipe,
+  private void executeRecipeFile(@NotNull File fileRecipe,
                                  @NotNull final Map<String, Object> paramMap,
                                  @NotNull File outputRoot,
                                  @NotNull File moduleRoot,
                                  boolean gradleSyncIfNeeded) {
     try {
-      myLoader.setTemplateFile(getTemplateFile(fileRecipe));
-      String xml = processFreemarkerTemplate(freemarker, paramMap, fileRecipe);
+      String xml = processFreemarkerTemplate(paramMap, getTemplateFile(fileRecipe));
 
       xml = XmlUtils.stripBom(xml);
 
       Recipe recipe = Recipe.parse(new StringReader(xml));
       myFilesToOpen.addAll(recipe.getFilesToOpen());
 
-      RecipeContext recipeContext = new RecipeContext(myProject, myLoader, freemarker, paramMap, new File(myTemplateRoot, DATA_ROOT), outputRoot, moduleRoot,
+      RecipeContext recipeContext = new RecipeContext(myProject, paramMap, new File(myTemplateRoot, DATA_ROOT), outputRoot, moduleRoot,
                                    gradleSyncIfNeeded);
       recipe.execute(recipeContext);
     }
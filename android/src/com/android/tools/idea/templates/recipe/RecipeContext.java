@@ -37,9 +37,9 @@ import com.intellij.openapi.vfs.VirtualFileVisitor;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiFileFactory;
 import com.intellij.psi.codeStyle.CodeStyleManager;
-import freemarker.template.Configuration;
 import freemarker.template.TemplateException;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
@@ -65,8 +65,6 @@ public final class RecipeContext {
   private static final String GRADLE_PROJECT_SETTINGS_FILE = "settings.gradle";
 
   @NotNull private final Project myProject;
-  @NotNull private final PrefixTemplateLoader myLoader;
-  @NotNull private final Configuration myFreemarker;
   @NotNull private final Map<String, Object> myParamMap;
   @NotNull private final File myTemplateRoot;
   @NotNull private final File myOutputRoot;
@@ -74,18 +72,15 @@ public final class RecipeContext {
   private final boolean mySyncGradleIfNeeded; // User can disable gradle syncing if they know they're going to sync themselves anyway
 
   private boolean myNeedsGradleSync;
+  private boolean myTemplateRootRefreshed;
 
   public RecipeContext(@NotNull Project project,
-                                @NotNull PrefixTemplateLoader loader,
-                                @NotNull Configuration freemarker,
                                 @NotNull Map<String, Object> paramMap,
                                 @NotNull File templateRoot,
                                 @NotNull File outputRoot,
                                 @NotNull File moduleRoot,
                                 boolean syncGradleIfNeeded) {
     myProject = project;
-    myLoader = loader;
-    myFreemarker = freemarker;
     myParamMap = paramMap;
     myTemplateRoot = templateRoot;
     myOutputRoot = outputRoot;
@@ -94,16 +89,12 @@ public final class RecipeContext {
   }
 
   public RecipeContext(@NotNull Module module,
-                       @NotNull PrefixTemplateLoader loader,
-                       @NotNull Configuration freemarker,
                        @NotNull Map<String, Object> paramMap,
                        @NotNull File templateRoot,
                        boolean syncGradleIfNeeded) {
     File moduleRoot = new File(module.getModuleFilePath()).getParentFile();
 
     myProject = module.getProject();
-    myLoader = loader;
-    myFreemarker = freemarker;
     myParamMap = paramMap;
     myTemplateRoot = templateRoot;
     myOutputRoot = moduleRoot;
@@ -149,8 +140,7 @@ public final class RecipeContext {
       }
       else {
         from = getSourceFile(from);
-        myLoader.setTemplateFile(from);
-        String contents = processFreemarkerTemplate(myFreemarker, myParamMap, from);
+        String contents = processFreemarkerTemplate(myParamMap, from);
 
         contents = format(contents, to);
         File targetFile = getTargetFile(to);
@@ -205,8 +195,7 @@ public final class RecipeContext {
       from = getSourceFile(from);
       if (hasExtension(from, DOT_FTL)) {
         // Perform template substitution of the template prior to merging
-        myLoader.setTemplateFile(from);
-        sourceText = processFreemarkerTemplate(myFreemarker, myParamMap, from);
+        sourceText = processFreemarkerTemplate(myParamMap, from);
       }
       else {
         sourceText = readTextFile(from);
@@ -322,8 +311,7 @@ public final class RecipeContext {
     File gradleBuildFile = GradleUtil.getGradleBuildFilePath(myModuleRoot);
     String templateRoot = TemplateManager.getTemplateRootFolder().getPath();
     File gradleTemplate = new File(templateRoot, FileUtil.join("gradle", "utils", "dependencies.gradle.ftl"));
-    myLoader.setTemplateFile(gradleTemplate);
-    String contents = processFreemarkerTemplate(myFreemarker, myParamMap, gradleTemplate);
+    String contents = processFreemarkerTemplate(myParamMap, gradleTemplate);
     String destinationContents = null;
     if (gradleBuildFile.exists()) {
       destinationContents = readTextFile(gradleBuildFile);
@@ -367,9 +355,8 @@ public final class RecipeContext {
     from = getSourceFile(from);
     to = getTargetFile(to);
 
-    VirtualFile sourceFile = VfsUtil.findFileByIoFile(from, true);
+    VirtualFile sourceFile = findSourceFile(from);
     assert sourceFile != null : from;
-    sourceFile.refresh(false, false);
     File destPath = (from.isDirectory() ? to : to.getParentFile());
     VirtualFile destFolder = checkedCreateDirectoryIfMissing(destPath);
     if (from.isDirectory()) {
@@ -386,6 +373,26 @@ public final class RecipeContext {
     }
   }
 
+  /**
+   * Finds the given template source file, which is first refreshed from disk. Files in the template directory are
+   * refreshed together, in a single refresh of the whole directory, the first time any of them is looked up.
+   */
+  @Nullable
+  private VirtualFile findSourceFile(@NotNull File from) {
+    if (!FileUtil.isAncestor(myTemplateRoot, from, false)) {
+      VirtualFile sourceFile = VfsUtil.findFileByIoFile(from, true);
+      if (sourceFile != null) {
+        sourceFile.refresh(false, false);
+      }
+      return sourceFile;
+    }
+    if (!myTemplateRootRefreshed) {
+      myTemplateRootRefreshed = true;
+      VfsUtil.markDirtyAndRefresh(false, true, true, myTemplateRoot);
+    }
+    return VfsUtil.findFileByIoFile(from, true);
+  }
+
   private boolean copyFile(VirtualFile file, VirtualFile src, File destinationFile, VirtualFile dest) throws IOException {
     String relativePath = VfsUtilCore.getRelativePath(file, src, File.separatorChar);
     if (relativePath == null) {
@@ -19,7 +19,9 @@ import com.android.ide.common.rendering.api.MergeCookie;
 import com.android.ide.common.rendering.api.RenderSession;
 import com.android.ide.common.rendering.api.ViewInfo;
 import com.android.tools.idea.rendering.RenderResult;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.intellij.android.designer.AndroidDesignerEditor;
 import com.intellij.android.designer.designSurface.AndroidDesignerEditorPanel;
 import com.intellij.android.designer.designSurface.RootView;
@@ -30,6 +32,7 @@ import com.intellij.designer.model.MetaManager;
 import com.intellij.designer.model.MetaModel;
 import com.intellij.designer.model.RadComponent;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.fileEditor.FileEditor;
 import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.module.Module;
@@ -43,6 +46,8 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import static com.android.SdkConstants.VIEW_MERGE;
 import static com.android.SdkConstants.VIEW_TAG;
@@ -55,6 +60,7 @@ import static com.intellij.android.designer.designSurface.RootView.VISUAL_EMPTY_
  * objects from layoutlib with a corresponding hierarchy of {@link com.intellij.android.designer.model.RadViewComponent}
  */
 public class RadModelBuilder {
+  private static final Logger LOG = Logger.getInstance(RadModelBuilder.class);
   private static final String DESIGNER_KEY = "DESIGNER";
 
   // Special tag defined in the meta model file (views-meta-model.xml) defining the root node, shown as "Device Screen"
@@ -64,6 +70,18 @@ public class RadModelBuilder {
   private final PropertyParser myPropertyParser;
   private final Map<XmlTag,RadViewComponent> myTagToComponentMap = Maps.newIdentityHashMap();
   private final Map<XmlTag,RadViewComponent> myMergeComponentMap = Maps.newHashMap();
+  /**
+   * The new children of each component visited during the update. The component children lists are only
+   * modified after the whole hierarchy has been visited, and only where they differ, such that the previous
+   * hierarchy can be consulted while matching and unchanged components are left alone.
+   */
+  private final Map<RadViewComponent, List<RadComponent>> myNewChildren = Maps.newIdentityHashMap();
+  /** Previous components which have been matched with a view in the new hierarchy */
+  private final Set<RadViewComponent> myMatched = Sets.newIdentityHashSet();
+  private RadViewComponent myRoot;
+  private boolean myTagMapInitialized;
+  private int myReusedCount;
+  private int myCreatedCount;
   private RootView myNativeComponent;
   private AndroidDesignerEditorPanel myDesigner;
 
@@ -80,7 +98,24 @@ public class RadModelBuilder {
                                         @NotNull RootView nativeComponent) {
     PropertyParser propertyParser = designer.getPropertyParser(result);
     RadModelBuilder builder = new RadModelBuilder(designer, propertyParser);
-    return builder.build(prevRoot, result, nativeComponent);
+    long start = System.nanoTime();
+    RadViewComponent root = builder.build(prevRoot, result, nativeComponent);
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(String.format("Updated model in %1$d ms: %2$d components reused, %3$d created",
+                              TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), builder.getReusedCount(),
+                              builder.getCreatedCount()));
+    }
+    return root;
+  }
+
+  /** Returns the number of components from the previous model which were kept by the last {@link #build} */
+  public int getReusedCount() {
+    return myReusedCount;
+  }
+
+  /** Returns the number of components which were created by the last {@link #build} */
+  public int getCreatedCount() {
+    return myCreatedCount;
   }
 
   @NotNull
@@ -162,9 +197,10 @@ public class RadModelBuilder {
     assert session != null;
 
     updateClientProperties(result, nativeComponent, root);
-    initTagMap(root);
-    root.getChildren().clear();
+    myRoot = root;
+    myTagMapInitialized = false;
     updateHierarchy(root, session);
+    updateChildren();
 
     // I've removed any tags that are still in the map. I could call removeComponent on these, but I'm worried
     //for (RadViewComponent removed : map.values()) {
@@ -195,6 +231,7 @@ public class RadModelBuilder {
 
   protected void updateHierarchy(RadViewComponent root, RenderSession session) {
     myNativeComponent.clearEmptyRegions();
+    myNewChildren.put(root, Lists.<RadComponent>newArrayList());
     List<ViewInfo> rootViews = session.getRootViews();
     if (rootViews != null) {
       for (ViewInfo info : rootViews) {
@@ -210,6 +247,50 @@ public class RadModelBuilder {
     }
   }
 
+  /**
+   * Applies the new children lists computed by {@link #updateHierarchy}, leaving the lists which didn't change alone
+   */
+  private void updateChildren() {
+    for (Map.Entry<RadViewComponent, List<RadComponent>> entry : myNewChildren.entrySet()) {
+      RadViewComponent component = entry.getKey();
+      List<RadComponent> children = entry.getValue();
+      if (!children.equals(component.getChildren())) {
+        component.getChildren().clear();
+        for (RadComponent child : children) {
+          component.add(child, null);
+        }
+      }
+    }
+    myNewChildren.clear();
+  }
+
+  /**
+   * Finds the component in the previous model for the given tag, if any. When the hierarchy hasn't changed the
+   * component is simply the previous child of the parent at the same position; only when that doesn't match do we
+   * index the whole previous model by tag.
+   */
+  @Nullable
+  private RadViewComponent findPreviousComponent(@Nullable RadViewComponent parent, @NotNull XmlTag tag) {
+    if (parent != null) {
+      List<RadComponent> newChildren = myNewChildren.get(parent);
+      List<RadComponent> oldChildren = parent.getChildren();
+      int index = newChildren != null ? newChildren.size() : 0;
+      if (index < oldChildren.size()) {
+        RadComponent candidate = oldChildren.get(index);
+        if (candidate instanceof RadViewComponent && ((RadViewComponent)candidate).getTag() == tag && !myMatched.contains(candidate)) {
+          return (RadViewComponent)candidate;
+        }
+      }
+    }
+
+    if (!myTagMapInitialized) {
+      myTagMapInitialized = true;
+      initTagMap(myRoot);
+    }
+    RadViewComponent component = myTagToComponentMap.get(tag);
+    return component != null && !myMatched.contains(component) ? component : null;
+  }
+
   @Nullable
   protected RadViewComponent createRoot(boolean isMerge, @Nullable XmlTag rootTag) throws Exception {
     RadViewComponent root;MetaModel rootModel = myMetaManager.getModelByTag(isMerge ? VIEW_MERGE : ROOT_NODE_TAG);
@@ -264,7 +345,7 @@ public class RadModelBuilder {
     }
     if (tag != null) {
       boolean loadProperties;
-      component = myTagToComponentMap.get(tag);
+      component = findPreviousComponent(parent, tag);
       if (component != null) {
         if (!tag.isValid()) {
           component = null;
@@ -289,16 +370,18 @@ public class RadModelBuilder {
 
           component = RadComponentOperations.createComponent(tag, metaModel);
           loadProperties = true;
+          myCreatedCount++;
         }
         catch (Throwable e) {
           throw new RuntimeException(e);
         }
 
       } else {
-        component.getChildren().clear();
-        myTagToComponentMap.remove(tag);
+        myMatched.add(component);
         loadProperties = component.getParent() != parent;
+        myReusedCount++;
       }
+      myNewChildren.put(component, Lists.<RadComponent>newArrayList());
 
       component.setViewInfo(view);
       component.setNativeComponent(myNativeComponent);
@@ -315,7 +398,11 @@ public class RadModelBuilder {
       component.setBounds(left, top, Math.max(width, VISUAL_EMPTY_COMPONENT_SIZE), Math.max(height, VISUAL_EMPTY_COMPONENT_SIZE));
 
       if (parent != null && parent != component) {
-        parent.add(component, null);
+        List<RadComponent> siblings = myNewChildren.get(parent);
+        assert siblings != null;
+        siblings.add(component);
+        // The children lists are updated at the end, but the parent must be known when loading the properties
+        component.setParent(parent);
         if (loadProperties) {
           // Load properties on a component *after* assigning parents, since that affects
           // the computation of available attributes (due to layout params)
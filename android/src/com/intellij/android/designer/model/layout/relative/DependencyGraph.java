@@ -17,8 +17,10 @@ package com.intellij.android.designer.model.layout.relative;
 
 import com.android.tools.lint.detector.api.LintUtils;
 import com.intellij.android.designer.model.RadViewComponent;
-import com.intellij.designer.model.RadComponent;
+import com.intellij.openapi.util.Comparing;
+import com.intellij.psi.PsiFile;
 import com.intellij.psi.xml.XmlAttribute;
+import com.intellij.psi.xml.XmlTag;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -49,6 +51,19 @@ public class DependencyGraph {
   private static final String DEPENDENCY_FORMAT = "%1$s %2$s %3$s"; //$NON-NLS-1$
 
   private final Map<RadViewComponent, ViewData> myNodeToView = new HashMap<RadViewComponent, ViewData>();
+  private final Map<String, ViewData> myIdToView = new HashMap<String, ViewData>();
+
+  /** For each view, the constraint attributes its constraints were computed from */
+  private final Map<RadViewComponent, String> myConstraintAttributes = new HashMap<RadViewComponent, String>();
+
+  private final RadViewComponent myLayout;
+  private ViewData myParentView;
+
+  /** Modification stamp of the layout file when the graph was last brought up to date */
+  private long myModificationStamp = -1;
+
+  /** Whether the layout may have changed since the graph was last brought up to date */
+  private boolean myStale;
 
   /**
    * Returns the {@link DependencyGraph} for the given relative layout widget
@@ -62,40 +77,49 @@ public class DependencyGraph {
       graph = new DependencyGraph(layout);
       layout.setClientProperty(KEY, graph);
     }
+    else if (graph.myStale) {
+      graph.update();
+    }
     return graph;
   }
 
   /**
    * Ensures that the dependency graph for the given layout is refreshed (if it is cached)
+   * <p>
+   * The graph is brought up to date lazily the next time it is requested, and only the
+   * constraints of the views whose relative layout attributes changed are recomputed
+   * (unless views were added, removed or renamed).
    *
    * @param layout the relative layout
    */
   public static void refresh(@NotNull RadViewComponent layout) {
-    layout.extractClientProperty(KEY);
+    DependencyGraph graph = layout.getClientProperty(KEY);
+    if (graph != null) {
+      graph.myStale = true;
+    }
   }
 
   /**
    * Constructs a new {@link DependencyGraph} for the given relative layout
    */
   private DependencyGraph(RadViewComponent layout) {
-    List<RadComponent> nodes = layout.getChildren();
+    myLayout = layout;
+    build();
+  }
+
+  private void build() {
+    myNodeToView.clear();
+    myIdToView.clear();
+    myConstraintAttributes.clear();
+    myModificationStamp = getModificationStamp();
 
     // Parent view:
-    String parentId = layout.getId();
-    if (parentId != null) {
-      parentId = LintUtils.stripIdPrefix(parentId);
-    }
-    else {
-      parentId = "RelativeLayout"; // For display purposes; we never reference
-      // the parent id from a constraint, only via parent-relative params
-      // like centerInParent
-    }
-    ViewData parentView = new ViewData(layout, parentId);
-    myNodeToView.put(layout, parentView);
-    Map<String, ViewData> idToView = new HashMap<String, ViewData>();
-    idToView.put(parentId, parentView);
+    String parentId = getParentId();
+    myParentView = new ViewData(myLayout, parentId);
+    myNodeToView.put(myLayout, myParentView);
+    myIdToView.put(parentId, myParentView);
 
-    for (RadViewComponent child : RadViewComponent.getViewComponents(nodes)) {
+    for (RadViewComponent child : RadViewComponent.getViewComponents(myLayout.getChildren())) {
       String id = child.getId();
       if (id != null) {
         id = LintUtils.stripIdPrefix(id);
@@ -103,45 +127,118 @@ public class DependencyGraph {
       ViewData view = new ViewData(child, id);
       myNodeToView.put(child, view);
       if (id != null) {
-        idToView.put(id, view);
+        myIdToView.put(id, view);
+      }
+    }
+
+    for (ViewData view : myNodeToView.values()) {
+      addConstraints(view);
+    }
+  }
+
+  /** Brings a previously built graph up to date with the current layout */
+  private void update() {
+    myStale = false;
+    long stamp = getModificationStamp();
+    if (stamp != -1 && stamp == myModificationStamp) {
+      return;
+    }
+    myModificationStamp = stamp;
+
+    // Views added, removed or renamed? If so, just rebuild
+    List<RadViewComponent> children = RadViewComponent.getViewComponents(myLayout.getChildren());
+    if (children.size() + 1 != myNodeToView.size() || !getParentId().equals(myParentView.id)) {
+      build();
+      return;
+    }
+    for (RadViewComponent child : children) {
+      ViewData view = myNodeToView.get(child);
+      String id = child.getId();
+      if (id != null) {
+        id = LintUtils.stripIdPrefix(id);
+      }
+      if (view == null || !Comparing.equal(id, view.id)) {
+        build();
+        return;
       }
     }
 
     for (ViewData view : myNodeToView.values()) {
-      for (XmlAttribute attribute : view.node.getTag().getAttributes()) {
-        String name = attribute.getLocalName();
-        ConstraintType type = ConstraintType.fromAttribute(name);
-        if (type != null) {
-          String value = attribute.getValue();
-
-          if (type.targetParent) {
-            if (VALUE_TRUE.equals(value)) {
-              Constraint constraint = new Constraint(type, view, parentView);
-              view.dependsOn.add(constraint);
-              parentView.dependedOnBy.add(constraint);
-            }
+      if (!getConstraintAttributes(view.node).equals(myConstraintAttributes.get(view.node))) {
+        for (Constraint constraint : view.dependsOn) {
+          constraint.to.dependedOnBy.remove(constraint);
+        }
+        view.dependsOn.clear();
+        addConstraints(view);
+      }
+    }
+  }
+
+  @NotNull
+  private String getParentId() {
+    String parentId = myLayout.getId();
+    if (parentId != null) {
+      return LintUtils.stripIdPrefix(parentId);
+    }
+    // For display purposes; we never reference the parent id from a constraint,
+    // only via parent-relative params like centerInParent
+    return "RelativeLayout";
+  }
+
+  private long getModificationStamp() {
+    XmlTag tag = myLayout.getTag();
+    PsiFile file = tag != null && tag.isValid() ? tag.getContainingFile() : null;
+    return file != null ? file.getModificationStamp() : -1;
+  }
+
+  /** Returns a description of the relative layout attributes of the given view, used to detect changes */
+  @NotNull
+  private static String getConstraintAttributes(@NotNull RadViewComponent node) {
+    StringBuilder sb = new StringBuilder();
+    for (XmlAttribute attribute : node.getTag().getAttributes()) {
+      String name = attribute.getLocalName();
+      if (ConstraintType.fromAttribute(name) != null) {
+        sb.append(name).append('=').append(attribute.getValue()).append('\n');
+      }
+    }
+    return sb.toString();
+  }
+
+  private void addConstraints(@NotNull ViewData view) {
+    myConstraintAttributes.put(view.node, getConstraintAttributes(view.node));
+    for (XmlAttribute attribute : view.node.getTag().getAttributes()) {
+      String name = attribute.getLocalName();
+      ConstraintType type = ConstraintType.fromAttribute(name);
+      if (type != null) {
+        String value = attribute.getValue();
+
+        if (type.targetParent) {
+          if (VALUE_TRUE.equals(value)) {
+            Constraint constraint = new Constraint(type, view, myParentView);
+            view.dependsOn.add(constraint);
+            myParentView.dependedOnBy.add(constraint);
+          }
+        }
+        else {
+          // id-based constraint.
+          // NOTE: The id could refer to some widget that is NOT a sibling!
+          String targetId = LintUtils.stripIdPrefix(value);
+          ViewData target = myIdToView.get(targetId);
+          if (target == view) {
+            // Self-reference. RelativeLayout ignores these so it's
+            // not an error like a deeper cycle (where RelativeLayout
+            // will throw an exception), but we might as well warn
+            // the user about it.
+            // TODO: Where do we emit this error?
+          }
+          else if (target != null) {
+            Constraint constraint = new Constraint(type, view, target);
+            view.dependsOn.add(constraint);
+            target.dependedOnBy.add(constraint);
           }
           else {
-            // id-based constraint.
-            // NOTE: The id could refer to some widget that is NOT a sibling!
-            String targetId = LintUtils.stripIdPrefix(value);
-            ViewData target = idToView.get(targetId);
-            if (target == view) {
-              // Self-reference. RelativeLayout ignores these so it's
-              // not an error like a deeper cycle (where RelativeLayout
-              // will throw an exception), but we might as well warn
-              // the user about it.
-              // TODO: Where do we emit this error?
-            }
-            else if (target != null) {
-              Constraint constraint = new Constraint(type, view, target);
-              view.dependsOn.add(constraint);
-              target.dependedOnBy.add(constraint);
-            }
-            else {
-              // This is valid but we might want to warn...
-              //System.out.println("Warning: no view data found for " + targetId);
-            }
+            // This is valid but we might want to warn...
+            //System.out.println("Warning: no view data found for " + targetId);
           }
         }
       }
@@ -28,6 +28,7 @@ import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.psi.xml.XmlAttribute;
 import com.intellij.psi.xml.XmlTag;
 import org.jetbrains.android.facet.AndroidFacet;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
@@ -145,6 +146,9 @@ public class GuidelineHandler {
    */
   protected final List<Segment> myCenterHorizEdges;
 
+  /** Sorted indices of the above edge lists, used to quickly find the edges closest to a dragged edge */
+  private final Map<List<Segment>, SegmentIndex> myEdgeIndices = new IdentityHashMap<List<Segment>, SegmentIndex>();
+
   /**
    * Suggestions for horizontal matches. There could be more than one, but all matches
    * will be equidistant from the current position (as well as in the same direction,
@@ -458,52 +462,106 @@ public class GuidelineHandler {
   }
 
   protected void addClosest(Segment draggedEdge, List<Segment> edges, List<Match> closest) {
+    SegmentIndex index = getIndex(edges);
     int at = draggedEdge.at;
-    int closestDelta = closest.size() > 0 ? closest.get(0).delta : Integer.MAX_VALUE;
-    int closestDistance = abs(closestDelta);
-    for (Segment edge : edges) {
-      assert draggedEdge.edgeType.isHorizontal() == edge.edgeType.isHorizontal();
-
-      int delta = edge.at - at;
-      int distance = abs(delta);
+    int size = index.size();
+
+    // Visit the edges in order of increasing distance from the dragged edge; once an edge has
+    // matched, edges further away can't be closer matches
+    int below = index.lowerBound(at) - 1;
+    int above = below + 1;
+    List<Integer> level = new ArrayList<Integer>();
+    while (below >= 0 || above < size) {
+      int distance = Integer.MAX_VALUE;
+      if (below >= 0) {
+        distance = at - index.getPosition(below);
+      }
+      if (above < size) {
+        distance = Math.min(distance, index.getPosition(above) - at);
+      }
+      int closestDistance = closest.size() > 0 ? abs(closest.get(0).delta) : Integer.MAX_VALUE;
       if (distance > closestDistance) {
-        continue;
+        break;
       }
 
-      if (!isEdgeTypeCompatible(edge.edgeType, draggedEdge.edgeType, delta)) {
-        continue;
+      // Edges at the same distance on either side are considered in their original order, since
+      // the first one to match decides which side wins
+      level.clear();
+      while (below >= 0 && at - index.getPosition(below) == distance) {
+        level.add(below--);
       }
-
-      boolean withParent = edge.node == layout;
-      ConstraintType type = ConstraintType.forMatch(withParent, draggedEdge.edgeType, edge.edgeType);
-      if (type == null) {
-        continue;
+      while (above < size && index.getPosition(above) - at == distance) {
+        level.add(above++);
       }
-
-      // Ensure that the edge match is compatible; for example, a "below"
-      // constraint can only apply to the margin bounds and a "bottom"
-      // constraint can only apply to the non-margin bounds.
-      if (type.relativeToMargin && edge.marginType == WITHOUT_MARGIN) {
-        continue;
+      if (level.size() > 1) {
+        final SegmentIndex sortedIndex = index;
+        Collections.sort(level, new Comparator<Integer>() {
+          @Override
+          public int compare(Integer i1, Integer i2) {
+            return sortedIndex.getOriginalIndex(i1) - sortedIndex.getOriginalIndex(i2);
+          }
+        });
       }
-      else if (!type.relativeToMargin && edge.marginType == WITH_MARGIN) {
-        continue;
+      for (Integer i : level) {
+        addMatch(draggedEdge, index.getSegment(i), closest);
       }
+    }
+  }
 
-      Match match = new Match(edge, draggedEdge, type, delta);
+  @NotNull
+  private SegmentIndex getIndex(List<Segment> edges) {
+    // The edge lists are only ever appended to, so the size tells us whether the index is current
+    SegmentIndex index = myEdgeIndices.get(edges);
+    if (index == null || index.size() != edges.size()) {
+      index = new SegmentIndex(edges);
+      myEdgeIndices.put(edges, index);
+    }
+    return index;
+  }
 
-      if (distance < closestDistance) {
-        closest.clear();
-        closestDistance = distance;
-        closestDelta = delta;
-      }
-      else if (delta * closestDelta < 0) {
-        // They have different signs, e.g. the matches are equal but
-        // on opposite sides; can't accept them both
-        continue;
-      }
-      closest.add(match);
+  private void addMatch(Segment draggedEdge, Segment edge, List<Match> closest) {
+    assert draggedEdge.edgeType.isHorizontal() == edge.edgeType.isHorizontal();
+
+    // All the matches in the list are at the same delta
+    int closestDelta = closest.size() > 0 ? closest.get(0).delta : Integer.MAX_VALUE;
+    int closestDistance = abs(closestDelta);
+    int delta = edge.at - draggedEdge.at;
+    int distance = abs(delta);
+    if (distance > closestDistance) {
+      return;
+    }
+
+    if (!isEdgeTypeCompatible(edge.edgeType, draggedEdge.edgeType, delta)) {
+      return;
+    }
+
+    boolean withParent = edge.node == layout;
+    ConstraintType type = ConstraintType.forMatch(withParent, draggedEdge.edgeType, edge.edgeType);
+    if (type == null) {
+      return;
+    }
+
+    // Ensure that the edge match is compatible; for example, a "below"
+    // constraint can only apply to the margin bounds and a "bottom"
+    // constraint can only apply to the non-margin bounds.
+    if (type.relativeToMargin && edge.marginType == WITHOUT_MARGIN) {
+      return;
+    }
+    else if (!type.relativeToMargin && edge.marginType == WITH_MARGIN) {
+      return;
+    }
+
+    Match match = new Match(edge, draggedEdge, type, delta);
+
+    if (distance < closestDistance) {
+      closest.clear();
+    }
+    else if (delta * closestDelta < 0) {
+      // They have different signs, e.g. the matches are equal but
+      // on opposite sides; can't accept them both
+      return;
     }
+    closest.add(match);
   }
 
   protected void clearSuggestions() {
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.android.designer.model.layout.relative;
+
+import com.android.tools.idea.designer.Segment;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A list of {@link Segment}s sorted by their position along the axis they are perpendicular to, such that
+ * {@link GuidelineHandler} can visit the segments closest to a dragged edge first (starting with a binary
+ * search) and stop as soon as the remaining segments are further away than the best match found so far,
+ * rather than considering every edge of every sibling on every mouse move.
+ */
+class SegmentIndex {
+  /** Indices into the original list, sorted by position (and by original index for equal positions) */
+  private final Integer[] myOrder;
+  private final int[] myPositions;
+  private final List<Segment> mySegments;
+
+  SegmentIndex(@NotNull final List<Segment> segments) {
+    mySegments = segments;
+    int size = segments.size();
+    myOrder = new Integer[size];
+    for (int i = 0; i < size; i++) {
+      myOrder[i] = i;
+    }
+    Arrays.sort(myOrder, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer index1, Integer index2) {
+        int delta = segments.get(index1).at - segments.get(index2).at;
+        return delta != 0 ? delta : index1 - index2;
+      }
+    });
+    myPositions = new int[size];
+    for (int i = 0; i < size; i++) {
+      myPositions[i] = segments.get(myOrder[i]).at;
+    }
+  }
+
+  /** Returns the number of segments in the index */
+  int size() {
+    return myPositions.length;
+  }
+
+  /** Returns the position of the segment at the given sorted index */
+  int getPosition(int sortedIndex) {
+    return myPositions[sortedIndex];
+  }
+
+  /** Returns the index in the original list of the segment at the given sorted index */
+  int getOriginalIndex(int sortedIndex) {
+    return myOrder[sortedIndex];
+  }
+
+  /** Returns the segment at the given sorted index */
+  @NotNull
+  Segment getSegment(int sortedIndex) {
+    return mySegments.get(myOrder[sortedIndex]);
+  }
+
+  /** Returns the sorted index of the first segment positioned at or after the given position */
+  int lowerBound(int at) {
+    int low = 0;
+    int high = myPositions.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (myPositions[middle] < at) {
+        low = middle + 1;
+      }
+      else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+}
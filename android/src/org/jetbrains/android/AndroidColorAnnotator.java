@@ -222,7 +222,7 @@ public class AndroidColorAnnotator implements Annotator {
       // TODO: Use a *shared* fallback resolver for this?
       ResourceResolver resourceResolver = configuration.getResourceResolver();
       if (resourceResolver != null) {
-        annotateResourceValue(type, holder, element, value, resourceResolver);
+        annotateResourceValue(type, holder, element, value, resourceResolver, configuration);
       }
     }
   }
@@ -254,7 +254,8 @@ public class AndroidColorAnnotator implements Annotator {
                                             @NotNull AnnotationHolder holder,
                                             @NotNull PsiElement element,
                                             @NotNull ResourceValue value,
-                                            @NotNull ResourceResolver resourceResolver) {
+                                            @NotNull ResourceResolver resourceResolver,
+                                            @NotNull Configuration configuration) {
     if (type == ResourceType.COLOR) {
       Color color = ResourceHelper.resolveColor(resourceResolver, value);
       if (color != null) {
@@ -264,7 +265,19 @@ public class AndroidColorAnnotator implements Annotator {
     } else {
       assert type == ResourceType.DRAWABLE || type == ResourceType.MIPMAP;
 
-      File iconFile = pickBestBitmap(ResourceHelper.resolveDrawable(resourceResolver, value));
+      File file = ResourceHelper.resolveDrawable(resourceResolver, value);
+      if (file != null && file.getPath().endsWith(DOT_XML)) {
+        // Vector drawables and the like can't be read as images; render them with layoutlib instead
+        ResourceValue drawable = resourceResolver.resolveResValue(value);
+        if (drawable != null) {
+          Annotation annotation = holder.createInfoAnnotation(element, null);
+          annotation.setGutterIconRenderer(new com.android.tools.idea.rendering.GutterIconRenderer(element, file, drawable,
+                                                                                                   configuration));
+        }
+        return;
+      }
+
+      File iconFile = pickBestBitmap(file);
       if (iconFile != null) {
         Annotation annotation = holder.createInfoAnnotation(element, null);
         annotation.setGutterIconRenderer(new com.android.tools.idea.rendering.GutterIconRenderer(element, iconFile));
@@ -27,7 +27,9 @@ import org.jetbrains.annotations.Nullable;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -192,16 +194,43 @@ public class AndroidValueResourcesIndex extends FileBasedIndexExtension<Resource
     }
   };
 
+  /**
+   * Externalizer for the resource infos of a key. The infos of a marker key typically share the same type,
+   * and most have no context, so rather than writing the full entry for each info we write a table of the
+   * distinct types up front and refer to it by index, and flag the context in the offset.
+   */
   private final DataExternalizer<Set<MyResourceInfo>> myValueExternalizer = new DataExternalizer<Set<MyResourceInfo>>() {
     @Override
     public void save(@NotNull DataOutput out, Set<MyResourceInfo> value) throws IOException {
       DataInputOutputUtil.writeINT(out, value.size());
+      if (value.isEmpty()) {
+        return;
+      }
+
+      List<String> types = new ArrayList<String>(1);
+      for (MyResourceInfo entry : value) {
+        String type = entry.getResourceEntry().getType();
+        if (!types.contains(type)) {
+          types.add(type);
+        }
+      }
+      DataInputOutputUtil.writeINT(out, types.size());
+      for (String type : types) {
+        IOUtil.writeUTF(out, type);
+      }
 
       for (MyResourceInfo entry : value) {
-        IOUtil.writeUTF(out, entry.getResourceEntry().getType());
-        IOUtil.writeUTF(out, entry.getResourceEntry().getName());
-        IOUtil.writeUTF(out, entry.getResourceEntry().getContext());
-        DataInputOutputUtil.writeINT(out, entry.getOffset());
+        ResourceEntry resourceEntry = entry.getResourceEntry();
+        if (types.size() > 1) {
+          DataInputOutputUtil.writeINT(out, types.indexOf(resourceEntry.getType()));
+        }
+        IOUtil.writeUTF(out, resourceEntry.getName());
+        String context = resourceEntry.getContext();
+        boolean hasContext = !context.isEmpty();
+        DataInputOutputUtil.writeINT(out, entry.getOffset() << 1 | (hasContext ? 1 : 0));
+        if (hasContext) {
+          IOUtil.writeUTF(out, context);
+        }
       }
     }
 
@@ -218,14 +247,24 @@ public class AndroidValueResourcesIndex extends FileBasedIndexExtension<Resource
       if (size == 0) {
         return Collections.emptySet();
       }
+
+      final int typeCount = DataInputOutputUtil.readINT(in);
+      if (typeCount <= 0 || typeCount > size) {
+        throw new IOException("Corrupt Index: Type count " + typeCount);
+      }
+      final String[] types = new String[typeCount];
+      for (int i = 0; i < typeCount; i++) {
+        types[i] = IOUtil.readUTF(in);
+      }
+
       final Set<MyResourceInfo> result = Sets.newHashSetWithExpectedSize(size);
 
       for (int i = 0; i < size; i++) {
-        final String type = IOUtil.readUTF(in);
+        final String type = typeCount > 1 ? types[DataInputOutputUtil.readINT(in)] : types[0];
         final String name = IOUtil.readUTF(in);
-        final String context = IOUtil.readUTF(in);
-        final int offset = DataInputOutputUtil.readINT(in);
-        result.add(new MyResourceInfo(new ResourceEntry(type, name, context), offset));
+        final int offsetAndFlag = DataInputOutputUtil.readINT(in);
+        final String context = (offsetAndFlag & 1) != 0 ? IOUtil.readUTF(in) : "";
+        result.add(new MyResourceInfo(new ResourceEntry(type, name, context), offsetAndFlag >>> 1));
       }
       return result;
     }
@@ -273,14 +312,15 @@ public class AndroidValueResourcesIndex extends FileBasedIndexExtension<Resource
 
   @Override
   public int getVersion() {
-    return 6;
+    return 7;
   }
 
   public static class MyResourceInfo {
     private final ResourceEntry myResourceEntry;
     private final int myOffset;
 
-    private MyResourceInfo(@NotNull ResourceEntry resourceEntry, int offset) {
+    @VisibleForTesting
+    MyResourceInfo(@NotNull ResourceEntry resourceEntry, int offset) {
       myResourceEntry = resourceEntry;
       myOffset = offset;
     }
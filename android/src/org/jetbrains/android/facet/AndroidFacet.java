@@ -153,6 +153,7 @@ public class AndroidFacet extends Facet<AndroidFacetConfiguration> {
 
   private SourceProvider myMainSourceSet;
   private IdeaSourceProvider myMainIdeaSourceSet;
+  private volatile SourceProviderIndex mySourceProviderIndex;
   private final AndroidModuleInfo myAndroidModuleInfo = AndroidModuleInfo.create(this);
   private RenderService myRenderService;
   private DataBindingUtil.LightBrClass myLightBrClass;
@@ -211,6 +212,21 @@ public class AndroidFacet extends Facet<AndroidFacetConfiguration> {
     return myMainIdeaSourceSet;
   }
 
+  /**
+   * Returns the index of the source providers of the selected variant, which is rebuilt after a sync or a variant change.
+   * Must only be called when the facet has an {@link IdeaAndroidProject}.
+   */
+  @NotNull
+  SourceProviderIndex getSourceProviderIndex() {
+    SourceProviderIndex index = mySourceProviderIndex;
+    if (index == null || !index.isUpToDate(this)) {
+      assert myIdeaAndroidProject != null;
+      index = new SourceProviderIndex(this, myIdeaAndroidProject);
+      mySourceProviderIndex = index;
+    }
+    return index;
+  }
+
   @NotNull
   public List<IdeaSourceProvider> getMainIdeaTestSourceProviders() {
     if (!isGradleProject() || myIdeaAndroidProject == null) {
@@ -1124,6 +1140,7 @@ public class AndroidFacet extends Facet<AndroidFacetConfiguration> {
    */
   public void setIdeaAndroidProject(@Nullable IdeaAndroidProject project) {
     myIdeaAndroidProject = project;
+    mySourceProviderIndex = null;
     DataBindingUtil.onIdeaProjectSet(this);
   }
 
@@ -336,6 +336,9 @@ public abstract class IdeaSourceProvider {
     if (!facet.isGradleProject()) {
       return Collections.singletonList(facet.getMainIdeaSourceProvider());
     }
+    if (facet.getIdeaAndroidProject() != null) {
+      return Lists.newArrayList(facet.getSourceProviderIndex().getProviders());
+    }
 
     List<IdeaSourceProvider> providers = Lists.newArrayList();
 
@@ -439,6 +442,52 @@ public abstract class IdeaSourceProvider {
   }
 
 
+  /**
+   * Returns the source providers of the currently selected variant (see {@link #getCurrentSourceProviders(AndroidFacet)})
+   * which {@link #containsFile(VirtualFile) contain} the given file, in overlay order.
+   */
+  @NotNull
+  public static List<IdeaSourceProvider> getCurrentSourceProvidersContaining(@NotNull AndroidFacet facet, @NotNull VirtualFile file) {
+    if (facet.isGradleProject() && facet.getIdeaAndroidProject() != null) {
+      return facet.getSourceProviderIndex().getProvidersContaining(file);
+    }
+
+    List<IdeaSourceProvider> providers = Lists.newArrayList();
+    for (IdeaSourceProvider provider : getCurrentSourceProviders(facet)) {
+      if (provider.containsFile(file)) {
+        providers.add(provider);
+      }
+    }
+    return providers;
+  }
+
+  /**
+   * Returns the type of the innermost source folder of the currently selected variant containing the given file
+   * ({@link AndroidSourceType#MANIFEST} for manifest files), or null if the file is not in any of its source folders.
+   */
+  @Nullable
+  public static AndroidSourceType getCurrentSourceType(@NotNull AndroidFacet facet, @NotNull VirtualFile file) {
+    if (facet.isGradleProject() && facet.getIdeaAndroidProject() != null) {
+      return facet.getSourceProviderIndex().getSourceType(file);
+    }
+
+    AndroidSourceType innermostType = null;
+    VirtualFile innermostFolder = null;
+    for (IdeaSourceProvider provider : getCurrentSourceProviders(facet)) {
+      for (AndroidSourceType type : AndroidSourceType.values()) {
+        for (VirtualFile folder : type.getSources(provider)) {
+          if (type == AndroidSourceType.MANIFEST ? folder.equals(file) : VfsUtilCore.isAncestor(folder, file, false)) {
+            if (innermostFolder == null || VfsUtilCore.isAncestor(innermostFolder, folder, true)) {
+              innermostType = type;
+              innermostFolder = folder;
+            }
+          }
+        }
+      }
+    }
+    return innermostType;
+  }
+
   /**
    * Returns true if this SourceProvider has one or more source folders contained by (or equal to)
    * the given folder.
@@ -670,6 +719,9 @@ public abstract class IdeaSourceProvider {
     }
 
     if (facet.isGradleProject()) {
+      if (facet.getIdeaAndroidProject() != null) {
+        return facet.getSourceProviderIndex().isManifestFile(candidate);
+      }
       for (IdeaSourceProvider provider : getCurrentSourceProviders(facet)) {
         if (candidate.equals(provider.getManifestFile())) {
           return true;
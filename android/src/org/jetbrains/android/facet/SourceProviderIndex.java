@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.facet;
+
+import com.android.builder.model.SourceProvider;
+import com.android.tools.idea.gradle.IdeaAndroidProject;
+import com.google.common.collect.Lists;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import gnu.trove.THashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the source providers of the selected variant of a Gradle-based facet, in the order of
+ * {@link IdeaSourceProvider#getCurrentSourceProviders(AndroidFacet)}. The index maps the paths of the source folders and
+ * manifest files of the providers to the providers and source types they belong to, so finding the providers of a file
+ * means looking up the file and its parent directories, rather than checking every folder of every provider.
+ * <p>
+ * The index is built from the paths in the Gradle model, whether or not the folders exist yet, so it only needs to be
+ * rebuilt when the project is synced or a different variant is selected; see {@link #isUpToDate(AndroidFacet)}.
+ */
+final class SourceProviderIndex {
+  @NotNull private final IdeaAndroidProject myAndroidProject;
+  @NotNull private final String myVariantName;
+  @NotNull private final List<IdeaSourceProvider> myProviders = Lists.newArrayList();
+  @NotNull private final Map<String, List<Entry>> myFolders = new THashMap<String, List<Entry>>(FileUtil.PATH_HASHING_STRATEGY);
+  /** The parents of source folders (such as the flavor root directories) count as part of a provider as well */
+  @NotNull private final Map<String, List<Entry>> myFolderParents = new THashMap<String, List<Entry>>(FileUtil.PATH_HASHING_STRATEGY);
+
+  SourceProviderIndex(@NotNull AndroidFacet facet, @NotNull IdeaAndroidProject androidProject) {
+    myAndroidProject = androidProject;
+    myVariantName = androidProject.getSelectedVariant().getName();
+
+    add(facet.getMainSourceProvider());
+    List<SourceProvider> flavorSourceProviders = facet.getFlavorSourceProviders();
+    if (flavorSourceProviders != null) {
+      for (SourceProvider provider : flavorSourceProviders) {
+        add(provider);
+      }
+    }
+    add(facet.getMultiFlavorSourceProvider());
+    add(facet.getBuildTypeSourceProvider());
+    add(facet.getVariantSourceProvider());
+  }
+
+  private void add(@Nullable SourceProvider provider) {
+    if (provider == null) {
+      return;
+    }
+    int index = myProviders.size();
+    myProviders.add(IdeaSourceProvider.create(provider));
+
+    add(index, AndroidSourceType.MANIFEST, Collections.singletonList(provider.getManifestFile()));
+    add(index, AndroidSourceType.JAVA, provider.getJavaDirectories());
+    add(index, AndroidSourceType.JNI, provider.getCDirectories());
+    add(index, AndroidSourceType.JNI, provider.getCppDirectories());
+    add(index, AndroidSourceType.JNILIBS, provider.getJniLibsDirectories());
+    add(index, AndroidSourceType.RES, provider.getResDirectories());
+    add(index, AndroidSourceType.AIDL, provider.getAidlDirectories());
+    add(index, AndroidSourceType.RESOURCES, provider.getResourcesDirectories());
+    add(index, AndroidSourceType.ASSETS, provider.getAssetsDirectories());
+    add(index, AndroidSourceType.RS, provider.getRenderscriptDirectories());
+  }
+
+  private void add(int providerIndex, @NotNull AndroidSourceType type, @NotNull Collection<File> files) {
+    for (File file : files) {
+      String path = FileUtil.toCanonicalPath(file.getPath());
+      Entry entry = new Entry(providerIndex, type, path);
+      add(myFolders, path, entry);
+      if (type != AndroidSourceType.MANIFEST) {
+        String parent = new File(path).getParent();
+        if (parent != null) {
+          add(myFolderParents, FileUtil.toSystemIndependentName(parent), entry);
+        }
+      }
+    }
+  }
+
+  private static void add(@NotNull Map<String, List<Entry>> map, @NotNull String path, @NotNull Entry entry) {
+    List<Entry> entries = map.get(path);
+    if (entries == null) {
+      entries = Lists.newArrayListWithExpectedSize(1);
+      map.put(path, entries);
+    }
+    entries.add(entry);
+  }
+
+  /** Returns true if the facet still has the Gradle model and selected variant this index was built for */
+  boolean isUpToDate(@NotNull AndroidFacet facet) {
+    return facet.getIdeaAndroidProject() == myAndroidProject && myVariantName.equals(myAndroidProject.getSelectedVariant().getName());
+  }
+
+  @NotNull
+  List<IdeaSourceProvider> getProviders() {
+    return myProviders;
+  }
+
+  /**
+   * Returns the providers with a source folder containing the given file, or with the given file as manifest file, in
+   * overlay order. This matches {@link IdeaSourceProvider#containsFile(VirtualFile)}.
+   */
+  @NotNull
+  List<IdeaSourceProvider> getProvidersContaining(@NotNull VirtualFile file) {
+    boolean[] contains = new boolean[myProviders.size()];
+    boolean found = false;
+
+    List<Entry> parentEntries = myFolderParents.get(file.getPath());
+    if (parentEntries != null) {
+      LocalFileSystem fileSystem = LocalFileSystem.getInstance();
+      for (Entry entry : parentEntries) {
+        // Like IdeaSourceProvider#containsFile, only count the parents of folders which exist
+        if (!contains[entry.providerIndex] && fileSystem.findFileByPath(entry.path) != null) {
+          contains[entry.providerIndex] = true;
+          found = true;
+        }
+      }
+    }
+    for (VirtualFile folder = file; folder != null; folder = folder.getParent()) {
+      List<Entry> entries = myFolders.get(folder.getPath());
+      if (entries != null) {
+        for (Entry entry : entries) {
+          // Only the manifest file itself is part of a provider, not the files next to it
+          if (entry.type != AndroidSourceType.MANIFEST || folder == file) {
+            contains[entry.providerIndex] = true;
+            found = true;
+          }
+        }
+      }
+    }
+    if (!found) {
+      return Collections.emptyList();
+    }
+
+    List<IdeaSourceProvider> providers = Lists.newArrayList();
+    for (int i = 0; i < contains.length; i++) {
+      if (contains[i]) {
+        providers.add(myProviders.get(i));
+      }
+    }
+    return providers;
+  }
+
+  /**
+   * Returns the type of the innermost source folder containing the given file (or {@link AndroidSourceType#MANIFEST} for
+   * manifest files), or null if the file is not part of any of the providers.
+   */
+  @Nullable
+  AndroidSourceType getSourceType(@NotNull VirtualFile file) {
+    for (VirtualFile folder = file; folder != null; folder = folder.getParent()) {
+      List<Entry> entries = myFolders.get(folder.getPath());
+      if (entries != null) {
+        for (Entry entry : entries) {
+          if (entry.type != AndroidSourceType.MANIFEST || folder == file) {
+            return entry.type;
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+  boolean isManifestFile(@NotNull VirtualFile file) {
+    List<Entry> entries = myFolders.get(file.getPath());
+    if (entries != null) {
+      for (Entry entry : entries) {
+        if (entry.type == AndroidSourceType.MANIFEST) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static class Entry {
+    final int providerIndex;
+    @NotNull final AndroidSourceType type;
+    /** The path of the source folder or manifest file */
+    @NotNull final String path;
+
+    Entry(int providerIndex, @NotNull AndroidSourceType type, @NotNull String path) {
+      this.providerIndex = providerIndex;
+      this.type = type;
+      this.path = path;
+    }
+  }
+}
@@ -30,7 +30,6 @@ import com.intellij.psi.PsiField;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.xml.XmlFile;
-import com.intellij.util.containers.HashMap;
 import com.intellij.util.containers.HashSet;
 import com.intellij.util.indexing.FileBasedIndex;
 import org.jetbrains.android.AndroidValueResourcesIndex;
@@ -159,38 +158,29 @@ public class LocalResourceManager extends ResourceManager {
 
   @NotNull
   public Set<String> getValueResourceTypes() {
-    final Map<VirtualFile, Set<String>> file2Types = new HashMap<VirtualFile, Set<String>>();
+    final Set<VirtualFile> valueResourceFiles = getAllValueResourceFiles();
+    final Set<String> result = new HashSet<String>();
+    if (valueResourceFiles.isEmpty()) {
+      return result;
+    }
     final FileBasedIndex index = FileBasedIndex.getInstance();
-    final GlobalSearchScope scope = GlobalSearchScope.projectScope(myProject);
+    final GlobalSearchScope scope = GlobalSearchScope.filesScope(myProject, valueResourceFiles);
 
-    for (ResourceType resourceType : AndroidResourceUtil.ALL_VALUE_RESOURCE_TYPES) {
+    for (final ResourceType resourceType : AndroidResourceUtil.ALL_VALUE_RESOURCE_TYPES) {
       final ResourceEntry typeMarkerEntry = AndroidValueResourcesIndex.createTypeMarkerKey(resourceType.getName());
 
+      // We only need to know whether there is any resource of this type, so stop at the first hit
       index.processValues(AndroidValueResourcesIndex.INDEX_ID, typeMarkerEntry, null, new FileBasedIndex.ValueProcessor<Set<AndroidValueResourcesIndex.MyResourceInfo>>() {
         @Override
         public boolean process(VirtualFile file, Set<AndroidValueResourcesIndex.MyResourceInfo> infos) {
-          for (AndroidValueResourcesIndex.MyResourceInfo info : infos) {
-            Set<String> resourcesInFile = file2Types.get(file);
-
-            if (resourcesInFile == null) {
-              resourcesInFile = new HashSet<String>();
-              file2Types.put(file, resourcesInFile);
-            }
-            resourcesInFile.add(info.getResourceEntry().getType());
+          if (infos.isEmpty()) {
+            return true;
           }
-          return true;
+          result.add(resourceType.getName());
+          return false;
         }
       }, scope);
     }
-    final Set<String> result = new HashSet<String>();
-
-    for (VirtualFile file : getAllValueResourceFiles()) {
-      final Set<String> types = file2Types.get(file);
-
-      if (types != null) {
-        result.addAll(types);
-      }
-    }
     return result;
   }
 
@@ -289,41 +289,35 @@ public abstract class ResourceManager {
     if (type == null) {
       return Collections.emptyList();
     }
+    final Set<VirtualFile> valueResourceFiles = getAllValueResourceFiles();
+    if (valueResourceFiles.isEmpty()) {
+      return Collections.emptyList();
+    }
     final FileBasedIndex index = FileBasedIndex.getInstance();
     final ResourceEntry typeMarkerEntry = AndroidValueResourcesIndex.createTypeMarkerKey(resourceType);
-    final GlobalSearchScope scope = GlobalSearchScope.allScope(myProject);
-
-    final Map<VirtualFile, Set<ResourceEntry>> file2resourceSet = new HashMap<VirtualFile, Set<ResourceEntry>>();
+    final GlobalSearchScope scope = GlobalSearchScope.filesScope(myProject, valueResourceFiles);
+    final List<ResourceEntry> result = new ArrayList<ResourceEntry>();
 
+    // The type marker key maps directly to all the resources of the type in each file, so there is
+    // no need to collect them per file first; the scope already limits this to our value resource files
     index.processValues(AndroidValueResourcesIndex.INDEX_ID, typeMarkerEntry, null, new FileBasedIndex.ValueProcessor<Set<AndroidValueResourcesIndex.MyResourceInfo>>() {
       @Override
       public boolean process(VirtualFile file, Set<AndroidValueResourcesIndex.MyResourceInfo> infos) {
+        // The same resource may be declared more than once in a file; only report it once per file
+        final Set<ResourceEntry> seen = infos.size() > 1 ? new HashSet<ResourceEntry>(infos.size()) : null;
         for (AndroidValueResourcesIndex.MyResourceInfo info : infos) {
-          Set<ResourceEntry> resourcesInFile = file2resourceSet.get(file);
-
-          if (resourcesInFile == null) {
-            resourcesInFile = new HashSet<ResourceEntry>();
-            file2resourceSet.put(file, resourcesInFile);
+          ResourceEntry entry = info.getResourceEntry();
+          if (seen != null && !seen.add(entry)) {
+            continue;
           }
-          resourcesInFile.add(info.getResourceEntry());
-        }
-        return true;
-      }
-    }, scope);
-
-    final List<ResourceEntry> result = new ArrayList<ResourceEntry>();
-
-    for (VirtualFile file : getAllValueResourceFiles()) {
-      final Set<ResourceEntry> entries = file2resourceSet.get(file);
-
-      if (entries != null) {
-        for (ResourceEntry entry : entries) {
           if (isResourcePublic(entry.getType(), entry.getName())) {
             result.add(entry);
           }
         }
+        return true;
       }
-    }
+    }, scope);
+
     return result;
   }
 
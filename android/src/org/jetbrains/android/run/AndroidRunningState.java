@@ -195,6 +195,11 @@ public class AndroidRunningState implements RunProfileState, AndroidDebugBridge.
   private final boolean myClearLogcatBeforeStart;
   private final List<AndroidRunningStateListener> myListeners = ContainerUtil.createLockFreeCopyOnWriteList();
   private final boolean myNonDebuggableOnDevice;
+  /**
+   * Prefix of the messages printed by the current thread, which names the device it deploys to when deploying
+   * to several devices in parallel, so that their interleaved output can be told apart
+   */
+  private final ThreadLocal<String> myMessagePrefix = new ThreadLocal<String>();
 
   public void setDebugMode(boolean debugMode) {
     myDebugMode = debugMode;
@@ -795,6 +800,10 @@ public class AndroidRunningState implements RunProfileState, AndroidDebugBridge.
   }
 
   public void message(@NotNull String message, @NotNull Key outputKey) {
+    String prefix = myMessagePrefix.get();
+    if (prefix != null) {
+      message = prefix + message.replace("\n", "\n" + prefix);
+    }
     getProcessHandler().notifyTextAvailable(message + '\n', outputKey);
   }
 
@@ -891,21 +900,19 @@ public class AndroidRunningState implements RunProfileState, AndroidDebugBridge.
   @Nullable
   private MyDeviceChangeListener prepareAndStartAppWhenDeviceIsOnline() {
     if (myTargetDevices.length > 0) {
-      boolean allDevicesOnline = true;
+      List<IDevice> onlineDevices = Lists.newArrayList();
       for (IDevice targetDevice : myTargetDevices) {
         if (targetDevice.isOnline()) {
-          if (!prepareAndStartApp(targetDevice) && !myStopped) {
-            // todo: check: it may be we don't need to assign it directly
-            // TODO: Why stop completely for a problem potentially affecting only a single device?
-            myStopped = true;
-            getProcessHandler().destroyProcess();
-            break;
-          }
-        }
-        else {
-          allDevicesOnline = false;
+          onlineDevices.add(targetDevice);
         }
       }
+      boolean allDevicesOnline = onlineDevices.size() == myTargetDevices.length;
+      boolean started = onlineDevices.size() == 1 ? prepareAndStartApp(onlineDevices.get(0)) : prepareAndStartApp(onlineDevices);
+      if (!started && !myStopped) {
+        // todo: check: it may be we don't need to assign it directly
+        myStopped = true;
+        getProcessHandler().destroyProcess();
+      }
       // If all target devices are online, we are done.
       if (allDevicesOnline) {
         if (!myDebugMode && !myStopped) {
@@ -928,16 +935,87 @@ public class AndroidRunningState implements RunProfileState, AndroidDebugBridge.
   }
 
   private boolean prepareAndStartApp(IDevice device) {
+    if (!tryPrepareAndStartApp(device)) {
+      fireExecutionFailed();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Deploys to and starts the app on the given device, like {@link #prepareAndStartApp(IDevice)}, but leaves
+   * reporting a failed execution to the caller
+   */
+  private boolean tryPrepareAndStartApp(@NotNull IDevice device) {
     if (myDebugMode && myNonDebuggableOnDevice && !device.isEmulator()) {
       message(AndroidBundle.message("android.cannot.debug.noDebugPermissions", myPackageName, device.getName()), STDERR);
-      fireExecutionFailed();
       return false;
     }
-    if (!doPrepareAndStart(device)) {
+    return doPrepareAndStart(device);
+  }
+
+  /**
+   * Deploys to and starts the app on the given devices concurrently. A failure on one device doesn't affect
+   * the others; the outcome for each device is reported when all are done, and the execution is only reported
+   * as failed if it failed on every device. The messages printed while deploying are prefixed with the name of
+   * their device.
+   *
+   * @return true if the app was started on at least one of the devices (or if there were no devices)
+   */
+  private boolean prepareAndStartApp(@NotNull List<IDevice> devices) {
+    if (devices.isEmpty()) {
+      return true;
+    }
+    MultiDeviceDeployer deployer = new MultiDeviceDeployer(MultiDeviceDeployer.DEFAULT_MAX_PARALLEL_DEVICES);
+    List<MultiDeviceDeployer.Outcome> outcomes;
+    try {
+      outcomes = deployer.deploy(devices, new MultiDeviceDeployer.DeviceTask() {
+        @Override
+        public boolean run(@NotNull IDevice device) {
+          myMessagePrefix.set("[" + device.getName() + "] ");
+          try {
+            return !myStopped && tryPrepareAndStartApp(device);
+          }
+          finally {
+            myMessagePrefix.remove();
+          }
+        }
+      }, new MultiDeviceDeployer.Listener() {
+        @Override
+        public void started(@NotNull IDevice device) {
+          message("Deploying to " + device.getName(), STDOUT);
+        }
+
+        @Override
+        public void finished(@NotNull MultiDeviceDeployer.Outcome outcome) {
+          if (outcome.error != null) {
+            LOG.error(outcome.error);
+          }
+        }
+      });
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
       fireExecutionFailed();
       return false;
     }
-    return true;
+
+    boolean started = false;
+    message("Deployment results:", STDOUT);
+    for (MultiDeviceDeployer.Outcome outcome : outcomes) {
+      String seconds = String.format("%1$.1f s", outcome.durationMs / 1000.0);
+      if (outcome.success) {
+        started = true;
+        message("  " + outcome.device.getName() + ": succeeded (" + seconds + ")", STDOUT);
+      }
+      else {
+        message("  " + outcome.device.getName() + ": failed (" + seconds + ")", STDERR);
+      }
+    }
+    if (!started) {
+      fireExecutionFailed();
+    }
+    return started;
   }
 
   private void fireExecutionFailed() {
@@ -1265,6 +1343,22 @@ public class AndroidRunningState implements RunProfileState, AndroidDebugBridge.
     return uploadAndInstallApk(device, packageName, localPath);
   }
 
+  /**
+   * Copies the apk to the remote path, only transferring the parts which changed since the last push when possible
+   */
+  private void pushApk(@NotNull IDevice device, @NotNull String localPath, @NotNull String remotePath)
+    throws IOException, AdbCommandRejectedException, TimeoutException, SyncException {
+    if (!ApkDeltaPusher.DISABLED) {
+      ApkDeltaPusher.Result result = new ApkDeltaPusher().push(device, new File(localPath), remotePath);
+      if (result != null) {
+        message(String.format("Pushed %1$d of %2$d bytes (%3$d bytes unchanged, about %4$d ms saved)", result.pushedBytes,
+                              result.totalBytes, result.totalBytes - result.pushedBytes, result.getEstimatedTimeSavedMs()), STDOUT);
+        return;
+      }
+    }
+    device.pushFile(localPath, remotePath);
+  }
+
   /**
    * Installs the given apk on the device.
    * @return whether the installation was successful
@@ -1284,7 +1378,7 @@ public class AndroidRunningState implements RunProfileState, AndroidDebugBridge.
         forceStopPackageSilently(device, packageName, true);
         return true;
       } else {
-        device.pushFile(localPath, remotePath);
+        pushApk(device, localPath, remotePath);
         boolean installed = installApp(device, remotePath, packageName);
         if (installed) {
           installedApks.setInstalled(device, new File(localPath), packageName);
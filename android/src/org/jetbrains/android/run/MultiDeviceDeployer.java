@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.run;
+
+import com.android.ddmlib.IDevice;
+import com.google.common.collect.Lists;
+import com.intellij.util.ConcurrencyUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Runs a deployment task (install and launch) on several devices concurrently, with a bounded number of
+ * devices being deployed to at the same time. A failure on one device does not affect the others; the
+ * outcome for each device is reported back when all devices are done.
+ */
+public class MultiDeviceDeployer {
+  /** Default maximum number of devices deployed to concurrently */
+  public static final int DEFAULT_MAX_PARALLEL_DEVICES = 4;
+
+  /** The work to perform for each device */
+  public interface DeviceTask {
+    /** Deploys to the given device, returning false if it failed (after having reported why) */
+    boolean run(@NotNull IDevice device) throws Exception;
+  }
+
+  /** Notified as deployment to each device starts and finishes; may be called from any thread */
+  public interface Listener {
+    void started(@NotNull IDevice device);
+
+    void finished(@NotNull Outcome outcome);
+  }
+
+  /** The result of deploying to a single device */
+  public static class Outcome {
+    @NotNull public final IDevice device;
+    public final boolean success;
+    public final long durationMs;
+    /** The exception thrown by the task, if any */
+    @Nullable public final Throwable error;
+
+    Outcome(@NotNull IDevice device, boolean success, long durationMs, @Nullable Throwable error) {
+      this.device = device;
+      this.success = success;
+      this.durationMs = durationMs;
+      this.error = error;
+    }
+  }
+
+  private final int myMaxParallelDevices;
+
+  public MultiDeviceDeployer(int maxParallelDevices) {
+    assert maxParallelDevices > 0;
+    myMaxParallelDevices = maxParallelDevices;
+  }
+
+  /**
+   * Runs the task on all the given devices, and waits for all of them to finish
+   *
+   * @return the outcome for each device, in the same order as the devices
+   */
+  @NotNull
+  public List<Outcome> deploy(@NotNull List<IDevice> devices, @NotNull final DeviceTask task, @Nullable final Listener listener)
+    throws InterruptedException {
+    List<Outcome> outcomes = Lists.newArrayListWithCapacity(devices.size());
+    if (devices.isEmpty()) {
+      return outcomes;
+    }
+
+    int threads = Math.min(myMaxParallelDevices, devices.size());
+    ExecutorService executor = Executors.newFixedThreadPool(threads, ConcurrencyUtil.newNamedThreadFactory("Android Deploy"));
+    try {
+      List<Future<Outcome>> futures = Lists.newArrayListWithCapacity(devices.size());
+      for (final IDevice device : devices) {
+        futures.add(executor.submit(new Callable<Outcome>() {
+          @Override
+          public Outcome call() {
+            return runTask(device, task, listener);
+          }
+        }));
+      }
+      for (Future<Outcome> future : futures) {
+        try {
+          outcomes.add(future.get());
+        }
+        catch (ExecutionException e) {
+          // Can't happen; runTask catches everything
+          throw new RuntimeException(e.getCause());
+        }
+      }
+    }
+    finally {
+      executor.shutdownNow();
+    }
+    return outcomes;
+  }
+
+  @NotNull
+  private static Outcome runTask(@NotNull IDevice device, @NotNull DeviceTask task, @Nullable Listener listener) {
+    if (listener != null) {
+      listener.started(device);
+    }
+    long start = System.currentTimeMillis();
+    boolean success = false;
+    Throwable error = null;
+    try {
+      success = task.run(device);
+    }
+    catch (Throwable t) {
+      error = t;
+    }
+    Outcome outcome = new Outcome(device, success, System.currentTimeMillis() - start, error);
+    if (listener != null) {
+      listener.finished(outcome);
+    }
+    return outcome;
+  }
+}
@@ -33,6 +33,8 @@ import com.intellij.openapi.fileEditor.*;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleManager;
 import com.intellij.openapi.module.ModuleUtilCore;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
@@ -42,6 +44,7 @@ import com.intellij.openapi.roots.ModuleRootEvent;
 import com.intellij.openapi.roots.ModuleRootManager;
 import com.intellij.openapi.startup.StartupManager;
 import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.openapi.wm.ToolWindowAnchor;
@@ -99,6 +102,19 @@ public class AndroidLayoutPreviewToolWindowManager implements ProjectComponent {
    */
   private AndroidPreviewProgressIndicator myCurrentIndicator;
 
+  /**
+   * Indicator of the render currently in progress, if any. A newer render request for the same file and
+   * configuration marks it as stale by canceling the indicator. This does not interrupt layoutlib: a render
+   * that has already started runs to completion and only its result is discarded, while one that is still
+   * waiting for the rendering lock is skipped.
+   */
+  private ProgressIndicator myRenderIndicator;
+  /** The file and configuration rendered by {@link #myRenderIndicator} */
+  private Object myRenderKey;
+  /** Time of the oldest render request which has not yet been satisfied by a shown result, or 0 */
+  private long myPendingRequestTime;
+  private final RenderLatencyStats myRenderLatencyStats = new RenderLatencyStats();
+
   private static final Object RENDERING_LOCK = new Object();
   private static final Object PROGRESS_LOCK = new Object();
 
@@ -574,27 +590,52 @@ public class AndroidLayoutPreviewToolWindowManager implements ProjectComponent {
 
   protected boolean render(final PsiFile psiFile, final AndroidFacet facet,
                         @SuppressWarnings("unused") boolean forceFullRender) {
+    final Object key = Pair.create(psiFile, myToolWindowForm != null ? myToolWindowForm.getConfiguration() : null);
+    synchronized (PROGRESS_LOCK) {
+      if (myPendingRequestTime == 0) {
+        myPendingRequestTime = System.currentTimeMillis();
+      }
+      // The current render of the same file and configuration is out of date; don't show its result
+      if (myRenderIndicator != null && key.equals(myRenderKey)) {
+        myRenderIndicator.cancel();
+      }
+    }
+
+    // Rapid edits are coalesced: there is a single update identity, so any pending update (whichever file it was for,
+    // since the tool window only shows one) is replaced by the newest one, which reads the latest PSI state when it runs
     getRenderingQueue().queue(new Update("render") {
       @Override
       public void run() {
+        final ProgressIndicator indicator = new AndroidPreviewProgressIndicator(myToolWindowForm, 100);
+        synchronized (PROGRESS_LOCK) {
+          myRenderIndicator = indicator;
+          myRenderKey = key;
+        }
         ProgressManager.getInstance().runProcess(new Runnable() {
           @Override
           public void run() {
             DumbService.getInstance(myProject).waitForSmartMode();
             try {
-              doRender(facet, psiFile);
+              doRender(facet, psiFile, indicator);
+            }
+            catch (ProcessCanceledException ignore) {
+              myRenderLatencyStats.recordCancelled();
             }
             catch (Throwable e) {
               LOG.error(e);
             }
             synchronized (PROGRESS_LOCK) {
+              if (myRenderIndicator == indicator) {
+                myRenderIndicator = null;
+                myRenderKey = null;
+              }
               if (myCurrentIndicator != null) {
                 myCurrentIndicator.stop();
                 myCurrentIndicator = null;
               }
             }
           }
-        }, new AndroidPreviewProgressIndicator(myToolWindowForm, 100));
+        }, indicator);
       }
 
       @Override
@@ -605,12 +646,18 @@ public class AndroidLayoutPreviewToolWindowManager implements ProjectComponent {
     return true;
   }
 
+  /** Returns statistics on the time from a layout edit until the updated render is shown */
+  @NotNull
+  public RenderLatencyStats getRenderLatencyStats() {
+    return myRenderLatencyStats;
+  }
+
   public void flush() {
     getRenderingQueue().sendFlush();
   }
 
-  private void doRender(@NotNull final AndroidFacet facet, @NotNull final PsiFile psiFile) {
-    if (myProject.isDisposed()) {
+  private void doRender(@NotNull final AndroidFacet facet, @NotNull final PsiFile psiFile, @NotNull ProgressIndicator indicator) {
+    if (myProject.isDisposed() || indicator.isCanceled()) {
       return;
     }
 
@@ -635,6 +682,9 @@ public class AndroidLayoutPreviewToolWindowManager implements ProjectComponent {
 
     RenderResult result = null;
     synchronized (RENDERING_LOCK) {
+      // A newer edit may have come in while we were waiting for the previous render to finish; if so, skip this one.
+      // Once started, the render itself can't be interrupted.
+      indicator.checkCanceled();
       RenderService renderService = RenderService.get(facet);
       RenderLogger logger = renderService.createLogger();
       final RenderTask task = renderService.createTask(psiFile, configuration, logger, toolWindowForm);
@@ -648,6 +698,8 @@ public class AndroidLayoutPreviewToolWindowManager implements ProjectComponent {
       }
     }
 
+    // Don't show results which are already out of date; a newer render is on its way
+    indicator.checkCanceled();
     if (!getRenderingQueue().isEmpty()) {
       return;
     }
@@ -656,9 +708,10 @@ public class AndroidLayoutPreviewToolWindowManager implements ProjectComponent {
     ApplicationManager.getApplication().invokeLater(new Runnable() {
       @Override
       public void run() {
-        if (!myToolWindowReady || myToolWindowDisposed) {
+        if (!myToolWindowReady || myToolWindowDisposed || indicator.isCanceled()) {
           return;
         }
+        recordRenderShown();
         final TextEditor editor = getActiveLayoutXmlEditor(); // Must be run from read thread
         myToolWindowForm.setRenderResult(renderResult, editor);
         myToolWindowForm.updatePreviewPanel();
@@ -673,6 +726,20 @@ public class AndroidLayoutPreviewToolWindowManager implements ProjectComponent {
     });
   }
 
+  private void recordRenderShown() {
+    long requestTime;
+    synchronized (PROGRESS_LOCK) {
+      requestTime = myPendingRequestTime;
+      myPendingRequestTime = 0;
+    }
+    if (requestTime != 0) {
+      myRenderLatencyStats.record(System.currentTimeMillis() - requestTime);
+      if (LOG.isDebugEnabled()) {
+        LOG.debug(myRenderLatencyStats.toString());
+      }
+    }
+  }
+
   @Nullable
   private TextEditor getActiveLayoutXmlEditor() {
     FileEditor[] fileEditors = myFileEditorManager.getSelectedEditors();
@@ -13,6 +13,7 @@ import com.android.tools.idea.gradle.compiler.PostProjectBuildTasksExecutor;
 import com.android.tools.idea.gradle.util.GradleUtil;
 import com.android.tools.idea.rendering.AarResourceClassRegistry;
 import com.android.tools.idea.rendering.AppResourceRepository;
+import com.android.tools.idea.rendering.ClassFileIndex;
 import com.android.tools.idea.rendering.RenderClassLoader;
 import com.android.utils.SdkUtils;
 import com.google.common.collect.Maps;
@@ -73,6 +74,8 @@ public final class ModuleClassLoader extends RenderClassLoader {
   private Map<String,File> myClassFiles;
   /** Map from fully qualified class name to the corresponding last modified file stamp for each class loaded by this class loader */
   private Map<String,Long> myLoadedTimestamp;
+  /** The project build timestamp when the class file indices were last refreshed by this class loader */
+  private long myBuildTimestamp = -1L;
 
   private ModuleClassLoader(@NotNull LayoutLibrary library, @NotNull Module module) {
     super(library.getClassLoader());
@@ -136,11 +139,34 @@ public final class ModuleClassLoader extends RenderClassLoader {
   @NotNull
   @Override
   protected Class<?> load(String name) throws ClassNotFoundException {
-    final Class<?> aClass = loadClassFromModuleOrDependency(myModule, name, new HashSet<Module>());
+    long buildTimestamp = PostProjectBuildTasksExecutor.getInstance(myModule.getProject()).getLastBuildTimestamp();
+    if (buildTimestamp != myBuildTimestamp) {
+      // Pick up classes added by the build
+      myBuildTimestamp = buildTimestamp;
+      refreshClassFileIndices();
+    }
+
+    Class<?> aClass = loadClassFromModule(myModule, name);
     if (aClass != null) {
       return aClass;
     }
 
+    // The external jars are the same regardless of which module we're looking in, so only look them up once
+    // (after the render module's own classes, as before)
+    aClass = loadClassFromJar(name);
+    if (aClass != null) {
+      return aClass;
+    }
+
+    Set<Module> visited = new HashSet<Module>();
+    visited.add(myModule);
+    for (Module depModule : ModuleRootManager.getInstance(myModule).getDependencies(false)) {
+      aClass = loadClassFromModuleOrDependency(depModule, name, visited);
+      if (aClass != null) {
+        return aClass;
+      }
+    }
+
     throw new ClassNotFoundException(name);
   }
 
@@ -155,11 +181,6 @@ public final class ModuleClassLoader extends RenderClassLoader {
       return aClass;
     }
 
-    aClass = loadClassFromJar(name);
-    if (aClass != null) {
-      return aClass;
-    }
-
     for (Module depModule : ModuleRootManager.getInstance(module).getDependencies(false)) {
       aClass = loadClassFromModuleOrDependency(depModule, name, visited);
       if (aClass != null) {
@@ -426,6 +447,7 @@ public final class ModuleClassLoader extends RenderClassLoader {
   /** Flush any cached class loaders */
   public static void clearCache() {
     ourCache.clear();
+    ClassFileIndex.clearCache();
   }
 
   /** Temporary hack: Store this in a weak hash map cached by modules. In the next version we should move this
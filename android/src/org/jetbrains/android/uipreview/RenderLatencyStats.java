@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.uipreview;
+
+import java.util.Arrays;
+
+/**
+ * Keeps track of the most recent render latencies of the layout preview (the time from an edit
+ * until the corresponding render result is shown), and computes percentiles over them.
+ */
+public class RenderLatencyStats {
+  /** Number of most recent samples considered */
+  private static final int MAX_SAMPLES = 200;
+
+  private final long[] mySamples = new long[MAX_SAMPLES];
+  private int myNext;
+  private int myCount;
+  private long myCancelledCount;
+
+  /** Records the latency of a render whose result was shown */
+  public synchronized void record(long latencyMs) {
+    mySamples[myNext] = latencyMs;
+    myNext = (myNext + 1) % MAX_SAMPLES;
+    if (myCount < MAX_SAMPLES) {
+      myCount++;
+    }
+  }
+
+  /** Records that a render was skipped, or its result discarded, because a newer edit made it obsolete */
+  public synchronized void recordCancelled() {
+    myCancelledCount++;
+  }
+
+  /** Returns the number of samples the percentiles are computed from */
+  public synchronized int getSampleCount() {
+    return myCount;
+  }
+
+  /** Returns the total number of skipped or discarded renders */
+  public synchronized long getCancelledCount() {
+    return myCancelledCount;
+  }
+
+  /**
+   * Returns the given percentile of the recorded latencies, in milliseconds
+   *
+   * @param percentile the percentile, between 0 and 100
+   * @return the latency, or -1 if nothing has been recorded yet
+   */
+  public synchronized long getPercentile(double percentile) {
+    if (myCount == 0) {
+      return -1;
+    }
+    long[] sorted = Arrays.copyOf(mySamples, myCount);
+    Arrays.sort(sorted);
+    int index = (int)Math.ceil(percentile / 100 * myCount) - 1;
+    return sorted[Math.max(0, Math.min(myCount - 1, index))];
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Render latency p50=%1$dms p90=%2$dms p99=%3$dms (%4$d samples, %5$d stale)",
+                         getPercentile(50), getPercentile(90), getPercentile(99), getSampleCount(), getCancelledCount());
+  }
+}
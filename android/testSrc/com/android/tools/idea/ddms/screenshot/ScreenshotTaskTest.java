@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.ddms.screenshot;
+
+import com.android.ddmlib.RawImage;
+import junit.framework.TestCase;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+public class ScreenshotTaskTest extends TestCase {
+  private static RawImage createRawImage(int bpp, int width, int height) {
+    RawImage rawImage = new RawImage();
+    rawImage.bpp = bpp;
+    rawImage.width = width;
+    rawImage.height = height;
+    rawImage.data = new byte[width * height * bpp / 8];
+    new Random(42).nextBytes(rawImage.data);
+    if (bpp == 32) {
+      // RGBA_8888
+      rawImage.red_offset = 0;
+      rawImage.red_length = 8;
+      rawImage.green_offset = 8;
+      rawImage.green_length = 8;
+      rawImage.blue_offset = 16;
+      rawImage.blue_length = 8;
+      rawImage.alpha_offset = 24;
+      rawImage.alpha_length = 8;
+    }
+    return rawImage;
+  }
+
+  private static void checkConversion(RawImage rawImage) {
+    BufferedImage image = ScreenshotTask.convertImage(rawImage, null);
+    assertEquals(rawImage.width, image.getWidth());
+    assertEquals(rawImage.height, image.getHeight());
+    for (int y = 0; y < rawImage.height; y++) {
+      for (int x = 0; x < rawImage.width; x++) {
+        int expected = rawImage.getARGB((x + y * rawImage.width) * (rawImage.bpp / 8));
+        assertEquals(expected, image.getRGB(x, y));
+      }
+    }
+  }
+
+  public void testConvert32() {
+    checkConversion(createRawImage(32, 37, 23));
+  }
+
+  public void testConvert16() {
+    checkConversion(createRawImage(16, 37, 23));
+  }
+
+  public void testConvertWithoutAlpha() {
+    // RGBX_8888: the fourth byte is padding, and the pixels are opaque
+    RawImage rawImage = createRawImage(32, 37, 23);
+    rawImage.alpha_offset = 0;
+    rawImage.alpha_length = 0;
+    BufferedImage image = ScreenshotTask.convertImage(rawImage, null);
+    for (int y = 0; y < rawImage.height; y++) {
+      for (int x = 0; x < rawImage.width; x++) {
+        int index = (x + y * rawImage.width) * 4;
+        int expected = 0xFF000000 | (rawImage.data[index] & 0xFF) << 16 | (rawImage.data[index + 1] & 0xFF) << 8 |
+                       (rawImage.data[index + 2] & 0xFF);
+        assertEquals(expected, image.getRGB(x, y));
+      }
+    }
+  }
+
+  public void testReuse() {
+    RawImage rawImage = createRawImage(32, 10, 20);
+    BufferedImage image = ScreenshotTask.convertImage(rawImage, null);
+    assertSame(image, ScreenshotTask.convertImage(rawImage, image));
+
+    // Different size
+    assertNotSame(image, ScreenshotTask.convertImage(createRawImage(32, 20, 10), image));
+  }
+
+  public void testChangedBounds() {
+    RawImage rawImage = createRawImage(32, 30, 20);
+    BufferedImage previous = ScreenshotTask.convertImage(rawImage, null);
+    BufferedImage current = ScreenshotTask.convertImage(rawImage, null);
+
+    assertEquals(new Rectangle(0, 0, 30, 20), ScreenMirror.getChangedBounds(null, current));
+    assertNull(ScreenMirror.getChangedBounds(previous, current));
+
+    current.setRGB(5, 7, ~current.getRGB(5, 7));
+    current.setRGB(12, 3, ~current.getRGB(12, 3));
+    Rectangle changed = ScreenMirror.getChangedBounds(previous, current);
+    assertEquals(new Rectangle(5, 3, 8, 5), changed);
+
+    ScreenMirror.copyRegion(current, previous, changed);
+    assertNull(ScreenMirror.getChangedBounds(previous, current));
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.editors.allocations.nodes;
+
+import com.android.ddmlib.AllocationInfo;
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AllocationStoreTest extends TestCase {
+  private static final StackTraceElement MAIN = new StackTraceElement("com.example.Main", "main", "Main.java", 10);
+  private static final StackTraceElement LOAD = new StackTraceElement("com.example.io.Loader", "load", "Loader.java", 20);
+  private static final StackTraceElement READ = new StackTraceElement("java.io.FileInputStream", "read", "FileInputStream.java", 30);
+
+  private static AllocationInfo allocation(String type, int size, int thread, StackTraceElement... stack) {
+    AllocationInfo allocation = mock(AllocationInfo.class);
+    when(allocation.getAllocatedClass()).thenReturn(type);
+    when(allocation.getSize()).thenReturn(size);
+    when(allocation.getThreadId()).thenReturn((short)thread);
+    when(allocation.getStackTrace()).thenReturn(stack);
+    return allocation;
+  }
+
+  private static AllocationStore createStore() {
+    return new AllocationStore(new AllocationInfo[] {
+      allocation("byte[]", 100, 1, READ, LOAD, MAIN),
+      allocation("byte[]", 50, 1, READ, LOAD, MAIN),
+      allocation("java.lang.String", 20, 1, LOAD, MAIN),
+      allocation("java.lang.String", 10, 2, MAIN),
+      allocation("java.lang.Object", 5, 2)
+    });
+  }
+
+  public void testStacksAreInterned() {
+    AllocationStore store = createStore();
+    assertEquals(5, store.size());
+    assertEquals(3, store.getStackDepth(0));
+    for (int frame = 0; frame < 3; frame++) {
+      assertEquals(store.getFrameId(0, frame), store.getFrameId(1, frame));
+    }
+    assertEquals(store.getFrameId(0, 1), store.getFrameId(2, 0));
+    assertEquals(LOAD, store.getFrame(store.getFrameId(2, 0)));
+    assertEquals("java.lang.String", store.getAllocatedClass(3));
+    assertEquals(185, store.getTotalSize(store.getAllIndices()));
+  }
+
+  public void testStackTracesAreRebuiltFromFrames() {
+    AllocationStore store = createStore();
+    assertEquals(Arrays.asList(READ, LOAD, MAIN), Arrays.asList(store.getStackTrace(0)));
+    assertEquals(Arrays.asList(MAIN), Arrays.asList(store.getStackTrace(3)));
+    assertEquals(0, store.getStackTrace(4).length);
+  }
+
+  public void testGroupByMethod() {
+    StackTraceNode root = new StackTraceNode(createStore());
+    assertEquals(5, root.getCount());
+    assertEquals(185, root.getValue());
+    assertEquals(2, root.getChildCount());
+
+    ThreadNode thread1 = (ThreadNode)root.getChildAt(0);
+    assertEquals(1, thread1.getThreadId());
+    assertEquals(170, thread1.getValue());
+    assertEquals(1, thread1.getChildCount());
+
+    StackNode main = (StackNode)thread1.getChildAt(0);
+    assertEquals(MAIN, main.getStackTraceElement());
+    StackNode load = (StackNode)main.getChildAt(0);
+    assertEquals(LOAD, load.getStackTraceElement());
+    assertEquals(3, load.getCount());
+    // The String allocated in load() itself, and the call to read()
+    assertEquals(2, load.getChildCount());
+
+    ThreadNode thread2 = (ThreadNode)root.getChildAt(1);
+    assertEquals(2, thread2.getChildCount());
+    assertTrue(thread2.getChildAt(1) instanceof AllocNode);
+    assertEquals(5, ((AllocNode)thread2.getChildAt(1)).getValue());
+  }
+
+  public void testGroupByAllocator() {
+    PackageRootNode root = new PackageRootNode("", createStore(), "com.example");
+    assertEquals(185, root.getValue());
+    assertEquals(2, root.getChildCount());
+
+    PackageNode com = (PackageNode)root.getChildAt(0);
+    assertEquals("com", com.getName());
+    assertEquals(180, com.getValue());
+    PackageNode example = (PackageNode)com.getChildAt(0);
+    assertEquals(2, example.getChildCount());
+    PackageNode io = (PackageNode)example.getChildAt(0);
+    ClassNode loader = (ClassNode)io.getChildAt(0);
+    assertEquals("com.example.io.Loader", loader.getQualifiedName());
+    assertEquals(3, loader.getCount());
+    assertEquals(170, loader.getValue());
+
+    PackageNode unknown = (PackageNode)root.getChildAt(1);
+    assertEquals("< Unknown >", unknown.getName());
+    assertEquals(1, unknown.getCount());
+  }
+}
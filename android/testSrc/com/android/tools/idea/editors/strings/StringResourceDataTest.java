@@ -172,6 +172,28 @@ public class StringResourceDataTest extends AndroidTestCase {
     assertEquals("Hello", tag.getValue().getText());
 
     assertEquals("Hello", StringResourceData.resourceToString(data.getTranslations().get(key, locale)));
+    assertEquals("Hello", data.getValue(key, locale));
+    assertNull(data.validateTranslation(key, locale));
+  }
+
+  public void testIncrementalParse() {
+    VirtualFile res = myFixture.copyDirectoryToProject("stringsEditor/base/res", "res");
+    ModuleResourceRepository repository = ModuleResourceRepository.createForTest(myFacet, ImmutableList.of(res));
+    StringResourceData data = StringResourceParser.parse(myFacet, repository);
+    assertEquals("Key 2 hi", data.getValue("key2", Locale.create("hi")));
+    assertEquals("", data.getValue("key1", Locale.create("hi")));
+
+    StringResourceData updated = StringResourceParser.parse(myFacet, repository, data, ImmutableSet.of("key1", "key2"));
+    assertEquals(data.getKeys(), updated.getKeys());
+    assertEquals(data.getLocales(), updated.getLocales());
+    assertSameElements(updated.getUntranslatableKeys(), data.getUntranslatableKeys());
+    for (String key : data.getKeys()) {
+      assertEquals(data.getValue(key, null), updated.getValue(key, null));
+      assertEquals(data.validateKey(key), updated.validateKey(key));
+      for (Locale locale : data.getLocales()) {
+        assertEquals(data.getValue(key, locale), updated.getValue(key, locale));
+      }
+    }
   }
 
   private XmlTag getNthXmlTag(@NotNull VirtualFile file, @NotNull String tag, int index) {
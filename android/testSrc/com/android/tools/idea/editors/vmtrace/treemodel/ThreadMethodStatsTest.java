@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.editors.vmtrace.treemodel;
+
+import com.android.tools.perflib.vmtrace.*;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Longs;
+import junit.framework.TestCase;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class ThreadMethodStatsTest extends TestCase {
+  private static final int MAIN_THREAD = 1;
+  private static final int WORKER_THREAD = 2;
+
+  private static VmTraceData createTrace() {
+    VmTraceData.Builder builder = new VmTraceData.Builder();
+    builder.setVersion(3);
+    builder.setProperty("clock", "dual");
+    builder.addThread(MAIN_THREAD, "main");
+    builder.addThread(WORKER_THREAD, "worker");
+    builder.addMethod(1, new MethodInfo(1, "com.example.Main", "main", "()V", "Main.java", 10));
+    builder.addMethod(2, new MethodInfo(2, "com.example.Loader", "load", "()V", "Loader.java", 20));
+    builder.addMethod(3, new MethodInfo(3, "com.example.Loader", "parse", "()V", "Loader.java", 30));
+    builder.addMethod(4, new MethodInfo(4, "com.example.Cache", "get", "()V", "Cache.java", 40));
+    builder.addMethod(5, new MethodInfo(5, "com.example.Idle", "unused", "()V", "Idle.java", 50));
+
+    // main() calls load() twice, which calls parse() and get(), and calls get() itself; parse() and get() take
+    // the same time on every call, so some of the columns have ties
+    int time = 0;
+    builder.addMethodAction(MAIN_THREAD, 1, TraceAction.METHOD_ENTER, time, time);
+    for (int i = 0; i < 2; i++) {
+      builder.addMethodAction(MAIN_THREAD, 2, TraceAction.METHOD_ENTER, time += 5, time);
+      builder.addMethodAction(MAIN_THREAD, 3, TraceAction.METHOD_ENTER, time += 5, time);
+      builder.addMethodAction(MAIN_THREAD, 3, TraceAction.METHOD_EXIT, time += 20, time);
+      builder.addMethodAction(MAIN_THREAD, 4, TraceAction.METHOD_ENTER, time += 5, time);
+      builder.addMethodAction(MAIN_THREAD, 4, TraceAction.METHOD_EXIT, time += 10, time);
+      builder.addMethodAction(MAIN_THREAD, 2, TraceAction.METHOD_EXIT, time += 5, time);
+    }
+    builder.addMethodAction(MAIN_THREAD, 4, TraceAction.METHOD_ENTER, time += 5, time);
+    builder.addMethodAction(MAIN_THREAD, 4, TraceAction.METHOD_EXIT, time += 10, time);
+    builder.addMethodAction(MAIN_THREAD, 1, TraceAction.METHOD_EXIT, time += 5, time);
+
+    // The worker only calls get()
+    time = 0;
+    builder.addMethodAction(WORKER_THREAD, 4, TraceAction.METHOD_ENTER, time += 5, time);
+    builder.addMethodAction(WORKER_THREAD, 4, TraceAction.METHOD_EXIT, time += 10, time);
+    return builder.build();
+  }
+
+  /** The statistics as they were computed before they were precomputed: from the profile data of each method */
+  private static List<MethodInfo> sortBaseline(VmTraceData traceData, final ThreadInfo thread, final StatsTableColumn column) {
+    List<MethodInfo> methods = Lists.newArrayList();
+    for (MethodInfo info : traceData.getMethods().values()) {
+      if (info.getProfileData().getInvocationCount(thread) > 0) {
+        methods.add(info);
+      }
+    }
+    Collections.sort(methods, new Comparator<MethodInfo>() {
+      @Override
+      public int compare(MethodInfo m1, MethodInfo m2) {
+        MethodProfileData data1 = m1.getProfileData();
+        MethodProfileData data2 = m2.getProfileData();
+        switch (column) {
+          case NAME:
+            return m1.getFullName().compareTo(m2.getFullName());
+          case INVOCATION_COUNT:
+            return Longs.compare(data1.getInvocationCount(thread), data2.getInvocationCount(thread));
+          case INCLUSIVE_TIME:
+            return Longs.compare(data1.getInclusiveTime(thread, ClockType.GLOBAL, TimeUnit.MICROSECONDS),
+                                 data2.getInclusiveTime(thread, ClockType.GLOBAL, TimeUnit.MICROSECONDS));
+          case EXCLUSIVE_TIME:
+            return Longs.compare(data1.getExclusiveTime(thread, ClockType.GLOBAL, TimeUnit.MICROSECONDS),
+                                 data2.getExclusiveTime(thread, ClockType.GLOBAL, TimeUnit.MICROSECONDS));
+          default:
+            return 0;
+        }
+      }
+    });
+    return methods;
+  }
+
+  public void testMatchesBaseline() {
+    VmTraceData traceData = createTrace();
+    List<ThreadInfo> threads = traceData.getThreads(true);
+    assertEquals(2, threads.size());
+
+    for (ThreadInfo thread : threads) {
+      ThreadMethodStats stats = new ThreadMethodStats(traceData, thread);
+      for (StatsTableColumn column : StatsTableColumn.values()) {
+        List<MethodInfo> expected = sortBaseline(traceData, thread, column);
+        assertEquals(expected.size(), stats.getMethodCount());
+
+        int[] ascending = stats.getOrder(column, true);
+        int[] descending = stats.getOrder(column, false);
+        assertEquals(expected.size(), ascending.length);
+        for (int i = 0; i < ascending.length; i++) {
+          String message = thread.getName() + ", " + column + ", position " + i;
+          assertSame(message, expected.get(i), stats.getMethod(ascending[i]));
+          assertEquals(message, ascending[i], descending[descending.length - 1 - i]);
+        }
+      }
+    }
+  }
+
+  public void testOnlyMethodsOfThread() {
+    VmTraceData traceData = createTrace();
+    for (ThreadInfo thread : traceData.getThreads(true)) {
+      ThreadMethodStats stats = new ThreadMethodStats(traceData, thread);
+      int expected = thread.getId() == MAIN_THREAD ? 4 : 1;
+      assertEquals(expected, stats.getMethodCount());
+    }
+  }
+}
@@ -268,6 +268,21 @@ public class AarResourceClassGeneratorTest extends AndroidTestCase {
     styleableTestWithAars(generator);
   }
 
+  public void testGeneratedClassesReused() throws Exception {
+    AppResourceRepository appResources = AppResourceRepositoryTest.createTestAppResourceRepository(myFacet);
+    byte[] id = AarResourceClassGenerator.create(appResources).generate("pkg.R$id");
+    byte[] styleable = AarResourceClassGenerator.create(appResources).generate("pkg.R$styleable");
+    assertNotNull(id);
+    assertNotNull(styleable);
+
+    // A new generator (as created after a build) for unchanged resources reuses the bytecode
+    AarResourceClassGenerator generator = AarResourceClassGenerator.create(appResources);
+    assertSame(id, generator.generate("pkg.R$id"));
+    assertSame(styleable, generator.generate("pkg.R$styleable"));
+    // ...but not for a different class name
+    assertNotSame(id, generator.generate("other.R$id"));
+  }
+
   private static void styleableTestWithAars(AarResourceClassGenerator generator) throws Exception {
     Class<?> clz = generateClass(generator, "pkg.R$styleable");
     assertNotNull(clz);
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+
+import static com.intellij.openapi.util.io.FileUtil.createTempDirectory;
+
+public class ClassFileIndexTest extends TestCase {
+  private File myRoot;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myRoot = createTempDirectory("classes", null);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      ClassFileIndex.clearCache();
+      FileUtil.delete(myRoot);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  private File createClassFile(String relativePath) throws IOException {
+    File file = new File(myRoot, relativePath.replace('/', File.separatorChar));
+    FileUtil.writeToFile(file, new byte[] { (byte)0xCA, (byte)0xFE, (byte)0xBA, (byte)0xBE });
+    return file;
+  }
+
+  public void testFindClassFile() throws Exception {
+    File view = createClassFile("com/example/CustomView.class");
+    File inner = createClassFile("com/example/CustomView$SavedState.class");
+    createClassFile("lowercase/pkg/lowerclass.class");
+
+    ClassFileIndex index = ClassFileIndex.get(myRoot);
+    index.refresh();
+    assertEquals(view, index.findClassFile("com.example.CustomView"));
+    assertEquals(inner, index.findClassFile("com.example.CustomView$SavedState"));
+    assertEquals(inner, index.findClassFile("com.example.CustomView.SavedState"));
+    assertNotNull(index.findClassFile("lowercase.pkg.lowerclass"));
+    assertNull(index.findClassFile("com.example.OtherView"));
+    assertNull(index.findClassFile("android.widget.TextView"));
+  }
+
+  public void testRefresh() throws Exception {
+    createClassFile("com/example/CustomView.class");
+    ClassFileIndex index = ClassFileIndex.get(myRoot);
+    index.refresh();
+    assertNull(index.findClassFile("com.example.other.OtherView"));
+
+    File other = createClassFile("com/example/other/OtherView.class");
+    // Not visible until refreshed
+    assertNull(index.findClassFile("com.example.other.OtherView"));
+    index.refresh();
+    assertEquals(other, index.findClassFile("com.example.other.OtherView"));
+
+    FileUtil.delete(new File(myRoot, "com" + File.separator + "example" + File.separator + "other"));
+    index.refresh();
+    assertNull(index.findClassFile("com.example.other.OtherView"));
+    assertNotNull(index.findClassFile("com.example.CustomView"));
+  }
+}
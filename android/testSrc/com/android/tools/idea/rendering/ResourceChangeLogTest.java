@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import com.android.resources.ResourceType;
+import junit.framework.TestCase;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+public class ResourceChangeLogTest extends TestCase {
+  public void testNoChanges() {
+    ResourceChangeLog log = new ResourceChangeLog();
+    Map<ResourceType, Set<String>> changes = log.getChangesSince(5, 5);
+    assertNotNull(changes);
+    assertTrue(changes.isEmpty());
+  }
+
+  public void testNamedChanges() {
+    ResourceChangeLog log = new ResourceChangeLog();
+    log.record(1, ResourceType.STRING, "app_name");
+    log.record(2, ResourceType.STRING, "cancel");
+    log.record(3, ResourceType.COLOR, "primary");
+
+    Map<ResourceType, Set<String>> changes = log.getChangesSince(1, 3);
+    assertNotNull(changes);
+    assertEquals(2, changes.size());
+    assertEquals(Collections.singleton("cancel"), changes.get(ResourceType.STRING));
+    assertEquals(Collections.singleton("primary"), changes.get(ResourceType.COLOR));
+
+    changes = log.getChangesSince(0, 3);
+    assertNotNull(changes);
+    Set<String> strings = changes.get(ResourceType.STRING);
+    assertNotNull(strings);
+    assertEquals(2, strings.size());
+  }
+
+  public void testTypeChanges() {
+    ResourceChangeLog log = new ResourceChangeLog();
+    log.record(1, ResourceType.STRING, "app_name");
+    log.record(2, ResourceType.STRING, null);
+    log.record(3, ResourceType.STRING, "cancel");
+
+    Map<ResourceType, Set<String>> changes = log.getChangesSince(0, 3);
+    assertNotNull(changes);
+    assertTrue(changes.containsKey(ResourceType.STRING));
+    assertNull(changes.get(ResourceType.STRING));
+  }
+
+  public void testUnrecordedGeneration() {
+    ResourceChangeLog log = new ResourceChangeLog();
+    log.record(1, ResourceType.STRING, "app_name");
+    // Generation 2 was bumped without recording the change
+    log.record(3, ResourceType.STRING, "cancel");
+
+    assertNull(log.getChangesSince(0, 3));
+    assertNotNull(log.getChangesSince(2, 3));
+    assertNull(log.getChangesSince(2, 4));
+  }
+
+  public void testOverflow() {
+    ResourceChangeLog log = new ResourceChangeLog();
+    for (int i = 1; i <= 100; i++) {
+      log.record(i, ResourceType.STRING, "string" + i);
+    }
+    assertNull(log.getChangesSince(0, 100));
+    Map<ResourceType, Set<String>> changes = log.getChangesSince(90, 100);
+    assertNotNull(changes);
+    Set<String> strings = changes.get(ResourceType.STRING);
+    assertNotNull(strings);
+    assertEquals(10, strings.size());
+  }
+}
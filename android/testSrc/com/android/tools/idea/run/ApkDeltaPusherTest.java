@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.run;
+
+import com.android.ddmlib.IDevice;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class ApkDeltaPusherTest extends TestCase {
+  private static final int ENTRY_COUNT = 64;
+  private static final String REMOTE_PATH = "/data/local/tmp/app.apk";
+  private static final String PROBE_LISTING = "-rw-r--r-- root root 8 2015-01-01 12:00 .probe";
+  private static final String PROBE_HASH = Hashing.md5().hashString("chunked\n", Charsets.UTF_8).toString();
+  private static final String PROBE_OUTPUT = PROBE_LISTING + "\n" + PROBE_HASH + "  .probe";
+
+  private static File createApk(String changedEntryContent) throws IOException {
+    File file = FileUtil.createTempFile("delta", ".apk");
+    ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+    try {
+      for (int i = 0; i < ENTRY_COUNT; i++) {
+        out.putNextEntry(new ZipEntry("res/layout/file" + i + ".xml"));
+        String content = i == 40 ? changedEntryContent : "Contents of file " + i;
+        out.write(content.getBytes("UTF-8"));
+        out.closeEntry();
+      }
+    }
+    finally {
+      out.close();
+    }
+    return file;
+  }
+
+  public void testChunksCoverFile() throws Exception {
+    File apk = createApk("original");
+    try {
+      List<ApkDeltaPusher.Chunk> chunks = ApkDeltaPusher.split(apk);
+      assertTrue(chunks.size() > 2);
+      long offset = 0;
+      for (ApkDeltaPusher.Chunk chunk : chunks) {
+        assertEquals(offset, chunk.offset);
+        assertTrue(chunk.length > 0);
+        offset += chunk.length;
+      }
+      assertEquals(apk.length(), offset);
+    }
+    finally {
+      FileUtil.delete(apk);
+    }
+  }
+
+  public void testUnchangedEntriesKeepChunks() throws Exception {
+    File apk1 = createApk("original");
+    File apk2 = createApk("modified and a bit longer");
+    try {
+      List<ApkDeltaPusher.Chunk> chunks1 = ApkDeltaPusher.split(apk1);
+      List<ApkDeltaPusher.Chunk> chunks2 = ApkDeltaPusher.split(apk2);
+      assertEquals(chunks1.size(), chunks2.size());
+
+      Set<String> hashes1 = Sets.newHashSet();
+      for (ApkDeltaPusher.Chunk chunk : chunks1) {
+        hashes1.add(chunk.hash);
+      }
+      int changed = 0;
+      for (ApkDeltaPusher.Chunk chunk : chunks2) {
+        if (!hashes1.contains(chunk.hash)) {
+          changed++;
+        }
+      }
+      // The chunk holding the modified entry, and the central directory (whose offsets moved)
+      assertEquals(2, changed);
+    }
+    finally {
+      FileUtil.delete(apk1);
+      FileUtil.delete(apk2);
+    }
+  }
+
+  public void testNotZip() throws Exception {
+    File file = FileUtil.createTempFile("delta", ".apk");
+    try {
+      ApkDeltaPusher.split(file);
+      fail("Expected exception");
+    }
+    catch (IOException expected) {
+    }
+    finally {
+      FileUtil.delete(file);
+    }
+  }
+
+  public void testConcatenateCommandsAreBounded() throws Exception {
+    List<ApkDeltaPusher.Chunk> chunks = Lists.newArrayList();
+    for (int i = 0; i < 500; i++) {
+      chunks.add(new ApkDeltaPusher.Chunk(i, 1, String.format("%032x", i)));
+    }
+    List<String> commands = ApkDeltaPusher.createConcatenateCommands("/data/local/tmp/app.apk.chunks", chunks, "/data/local/tmp/app.apk");
+    assertTrue(commands.size() > 1);
+
+    StringBuilder hashes = new StringBuilder();
+    for (int i = 0; i < commands.size(); i++) {
+      String command = commands.get(i);
+      assertTrue(command, command.length() <= ApkDeltaPusher.MAX_COMMAND_LENGTH);
+      assertTrue(command, command.startsWith("cd /data/local/tmp/app.apk.chunks && cat "));
+      // Only the first command truncates the file, the others append to it
+      String redirection = i == 0 ? " > /data/local/tmp/app.apk" : " >> /data/local/tmp/app.apk";
+      assertTrue(command, command.endsWith(redirection));
+      hashes.append(command.substring("cd /data/local/tmp/app.apk.chunks && cat".length(), command.length() - redirection.length()));
+    }
+
+    StringBuilder expected = new StringBuilder();
+    for (ApkDeltaPusher.Chunk chunk : chunks) {
+      expected.append(' ').append(chunk.hash);
+    }
+    assertEquals(expected.toString(), hashes.toString());
+  }
+
+  public void testRemoveCommandsAreBounded() throws Exception {
+    List<String> hashes = Lists.newArrayList();
+    for (int i = 0; i < 500; i++) {
+      hashes.add(String.format("%032x", i));
+    }
+    List<String> commands = ApkDeltaPusher.createRemoveCommands("/data/local/tmp/app.apk.chunks", hashes);
+    assertTrue(commands.size() > 1);
+    int removed = 0;
+    for (String command : commands) {
+      assertTrue(command, command.length() <= ApkDeltaPusher.MAX_COMMAND_LENGTH);
+      assertTrue(command, command.startsWith("cd /data/local/tmp/app.apk.chunks && rm "));
+      removed += command.split(" ").length - 4;
+    }
+    assertEquals(hashes.size(), removed);
+    assertTrue(ApkDeltaPusher.createRemoveCommands("/data/local/tmp/app.apk.chunks", Lists.<String>newArrayList()).isEmpty());
+  }
+
+  public void testUnsupportedShellFallsBackBeforePushing() throws Exception {
+    File apk = createApk("original");
+    try {
+      // A shell whose ls -l doesn't show the file size
+      FakeDevice device = new FakeDevice();
+      assertNull(new FakePusher("-rw-r--r-- root root .probe\n" + PROBE_HASH + "  .probe").push(device.getDevice(), apk, REMOTE_PATH));
+      assertEquals(0, device.myPushCount);
+
+      // A shell without md5sum, which can't verify the reassembled file
+      assertNull(new FakePusher(PROBE_LISTING + "\n/system/bin/sh: md5sum: not found").push(device.getDevice(), apk, REMOTE_PATH));
+      assertEquals(0, device.myPushCount);
+    }
+    finally {
+      FileUtil.delete(apk);
+    }
+  }
+
+  public void testShellErrorFallsBack() throws Exception {
+    File apk = createApk("original");
+    try {
+      FakeDevice device = new FakeDevice();
+      FakePusher pusher = new FakePusher(PROBE_OUTPUT) {
+        @NotNull
+        @Override
+        protected String executeShellCommand(@NotNull IDevice device, @NotNull String cmd) {
+          return cmd.contains("&& cat ") ? "cat: write error: No space left on device" : super.executeShellCommand(device, cmd);
+        }
+      };
+      assertNull(pusher.push(device.getDevice(), apk, REMOTE_PATH));
+      assertTrue(device.myPushCount > 0);
+      // The failure is noticed right away, without checking the reassembled file
+      assertFalse(pusher.myCommands.contains("md5sum " + REMOTE_PATH));
+    }
+    finally {
+      FileUtil.delete(apk);
+    }
+  }
+
+  public void testReassembledFileIsVerified() throws Exception {
+    File apk = createApk("original");
+    try {
+      FakeDevice device = new FakeDevice();
+      FakePusher pusher = new FakePusher(PROBE_OUTPUT);
+      pusher.myRemoteHash = Files.hash(apk, Hashing.md5()).toString();
+      assertNotNull(pusher.push(device.getDevice(), apk, REMOTE_PATH));
+      assertFalse(pusher.myCommands.contains("rm -r " + REMOTE_PATH + ".chunks"));
+
+      // A chunk with the right name but the wrong contents
+      pusher = new FakePusher(PROBE_OUTPUT);
+      pusher.myRemoteHash = Hashing.md5().hashString("corrupt", Charsets.UTF_8).toString();
+      assertNull(pusher.push(device.getDevice(), apk, REMOTE_PATH));
+      assertTrue(pusher.myCommands.contains("rm -r " + REMOTE_PATH + ".chunks"));
+    }
+    finally {
+      FileUtil.delete(apk);
+    }
+  }
+
+  /**
+   * A pusher which answers the shell commands of a device without any chunks, with the given probe output, and
+   * with the given hash of the reassembled file
+   */
+  private static class FakePusher extends ApkDeltaPusher {
+    private final String myProbeOutput;
+    private final List<String> myCommands = Lists.newArrayList();
+    private String myRemoteHash = "";
+
+    private FakePusher(@NotNull String probeOutput) {
+      myProbeOutput = probeOutput;
+    }
+
+    @NotNull
+    @Override
+    protected String executeShellCommand(@NotNull IDevice device, @NotNull String cmd) {
+      myCommands.add(cmd);
+      if (cmd.contains(".probe")) {
+        return myProbeOutput;
+      }
+      return cmd.startsWith("md5sum ") ? myRemoteHash + "  " + cmd.substring("md5sum ".length()) : "";
+    }
+  }
+
+  /** A device which counts the files pushed to it */
+  private static class FakeDevice implements InvocationHandler {
+    private int myPushCount;
+
+    @NotNull
+    IDevice getDevice() {
+      return (IDevice)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{IDevice.class}, this);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+      if (method.getName().equals("pushFile")) {
+        myPushCount++;
+      }
+      return null;
+    }
+  }
+}
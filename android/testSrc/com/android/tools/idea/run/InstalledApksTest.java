@@ -25,8 +25,11 @@ import org.easymock.EasyMock;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 @SuppressWarnings("StaticMethodReferencedViaSubclass")
 public class InstalledApksTest extends TestCase {
@@ -58,7 +61,7 @@ public class InstalledApksTest extends TestCase {
     // Instead of testing how many times the sync service is called, we use the UploadResult value.
     EasyMock.expectLastCall().anyTimes();
 
-    myDumpSysOutput = "Package [com.foo.bar]";
+    myDumpSysOutput = "Package [com.foo.bar]\n    lastUpdateTime=2014-09-29 11:58:19";
     myService = new InstalledApks() {
       @Override
       protected String executeShellCommand(@NotNull IDevice device, @NotNull String cmd, long timeout, @NotNull TimeUnit timeUnit)
@@ -85,19 +88,66 @@ public class InstalledApksTest extends TestCase {
     assertFalse(myService.isInstalled(myDevice1, myFile, myPkgName));
   }
 
-  public void testUploadApkAfterDisconnect() throws Exception {
+  public void testInstallStateKeptAfterDisconnect() throws Exception {
     myService.setInstalled(myDevice1, myFile, myPkgName);
     myService.setInstalled(myDevice2, myFile, myPkgName);
 
     myService.deviceDisconnected(myDevice2);
     assertTrue(myService.isInstalled(myDevice1, myFile, myPkgName));
+    assertTrue(myService.isInstalled(myDevice2, myFile, myPkgName));
+
+    // Reinstalled by other means while disconnected
+    myDumpSysOutput = "Package [com.foo.bar]\n    lastUpdateTime=2015-01-01 10:00:00";
     assertFalse(myService.isInstalled(myDevice2, myFile, myPkgName));
+  }
 
-    myService.setInstalled(myDevice2, myFile, myPkgName);
-    myService.deviceDisconnected(myDevice1);
+  public void testStatePersisted() throws Exception {
+    myService.setInstalled(myDevice1, myFile, myPkgName);
 
-    assertFalse(myService.isInstalled(myDevice1, myFile, myPkgName));
-    assertTrue(myService.isInstalled(myDevice2, myFile, myPkgName));
+    InstalledApks service = new InstalledApks() {
+      @Override
+      protected String executeShellCommand(@NotNull IDevice device, @NotNull String cmd, long timeout, @NotNull TimeUnit timeUnit)
+        throws TimeoutException, AdbCommandRejectedException, ShellCommandUnresponsiveException, IOException, InterruptedException {
+        return myDumpSysOutput;
+      }
+    };
+    assertFalse(service.isInstalled(myDevice1, myFile, myPkgName));
+    service.loadState(myService.getState());
+    assertTrue(service.isInstalled(myDevice1, myFile, myPkgName));
+    assertFalse(service.isInstalled(myDevice2, myFile, myPkgName));
+    service.dispose();
+  }
+
+  public void testZipFingerprint() throws Exception {
+    File apk1 = createZip("a.txt", "first", 1400000000000L);
+    File apk2 = createZip("a.txt", "first", 1410000000000L);
+    File apk3 = createZip("a.txt", "other", 1400000000000L);
+    try {
+      // Only the entry contents matter, not their timestamps
+      assertEquals(myService.getFingerprint(apk1), myService.getFingerprint(apk2));
+      assertFalse(myService.getFingerprint(apk1).equals(myService.getFingerprint(apk3)));
+    }
+    finally {
+      FileUtil.delete(apk1);
+      FileUtil.delete(apk2);
+      FileUtil.delete(apk3);
+    }
+  }
+
+  private static File createZip(String name, String content, long time) throws IOException {
+    File file = FileUtil.createTempFile("test", ".apk");
+    ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+    try {
+      ZipEntry entry = new ZipEntry(name);
+      entry.setTime(time);
+      out.putNextEntry(entry);
+      out.write(content.getBytes("UTF-8"));
+      out.closeEntry();
+    }
+    finally {
+      out.close();
+    }
+    return file;
   }
 
   public void testUninstallFromCommandLine() throws Exception {
@@ -109,6 +159,45 @@ public class InstalledApksTest extends TestCase {
     assertFalse(myService.isInstalled(myDevice1, myFile, myPkgName));
   }
 
+  public void testUnknownLastUpdateTimeNotCached() throws Exception {
+    // Without a last update time, a reinstall by other means (or from another host) can't be detected
+    myDumpSysOutput = "Package [com.foo.bar]";
+    myService.setInstalled(myDevice1, myFile, myPkgName);
+    assertFalse(myService.isInstalled(myDevice1, myFile, myPkgName));
+    assertTrue(myService.getState().installedApks.isEmpty());
+
+    // Neither is a persisted state without one
+    InstalledApks.InstalledApk installedApk = new InstalledApks.InstalledApk();
+    installedApk.serial = "device-1";
+    installedApk.pkgName = myPkgName;
+    installedApk.fingerprint = myService.getFingerprint(myFile);
+    installedApk.lastUpdateTime = "";
+    InstalledApks.InstalledApksState state = new InstalledApks.InstalledApksState();
+    state.installedApks.add(installedApk);
+    myService.loadState(state);
+    assertFalse(myService.isInstalled(myDevice1, myFile, myPkgName));
+  }
+
+  public void testUninstalledPackageDropped() throws Exception {
+    myService.setInstalled(myDevice1, myFile, myPkgName);
+    assertEquals(1, myService.getState().installedApks.size());
+
+    myDumpSysOutput = "";
+    assertFalse(myService.isInstalled(myDevice1, myFile, myPkgName));
+    assertTrue(myService.getState().installedApks.isEmpty());
+  }
+
+  public void testOldDevicesDropped() throws Exception {
+    myService.setInstalled(myDevice1, myFile, myPkgName);
+    InstalledApks.InstalledApksState state = myService.getState();
+    assertEquals(1, state.installedApks.size());
+
+    state.installedApks.get(0).lastSeen = System.currentTimeMillis() - InstalledApks.MAX_DEVICE_AGE_MS - 1000;
+    myService.loadState(state);
+    assertTrue(myService.getState().installedApks.isEmpty());
+    assertFalse(myService.isInstalled(myDevice1, myFile, myPkgName));
+  }
+
   public void testDumpsysParser() {
     myDumpSysOutput = "Packages:\n" +
                     "  Package [com.foo.bar] (423123d0):\n" +
@@ -17,6 +17,7 @@ package com.intellij.android.designer.model;
 
 import com.intellij.android.designer.designSurface.AndroidDesignerEditorPanel;
 import com.intellij.android.designer.designSurface.LayoutEditorTestBase;
+import com.intellij.designer.model.RadComponent;
 
 /**
  * <p>
@@ -55,6 +56,8 @@ public class RadModelBuilderTest extends LayoutEditorTestBase {
                  printTree(rootComponent, true));
 
     final RadViewComponent parent = (RadViewComponent)rootComponent.getChildren().get(0);
+    RadComponent button = parent.getChildren().get(0);
+    RadComponent textView = parent.getChildren().get(1);
 
     RadViewComponent editText = addComponent(editor, parent, null, "EditText");
     setProperty(editor, editText, "text",  "New Text Value");
@@ -78,6 +81,13 @@ public class RadModelBuilderTest extends LayoutEditorTestBase {
                  "        RadViewComponent{tag=<EditText>, id=@+id/editText, bounds=[0,520:400x200}",
                  printTree(rootComponent, true));
 
+    // Components for unchanged views are kept
+    assertSame(parent, rootComponent.getChildren().get(0));
+    assertSame(button, parent.getChildren().get(0));
+    assertSame(textView, parent.getChildren().get(1));
+    assertSame(editText, parent.getChildren().get(2));
+    assertSame(parent, editText.getParent());
+
     // Also make sure the various state getters work correctly:
     assertSame(editor, RadModelBuilder.getDesigner(editText));
     assertSame(editor.getModule(), RadModelBuilder.getModule(editText));
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.android.designer.model.layout.relative;
+
+import com.android.tools.idea.designer.MarginType;
+import com.android.tools.idea.designer.Segment;
+import com.android.tools.idea.designer.SegmentType;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SegmentIndexTest extends TestCase {
+  private static Segment segment(int at) {
+    return new Segment(at, 0, 100, null, null, SegmentType.TOP, MarginType.NO_MARGIN);
+  }
+
+  public void testSorted() {
+    List<Segment> segments = new ArrayList<Segment>();
+    segments.add(segment(50));
+    segments.add(segment(10));
+    segments.add(segment(30));
+    segments.add(segment(10));
+
+    SegmentIndex index = new SegmentIndex(segments);
+    assertEquals(4, index.size());
+    assertEquals(10, index.getPosition(0));
+    assertEquals(10, index.getPosition(1));
+    assertEquals(30, index.getPosition(2));
+    assertEquals(50, index.getPosition(3));
+
+    // Equal positions keep their original order
+    assertEquals(1, index.getOriginalIndex(0));
+    assertEquals(3, index.getOriginalIndex(1));
+    assertSame(segments.get(0), index.getSegment(3));
+  }
+
+  public void testLowerBound() {
+    List<Segment> segments = new ArrayList<Segment>();
+    segments.add(segment(10));
+    segments.add(segment(20));
+    segments.add(segment(20));
+    segments.add(segment(40));
+
+    SegmentIndex index = new SegmentIndex(segments);
+    assertEquals(0, index.lowerBound(-5));
+    assertEquals(0, index.lowerBound(10));
+    assertEquals(1, index.lowerBound(11));
+    assertEquals(1, index.lowerBound(20));
+    assertEquals(3, index.lowerBound(21));
+    assertEquals(4, index.lowerBound(41));
+  }
+}
@@ -15,7 +15,14 @@
  */
 package org.jetbrains.android;
 
+import com.google.common.collect.Sets;
+import com.intellij.util.io.DataExternalizer;
 import junit.framework.TestCase;
+import org.jetbrains.android.util.ResourceEntry;
+
+import java.io.*;
+import java.util.Collections;
+import java.util.Set;
 
 import static org.jetbrains.android.AndroidValueResourcesIndex.normalizeDelimiters;
 
@@ -33,4 +40,32 @@ public class AndroidValueResourcesIndexTest extends TestCase {
     assertSame("foo", normalizeDelimiters("foo"));
     assertSame("foo_", normalizeDelimiters("foo_"));
   }
-}
\ No newline at end of file
+
+  public void testExternalizer() throws IOException {
+    DataExternalizer<Set<AndroidValueResourcesIndex.MyResourceInfo>> externalizer = new AndroidValueResourcesIndex().getValueExternalizer();
+
+    checkRoundTrip(externalizer, Collections.<AndroidValueResourcesIndex.MyResourceInfo>emptySet());
+    checkRoundTrip(externalizer, Collections.singleton(
+      new AndroidValueResourcesIndex.MyResourceInfo(new ResourceEntry("string", "app_name", ""), 42)));
+
+    // Mixed types and contexts, as for a file with a declare-styleable
+    Set<AndroidValueResourcesIndex.MyResourceInfo> infos = Sets.newHashSet(
+      new AndroidValueResourcesIndex.MyResourceInfo(new ResourceEntry("attr", "foo", "MyView"), 0),
+      new AndroidValueResourcesIndex.MyResourceInfo(new ResourceEntry("attr", "bar", ""), 100000),
+      new AndroidValueResourcesIndex.MyResourceInfo(new ResourceEntry("declare-styleable", "MyView", ""), 17),
+      new AndroidValueResourcesIndex.MyResourceInfo(new ResourceEntry("string", "Theme.Base", ""), 5));
+    checkRoundTrip(externalizer, infos);
+  }
+
+  private static void checkRoundTrip(DataExternalizer<Set<AndroidValueResourcesIndex.MyResourceInfo>> externalizer,
+                                     Set<AndroidValueResourcesIndex.MyResourceInfo> infos) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    externalizer.save(out, infos);
+    out.close();
+
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    assertEquals(infos, externalizer.read(in));
+    assertEquals(0, in.available());
+  }
+}
@@ -1,6 +1,7 @@
 package org.jetbrains.android.dom;
 
 import com.android.SdkConstants;
+import com.android.resources.ResourceType;
 import com.intellij.codeInsight.TargetElementUtil;
 import com.intellij.codeInsight.completion.CompletionType;
 import com.intellij.codeInsight.daemon.impl.HighlightInfo;
@@ -25,6 +26,7 @@ import com.intellij.util.containers.HashSet;
 import org.jetbrains.android.inspections.AndroidMissingOnClickHandlerInspection;
 import org.jetbrains.android.inspections.CreateFileResourceQuickFix;
 import org.jetbrains.android.inspections.CreateValueResourceQuickFix;
+import org.jetbrains.android.resourceManagers.LocalResourceManager;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -615,6 +617,30 @@ public class AndroidLayoutDomTest extends AndroidDomTest {
     }).attempts(2).cpuBound().usesAllCPUCores().assertTiming();
   }
 
+  public void testValueResourceLookupPerformance() throws Throwable {
+    // The lookups used by resource reference completion
+    myFixture.copyFileToProject("dom/resources/bigfile.xml", "res/values/bigfile.xml");
+    myFixture.copyFileToProject("dom/resources/bigattrs.xml", "res/values/bigattrs.xml");
+    myFixture.copyFileToProject("dom/resources/bigattrs.xml", "res/values/bigattrs1.xml");
+    myFixture.copyFileToProject("dom/resources/bigattrs.xml", "res/values/bigattrs2.xml");
+    myFixture.copyFileToProject("dom/resources/bigattrs.xml", "res/values/bigattrs3.xml");
+    final LocalResourceManager manager = myFacet.getLocalResourceManager();
+
+    // warm
+    assertTrue(manager.getValueResourceTypes().contains(ResourceType.ATTR.getName()));
+
+    PlatformTestUtil.startPerformanceTest("android value resource lookups are slow", 1000, new ThrowableRunnable() {
+      @Override
+      public void run() throws Throwable {
+        for (int i = 0; i < 50; i++) {
+          assertFalse(manager.getValueResourceTypes().isEmpty());
+          assertFalse(manager.getValueResourceEntries(ResourceType.ATTR.getName()).isEmpty());
+          manager.getValueResourceNames(ResourceType.STRING.getName());
+        }
+      }
+    }).attempts(2).cpuBound().assertTiming();
+  }
+
   /*public void testResourceHighlightingPerformance() throws Throwable {
     doCopyManyStrings();
     final VirtualFile f = copyFileToProject(getTestName(true) + ".xml");
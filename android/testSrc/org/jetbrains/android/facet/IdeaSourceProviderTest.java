@@ -20,6 +20,7 @@ import com.android.builder.model.ProductFlavorContainer;
 import com.android.builder.model.SourceProvider;
 import com.android.tools.idea.gradle.IdeaAndroidProject;
 import com.android.tools.idea.templates.AndroidGradleTestCase;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleManager;
@@ -32,6 +33,8 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.Assume.assumeTrue;
@@ -439,6 +442,39 @@ public class IdeaSourceProviderTest extends AndroidGradleTestCase {
   }
 
 
+  public void testGetCurrentSourceProvidersContaining() throws Exception {
+    assertNotNull(myAppFacet.getIdeaAndroidProject());
+    VirtualFile moduleFile = myAppFacet.getIdeaAndroidProject().getRootDir();
+    assertNotNull(moduleFile);
+    VirtualFile javaMainSrcFile = moduleFile.findFileByRelativePath("src/main/java/com/example/projectwithappandlib/");
+    assertNotNull(javaMainSrcFile);
+    VirtualFile manifestFile = moduleFile.findFileByRelativePath("src/main/AndroidManifest.xml");
+    assertNotNull(manifestFile);
+
+    IdeaSourceProvider mainProvider = myAppFacet.getMainIdeaSourceProvider();
+    assertEquals(Collections.singletonList(mainProvider),
+                 IdeaSourceProvider.getCurrentSourceProvidersContaining(myAppFacet, javaMainSrcFile));
+    assertEquals(Collections.singletonList(mainProvider), IdeaSourceProvider.getCurrentSourceProvidersContaining(myAppFacet, manifestFile));
+    assertEquals(AndroidSourceType.JAVA, IdeaSourceProvider.getCurrentSourceType(myAppFacet, javaMainSrcFile));
+    assertEquals(AndroidSourceType.MANIFEST, IdeaSourceProvider.getCurrentSourceType(myAppFacet, manifestFile));
+    assertTrue(IdeaSourceProvider.isManifestFile(myAppFacet, manifestFile));
+
+    assertTrue(IdeaSourceProvider.getCurrentSourceProvidersContaining(myAppFacet, moduleFile).isEmpty());
+    assertNull(IdeaSourceProvider.getCurrentSourceType(myAppFacet, moduleFile));
+    assertFalse(IdeaSourceProvider.isManifestFile(myAppFacet, javaMainSrcFile));
+
+    // The index agrees with checking each provider
+    for (VirtualFile file : new VirtualFile[]{javaMainSrcFile, manifestFile, moduleFile, javaMainSrcFile.getParent()}) {
+      List<IdeaSourceProvider> expected = Lists.newArrayList();
+      for (IdeaSourceProvider provider : IdeaSourceProvider.getCurrentSourceProviders(myAppFacet)) {
+        if (provider.containsFile(file)) {
+          expected.add(provider);
+        }
+      }
+      assertEquals(file.getPath(), expected, IdeaSourceProvider.getCurrentSourceProvidersContaining(myAppFacet, file));
+    }
+  }
+
   public void testSourceProviderIsContainedByFolder() throws Exception {
     assertNotNull(myAppFacet.getIdeaAndroidProject());
     ProductFlavorContainer paidFlavor = myAppFacet.getIdeaAndroidProject().findProductFlavor("paid");
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.run;
+
+import com.android.ddmlib.IDevice;
+import com.google.common.collect.Lists;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class MultiDeviceDeployerTest extends TestCase {
+  private static List<IDevice> createDevices(int count) {
+    List<IDevice> devices = Lists.newArrayList();
+    for (int i = 0; i < count; i++) {
+      IDevice device = mock(IDevice.class);
+      when(device.getSerialNumber()).thenReturn("device" + i);
+      when(device.getName()).thenReturn("device" + i);
+      devices.add(device);
+    }
+    return devices;
+  }
+
+  public void testBoundedParallelism() throws Exception {
+    List<IDevice> devices = createDevices(8);
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    List<MultiDeviceDeployer.Outcome> outcomes = new MultiDeviceDeployer(3).deploy(devices, new MultiDeviceDeployer.DeviceTask() {
+      @Override
+      public boolean run(@NotNull IDevice device) throws Exception {
+        int count = running.incrementAndGet();
+        synchronized (maxRunning) {
+          maxRunning.set(Math.max(maxRunning.get(), count));
+        }
+        Thread.sleep(50);
+        running.decrementAndGet();
+        return true;
+      }
+    }, null);
+
+    assertEquals(8, outcomes.size());
+    for (int i = 0; i < outcomes.size(); i++) {
+      MultiDeviceDeployer.Outcome outcome = outcomes.get(i);
+      assertSame(devices.get(i), outcome.device);
+      assertTrue(outcome.success);
+      assertNull(outcome.error);
+    }
+    assertTrue(maxRunning.get() > 1);
+    assertTrue(maxRunning.get() <= 3);
+  }
+
+  public void testIndependentFailures() throws Exception {
+    List<IDevice> devices = createDevices(4);
+    final List<String> finished = Collections.synchronizedList(Lists.<String>newArrayList());
+    List<MultiDeviceDeployer.Outcome> outcomes = new MultiDeviceDeployer(2).deploy(devices, new MultiDeviceDeployer.DeviceTask() {
+      @Override
+      public boolean run(@NotNull IDevice device) throws Exception {
+        if (device.getSerialNumber().equals("device1")) {
+          throw new IOException("Connection lost");
+        }
+        return !device.getSerialNumber().equals("device2");
+      }
+    }, new MultiDeviceDeployer.Listener() {
+      @Override
+      public void started(@NotNull IDevice device) {
+      }
+
+      @Override
+      public void finished(@NotNull MultiDeviceDeployer.Outcome outcome) {
+        finished.add(outcome.device.getSerialNumber());
+      }
+    });
+
+    assertEquals(4, finished.size());
+    assertTrue(outcomes.get(0).success);
+    assertFalse(outcomes.get(1).success);
+    assertTrue(outcomes.get(1).error instanceof IOException);
+    assertFalse(outcomes.get(2).success);
+    assertNull(outcomes.get(2).error);
+    assertTrue(outcomes.get(3).success);
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.uipreview;
+
+import junit.framework.TestCase;
+
+public class RenderLatencyStatsTest extends TestCase {
+  public void testEmpty() {
+    RenderLatencyStats stats = new RenderLatencyStats();
+    assertEquals(0, stats.getSampleCount());
+    assertEquals(-1, stats.getPercentile(50));
+  }
+
+  public void testPercentiles() {
+    RenderLatencyStats stats = new RenderLatencyStats();
+    for (int i = 100; i >= 1; i--) {
+      stats.record(i);
+    }
+    assertEquals(100, stats.getSampleCount());
+    assertEquals(1, stats.getPercentile(0));
+    assertEquals(50, stats.getPercentile(50));
+    assertEquals(90, stats.getPercentile(90));
+    assertEquals(100, stats.getPercentile(100));
+  }
+
+  public void testOnlyRecentSamplesKept() {
+    RenderLatencyStats stats = new RenderLatencyStats();
+    for (int i = 0; i < 1000; i++) {
+      stats.record(i < 500 ? 10000 : 5);
+    }
+    assertEquals(200, stats.getSampleCount());
+    assertEquals(5, stats.getPercentile(100));
+  }
+
+  public void testCancelled() {
+    RenderLatencyStats stats = new RenderLatencyStats();
+    stats.recordCancelled();
+    stats.recordCancelled();
+    assertEquals(2, stats.getCancelledCount());
+    assertEquals(0, stats.getSampleCount());
+  }
+}
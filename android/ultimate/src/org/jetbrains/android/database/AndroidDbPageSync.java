@@ -0,0 +1,391 @@
+package org.jetbrains.android.database;
+
+import com.android.ddmlib.IDevice;
+import com.android.ddmlib.SyncService;
+import com.google.common.annotations.VisibleForTesting;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Incremental transfer of a database file between the device and its local copy. Both copies are hashed in
+ * fixed-size pages, and only the runs of pages which differ are transferred. The device side hashing relies on
+ * the {@code stat}, {@code dd} and {@code md5sum} shell commands; when the device doesn't provide them, the
+ * files differ in too many places, or the remote file is written to while its pages are transferred, the methods
+ * return null and the caller copies the whole file instead.
+ */
+class AndroidDbPageSync {
+  static final int PAGE_SIZE = 256 * 1024;
+
+  /** Above this many runs of changed pages the shell commands get too long, and copying the whole file is cheaper */
+  private static final int MAX_RUNS = 64;
+
+  /** Printed instead of writing any pages when the remote file changed since it was hashed */
+  private static final String FILE_CHANGED = "file changed";
+
+  private static final Pattern MD5_PATTERN = Pattern.compile("[0-9a-f]{32}");
+
+  private AndroidDbPageSync() {
+  }
+
+  /**
+   * Updates the local database file with the pages of the remote one which differ from it.
+   *
+   * @return true if the local file was updated, false if an error was reported, or null if the whole file
+   * should be downloaded instead
+   */
+  @Nullable
+  static Boolean download(@NotNull IDevice device,
+                          @NotNull String runAsPrefix,
+                          @NotNull String remoteDbPath,
+                          @NotNull String tempRemoteDbPath,
+                          @NotNull File localDbFile,
+                          @NotNull ProgressIndicator progressIndicator,
+                          @NotNull AndroidDbErrorReporter errorReporter) throws Exception {
+    final RemoteFile remoteFile = getRemoteFile(device, runAsPrefix, remoteDbPath, progressIndicator);
+
+    if (remoteFile == null) {
+      return null;
+    }
+    progressIndicator.checkCanceled();
+    final List<int[]> runs = getChangedRuns(getLocalPageHashes(localDbFile), remoteFile.pageHashes);
+
+    if (runs.size() > MAX_RUNS) {
+      return null;
+    }
+
+    if (!runs.isEmpty()) {
+      // Errors go to stderr, since stdout is the copied pages. The file is stat-ed again after the copy: if it was
+      // written to since it was hashed, the pages which weren't copied may be out of date as well.
+      final String script = "for r in " + toString(runs) + "; do " +
+                            "dd if=" + remoteDbPath + " bs=" + PAGE_SIZE + " skip=${r%:*} count=${r#*:} 2>/dev/null" +
+                            " || echo dd failed >&2; done; " + getStatCommand(remoteDbPath) + " >&2";
+      final String output = executeScript(device, runAsPrefix, script, " >" + tempRemoteDbPath, progressIndicator).trim();
+
+      if (output.contains("dd failed")) {
+        errorReporter.reportError(output);
+        return false;
+      }
+      if (!output.equals(remoteFile.state)) {
+        return null;
+      }
+      progressIndicator.checkCanceled();
+    }
+    final File pagesFile = FileUtil.createTempFile("android_db_pages", "tmp");
+
+    try {
+      if (!runs.isEmpty()) {
+        final SyncService syncService = device.getSyncService();
+
+        try {
+          syncService.pullFile(tempRemoteDbPath, pagesFile.getPath(), new AndroidDbUtil.MySyncProgressMonitor(progressIndicator));
+        }
+        finally {
+          syncService.close();
+        }
+      }
+      final long expectedLength = getLength(runs, remoteFile.size);
+
+      if (pagesFile.length() != expectedLength) {
+        errorReporter.reportError("received " + pagesFile.length() + " bytes of changed pages instead of " + expectedLength);
+        return false;
+      }
+      final InputStream in = new BufferedInputStream(new FileInputStream(pagesFile));
+
+      try {
+        final RandomAccessFile out = new RandomAccessFile(localDbFile, "rw");
+
+        try {
+          final byte[] buffer = new byte[PAGE_SIZE];
+
+          for (int[] run : runs) {
+            final long offset = (long)run[0] * PAGE_SIZE;
+            out.seek(offset);
+            long remaining = Math.min((long)run[1] * PAGE_SIZE, remoteFile.size - offset);
+
+            while (remaining > 0) {
+              final int read = in.read(buffer, 0, (int)Math.min(buffer.length, remaining));
+
+              if (read < 0) {
+                throw new EOFException(pagesFile.getPath());
+              }
+              out.write(buffer, 0, read);
+              remaining -= read;
+            }
+          }
+          out.setLength(remoteFile.size);
+        }
+        finally {
+          out.close();
+        }
+      }
+      finally {
+        in.close();
+      }
+    }
+    finally {
+      FileUtil.delete(pagesFile);
+    }
+    return true;
+  }
+
+  /**
+   * Updates the remote database file with the pages of the local one which differ from it.
+   *
+   * @return true if the remote file was updated, false if an error was reported, or null if the whole file
+   * should be uploaded instead
+   */
+  @Nullable
+  static Boolean upload(@NotNull IDevice device,
+                        @NotNull String runAsPrefix,
+                        @NotNull String remoteDbPath,
+                        @NotNull String tempRemoteDbPath,
+                        @NotNull File localDbFile,
+                        @NotNull ProgressIndicator progressIndicator,
+                        @NotNull AndroidDbErrorReporter errorReporter) throws Exception {
+    final RemoteFile remoteFile = getRemoteFile(device, runAsPrefix, remoteDbPath, progressIndicator);
+
+    // Pages can only be overwritten or appended; truncating the remote file needs a full copy
+    if (remoteFile == null || remoteFile.size > localDbFile.length()) {
+      return null;
+    }
+    progressIndicator.checkCanceled();
+    final List<int[]> runs = getChangedRuns(remoteFile.pageHashes, getLocalPageHashes(localDbFile));
+
+    if (runs.size() > MAX_RUNS) {
+      return null;
+    }
+    if (runs.isEmpty()) {
+      return true;
+    }
+    final File pagesFile = FileUtil.createTempFile("android_db_pages", "tmp");
+
+    try {
+      final RandomAccessFile in = new RandomAccessFile(localDbFile, "r");
+
+      try {
+        final OutputStream out = new BufferedOutputStream(new FileOutputStream(pagesFile));
+
+        try {
+          final byte[] buffer = new byte[PAGE_SIZE];
+
+          for (int[] run : runs) {
+            in.seek((long)run[0] * PAGE_SIZE);
+
+            for (int i = 0; i < run[1]; i++) {
+              final int read = in.read(buffer);
+
+              if (read > 0) {
+                out.write(buffer, 0, read);
+              }
+            }
+          }
+        }
+        finally {
+          out.close();
+        }
+      }
+      finally {
+        in.close();
+      }
+      final SyncService syncService = device.getSyncService();
+
+      try {
+        syncService.pushFile(pagesFile.getPath(), tempRemoteDbPath, new AndroidDbUtil.MySyncProgressMonitor(progressIndicator));
+      }
+      finally {
+        syncService.close();
+      }
+    }
+    finally {
+      FileUtil.delete(pagesFile);
+    }
+    progressIndicator.checkCanceled();
+
+    // The changed pages were pushed one run after another, so each run starts where the previous one ended. The pages
+    // are only written if the file wasn't written to since it was hashed: otherwise the pages which aren't overwritten
+    // may be out of date as well, and patching them in would leave a mix of old and new pages.
+    final String script = "if [ \"$(" + getStatCommand(remoteDbPath) + ")\" != \"" + remoteFile.state + "\" ]; then " +
+                          "echo " + FILE_CHANGED + "; else o=0; for r in " + toString(runs) + "; do n=${r#*:}; " +
+                          "dd if=" + tempRemoteDbPath + " of=" + remoteDbPath + " bs=" + PAGE_SIZE +
+                          " skip=$o seek=${r%:*} count=$n conv=notrunc 2>/dev/null || echo dd failed; o=$((o + n)); done; fi";
+    final String output = executeScript(device, runAsPrefix, script, "", progressIndicator);
+
+    if (output.equals(FILE_CHANGED)) {
+      return null;
+    }
+    if (!output.isEmpty()) {
+      errorReporter.reportError(output);
+      return false;
+    }
+    return true;
+  }
+
+  /** Returns the size and page hashes of the remote file, or null if they can't be computed on the device */
+  @Nullable
+  private static RemoteFile getRemoteFile(@NotNull IDevice device,
+                                          @NotNull String runAsPrefix,
+                                          @NotNull String remoteDbPath,
+                                          @NotNull ProgressIndicator progressIndicator) throws Exception {
+    final String script = "s=$(stat -c %s " + remoteDbPath + "); " + getStatCommand(remoteDbPath) + "; i=0; " +
+                          "while [ $((i * " + PAGE_SIZE + ")) -lt $s ]; do " +
+                          "dd if=" + remoteDbPath + " bs=" + PAGE_SIZE + " skip=$i count=1 2>/dev/null | md5sum; i=$((i + 1)); done";
+    final String[] lines = executeScript(device, runAsPrefix, script, "", progressIndicator).split("\n");
+    final String state = lines[0].trim();
+    final long size;
+
+    try {
+      size = Long.parseLong(state.split(" ")[0]);
+    }
+    catch (NumberFormatException e) {
+      return null;
+    }
+    final String[] pageHashes = new String[lines.length - 1];
+
+    if (pageHashes.length != getPageCount(size)) {
+      return null;
+    }
+    for (int i = 0; i < pageHashes.length; i++) {
+      // md5sum prints the hash followed by the file name
+      final String hash = lines[i + 1].split("\\s+")[0];
+
+      if (!MD5_PATTERN.matcher(hash).matches()) {
+        return null;
+      }
+      pageHashes[i] = hash;
+    }
+    return new RemoteFile(state, size, pageHashes);
+  }
+
+  /** Returns the command printing the size and modification time of the given file, which change when it's written to */
+  @NotNull
+  private static String getStatCommand(@NotNull String path) {
+    return "stat -c \"%s %y\" " + path;
+  }
+
+  @NotNull
+  private static String executeScript(@NotNull IDevice device,
+                                      @NotNull String runAsPrefix,
+                                      @NotNull String script,
+                                      @NotNull String redirection,
+                                      @NotNull ProgressIndicator progressIndicator) throws Exception {
+    final AndroidDbUtil.MyShellOutputReceiver receiver = new AndroidDbUtil.MyShellOutputReceiver(progressIndicator, device);
+    device.executeShellCommand(runAsPrefix + "sh -c '" + script + "'" + redirection, receiver,
+                               AndroidDbUtil.DB_COPYING_TIMEOUT_SEC, TimeUnit.SECONDS);
+    return receiver.getOutput();
+  }
+
+  @NotNull
+  private static String[] getLocalPageHashes(@NotNull File file) throws IOException {
+    final MessageDigest md5;
+
+    try {
+      md5 = MessageDigest.getInstance("MD5");
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new IOException(e);
+    }
+    final String[] pageHashes = new String[getPageCount(file.length())];
+    final InputStream in = new BufferedInputStream(new FileInputStream(file));
+
+    try {
+      final byte[] buffer = new byte[PAGE_SIZE];
+
+      for (int i = 0; i < pageHashes.length; i++) {
+        int length = 0;
+        int read;
+
+        while (length < buffer.length && (read = in.read(buffer, length, buffer.length - length)) > 0) {
+          length += read;
+        }
+        md5.update(buffer, 0, length);
+        final StringBuilder builder = new StringBuilder();
+
+        for (byte b : md5.digest()) {
+          builder.append(Integer.toString((b & 0xff) + 0x100, 16).substring(1));
+        }
+        pageHashes[i] = builder.toString();
+      }
+    }
+    finally {
+      in.close();
+    }
+    return pageHashes;
+  }
+
+  private static int getPageCount(long size) {
+    return (int)((size + PAGE_SIZE - 1) / PAGE_SIZE);
+  }
+
+  /**
+   * Returns the runs of consecutive pages of the source which differ from the destination, as {start page, page count}
+   */
+  @VisibleForTesting
+  @NotNull
+  static List<int[]> getChangedRuns(@NotNull String[] destinationHashes, @NotNull String[] sourceHashes) {
+    final List<int[]> runs = new ArrayList<int[]>();
+    int[] run = null;
+
+    for (int i = 0; i < sourceHashes.length; i++) {
+      if (i < destinationHashes.length && destinationHashes[i].equals(sourceHashes[i])) {
+        run = null;
+      }
+      else if (run != null) {
+        run[1]++;
+      }
+      else {
+        run = new int[]{i, 1};
+        runs.add(run);
+      }
+    }
+    return runs;
+  }
+
+  /** Returns the number of bytes in the given runs of pages of a file of the given size */
+  @VisibleForTesting
+  static long getLength(@NotNull List<int[]> runs, long size) {
+    long length = 0;
+
+    for (int[] run : runs) {
+      final long offset = (long)run[0] * PAGE_SIZE;
+      length += Math.min((long)run[1] * PAGE_SIZE, size - offset);
+    }
+    return length;
+  }
+
+  /** Formats the runs as a list of start:count words for a shell for loop */
+  @NotNull
+  private static String toString(@NotNull List<int[]> runs) {
+    final StringBuilder builder = new StringBuilder();
+
+    for (int[] run : runs) {
+      if (builder.length() > 0) {
+        builder.append(' ');
+      }
+      builder.append(run[0]).append(':').append(run[1]);
+    }
+    return builder.toString();
+  }
+
+  private static class RemoteFile {
+    /** The output of the stat command for the file when it was hashed */
+    final String state;
+    final long size;
+    final String[] pageHashes;
+
+    RemoteFile(@NotNull String state, long size, @NotNull String[] pageHashes) {
+      this.state = state;
+      this.size = size;
+      this.pageHashes = pageHashes;
+    }
+  }
+}
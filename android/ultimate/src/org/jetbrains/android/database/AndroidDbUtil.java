@@ -5,15 +5,27 @@ import com.android.ddmlib.IDevice;
 import com.android.ddmlib.MultiLineReceiver;
 import com.android.ddmlib.SyncService;
 import com.android.tools.idea.ddms.DevicePropertyUtil;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.io.URLUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
@@ -23,7 +35,6 @@ import java.util.regex.Pattern;
 class AndroidDbUtil {
   private static final Logger LOG = Logger.getInstance("#org.jetbrains.android.database.AndroidDbUtil");
 
-  public static final Object DB_SYNC_LOCK = new Object();
   public static final String TEMP_REMOTE_DB_PATH = "/data/local/tmp/intellij_temp_db_file";
   public static final String TEMP_REMOTE_GET_MODIFICATION_TIME_TOOL_PATH =
     "/data/local/tmp/intellij_native_tools/get_modification_time";
@@ -35,9 +46,112 @@ class AndroidDbUtil {
 
   private static final Pattern RUN_AS_UNKNOWN_PACKAGE_ERROR_PATTERN = Pattern.compile("run-as: Package '\\S+' is unknown");
 
+  private static final ConcurrentMap<String, Object> ourSyncLocks = ContainerUtil.newConcurrentMap();
+  private static final ConcurrentMap<String, Object> ourToolLocks = ContainerUtil.newConcurrentMap();
+
   private AndroidDbUtil() {
   }
 
+  /**
+   * Returns the lock to hold while synchronizing the given local database file with the device. Each data source
+   * has its own local file (and temporary file on the device), so different data sources can be synchronized in
+   * parallel.
+   */
+  @NotNull
+  public static Object getSyncLock(@NotNull String localDbPath) {
+    final String key = FileUtil.toCanonicalPath(localDbPath);
+    final Object lock = new Object();
+    final Object existingLock = ourSyncLocks.putIfAbsent(key, lock);
+    return existingLock != null ? existingLock : lock;
+  }
+
+  /**
+   * Returns the lock to hold while checking, installing or running the get_modification_time tool on the given device.
+   * All data sources share the same tool binary on the device, and one sync must not run the tool while another one
+   * is pushing it.
+   */
+  @NotNull
+  private static Object getToolLock(@NotNull IDevice device) {
+    final String key = device.getSerialNumber();
+    final Object lock = new Object();
+    final Object existingLock = ourToolLocks.putIfAbsent(key, lock);
+    return existingLock != null ? existingLock : lock;
+  }
+
+  /**
+   * Runs the given task for each of the data sources on a pooled thread, holding the sync lock of the data source,
+   * and waits for all of them to finish. While they run, the progress text lists the data sources being synchronized,
+   * after the given action, for example "Downloading".
+   */
+  public static void synchronizeInParallel(@NotNull Collection<AndroidDataSource> dataSources,
+                                           @NotNull final ProgressIndicator progressIndicator,
+                                           @NotNull final String progressAction,
+                                           @NotNull final DataSourceTask task) {
+    final List<Future<?>> futures = new ArrayList<Future<?>>();
+    final Set<String> runningNames = new LinkedHashSet<String>();
+
+    for (final AndroidDataSource dataSource : dataSources) {
+      futures.add(ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+        @Override
+        public void run() {
+          synchronized (getSyncLock(dataSource.buildLocalDbFileOsPath())) {
+            updateProgressText(progressIndicator, progressAction, runningNames, dataSource.getName(), true);
+            try {
+              task.run(dataSource);
+            }
+            finally {
+              updateProgressText(progressIndicator, progressAction, runningNames, dataSource.getName(), false);
+            }
+          }
+        }
+      }));
+    }
+    try {
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    }
+    catch (InterruptedException e) {
+      throw new ProcessCanceledException(e);
+    }
+    catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException)cause;
+      }
+      throw new RuntimeException(cause);
+    }
+    progressIndicator.checkCanceled();
+  }
+
+  private static void updateProgressText(@NotNull ProgressIndicator progressIndicator,
+                                         @NotNull String progressAction,
+                                         @NotNull Set<String> runningNames,
+                                         @NotNull String name,
+                                         boolean started) {
+    synchronized (runningNames) {
+      if (started) {
+        runningNames.add(name);
+      }
+      else {
+        runningNames.remove(name);
+      }
+      if (!runningNames.isEmpty()) {
+        progressIndicator.setText(progressAction + " '" + StringUtil.join(runningNames, "', '") + "'");
+      }
+    }
+  }
+
+  interface DataSourceTask {
+    void run(@NotNull AndroidDataSource dataSource);
+  }
+
+  @NotNull
+  private static String getTempRemoteDbPath(@NotNull String localDbPath) {
+    return TEMP_REMOTE_DB_PATH + "_" + Integer.toHexString(FileUtil.toCanonicalPath(localDbPath).hashCode());
+  }
+
   public static boolean uploadDatabase(@NotNull IDevice device,
                                        @NotNull String packageName,
                                        @NotNull String dbName,
@@ -46,41 +160,54 @@ class AndroidDbUtil {
                                        @NotNull final ProgressIndicator progressIndicator,
                                        @NotNull AndroidDbErrorReporter errorReporter) {
     try {
-      final SyncService syncService = device.getSyncService();
+      final String remoteDbPath = getDatabaseRemoteFilePath(packageName, dbName, external);
+      final String tempRemoteDbPath = getTempRemoteDbPath(localDbPath);
 
       try {
-        syncService.pushFile(localDbPath, TEMP_REMOTE_DB_PATH, new MySyncProgressMonitor(progressIndicator));
-      }
-      finally {
-        syncService.close();
-      }
-      final String remoteDbPath = getDatabaseRemoteFilePath(packageName, dbName, external);
-      final String remoteDbDirPath = remoteDbPath.substring(0, remoteDbPath.lastIndexOf('/'));
+        final Boolean uploadedPages = AndroidDbPageSync.upload(device, getRunAsPrefix(packageName, external), remoteDbPath,
+                                                               tempRemoteDbPath, new File(localDbPath), progressIndicator, errorReporter);
 
-      MyShellOutputReceiver outputReceiver = new MyShellOutputReceiver(progressIndicator, device);
-      device.executeShellCommand(getRunAsPrefix(packageName, external) +
-                                 "mkdir " + remoteDbDirPath, outputReceiver,
-                                 DB_COPYING_TIMEOUT_SEC, TimeUnit.SECONDS);
-      String output = outputReceiver.getOutput();
+        if (uploadedPages != null) {
+          return uploadedPages;
+        }
+        final SyncService syncService = device.getSyncService();
 
-      if (!output.isEmpty() && !output.startsWith("mkdir failed")) {
-        errorReporter.reportError(output);
-        return false;
-      }
-      // recreating is needed for Genymotion emulator (IDEA-114732)
-      if (!external && !recreateRemoteFile(device, packageName, remoteDbPath, errorReporter, progressIndicator)) {
-        return false;
-      }
-      outputReceiver = new MyShellOutputReceiver(progressIndicator, device);
-      device.executeShellCommand(getRunAsPrefix(packageName, external) + "cat " + TEMP_REMOTE_DB_PATH + " >" + remoteDbPath,
-                                 outputReceiver, DB_COPYING_TIMEOUT_SEC, TimeUnit.SECONDS);
-      output = outputReceiver.getOutput();
+        try {
+          syncService.pushFile(localDbPath, tempRemoteDbPath, new MySyncProgressMonitor(progressIndicator));
+        }
+        finally {
+          syncService.close();
+        }
+        final String remoteDbDirPath = remoteDbPath.substring(0, remoteDbPath.lastIndexOf('/'));
 
-      if (!output.isEmpty()) {
-        errorReporter.reportError(output);
-        return false;
+        MyShellOutputReceiver outputReceiver = new MyShellOutputReceiver(progressIndicator, device);
+        device.executeShellCommand(getRunAsPrefix(packageName, external) +
+                                   "mkdir " + remoteDbDirPath, outputReceiver,
+                                   DB_COPYING_TIMEOUT_SEC, TimeUnit.SECONDS);
+        String output = outputReceiver.getOutput();
+
+        if (!output.isEmpty() && !output.startsWith("mkdir failed")) {
+          errorReporter.reportError(output);
+          return false;
+        }
+        // recreating is needed for Genymotion emulator (IDEA-114732)
+        if (!external && !recreateRemoteFile(device, packageName, remoteDbPath, errorReporter, progressIndicator)) {
+          return false;
+        }
+        outputReceiver = new MyShellOutputReceiver(progressIndicator, device);
+        device.executeShellCommand(getRunAsPrefix(packageName, external) + "cat " + tempRemoteDbPath + " >" + remoteDbPath,
+                                   outputReceiver, DB_COPYING_TIMEOUT_SEC, TimeUnit.SECONDS);
+        output = outputReceiver.getOutput();
+
+        if (!output.isEmpty()) {
+          errorReporter.reportError(output);
+          return false;
+        }
+        progressIndicator.checkCanceled();
+      }
+      finally {
+        deleteTempRemoteDbFile(device, tempRemoteDbPath);
       }
-      progressIndicator.checkCanceled();
     }
     catch (Exception e) {
       errorReporter.reportError(e);
@@ -89,6 +216,17 @@ class AndroidDbUtil {
     return true;
   }
 
+  /** Removes the temporary copy of a database from the device, so it doesn't take up space there between syncs */
+  private static void deleteTempRemoteDbFile(@NotNull IDevice device, @NotNull String tempRemoteDbPath) {
+    try {
+      device.executeShellCommand("rm -f " + tempRemoteDbPath, new MyShellOutputReceiver(null, device),
+                                 SHELL_COMMAND_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+    catch (Exception e) {
+      LOG.info(e);
+    }
+  }
+
   @NotNull
   private static String getRunAsPrefix(@NotNull String packageName, boolean external) {
     return external ? "" : "run-as " + packageName + " ";
@@ -128,33 +266,47 @@ class AndroidDbUtil {
                                          @NotNull final ProgressIndicator progressIndicator,
                                          @NotNull AndroidDbErrorReporter errorReporter) {
     try {
-      final MyShellOutputReceiver receiver = new MyShellOutputReceiver(progressIndicator, device);
-      device.executeShellCommand(getRunAsPrefix(packageName, external) + "cat " +
-                                 getDatabaseRemoteFilePath(packageName, dbName, external) + " >" +
-                                 TEMP_REMOTE_DB_PATH, receiver,
-                                 DB_COPYING_TIMEOUT_SEC, TimeUnit.SECONDS);
-      final String output = receiver.getOutput();
-
-      if (!output.isEmpty()) {
-        errorReporter.reportError(output);
-        return false;
-      }
-      progressIndicator.checkCanceled();
-      final File parent = localDbFile.getParentFile();
+      final String remoteDbPath = getDatabaseRemoteFilePath(packageName, dbName, external);
+      final String tempRemoteDbPath = getTempRemoteDbPath(localDbFile.getPath());
+
+      try {
+        if (localDbFile.isFile()) {
+          final Boolean downloadedPages = AndroidDbPageSync.download(device, getRunAsPrefix(packageName, external), remoteDbPath,
+                                                                     tempRemoteDbPath, localDbFile, progressIndicator, errorReporter);
 
-      if (!parent.exists()) {
-        if (!parent.mkdirs()) {
-          errorReporter.reportError("cannot create directory '" + parent.getPath() + "'");
+          if (downloadedPages != null) {
+            return downloadedPages;
+          }
+        }
+        final MyShellOutputReceiver receiver = new MyShellOutputReceiver(progressIndicator, device);
+        device.executeShellCommand(getRunAsPrefix(packageName, external) + "cat " + remoteDbPath + " >" + tempRemoteDbPath, receiver,
+                                   DB_COPYING_TIMEOUT_SEC, TimeUnit.SECONDS);
+        final String output = receiver.getOutput();
+
+        if (!output.isEmpty()) {
+          errorReporter.reportError(output);
           return false;
         }
-      }
-      final SyncService syncService = device.getSyncService();
+        progressIndicator.checkCanceled();
+        final File parent = localDbFile.getParentFile();
 
-      try {
-        syncService.pullFile(TEMP_REMOTE_DB_PATH, localDbFile.getPath(), new MySyncProgressMonitor(progressIndicator));
+        if (!parent.exists()) {
+          if (!parent.mkdirs()) {
+            errorReporter.reportError("cannot create directory '" + parent.getPath() + "'");
+            return false;
+          }
+        }
+        final SyncService syncService = device.getSyncService();
+
+        try {
+          syncService.pullFile(tempRemoteDbPath, localDbFile.getPath(), new MySyncProgressMonitor(progressIndicator));
+        }
+        finally {
+          syncService.close();
+        }
       }
       finally {
-        syncService.close();
+        deleteTempRemoteDbFile(device, tempRemoteDbPath);
       }
     }
     catch (Exception e) {
@@ -311,6 +463,18 @@ class AndroidDbUtil {
                                          boolean external,
                                          @NotNull AndroidDbErrorReporter errorReporter,
                                          @NotNull ProgressIndicator progressIndicator) {
+    synchronized (getToolLock(device)) {
+      return doGetModificationTime(device, packageName, dbName, external, errorReporter, progressIndicator);
+    }
+  }
+
+  @Nullable
+  private static Long doGetModificationTime(@NotNull IDevice device,
+                                            @NotNull String packageName,
+                                            @NotNull String dbName,
+                                            boolean external,
+                                            @NotNull AndroidDbErrorReporter errorReporter,
+                                            @NotNull ProgressIndicator progressIndicator) {
     final String path = TEMP_REMOTE_GET_MODIFICATION_TIME_TOOL_PATH;
     final String lsResult = executeSingleCommand(device, errorReporter, "ls " + path);
 
@@ -325,7 +489,7 @@ class AndroidDbUtil {
       }
       reinstalled = true;
     }
-    Long l = doGetModificationTime(device, packageName, dbName, external, errorReporter);
+    Long l = runGetModificationTimeTool(device, packageName, dbName, external, errorReporter);
 
     if (l != null) {
       return l;
@@ -338,11 +502,11 @@ class AndroidDbUtil {
   }
 
   @Nullable
-  private static Long doGetModificationTime(@NotNull IDevice device,
-                                            @NotNull String packageName,
-                                            @NotNull String dbName,
-                                            boolean external,
-                                            @NotNull AndroidDbErrorReporter errorReporter) {
+  private static Long runGetModificationTimeTool(@NotNull IDevice device,
+                                                 @NotNull String packageName,
+                                                 @NotNull String dbName,
+                                                 boolean external,
+                                                 @NotNull AndroidDbErrorReporter errorReporter) {
     String databaseRemoteFilePath = getDatabaseRemoteFilePath(packageName, dbName, external);
     final String command = getRunAsPrefix(packageName, external) + TEMP_REMOTE_GET_MODIFICATION_TIME_TOOL_PATH + " " + databaseRemoteFilePath;
     String s = executeSingleCommand(device, errorReporter, command);
@@ -453,7 +617,7 @@ class AndroidDbUtil {
     return "$EXTERNAL_STORAGE/Android/data/" + packageName + "/" + dbName;
   }
 
-  private static class MyShellOutputReceiver extends MultiLineReceiver {
+  static class MyShellOutputReceiver extends MultiLineReceiver {
     @Nullable private final ProgressIndicator myProgressIndicator;
     private final StringBuilder myOutputBuilder = new StringBuilder();
     private final boolean myAndroid43;
@@ -494,7 +658,7 @@ class AndroidDbUtil {
     }
   }
 
-  private static class MySyncProgressMonitor implements SyncService.ISyncProgressMonitor {
+  static class MySyncProgressMonitor implements SyncService.ISyncProgressMonitor {
     private final ProgressIndicator myProgressIndicator;
 
     public MySyncProgressMonitor(@NotNull ProgressIndicator progressIndicator) {
@@ -129,21 +129,20 @@ public class AndroidSynchronizeHandler extends SynchronizeHandler {
     }
 
     @Override
-    public void run(@NotNull ProgressIndicator indicator) {
-      for (Iterator<AndroidDataSource> it = myDataSources.iterator(); it.hasNext(); ) {
-        final AndroidDataSource dataSource = it.next();
-        indicator.setText("Downloading '" + dataSource.getName() + "'");
+    public void run(@NotNull final ProgressIndicator indicator) {
+      final List<AndroidDataSource> dataSources = new ArrayList<AndroidDataSource>(myDataSources);
 
-        synchronized (AndroidDbUtil.DB_SYNC_LOCK) {
+      AndroidDbUtil.synchronizeInParallel(dataSources, indicator, "Downloading", new AndroidDbUtil.DataSourceTask() {
+        @Override
+        public void run(@NotNull AndroidDataSource dataSource) {
           final AndroidDbErrorReporter errorReporter = new AndroidDbErrorReporterImpl(myProject, dataSource, false);
           doSynchronizeDataSource(myProject, dataSource, indicator, myDebugBridge, errorReporter);
 
           if (errorReporter.hasError()) {
-            it.remove();
+            myDataSources.remove(dataSource);
           }
         }
-        indicator.checkCanceled();
-      }
+      });
     }
   }
 }
@@ -53,15 +53,13 @@ public class AndroidUploadDatabaseAction extends AnAction {
     }
     ProgressManager.getInstance().run(new Task.Backgroundable(project, AndroidBundle.message("android.db.uploading.progress.title"), true) {
       @Override
-      public void run(@NotNull ProgressIndicator indicator) {
-        for (final AndroidDataSource dataSource : dataSources) {
-          indicator.setText("Uploading " + dataSource.getName());
-
-          synchronized (AndroidDbUtil.DB_SYNC_LOCK) {
+      public void run(@NotNull final ProgressIndicator indicator) {
+        AndroidDbUtil.synchronizeInParallel(dataSources, indicator, "Uploading", new AndroidDbUtil.DataSourceTask() {
+          @Override
+          public void run(@NotNull AndroidDataSource dataSource) {
             uploadDatabase(project, dataSource, indicator, debugBridge);
           }
-          indicator.checkCanceled();
-        }
+        });
       }
     });
   }
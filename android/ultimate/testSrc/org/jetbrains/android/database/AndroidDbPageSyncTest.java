@@ -0,0 +1,62 @@
+package org.jetbrains.android.database;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.jetbrains.android.database.AndroidDbPageSync.PAGE_SIZE;
+
+public class AndroidDbPageSyncTest extends TestCase {
+  public void testUnchangedPages() {
+    final String[] hashes = {"a", "b", "c"};
+    assertTrue(AndroidDbPageSync.getChangedRuns(hashes, hashes.clone()).isEmpty());
+  }
+
+  public void testConsecutiveChangedPagesAreCoalesced() {
+    final List<int[]> runs = AndroidDbPageSync.getChangedRuns(new String[]{"a", "b", "c", "d", "e", "f"},
+                                                              new String[]{"a", "x", "y", "d", "z", "f"});
+    assertEquals(2, runs.size());
+    assertRun(1, 2, runs.get(0));
+    assertRun(4, 1, runs.get(1));
+  }
+
+  public void testAppendedPagesJoinTheLastChangedRun() {
+    final List<int[]> runs = AndroidDbPageSync.getChangedRuns(new String[]{"a", "b", "c"},
+                                                              new String[]{"a", "b", "x", "y", "z"});
+    assertEquals(1, runs.size());
+    assertRun(2, 3, runs.get(0));
+  }
+
+  public void testPagesMissingFromTheSourceAreIgnored() {
+    final List<int[]> runs = AndroidDbPageSync.getChangedRuns(new String[]{"a", "b", "c", "d"},
+                                                              new String[]{"x", "b"});
+    assertEquals(1, runs.size());
+    assertRun(0, 1, runs.get(0));
+  }
+
+  public void testLengthOfWholePages() {
+    final long size = 4L * PAGE_SIZE;
+    assertEquals(3L * PAGE_SIZE, AndroidDbPageSync.getLength(runs(new int[]{0, 1}, new int[]{2, 2}), size));
+  }
+
+  public void testLengthWithTrailingPartialPage() {
+    final long size = 3L * PAGE_SIZE + 100;
+    assertEquals(PAGE_SIZE + PAGE_SIZE + 100, AndroidDbPageSync.getLength(runs(new int[]{0, 1}, new int[]{2, 2}), size));
+    assertEquals(100, AndroidDbPageSync.getLength(runs(new int[]{3, 1}), size));
+  }
+
+  public void testLengthOfNoRuns() {
+    assertEquals(0, AndroidDbPageSync.getLength(Collections.<int[]>emptyList(), PAGE_SIZE));
+  }
+
+  private static List<int[]> runs(int[]... runs) {
+    return Arrays.asList(runs);
+  }
+
+  private static void assertRun(int start, int count, int[] run) {
+    assertEquals(start, run[0]);
+    assertEquals(count, run[1]);
+  }
+}